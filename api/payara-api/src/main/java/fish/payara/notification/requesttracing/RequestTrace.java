@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2019 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -101,6 +101,15 @@ public class RequestTrace implements Serializable, Comparable<RequestTrace> {
     }
 
     public void addEvent(RequestTraceSpan span, long timestampMillis) {
+        addEvent(span, Instant.ofEpochMilli(timestampMillis));
+    }
+
+    /**
+     * Add a new event to the series being traced, which ended at the given time
+     * @param span
+     * @param endTime end of the span, ignored for the span starting the trace
+     */
+    public void addEvent(RequestTraceSpan span, Instant endTime) {
         // Do not add trace events if completed
         if (completed
                 && span.getEventType() != TRACE_START
@@ -117,7 +126,7 @@ public class RequestTrace implements Serializable, Comparable<RequestTrace> {
                     handlePropagatedTrace(span);
                     break;
                 case REQUEST_EVENT:
-                    handleRequestEvent(span, timestampMillis);
+                    handleRequestEvent(span, endTime);
                     break;
                 default:
                     break;
@@ -153,19 +162,27 @@ public class RequestTrace implements Serializable, Comparable<RequestTrace> {
         trace.add(span);
     }
 
-    private void handleRequestEvent(RequestTraceSpan span, long timestampMillis) {
+    private void handleRequestEvent(RequestTraceSpan span, Instant spanEndTime) {
         if (!started) {
             return;
         }
 
         RequestTraceSpan rootSpan = trace.getFirst();
         span.setTraceId(rootSpan.getTraceId());
-        span.setSpanDuration(span.getStartInstant().until(Instant.ofEpochMilli(timestampMillis), ChronoUnit.NANOS));
-        span.setTraceEndTime(Instant.ofEpochMilli(timestampMillis));
+        span.setSpanDuration(span.getStartInstant().until(spanEndTime, ChronoUnit.NANOS));
+        span.setTraceEndTime(spanEndTime);
         trace.add(span);
     }
 
     public void endTrace() {
+        endTrace(Instant.now());
+    }
+
+    /**
+     * Completes the trace as if it ended at the given time
+     * @param traceEndTime end of the trace
+     */
+    public void endTrace(Instant traceEndTime) {
         if (!started) {
             return;
         }
@@ -173,7 +190,7 @@ public class RequestTrace implements Serializable, Comparable<RequestTrace> {
         Collections.sort(trace);
 
         RequestTraceSpan startSpan = trace.getFirst();
-        endTime = Instant.now();
+        endTime = traceEndTime;
         startSpan.setSpanDuration(startTime.until(endTime, ChronoUnit.NANOS));
         startSpan.setTraceEndTime(endTime);
         elapsedTime = TimeUnit.MILLISECONDS.convert(startSpan.getSpanDuration(), TimeUnit.NANOSECONDS);
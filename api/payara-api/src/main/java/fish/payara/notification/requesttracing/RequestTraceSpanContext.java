@@ -1,7 +1,7 @@
 /*
  *  DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *  Copyright (c) [2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *  Copyright (c) 2018-2020 Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *  The contents of this file are subject to the terms of either the GNU
  *  General Public License Version 2 only ("GPL") or the Common Development
@@ -46,6 +46,7 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  *Span state that is copied across boundaries and stores a reference to the parent trace
@@ -63,13 +64,13 @@ public class RequestTraceSpanContext implements Serializable, io.opentracing.Spa
     private final Map<String, String> baggageItems;
 
     protected RequestTraceSpanContext() {
-        spanId = UUID.randomUUID();
-        traceId = UUID.randomUUID();
+        spanId = randomId();
+        traceId = randomId();
         baggageItems = new HashMap<>();
     }
 
     protected RequestTraceSpanContext(UUID traceId) {
-        spanId = UUID.randomUUID();
+        spanId = randomId();
         this.traceId = traceId;
         baggageItems = new HashMap<>();
     }
@@ -80,6 +81,17 @@ public class RequestTraceSpanContext implements Serializable, io.opentracing.Spa
         baggageItems = new HashMap<>();
     }
 
+    /**
+     * Creates a random (version 4) UUID. Unlike {@link UUID#randomUUID()} this does not go through the shared
+     * {@link java.security.SecureRandom}, ids only need to be unique, not unpredictable.
+     */
+    private static UUID randomId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
     public UUID getSpanId() {
         return spanId;
     }
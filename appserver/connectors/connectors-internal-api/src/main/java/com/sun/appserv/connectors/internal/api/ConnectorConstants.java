@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 package com.sun.appserv.connectors.internal.api;
 
@@ -373,6 +374,15 @@ public interface ConnectorConstants extends ResourceConstants {
     //flag to enable dynamic-reconfiguration feature for connection pool
     public static final String DYNAMIC_RECONFIGURATION_FLAG = "dynamic-reconfiguration-wait-timeout-in-seconds";
 
+    //interval at which free connections of a pool are validated in the background
+    public static final String BACKGROUND_VALIDATION_INTERVAL = "background-validation-interval-in-seconds";
+
+    //no. of free connections validated at once by the background validation
+    public static final String BACKGROUND_VALIDATION_BATCH_SIZE = "background-validation-batch-size";
+
+    //no. of free connections under which the pool is refilled in the background
+    public static final String POOL_REFILL_LOW_WATER_MARK = "pool-refill-low-water-mark";
+
     /**
      * Admin object type.
      */
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2019] Payara Foundation and/or affiliates
+// Portions Copyright [2019-2020] Payara Foundation and/or affiliates
 
 package com.sun.enterprise.connectors;
 
@@ -95,6 +95,12 @@ public class ConnectorConnectionPool implements Serializable {
 
     private long dynamicReconfigWaitTimeout = 0;
 
+    //Validation of idle connections off the request path, 0 disables it
+    private long backgroundValidationInterval = 0;
+    private int backgroundValidationBatchSize = DEFAULT_BACKGROUND_VALIDATION_BATCH_SIZE;
+    //Free connection count under which the pool is refilled asynchronously, 0 disables it
+    private int poolRefillLowWaterMark = 0;
+
     private ConnectorSecurityMap[] securityMaps = null;
     private boolean isAuthCredentialsDefinedInPool_ = false;
 
@@ -122,6 +128,7 @@ public class ConnectorConnectionPool implements Serializable {
     public static final String DEFAULT_CON_CREATION_RETRY_INTERVAL = "10";
     public static final String DEFAULT_VALIDATE_ATMOST_ONCE_PERIOD = "0";
     public static final String DEFAULT_LEAK_TIMEOUT = "0";
+    public static final int DEFAULT_BACKGROUND_VALIDATION_BATCH_SIZE = 10;
 
     private static Logger _logger = LogDomains.getLogger(ConnectorConnectionPool.class, LogDomains.RSR_LOGGER);
     private String name;
@@ -252,6 +259,9 @@ public class ConnectorConnectionPool implements Serializable {
                 (getConCreationRetryInterval());
         clone.setConCreationRetryAttempts(getConCreationRetryAttempts());
         clone.setPreferValidateOverRecreate(isPreferValidateOverRecreate());
+        clone.setBackgroundValidationInterval(getBackgroundValidationInterval());
+        clone.setBackgroundValidationBatchSize(getBackgroundValidationBatchSize());
+        clone.setPoolRefillLowWaterMark(getPoolRefillLowWaterMark());
         clone.setPooling(isPoolingOn());
         clone.setPingDuringPoolCreation(getPingDuringPoolCreation());
         return clone;
@@ -890,6 +900,49 @@ public class ConnectorConnectionPool implements Serializable {
         this.dynamicReconfigWaitTimeout = dynamicReconfigWaitTimeout;
     }
 
+    /**
+     * Interval (in milliseconds) at which free connections are validated in the
+     * background. A connection validated by the background task is not validated
+     * again when it is handed out during this interval.
+     *
+     * @return background validation interval, 0 when disabled
+     */
+    public long getBackgroundValidationInterval() {
+        return backgroundValidationInterval;
+    }
+
+    public void setBackgroundValidationInterval(long backgroundValidationInterval) {
+        this.backgroundValidationInterval = backgroundValidationInterval;
+    }
+
+    /**
+     * Maximum number of free connections taken out of the pool at once
+     * by the background validation task.
+     *
+     * @return background validation batch size
+     */
+    public int getBackgroundValidationBatchSize() {
+        return backgroundValidationBatchSize;
+    }
+
+    public void setBackgroundValidationBatchSize(int backgroundValidationBatchSize) {
+        this.backgroundValidationBatchSize = backgroundValidationBatchSize;
+    }
+
+    /**
+     * Number of free connections under which new connections are created
+     * in the background, ahead of the requests that will need them.
+     *
+     * @return low water mark of free connections, 0 when disabled
+     */
+    public int getPoolRefillLowWaterMark() {
+        return poolRefillLowWaterMark;
+    }
+
+    public void setPoolRefillLowWaterMark(int poolRefillLowWaterMark) {
+        this.poolRefillLowWaterMark = poolRefillLowWaterMark;
+    }
+
     public PoolInfo getPoolInfo(){
         if(applicationName != null && moduleName != null){
             return new PoolInfo(name, applicationName, moduleName);
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2019-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.enterprise.connectors;
 
@@ -64,6 +64,7 @@ import com.sun.enterprise.security.SecurityServicesUtil;
 import com.sun.enterprise.security.jaspic.callback.ContainerCallbackHandler;
 import com.sun.enterprise.transaction.api.JavaEETransactionManager;
 import com.sun.logging.LogDomains;
+import fish.payara.nucleus.executorservice.PayaraExecutorService;
 import org.glassfish.admin.monitor.MonitoringBootstrap;
 import org.glassfish.api.admin.ProcessEnvironment;
 import org.glassfish.api.admin.ServerEnvironment;
@@ -86,6 +87,7 @@ import org.glassfish.resourcebase.resources.api.PoolInfo;
 import org.glassfish.resourcebase.resources.api.ResourceInfo;
 import org.glassfish.resourcebase.resources.naming.ResourceNamingService;
 import org.glassfish.resourcebase.resources.util.ResourceManagerFactory;
+import org.jvnet.hk2.annotations.Optional;
 import org.jvnet.hk2.annotations.Service;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.jvnet.hk2.config.types.Property;
@@ -109,6 +111,9 @@ import java.net.URI;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -213,6 +218,12 @@ public class ConnectorRuntime implements com.sun.appserv.connectors.internal.api
     @Inject
     private Provider<PoolMonitoringLevelListener> poolMonitoringLevelListenerProvider;
 
+    @Inject @Optional
+    private PayaraExecutorService payaraExecutorService;
+
+    //used for background pool work when the Payara executor service is not available
+    private ExecutorService poolExecutor;
+
     @Inject
     private Provider<Domain> domainProvider;
 
@@ -1030,6 +1041,26 @@ public class ConnectorRuntime implements com.sun.appserv.connectors.internal.api
         return ConnectorTimerProxy.getProxy();
     }
 
+    /**
+     * provides the executor for background work of the connection pools that may block,
+     * such as creating resources, and so should not run on the shared timer
+     *
+     * @return Executor
+     */
+    public synchronized Executor getPoolExecutor() {
+        if (payaraExecutorService != null) {
+            return payaraExecutorService.getUnderlyingExecutorService();
+        }
+        if (poolExecutor == null) {
+            poolExecutor = Executors.newCachedThreadPool(r -> {
+                Thread th = new Thread(r, "Connection Pool Refiller");
+                th.setDaemon(true);
+                return th;
+            });
+        }
+        return poolExecutor;
+    }
+
     /**
      * get resource reference descriptors from current component's jndi environment
      *
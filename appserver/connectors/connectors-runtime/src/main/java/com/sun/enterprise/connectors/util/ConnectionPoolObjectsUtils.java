@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2019] Payara Foundation and/or affiliates
+// Portions Copyright [2019-2020] Payara Foundation and/or affiliates
 
 package com.sun.enterprise.connectors.util;
 
@@ -428,6 +428,42 @@ public final class ConnectionPoolObjectsUtils {
             }
 }
 
+    /**
+     * Sets the background validation and refill settings of the pool if the property is one of them.
+     * @param name Property name
+     * @param value Property value
+     * @param conConnPool Connector Connection Pool
+     * @return true if the property was recognised, false otherwise
+     */
+    public static boolean setBackgroundMaintenanceProperty(String name, String value,
+                                                           ConnectorConnectionPool conConnPool) {
+        String propertyName = name.toLowerCase(Locale.getDefault());
+        if (!ConnectorConstants.BACKGROUND_VALIDATION_INTERVAL.equals(propertyName)
+                && !ConnectorConstants.BACKGROUND_VALIDATION_BATCH_SIZE.equals(propertyName)
+                && !ConnectorConstants.POOL_REFILL_LOW_WATER_MARK.equals(propertyName)) {
+            return false;
+        }
+        try {
+            int intValue = Integer.parseInt(value.trim());
+            if (intValue < 0) {
+                throw new NumberFormatException(value);
+            }
+            if (ConnectorConstants.BACKGROUND_VALIDATION_INTERVAL.equals(propertyName)) {
+                conConnPool.setBackgroundValidationInterval(intValue * 1000L);
+            } else if (ConnectorConstants.BACKGROUND_VALIDATION_BATCH_SIZE.equals(propertyName)) {
+                conConnPool.setBackgroundValidationBatchSize(intValue);
+            } else {
+                conConnPool.setPoolRefillLowWaterMark(intValue);
+            }
+            if (_logger.isLoggable(Level.FINE)) {
+                _logger.fine(propertyName + " : " + value);
+            }
+        } catch (NumberFormatException nfe) {
+            _logger.log(Level.WARNING, "Invalid value for '" + propertyName + "' : " + value);
+        }
+        return true;
+    }
+
     private static boolean toBoolean( Object prop, boolean defaultVal ) {
         if ( prop == null ) {
             return defaultVal;
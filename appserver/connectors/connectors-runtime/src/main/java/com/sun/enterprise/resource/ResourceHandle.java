@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 package com.sun.enterprise.resource;
 
@@ -94,6 +95,7 @@ public class ResourceHandle implements
 
     public final Object lock = new Object();
     private long lastValidated; //holds the latest time at which the connection was validated.
+    private long acquiredAt; //System.nanoTime() at which the connection was handed to the application, 0 when free.
     private int usageCount; //holds the no. of times the handle(connection) is used so far.
     private int partition;
 
@@ -349,6 +351,14 @@ public class ResourceHandle implements
         this.lastValidated = lastValidated;
     }
 
+    public long getAcquiredAt() {
+        return acquiredAt;
+    }
+
+    public void setAcquiredAt(long acquiredAt) {
+        this.acquiredAt = acquiredAt;
+    }
+
     public int getUsageCount() {
         return usageCount;
     }
@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 package com.sun.enterprise.resource.deployer;
 
@@ -546,6 +547,8 @@ public class ConnectorConnectionPoolDeployer extends AbstractConnectorResourceDe
                                 value);
                     }
                     ccp.setPreferValidateOverRecreate(toBoolean(value, false));
+                } else {
+                    ConnectionPoolObjectsUtils.setBackgroundMaintenanceProperty(ep.getName(), ep.getValue(), ccp);
                 }
             }
         }
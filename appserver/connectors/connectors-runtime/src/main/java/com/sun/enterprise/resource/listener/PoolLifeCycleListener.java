@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2019] Payara Foundation and/or affiliates
+// Portions Copyright [2019-2020] Payara Foundation and/or affiliates
 
 package com.sun.enterprise.resource.listener;
 
@@ -144,4 +144,28 @@ public interface PoolLifeCycleListener {
      */
     void connectionRequestDequeued();
 
+    /**
+     * indicates the time taken to create a new connection
+     * @param timeTakenInNanos time taken to create the connection
+     */
+    default void connectionCreationTime(long timeTakenInNanos) {
+        //no-op
+    }
+
+    /**
+     * indicates the time taken to validate a connection
+     * @param timeTakenInNanos time taken to validate the connection
+     */
+    default void connectionValidationTime(long timeTakenInNanos) {
+        //no-op
+    }
+
+    /**
+     * indicates the time for which a connection was held by the application
+     * @param timeTakenInNanos time between the connection being acquired and released
+     */
+    default void connectionHoldTime(long timeTakenInNanos) {
+        //no-op
+    }
+
 }
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2019] Payara Foundation and/or affiliates
+// Portions Copyright [2019-2020] Payara Foundation and/or affiliates
 
 package com.sun.enterprise.resource.pool;
 
@@ -53,6 +53,9 @@ import com.sun.enterprise.resource.allocator.ResourceAllocator;
 import com.sun.enterprise.resource.listener.PoolLifeCycleListener;
 import com.sun.enterprise.resource.pool.datastructure.DataStructure;
 import com.sun.enterprise.resource.pool.datastructure.DataStructureFactory;
+import com.sun.enterprise.resource.pool.datastructure.HandoffDataStructure;
+import com.sun.enterprise.resource.pool.resizer.BackgroundValidator;
+import com.sun.enterprise.resource.pool.resizer.PoolRefiller;
 import com.sun.enterprise.resource.pool.resizer.Resizer;
 import com.sun.enterprise.resource.pool.waitqueue.PoolWaitQueue;
 import com.sun.enterprise.resource.pool.waitqueue.PoolWaitQueueFactory;
@@ -67,6 +70,8 @@ import javax.resource.ResourceException;
 import javax.resource.spi.RetryableUnavailableException;
 import javax.transaction.Transaction;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.api.admin.ServerEnvironment;
@@ -102,6 +107,13 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
     // hold on to the resizer task so we can cancel/reschedule it.
     protected Resizer resizerTask;
 
+    //background validation and refill of free resources
+    protected long backgroundValidationInterval_;
+    protected int backgroundValidationBatchSize_;
+    protected int poolRefillLowWaterMark_;
+    protected BackgroundValidator backgroundValidatorTask;
+    private final AtomicBoolean refillPending = new AtomicBoolean();
+
 
     protected volatile boolean poolInitialized = false;
     protected Timer timer;
@@ -148,6 +160,9 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
 
     private boolean blocked = false;
 
+    //Maximum time a request waits for a resource handoff before retrying the pool
+    private static final long HANDOFF_WAIT_PERIOD = 1000;
+
 
     public ConnectionPool(PoolInfo poolInfo, Hashtable env) throws PoolingException {
         this.poolInfo = poolInfo;
@@ -238,6 +253,7 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
         if (idletime > 0) {
             scheduleResizerTask();
         }
+        scheduleBackgroundValidatorTask();
 
         //Need to set the numConnFree of monitoring statistics to the steadyPoolSize
         //as monitoring might be ON during the initialization of pool.
@@ -273,6 +289,56 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
         }
     }
 
+    /**
+     * Schedules the background validation task, if background validation is enabled.
+     * If a task is currently scheduled, it would be canceled first.
+     */
+    private synchronized void scheduleBackgroundValidatorTask() {
+        cancelBackgroundValidatorTask();
+        if (backgroundValidationInterval_ <= 0) {
+            return;
+        }
+
+        backgroundValidatorTask = new BackgroundValidator(poolInfo, ds, this, backgroundValidationInterval_,
+                backgroundValidationBatchSize_, this::refillPoolIfRequired);
+
+        if (timer == null) {
+            timer = ConnectorRuntime.getRuntime().getTimer();
+        }
+
+        timer.schedule(backgroundValidatorTask, backgroundValidationInterval_, backgroundValidationInterval_);
+        if (_logger.isLoggable(Level.FINEST)) {
+            _logger.finest("scheduled background validator task");
+        }
+    }
+
+    private void cancelBackgroundValidatorTask() {
+        if (backgroundValidatorTask != null) {
+            backgroundValidatorTask.cancel();
+            backgroundValidatorTask = null;
+        }
+    }
+
+    /**
+     * Creates resources in the background when the number of free resources
+     * drops under the refill low water mark, unless a refill is already pending.
+     */
+    protected void refillPoolIfRequired() {
+        if (poolRefillLowWaterMark_ > 0 && poolInitialized
+                && ds.getFreeListSize() < poolRefillLowWaterMark_
+                && ds.getResourcesSize() < maxPoolSize
+                && refillPending.compareAndSet(false, true)) {
+            //resource creation may block, keep it off the timer thread shared by all pools
+            try {
+                ConnectorRuntime.getRuntime().getPoolExecutor().execute(
+                        new PoolRefiller(poolInfo, ds, this, this, poolRefillLowWaterMark_, refillPending));
+            } catch (RejectedExecutionException ree) {
+                refillPending.set(false);
+                logFine("Pool refill rejected by the executor: " + ree.getMessage());
+            }
+        }
+    }
+
     protected Resizer initializeResizer() {
         return new Resizer(poolInfo, ds, this, this, preferValidateOverRecreate);
     }
@@ -392,6 +458,7 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
             if (result != null) {
                 // got one, return it
                 if (poolLifeCycleListener != null) {
+                    markAcquired(result);
                     poolLifeCycleListener.connectionAcquired(result.getId());
                     elapsedWaitTime = System.currentTimeMillis() - startTime;
                     poolLifeCycleListener.connectionRequestServed(elapsedWaitTime);
@@ -425,7 +492,30 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
                     }
                 }
 
-                if (!blocked) {
+                if (!blocked && ds instanceof HandoffDataStructure) {
+                    //wait for a resource to be handed over by the datastructure
+                    ResourceHandle handedOff = awaitHandedOffResource((HandoffDataStructure) ds, remainingWaitTime);
+                    if (handedOff != null) {
+                        if (gateway.allowed()) {
+                            try {
+                                result = internalGetHandedOffResource(handedOff, spec, alloc);
+                            } finally {
+                                gateway.acquiredResource();
+                            }
+                        } else {
+                            ds.returnResource(handedOff);
+                        }
+                    }
+                    if (result != null) {
+                        if (poolLifeCycleListener != null) {
+                            markAcquired(result);
+                            poolLifeCycleListener.connectionAcquired(result.getId());
+                            elapsedWaitTime = System.currentTimeMillis() - startTime;
+                            poolLifeCycleListener.connectionRequestServed(elapsedWaitTime);
+                        }
+                        break;
+                    }
+                } else if (!blocked) {
                     //add to wait-queue
                     Object waitMonitor = new Object();
                     if (poolLifeCycleListener != null) {
@@ -506,6 +596,82 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
         return result;
     }
 
+    /**
+     * Wait for a resource to be handed over by a datastructure capable of doing so.<br>
+     * The handed over resource is taken from the datastructure but not yet checked
+     * for this request, see {@link #internalGetHandedOffResource(ResourceHandle, ResourceSpec, ResourceAllocator)}
+     *
+     * @param handoffDs datastructure that hands over returned resources
+     * @param waitTime  time to wait for a resource, 0 to wait for at most a default period
+     * @return ResourceHandle resource handed over, or null
+     * @throws PoolingException when the wait is interrupted
+     */
+    private ResourceHandle awaitHandedOffResource(HandoffDataStructure handoffDs, long waitTime)
+            throws PoolingException {
+        if (poolLifeCycleListener != null) {
+            poolLifeCycleListener.connectionRequestQueued();
+        }
+        ResourceHandle h;
+        try {
+            logFine("Resource Pool: waiting for resource handoff");
+            //never wait indefinitely, resources might be created or destroyed
+            //without being returned to the datastructure
+            h = handoffDs.awaitResource(waitTime > 0 ? waitTime : HANDOFF_WAIT_PERIOD);
+        } catch (InterruptedException ex) {
+            if (Globals.getDefaultHabitat().getService(ServerEnvironment.class, new Annotation[0]).getStatus() == ServerEnvironment.Status.stopping) {
+                String msg = localStrings.getStringWithDefault("poolmgr.interrupted.shutdown", "Server is shutting down, cannot get connection");
+                throw new PoolingException(msg);
+            } else {
+                String msg = localStrings.getStringWithDefault("poolmgr.interrupted.notshutdown", "Resource Pool: Interrupted retrieving connection");
+                throw new PoolingException(msg, ex);
+            }
+        } finally {
+            if (poolLifeCycleListener != null) {
+                poolLifeCycleListener.connectionRequestDequeued();
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Serve a request with a resource handed over by the datastructure.<br>
+     * The resource goes through the same checks as one obtained from the free list
+     * in {@link #getResourceFromPool(ResourceAllocator, ResourceSpec)}, and the
+     * pool is refilled as for any other served request. If the resource is not
+     * suitable for this request, it is returned (or removed) and null is returned
+     * so that the caller retries.
+     *
+     * @param h     resource handed over by the datastructure
+     * @param spec  ResourceSpec
+     * @param alloc ResourceAllocator
+     * @return ResourceHandle resource to use, or null
+     * @throws PoolingException when unable to create a replacement resource
+     */
+    private ResourceHandle internalGetHandedOffResource(ResourceHandle h, ResourceSpec spec, ResourceAllocator alloc)
+            throws PoolingException {
+        List<ResourceHandle> unmatched = new ArrayList<>(1);
+        ResourceHandle result;
+        try {
+            result = checkFreeResource(h, alloc, spec, unmatched);
+        } finally {
+            for (ResourceHandle freeResource : unmatched) {
+                ds.returnResource(freeResource);
+            }
+        }
+        if (result != null) {
+            setResourceStateToBusy(result);
+            if (maxConnectionUsage_ > 0) {
+                result.incrementUsageCount();
+            }
+            if (poolLifeCycleListener != null) {
+                poolLifeCycleListener.connectionUsed(result.getId());
+                poolLifeCycleListener.decrementNumConnFree();
+            }
+            refillPoolIfRequired();
+        }
+        return result;
+    }
+
     /**
      * Overridden in AssocWithThreadResourcePool to fetch the resource
      * cached in the ThreadLocal
@@ -550,6 +716,7 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
                 //Decrement numConnFree
                 poolLifeCycleListener.decrementNumConnFree();
             }
+            refillPoolIfRequired();
         }
         return result;
     }
@@ -667,6 +834,9 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
                 validationPeriod = validateAtmostPeriodInMilliSeconds_;
             else
                 validationPeriod = idletime;
+            //resources validated by the background validator are not validated again within its interval
+            if (backgroundValidationInterval_ > validationPeriod)
+                validationPeriod = backgroundValidationInterval_;
             boolean validationRequired = true;
             long currentTime = h.getLastValidated();
             if (validationPeriod > 0) {
@@ -676,7 +846,13 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
                     validationRequired = false;
             }
             if (validationRequired) {
-                if (!alloc.isConnectionValid(h)) {
+                PoolLifeCycleListener listener = poolLifeCycleListener;
+                long validationStart = listener != null ? System.nanoTime() : 0;
+                boolean valid = alloc.isConnectionValid(h);
+                if (listener != null) {
+                    listener.connectionValidationTime(System.nanoTime() - validationStart);
+                }
+                if (!valid) {
                     connectionValid = false;
                     incrementNumConnFailedValidation();
                 } else {
@@ -731,35 +907,9 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
         ArrayList<ResourceHandle> freeResources = new ArrayList<ResourceHandle>();
         try{
             while ((h = ds.getResource()) != null) {
-
-                if (h.hasConnectionErrorOccurred()) {
-                    ds.removeResource(h);
-                    continue;
-                }
-
-                if (matchConnection(h, alloc)) {
-
-                    boolean isValid = isConnectionValid(h, alloc);
-                    if (h.hasConnectionErrorOccurred() || !isValid) {
-                        if (failAllConnections) {
-                             result = createSingleResourceAndAdjustPool(alloc, spec);
-                            //no need to match since the resource is created with the allocator of caller.
-                            break;
-                        } else {
-                            ds.removeResource(h);
-                            //resource is invalid, continue iteration.
-                            continue;
-                        }
-                    }
-                    if(h.isShareable() == alloc.shareableWithinComponent()){
-                        // got a matched, valid resource
-                        result = h;
-                        break;
-                    }else{
-                        freeResources.add(h);
-                    }
-                } else {
-                    freeResources.add(h);
+                result = checkFreeResource(h, alloc, spec, freeResources);
+                if (result != null) {
+                    break;
                 }
             }
         }finally{
@@ -779,6 +929,49 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
         return result;
     }
 
+    /**
+     * Check whether a free resource taken from the datastructure can serve the request.<br>
+     * Resources in error or failing validation are removed from the pool. If all connections
+     * are to be failed, a new resource is created instead of an invalid one. A healthy resource
+     * that does not match the request is added to <code>unmatched</code>, for the caller to
+     * return it to the pool.
+     *
+     * @param h         free resource taken from the datastructure
+     * @param alloc     ResourceAllocator
+     * @param spec      ResourceSpec
+     * @param unmatched resources to be returned to the pool by the caller
+     * @return ResourceHandle resource to serve the request, or null
+     * @throws PoolingException when unable to create a new resource
+     */
+    private ResourceHandle checkFreeResource(ResourceHandle h, ResourceAllocator alloc, ResourceSpec spec,
+                                             List<ResourceHandle> unmatched) throws PoolingException {
+        if (h.hasConnectionErrorOccurred()) {
+            ds.removeResource(h);
+            return null;
+        }
+
+        if (matchConnection(h, alloc)) {
+
+            boolean isValid = isConnectionValid(h, alloc);
+            if (h.hasConnectionErrorOccurred() || !isValid) {
+                if (failAllConnections) {
+                    //no need to match since the resource is created with the allocator of caller.
+                    return createSingleResourceAndAdjustPool(alloc, spec);
+                } else {
+                    //resource is invalid
+                    ds.removeResource(h);
+                    return null;
+                }
+            }
+            if (h.isShareable() == alloc.shareableWithinComponent()) {
+                // got a matched, valid resource
+                return h;
+            }
+        }
+        unmatched.add(h);
+        return null;
+    }
+
     /**
      * Scale-up the pool to serve the new request. <br>
      * If pool is at max-pool-size and free resources are found, purge unmatched<br>
@@ -917,7 +1110,12 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
             try {
                 count++;
                 startTime = System.currentTimeMillis();
+                PoolLifeCycleListener listener = poolLifeCycleListener;
+                long creationStart = listener != null ? System.nanoTime() : 0;
                 resourceHandle = resourceAllocator.createResource();
+                if (listener != null) {
+                    listener.connectionCreationTime(System.nanoTime() - creationStart);
+                }
                 if(_logger.isLoggable(Level.FINE)) {
                     _logger.log(Level.FINE, "Time taken to create a single "
                             + "resource : "
@@ -1037,14 +1235,31 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
             freeUnenlistedResource(h);
         }
 
-        if (poolLifeCycleListener != null) {
-            poolLifeCycleListener.connectionReleased(h.getId());
+        PoolLifeCycleListener listener = poolLifeCycleListener;
+        long acquiredAt = h.getAcquiredAt();
+        h.setAcquiredAt(0);
+        if (listener != null) {
+            if (acquiredAt != 0) {
+                listener.connectionHoldTime(System.nanoTime() - acquiredAt);
+            }
+            listener.connectionReleased(h.getId());
         }
         if (_logger.isLoggable(Level.FINE)) {
             _logger.log(Level.FINE, "Pool: resourceFreed: " + h);
         }
     }
 
+    /**
+     * Records when a connection is handed to the application, so that its hold time
+     * can be reported when it is released. Shared connections are acquired repeatedly,
+     * the hold time starts with the first acquisition.
+     */
+    private static void markAcquired(ResourceHandle h) {
+        if (h.getAcquiredAt() == 0) {
+            h.setAcquiredAt(System.nanoTime());
+        }
+    }
+
     /**
      * If the resource is used for <i>maxConnectionUsage</i> times, destroy and create one
      *
@@ -1155,7 +1370,7 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
 
     private void doFailAllConnectionsProcessing() {
         logFine("doFailAllConnectionsProcessing entered");
-        cancelResizerTask();
+        cancelResizer();
         if (poolLifeCycleListener != null) {
             poolLifeCycleListener.connectionValidationFailed(ds.getResourcesSize());
         }
@@ -1212,6 +1427,10 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
         state.setBusy(false);
         state.setEnlisted(false);
         result.setResourceState(state);
+        if (backgroundValidationInterval_ > 0) {
+            //a new resource need not be validated until the next background validation
+            result.setLastValidated(System.currentTimeMillis());
+        }
 
         if (poolLifeCycleListener != null) {
             poolLifeCycleListener.connectionCreated();
@@ -1354,7 +1573,7 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
         }
 
         try {
-            cancelResizerTask();
+            cancelResizer();
             ds.removeAll();
             scheduleResizerTask();
             increaseSteadyPoolSize(steadyPoolSize);
@@ -1388,7 +1607,7 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
             }
             if (_idleTime == 0) {
                 //resizerTask.cancel();
-                cancelResizerTask();
+                cancelResizer();
             }
         }
         idletime = _idleTime;
@@ -1404,6 +1623,9 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
         validation = poolResource.isIsConnectionValidationRequired();
         failAllConnections = poolResource.isFailAllConnections();
         setAdvancedPoolConfiguration(poolResource);
+        if (poolInitialized) {
+            scheduleBackgroundValidatorTask();
+        }
 
         //Self managed quantities. These are ignored if self management
         //is on
@@ -1482,6 +1704,9 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
 
         validateAtmostPeriodInMilliSeconds_ =
                 Integer.parseInt(poolResource.getValidateAtmostOncePeriod()) * 1000L;
+        backgroundValidationInterval_ = poolResource.getBackgroundValidationInterval();
+        backgroundValidationBatchSize_ = poolResource.getBackgroundValidationBatchSize();
+        poolRefillLowWaterMark_ = poolResource.getPoolRefillLowWaterMark();
         boolean connectionLeakReclaim_ = poolResource.isConnectionReclaim();
         long connectionLeakTimeoutInMilliSeconds_ = Integer.parseInt(
                 poolResource.getConnectionLeakTracingTimeout()) * 1000L;
@@ -1502,7 +1727,7 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
      * be called
      */
     private void killExtraResources(int numToKill) {
-        cancelResizerTask();
+        cancelResizer();
 
         ResourceHandle h;
         for (int i = 0; i < numToKill && ((h = ds.getResource()) != null); i++) {
@@ -1517,7 +1742,7 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
     */
     private void increaseSteadyPoolSize(int newSteadyPoolSize)
             throws PoolingException {
-        cancelResizerTask();
+        cancelResizer();
         for (int i = ds.getResourcesSize(); i < newSteadyPoolSize; i++) {
             createResourceAndAddToPool(allocator);
         }
@@ -1549,6 +1774,14 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
     }
 
     public synchronized void cancelResizerTask() {
+        cancelBackgroundValidatorTask();
+        cancelResizer();
+    }
+
+    /**
+     * Cancels the resizer task only, for it to be rescheduled while the pool keeps running.
+     */
+    private synchronized void cancelResizer() {
 
         logFine("Cancelling resizer");
         if (resizerTask != null) {
@@ -1593,6 +1826,9 @@ public class ConnectionPool implements ResourcePool, ConnectionLeakListener,
     }
 
     public int getWaitQueueLength() {
+        if (ds instanceof HandoffDataStructure) {
+            return waitQueue.getQueueLength() + ((HandoffDataStructure) ds).getWaitingThreadCount();
+        }
         return waitQueue.getQueueLength();
     }
 
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2019] Payara Foundation and/or affiliates
+// Portions Copyright [2019-2020] Payara Foundation and/or affiliates
 
 package com.sun.enterprise.resource.pool;
 
@@ -212,4 +212,22 @@ public class PoolLifeCycleListenerRegistry implements PoolLifeCycleListener {
             listener.connectionRequestDequeued();
         }
     }
+
+    public void connectionCreationTime(long timeTakenInNanos) {
+        for (PoolLifeCycleListener listener : poolListenersList) {
+            listener.connectionCreationTime(timeTakenInNanos);
+        }
+    }
+
+    public void connectionValidationTime(long timeTakenInNanos) {
+        for (PoolLifeCycleListener listener : poolListenersList) {
+            listener.connectionValidationTime(timeTakenInNanos);
+        }
+    }
+
+    public void connectionHoldTime(long timeTakenInNanos) {
+        for (PoolLifeCycleListener listener : poolListenersList) {
+            listener.connectionHoldTime(timeTakenInNanos);
+        }
+    }
 }
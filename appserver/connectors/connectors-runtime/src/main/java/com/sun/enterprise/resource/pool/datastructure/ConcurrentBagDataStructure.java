@@ -0,0 +1,328 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.resource.pool.datastructure;
+
+import com.sun.appserv.connectors.internal.api.PoolingException;
+import com.sun.enterprise.resource.ResourceHandle;
+import com.sun.enterprise.resource.allocator.ResourceAllocator;
+import com.sun.enterprise.resource.pool.ResourceHandler;
+import com.sun.logging.LogDomains;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lock-free datastructure for the pool.<br>
+ * Resources are kept in a copy-on-write list and each one carries an atomic state,
+ * so borrowing and returning a resource is a single compare-and-set instead of
+ * taking a pool wide lock. Every thread remembers the resources it returned last and
+ * tries those first, which usually avoids touching the shared list at all.
+ * A resource returned while other threads are waiting in {@link #awaitResource(long)}
+ * is offered to them through a bounded handoff queue, so returning a resource never blocks.
+ * <p>
+ * Use by setting the pool property <code>PoolDataStructure</code> to the name of this class.
+ */
+public class ConcurrentBagDataStructure implements HandoffDataStructure {
+
+    protected final static Logger _logger =
+            LogDomains.getLogger(ConcurrentBagDataStructure.class, LogDomains.RSR_LOGGER);
+
+    private static final int STATE_FREE = 0;
+    private static final int STATE_IN_USE = 1;
+    private static final int STATE_RELEASING = 2;
+    private static final int STATE_REMOVED = -1;
+
+    //Number of recently returned resources remembered by each thread
+    private static final int MAX_THREAD_LOCAL_RESOURCES = 16;
+
+    //Maximum number of returned resources queued for waiting threads
+    private static final int MAX_HANDOFF_RESOURCES = 64;
+
+    private final ResourceHandler handler;
+    private volatile int maxSize;
+
+    private final CopyOnWriteArrayList<BagEntry> entries = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<ResourceHandle, BagEntry> entriesByHandle = new ConcurrentHashMap<>();
+    private final ThreadLocal<List<WeakReference<BagEntry>>> threadEntries =
+            ThreadLocal.withInitial(() -> new ArrayList<>(MAX_THREAD_LOCAL_RESOURCES));
+    //Entries offered to waiters may have been taken by another thread meanwhile,
+    //waiters skip those and scan the bag again
+    private final LinkedBlockingQueue<BagEntry> handoffQueue = new LinkedBlockingQueue<>(MAX_HANDOFF_RESOURCES);
+
+    //size includes resources still being created, so that maxSize is never exceeded
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    public ConcurrentBagDataStructure(String parameters, int maxSize, ResourceHandler handler, String strategyClass) {
+        this.maxSize = maxSize;
+        this.handler = handler;
+        if (_logger.isLoggable(Level.FINEST)) {
+            _logger.log(Level.FINEST, "pool.datastructure.concurrentbagds.init");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int addResource(ResourceAllocator allocator, int count) throws PoolingException {
+        int numResAdded = 0;
+        for (int i = 0; i < count && reserveSlot(); i++) {
+            ResourceHandle handle;
+            try {
+                handle = handler.createResource(allocator);
+            } catch (Exception e) {
+                size.decrementAndGet();
+                PoolingException pe = new PoolingException(e.getMessage());
+                pe.initCause(e);
+                throw pe;
+            }
+            BagEntry entry = new BagEntry(handle);
+            entriesByHandle.put(handle, entry);
+            entries.add(entry);
+            freeCount.incrementAndGet();
+            numResAdded++;
+        }
+        return numResAdded;
+    }
+
+    private boolean reserveSlot() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= maxSize) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResourceHandle getResource() {
+        //try the resources this thread returned last, most recent first
+        List<WeakReference<BagEntry>> local = threadEntries.get();
+        for (int i = local.size() - 1; i >= 0; i--) {
+            BagEntry entry = local.remove(i).get();
+            if (entry != null && entry.acquire()) {
+                return entry.handle;
+            }
+        }
+
+        for (BagEntry entry : entries) {
+            if (entry.acquire()) {
+                return entry.handle;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResourceHandle awaitResource(long timeoutMillis) throws InterruptedException {
+        waiters.incrementAndGet();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            final long deadline = System.nanoTime() + remaining;
+            do {
+                //a resource may have been freed before this thread started waiting
+                ResourceHandle handle = getResource();
+                if (handle != null) {
+                    return handle;
+                }
+                BagEntry entry = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (entry != null && entry.acquire()) {
+                    return entry.handle;
+                }
+                remaining = deadline - System.nanoTime();
+            } while (remaining > 0);
+            return null;
+        } finally {
+            //stale offers are left in the queue, they are revalidated when polled.
+            //Clearing them here could drop an offer made to a thread that just started waiting
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWaitingThreadCount() {
+        return waiters.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeResource(ResourceHandle resource) {
+        BagEntry entry = entriesByHandle.remove(resource);
+        if (entry == null) {
+            return;
+        }
+        if (entry.state.getAndSet(STATE_REMOVED) == STATE_FREE) {
+            freeCount.decrementAndGet();
+        }
+        entries.remove(entry);
+        size.decrementAndGet();
+        handler.deleteResource(resource);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void returnResource(ResourceHandle resource) {
+        BagEntry entry = entriesByHandle.get(resource);
+        if (entry == null || !entry.release()) {
+            return;
+        }
+
+        //offer the resource to a waiting thread. If the queue is full, waiters have
+        //offers pending and will scan the bag again, so the resource is not lost to them
+        if (waiters.get() > 0 && handoffQueue.offer(entry)) {
+            return;
+        }
+
+        List<WeakReference<BagEntry>> local = threadEntries.get();
+        if (local.size() >= MAX_THREAD_LOCAL_RESOURCES) {
+            local.remove(0);
+        }
+        local.add(new WeakReference<>(entry));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getFreeListSize() {
+        return freeCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAll() {
+        for (BagEntry entry : entries) {
+            removeResource(entry.handle);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getResourcesSize() {
+        return entries.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<ResourceHandle> getAllResources() {
+        ArrayList<ResourceHandle> resources = new ArrayList<>(entries.size());
+        for (BagEntry entry : entries) {
+            resources.add(entry.handle);
+        }
+        return resources;
+    }
+
+    /**
+     * A resource along with its state in the bag.
+     */
+    private final class BagEntry {
+        private final ResourceHandle handle;
+        private final AtomicInteger state = new AtomicInteger(STATE_FREE);
+
+        BagEntry(ResourceHandle handle) {
+            this.handle = handle;
+        }
+
+        boolean acquire() {
+            if (state.compareAndSet(STATE_FREE, STATE_IN_USE)) {
+                freeCount.decrementAndGet();
+                handle.setBusy(true);
+                return true;
+            }
+            return false;
+        }
+
+        boolean release() {
+            //the entry cannot be acquired while releasing, so the handle is only
+            //marked free once it actually is
+            if (!state.compareAndSet(STATE_IN_USE, STATE_RELEASING)) {
+                return false;
+            }
+            handle.setBusy(false);
+            if (state.compareAndSet(STATE_RELEASING, STATE_FREE)) {
+                freeCount.incrementAndGet();
+                return true;
+            }
+            //removed while releasing
+            return false;
+        }
+    }
+}
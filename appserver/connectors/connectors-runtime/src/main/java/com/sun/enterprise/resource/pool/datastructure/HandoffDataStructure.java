@@ -0,0 +1,71 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.resource.pool.datastructure;
+
+import com.sun.enterprise.resource.ResourceHandle;
+
+/**
+ * A pool datastructure that is able to hand a returned resource directly
+ * to a thread waiting for one, instead of the pool having to notify the
+ * waiter through the {@link com.sun.enterprise.resource.pool.waitqueue.PoolWaitQueue}
+ * and letting it race other threads for the freed resource.
+ */
+public interface HandoffDataStructure extends DataStructure {
+
+    /**
+     * Wait for a resource to become available in the datastructure.<br>
+     * The returned resource is marked busy exactly as if it had been
+     * obtained through {@link #getResource()}.
+     *
+     * @param timeoutMillis maximum time to wait, in milliseconds
+     * @return ResourceHandle or null if none became available before the timeout
+     * @throws InterruptedException when the waiting thread is interrupted
+     */
+    ResourceHandle awaitResource(long timeoutMillis) throws InterruptedException;
+
+    /**
+     * get the number of threads currently waiting in {@link #awaitResource(long)}
+     *
+     * @return int count
+     */
+    int getWaitingThreadCount();
+}
@@ -1,5 +1,7 @@
 /*
- * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -35,19 +37,40 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-package fish.payara.nucleus.requesttracing.store;
 
-import fish.payara.nucleus.requesttracing.store.strategy.ReservoirTraceStorageStrategy;
+
+package com.sun.enterprise.resource.pool.monitor;
 
 /**
- * Tests correctness of the {@link LocalRequestTraceStore}.
- *  
- * @author Jan Bernitt
+ * Latency distributions of a single connection pool, registered as
+ * <code>fish.payara:type=ConnectionPoolLatency,name=&lt;pool name&gt;</code>
+ * and published as vendor metrics through the MicroProfile Metrics
+ * configuration.
  */
-public class LocalRequestTraceStoreTest extends AbstractRequestTraceStoreTest {
+public interface ConnectionPoolLatencyMXBean {
+
+    /**
+     * @return time spent by requests waiting for a connection from the pool
+     */
+    LatencySummary getWaitTime();
+
+    /**
+     * @return time between a connection being acquired by the application and released to the pool
+     */
+    LatencySummary getHoldTime();
+
+    /**
+     * @return time taken to create a new physical connection
+     */
+    LatencySummary getCreateTime();
 
-    public LocalRequestTraceStoreTest() {
-        super(new LocalRequestTraceStore(new ReservoirTraceStorageStrategy()));
-    }
+    /**
+     * @return time taken to validate a connection
+     */
+    LatencySummary getValidationTime();
 
+    /**
+     * @return number of requests currently waiting for a connection
+     */
+    int getWaitQueueLength();
 }
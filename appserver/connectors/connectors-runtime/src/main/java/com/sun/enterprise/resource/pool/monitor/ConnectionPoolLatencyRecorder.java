@@ -0,0 +1,279 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.resource.pool.monitor;
+
+import com.sun.enterprise.connectors.ConnectorRuntime;
+import com.sun.enterprise.resource.listener.PoolLifeCycleListener;
+import com.sun.logging.LogDomains;
+import org.glassfish.resourcebase.resources.api.PoolInfo;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool lifecycle listener that feeds the wait, hold, create and validation
+ * times of a connection pool into {@link LatencyHistogram}s and exposes them
+ * as a {@link ConnectionPoolLatencyMXBean}.
+ *
+ * Events are only recorded while monitoring is switched on for the type of the
+ * pool, so a pool that is not monitored pays a single flag check per event.
+ */
+public class ConnectionPoolLatencyRecorder implements PoolLifeCycleListener, ConnectionPoolLatencyMXBean {
+
+    private static final Logger logger =
+            LogDomains.getLogger(ConnectionPoolLatencyRecorder.class, LogDomains.RSR_LOGGER);
+
+    public static final String OBJECT_NAME_PREFIX = "fish.payara:type=ConnectionPoolLatency,name=";
+
+    private final PoolInfo poolInfo;
+    private final boolean connectorPool;
+    private final ConnectorRuntime runtime;
+
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram holdTime = new LatencyHistogram();
+    private final LatencyHistogram createTime = new LatencyHistogram();
+    private final LatencyHistogram validationTime = new LatencyHistogram();
+    private final AtomicInteger waitQueueLength = new AtomicInteger();
+
+    private ObjectName objectName;
+
+    /**
+     * @param poolInfo pool to record the latencies of
+     * @param connectorPool true for a connector connection pool, false for a jdbc connection pool
+     */
+    public ConnectionPoolLatencyRecorder(PoolInfo poolInfo, boolean connectorPool) {
+        this.poolInfo = poolInfo;
+        this.connectorPool = connectorPool;
+        this.runtime = ConnectorRuntime.getRuntime();
+    }
+
+    /**
+     * Registers this recorder with the platform MBean server so that it is
+     * picked up by the metrics service.
+     */
+    public synchronized void register() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME_PREFIX + quoteIfRequired(poolInfo.getName()));
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(this, name);
+                objectName = name;
+            } else if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "Latency statistics of pool [ {0} ] are not published, "
+                        + "another pool of the same name is already registered", poolInfo);
+            }
+        } catch (JMException e) {
+            logger.log(Level.FINE, "Unable to register latency statistics of pool [ " + poolInfo + " ]", e);
+        }
+    }
+
+    /**
+     * Removes this recorder from the platform MBean server.
+     */
+    public synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.log(Level.FINE, "Unable to unregister latency statistics of pool [ " + poolInfo + " ]", e);
+            }
+            objectName = null;
+        }
+    }
+
+    private boolean isEnabled() {
+        return connectorPool ? runtime.isConnectorPoolMonitoringEnabled() : runtime.isJdbcPoolMonitoringEnabled();
+    }
+
+    private static String quoteIfRequired(String name) {
+        for (char c : name.toCharArray()) {
+            if (c == ',' || c == '=' || c == ':' || c == '"' || c == '*' || c == '?' || c == '\n') {
+                return ObjectName.quote(name);
+            }
+        }
+        return name;
+    }
+
+    @Override
+    public void toString(StringBuilder stackTrace) {
+        //no-op
+    }
+
+    @Override
+    public void connectionAcquired(long resourceHandleId) {
+        //no-op, the acquisition time is kept on the resource handle by the pool
+    }
+
+    @Override
+    public void connectionRequestServed(long timeTakenInMillis) {
+        if (isEnabled()) {
+            waitTime.record(TimeUnit.MILLISECONDS.toMicros(timeTakenInMillis));
+        }
+    }
+
+    @Override
+    public void connectionReleased(long resourceHandleId) {
+        //no-op
+    }
+
+    @Override
+    public void connectionHoldTime(long timeTakenInNanos) {
+        if (isEnabled()) {
+            holdTime.record(TimeUnit.NANOSECONDS.toMicros(timeTakenInNanos));
+        }
+    }
+
+    @Override
+    public void connectionDestroyed(long resourceHandleId) {
+        //no-op
+    }
+
+    @Override
+    public void connectionCreationTime(long timeTakenInNanos) {
+        if (isEnabled()) {
+            createTime.record(TimeUnit.NANOSECONDS.toMicros(timeTakenInNanos));
+        }
+    }
+
+    @Override
+    public void connectionValidationTime(long timeTakenInNanos) {
+        if (isEnabled()) {
+            validationTime.record(TimeUnit.NANOSECONDS.toMicros(timeTakenInNanos));
+        }
+    }
+
+    @Override
+    public void connectionRequestQueued() {
+        waitQueueLength.incrementAndGet();
+    }
+
+    @Override
+    public void connectionRequestDequeued() {
+        waitQueueLength.decrementAndGet();
+    }
+
+    @Override
+    public void connectionTimedOut() {
+        //no-op
+    }
+
+    @Override
+    public void connectionNotMatched() {
+        //no-op
+    }
+
+    @Override
+    public void connectionMatched() {
+        //no-op
+    }
+
+    @Override
+    public void connectionUsed(long resourceHandleId) {
+        //no-op
+    }
+
+    @Override
+    public void connectionCreated() {
+        //no-op
+    }
+
+    @Override
+    public void foundPotentialConnectionLeak() {
+        //no-op
+    }
+
+    @Override
+    public void connectionValidationFailed(int count) {
+        //no-op
+    }
+
+    @Override
+    public void connectionsFreed(int count) {
+        //no-op
+    }
+
+    @Override
+    public void decrementConnectionUsed(long resourceHandleId) {
+        //no-op
+    }
+
+    @Override
+    public void decrementNumConnFree() {
+        //no-op
+    }
+
+    @Override
+    public void incrementNumConnFree(boolean beingDestroyed, int steadyPoolSize) {
+        //no-op
+    }
+
+    @Override
+    public LatencySummary getWaitTime() {
+        return waitTime.getSummary();
+    }
+
+    @Override
+    public LatencySummary getHoldTime() {
+        return holdTime.getSummary();
+    }
+
+    @Override
+    public LatencySummary getCreateTime() {
+        return createTime.getSummary();
+    }
+
+    @Override
+    public LatencySummary getValidationTime() {
+        return validationTime.getSummary();
+    }
+
+    @Override
+    public int getWaitQueueLength() {
+        return Math.max(0, waitQueueLength.get());
+    }
+}
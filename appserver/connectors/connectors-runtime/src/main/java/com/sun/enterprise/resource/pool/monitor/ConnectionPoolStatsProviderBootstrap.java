@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 package com.sun.enterprise.resource.pool.monitor;
 
@@ -109,12 +110,15 @@ public class ConnectionPoolStatsProviderBootstrap implements PostConstruct,
     //Map of all ConnectionPoolEmitterImpl(s) for different pools
     private Map<PoolInfo, ConnectionPoolEmitterImpl> poolEmitters = null;
     private Map<PoolInfo, PoolLifeCycleListenerRegistry> poolRegistries = null;
+    //Map of the latency recorders for different pools
+    private Map<PoolInfo, ConnectionPoolLatencyRecorder> latencyRecorders = null;
     private ConnectorRuntime runtime;
 
     public ConnectionPoolStatsProviderBootstrap() {
         ccStatsProviders = new ArrayList<ConnectorConnPoolStatsProvider>();
         poolEmitters = new HashMap<PoolInfo, ConnectionPoolEmitterImpl>();
         poolRegistries = new HashMap<PoolInfo, PoolLifeCycleListenerRegistry>();
+        latencyRecorders = new HashMap<PoolInfo, ConnectionPoolLatencyRecorder>();
         runtime = ConnectorRuntime.getRuntime();
         
     }
@@ -161,9 +165,29 @@ public class ConnectionPoolStatsProviderBootstrap implements PostConstruct,
                 poolInfo, poolProvider);
         poolRegistry.registerPoolLifeCycleListener(emitter);
         addToPoolEmitters(poolInfo, emitter);
+        registerLatencyRecorder(poolInfo, poolRegistry,
+                poolProvider instanceof ConnectorConnPoolProbeProvider);
         return poolRegistry;
     }
 
+    /**
+     * Adds a latency recorder for this pool to the pool's lifecycle listeners
+     * and publishes its histograms through JMX.
+     * @param poolInfo
+     * @param poolRegistry registry of pool lifecycle listeners of the pool
+     * @param connectorPool whether the pool is a connector connection pool
+     */
+    private void registerLatencyRecorder(PoolInfo poolInfo,
+            PoolLifeCycleListenerRegistry poolRegistry, boolean connectorPool) {
+        if (latencyRecorders.containsKey(poolInfo)) {
+            return;
+        }
+        ConnectionPoolLatencyRecorder recorder = new ConnectionPoolLatencyRecorder(poolInfo, connectorPool);
+        poolRegistry.registerPoolLifeCycleListener(recorder);
+        recorder.register();
+        latencyRecorders.put(poolInfo, recorder);
+    }
+
     public ConnectionPoolAppProbeProvider registerPool(PoolInfo poolInfo, String appName) {
         ConnectionPoolAppProbeProvider probeAppProvider = null;
         Collection<ConnectionPoolMonitoringExtension> extensions =
@@ -301,6 +325,10 @@ public class ConnectionPoolStatsProviderBootstrap implements PostConstruct,
     public void postUnregisterPool(PoolInfo poolInfo) {
         unregisterPoolAppProviders(poolInfo);
         poolRegistries.remove(poolInfo);
+        ConnectionPoolLatencyRecorder recorder = latencyRecorders.remove(poolInfo);
+        if (recorder != null) {
+            recorder.unregister();
+        }
     }
 
     public void unregisterPoolAppProviders(PoolInfo poolInfo) {
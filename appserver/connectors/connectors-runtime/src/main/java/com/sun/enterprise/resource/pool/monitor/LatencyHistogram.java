@@ -0,0 +1,104 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.resource.pool.monitor;
+
+import com.sun.enterprise.util.LogLinearBuckets;
+import com.sun.enterprise.util.LogLinearHistogram;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the spirit of
+ * HdrHistogram. Every power of two is split into 16 linear sub buckets, so any
+ * recorded value is reported with a relative error below 1/16 while the whole
+ * range of a <code>long</code> fits into a fixed array of counters.
+ *
+ * Recording a value is a single atomic increment plus a max update and never
+ * allocates, so this can be fed from the hot path of the connection pool.
+ * Values are recorded in microseconds.
+ */
+public class LatencyHistogram {
+
+    private static final LogLinearBuckets BUCKETS = new LogLinearBuckets(4);
+
+    private final LogLinearHistogram histogram = new LogLinearHistogram(BUCKETS);
+
+    /**
+     * Records a single value. Negative values are recorded as zero.
+     * @param valueInMicros value to record
+     */
+    public void record(long valueInMicros) {
+        histogram.record(valueInMicros);
+    }
+
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    public long getMax() {
+        return histogram.getMax();
+    }
+
+    /**
+     * Takes a point in time summary of this histogram. Concurrent recording
+     * is not blocked, so the summary may be off by the values recorded while
+     * it is being taken.
+     * @return summary of the recorded values, in milliseconds
+     */
+    public LatencySummary getSummary() {
+        long[] counts = histogram.getCounts();
+        long recorded = 0;
+        for (long count : counts) {
+            recorded += count;
+        }
+        long maxValue = histogram.getMax();
+        double mean = recorded == 0 ? 0 : (double) histogram.getTotal() / recorded;
+        return new LatencySummary(recorded,
+                toMillis(mean),
+                toMillis(BUCKETS.valueAtPercentile(counts, 50.0, maxValue)),
+                toMillis(BUCKETS.valueAtPercentile(counts, 95.0, maxValue)),
+                toMillis(BUCKETS.valueAtPercentile(counts, 99.0, maxValue)),
+                toMillis(maxValue));
+    }
+
+    private static double toMillis(double micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.resource.pool.monitor;
+
+/**
+ * Immutable summary of a {@link LatencyHistogram}. Exposed as composite data
+ * by {@link ConnectionPoolLatencyMXBean}, hence the getter names make up the
+ * keys that can be used in the metrics configuration.
+ */
+public class LatencySummary {
+
+    private final long count;
+    private final double mean;
+    private final double p50;
+    private final double p95;
+    private final double p99;
+    private final double max;
+
+    public LatencySummary(long count, double mean, double p50, double p95, double p99, double max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return mean of the recorded values in milliseconds
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return median of the recorded values in milliseconds
+     */
+    public double getP50() {
+        return p50;
+    }
+
+    /**
+     * @return 95th percentile of the recorded values in milliseconds
+     */
+    public double getP95() {
+        return p95;
+    }
+
+    /**
+     * @return 99th percentile of the recorded values in milliseconds
+     */
+    public double getP99() {
+        return p99;
+    }
+
+    /**
+     * @return highest recorded value in milliseconds
+     */
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", mean=" + mean + ", p50=" + p50 + ", p95=" + p95
+                + ", p99=" + p99 + ", max=" + max;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.resource.pool.resizer;
+
+import com.sun.enterprise.resource.ResourceHandle;
+import com.sun.enterprise.resource.pool.ResourceHandler;
+import com.sun.enterprise.resource.pool.datastructure.DataStructure;
+import com.sun.logging.LogDomains;
+import org.glassfish.resourcebase.resources.api.PoolInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Validates the free resources of the pool in the background, so that requests
+ * do not pay for a validation round-trip when they get a resource.<br>
+ * Free resources not validated within the validation interval are taken out of the
+ * pool in batches, validated and either marked as validated and returned, or
+ * removed from the pool when found invalid.
+ */
+public class BackgroundValidator extends TimerTask {
+
+    protected PoolInfo poolInfo;
+    protected DataStructure dataStructure;
+    protected ResourceHandler handler;
+    protected long validationInterval;
+    protected int batchSize;
+    //called after every run, so that the pool can replace removed resources
+    protected Runnable afterValidation;
+
+    protected final static Logger _logger = LogDomains.getLogger(BackgroundValidator.class, LogDomains.RSR_LOGGER);
+
+    public BackgroundValidator(PoolInfo poolInfo, DataStructure dataStructure, ResourceHandler handler,
+            long validationInterval, int batchSize, Runnable afterValidation) {
+        this.poolInfo = poolInfo;
+        this.dataStructure = dataStructure;
+        this.handler = handler;
+        this.validationInterval = validationInterval;
+        this.batchSize = batchSize > 0 ? batchSize : 1;
+        this.afterValidation = afterValidation;
+    }
+
+    @Override
+    public void run() {
+        debug("Background validator for pool " + poolInfo);
+        try {
+            validateFreeResources();
+        } catch (Exception ex) {
+            Object[] params = new Object[]{poolInfo, ex.getMessage()};
+            _logger.log(Level.WARNING, "resource_pool.background_validation_error", params);
+        }
+        if (afterValidation != null) {
+            afterValidation.run();
+        }
+    }
+
+    /**
+     * Validate, batch by batch, the free resources that have not been validated within the
+     * validation interval. At most as many resources as were free when the run started are
+     * validated, resources returned to the pool meanwhile are left for the next run.
+     *
+     * @return int number of invalid resources removed
+     */
+    public int validateFreeResources() {
+        int toValidate = dataStructure.getFreeListSize();
+        int validated = 0;
+        int invalid = 0;
+        while (validated < toValidate) {
+            List<ResourceHandle> batch = takeBatch(Math.min(batchSize, toValidate - validated));
+            if (batch.isEmpty()) {
+                break;
+            }
+            validated += batch.size();
+            invalid += validateBatch(batch);
+        }
+        debug("Background validation of pool [ " + poolInfo + " ] validated " + validated
+                + " resources, removed " + invalid + " invalid resources");
+        return invalid;
+    }
+
+    /**
+     * Take out of the pool up to <code>size</code> free resources that need validation.
+     * Resources validated recently are only held while looking for the batch.
+     */
+    private List<ResourceHandle> takeBatch(int size) {
+        long currentTime = System.currentTimeMillis();
+        List<ResourceHandle> batch = new ArrayList<>(size);
+        List<ResourceHandle> recentlyValidated = new ArrayList<>();
+        ResourceHandle h;
+        try {
+            while (batch.size() < size && (h = dataStructure.getResource()) != null) {
+                if (currentTime - h.getLastValidated() < validationInterval) {
+                    recentlyValidated.add(h);
+                } else {
+                    batch.add(h);
+                }
+            }
+        } finally {
+            for (ResourceHandle resource : recentlyValidated) {
+                dataStructure.returnResource(resource);
+            }
+        }
+        return batch;
+    }
+
+    private int validateBatch(List<ResourceHandle> batch) {
+        int invalid = 0;
+        for (ResourceHandle h : batch) {
+            if (isValid(h)) {
+                h.setLastValidated(System.currentTimeMillis());
+                dataStructure.returnResource(h);
+            } else {
+                dataStructure.removeResource(h);
+                handler.invalidConnectionDetected(h);
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    private boolean isValid(ResourceHandle h) {
+        try {
+            return !h.hasConnectionErrorOccurred() && h.getResourceAllocator().isConnectionValid(h);
+        } catch (Exception ex) {
+            if (_logger.isLoggable(Level.FINE)) {
+                _logger.log(Level.FINE, "Exception while validating resource " + h, ex);
+            }
+            return false;
+        }
+    }
+
+    protected static void debug(String debugStatement) {
+        if (_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE, debugStatement);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.enterprise.resource.pool.resizer;
+
+import com.sun.appserv.connectors.internal.api.PoolingException;
+import com.sun.enterprise.resource.pool.PoolProperties;
+import com.sun.enterprise.resource.pool.ResourceHandler;
+import com.sun.enterprise.resource.pool.datastructure.DataStructure;
+import com.sun.logging.LogDomains;
+import org.glassfish.resourcebase.resources.api.PoolInfo;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One-off task creating resources ahead of demand when the number of free resources
+ * of the pool drops under its low water mark, so that requests do not have to wait for
+ * a resource to be created during a burst.<br>
+ * Creating a resource may block, so the task is run on the connector runtime's pool
+ * executor rather than on the timer shared by the pools.
+ */
+public class PoolRefiller implements Runnable {
+
+    protected PoolInfo poolInfo;
+    protected DataStructure dataStructure;
+    protected PoolProperties pool;
+    protected ResourceHandler handler;
+    protected int lowWaterMark;
+    //set by the pool when the task is scheduled, cleared once it has run
+    protected AtomicBoolean refillPending;
+
+    protected final static Logger _logger = LogDomains.getLogger(PoolRefiller.class, LogDomains.RSR_LOGGER);
+
+    public PoolRefiller(PoolInfo poolInfo, DataStructure dataStructure, PoolProperties pp, ResourceHandler handler,
+            int lowWaterMark, AtomicBoolean refillPending) {
+        this.poolInfo = poolInfo;
+        this.dataStructure = dataStructure;
+        this.pool = pp;
+        this.handler = handler;
+        this.lowWaterMark = lowWaterMark;
+        this.refillPending = refillPending;
+    }
+
+    @Override
+    public void run() {
+        try {
+            int created = refillPool();
+            if (_logger.isLoggable(Level.FINE)) {
+                _logger.log(Level.FINE, "Refilled pool [ " + poolInfo + " ] with " + created + " resources");
+            }
+        } finally {
+            refillPending.set(false);
+        }
+    }
+
+    /**
+     * Create resources until the low water mark or the max pool size is reached.
+     *
+     * @return int number of resources created
+     */
+    public int refillPool() {
+        int toCreate = Math.min(lowWaterMark - dataStructure.getFreeListSize(),
+                pool.getMaxPoolSize() - dataStructure.getResourcesSize());
+        int created = 0;
+        for (; created < toCreate; created++) {
+            try {
+                handler.createResourceAndAddToPool();
+            } catch (PoolingException ex) {
+                Object[] params = new Object[]{poolInfo, ex.getMessage()};
+                _logger.log(Level.WARNING, "resource_pool.refill_pool_error", params);
+                break;
+            }
+        }
+        return created;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.resource.pool.datastructure;
+
+import com.sun.appserv.connectors.internal.api.PoolingException;
+import com.sun.enterprise.resource.ResourceHandle;
+import com.sun.enterprise.resource.allocator.ResourceAllocator;
+import com.sun.enterprise.resource.pool.ResourceHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentBagDataStructureTest {
+
+    private static final int MAX_SIZE = 4;
+
+    private final StubResourceHandler handler = new StubResourceHandler();
+    private ConcurrentBagDataStructure bag;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        bag = new ConcurrentBagDataStructure(null, MAX_SIZE, handler, null);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void addResourceStopsAtMaxSize() throws PoolingException {
+        assertEquals(MAX_SIZE, bag.addResource(null, MAX_SIZE + 2));
+        assertEquals(MAX_SIZE, bag.getResourcesSize());
+        assertEquals(MAX_SIZE, bag.getFreeListSize());
+        assertEquals(0, bag.addResource(null, 1));
+    }
+
+    @Test
+    public void getResourceMarksResourceBusyUntilReturned() throws PoolingException {
+        bag.addResource(null, 1);
+
+        ResourceHandle handle = bag.getResource();
+        assertNotNull(handle);
+        assertTrue(handle.isBusy());
+        assertEquals(0, bag.getFreeListSize());
+        assertNull(bag.getResource());
+
+        bag.returnResource(handle);
+        assertFalse(handle.isBusy());
+        assertEquals(1, bag.getFreeListSize());
+        assertSame(handle, bag.getResource());
+    }
+
+    @Test
+    public void returningFreeResourceTwiceIsIgnored() throws PoolingException {
+        bag.addResource(null, 1);
+        ResourceHandle handle = bag.getResource();
+
+        bag.returnResource(handle);
+        bag.returnResource(handle);
+        assertEquals(1, bag.getFreeListSize());
+    }
+
+    @Test
+    public void removedResourceIsNotReturnedAsFree() throws PoolingException {
+        bag.addResource(null, 1);
+        ResourceHandle handle = bag.getResource();
+
+        bag.removeResource(handle);
+        bag.returnResource(handle);
+        assertEquals(0, bag.getResourcesSize());
+        assertEquals(0, bag.getFreeListSize());
+        assertNull(bag.getResource());
+        assertEquals(1, handler.deleted.get());
+    }
+
+    @Test
+    public void awaitResourceTimesOutWhenNothingIsReturned() throws Exception {
+        bag.addResource(null, 1);
+        assertNotNull(bag.getResource());
+
+        assertNull(bag.awaitResource(50));
+        assertEquals(0, bag.getWaitingThreadCount());
+    }
+
+    @Test
+    public void awaitResourceReceivesReturnedResource() throws Exception {
+        bag.addResource(null, 1);
+        ResourceHandle handle = bag.getResource();
+
+        CountDownLatch waiting = new CountDownLatch(1);
+        Future<ResourceHandle> waiter = executor.submit(() -> {
+            waiting.countDown();
+            return bag.awaitResource(10000);
+        });
+        waiting.await();
+        while (bag.getWaitingThreadCount() == 0) {
+            Thread.sleep(1);
+        }
+        bag.returnResource(handle);
+
+        assertSame(handle, waiter.get(10, TimeUnit.SECONDS));
+        assertTrue(handle.isBusy());
+        assertEquals(0, bag.getFreeListSize());
+    }
+
+    @Test
+    public void offerIsNotLostWhenAnotherWaiterLeaves() throws Exception {
+        bag.addResource(null, 1);
+        ResourceHandle handle = bag.getResource();
+
+        for (int i = 0; i < 200; i++) {
+            //a waiter that gives up straight away, leaving while the resource is offered
+            Future<ResourceHandle> leaving = executor.submit(() -> bag.awaitResource(1));
+            Future<ResourceHandle> waiter = executor.submit(() -> bag.awaitResource(10000));
+            while (bag.getWaitingThreadCount() == 0) {
+                Thread.yield();
+            }
+            bag.returnResource(handle);
+
+            ResourceHandle received = leaving.get(10, TimeUnit.SECONDS);
+            if (received == null) {
+                received = waiter.get(2, TimeUnit.SECONDS);
+            } else {
+                //the other waiter still gets the resource once it is returned again
+                bag.returnResource(received);
+                received = waiter.get(2, TimeUnit.SECONDS);
+            }
+            assertSame(handle, received);
+        }
+        assertEquals(0, bag.getWaitingThreadCount());
+    }
+
+    @Test
+    public void concurrentBorrowersNeverShareAResource() throws Exception {
+        bag.addResource(null, MAX_SIZE);
+        int threads = MAX_SIZE * 4;
+        Set<ResourceHandle> inUse = ConcurrentHashMap.newKeySet();
+        AtomicInteger overlaps = new AtomicInteger();
+        AtomicInteger served = new AtomicInteger();
+
+        List<Future<?>> borrowers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            borrowers.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    ResourceHandle handle = bag.getResource();
+                    if (handle == null) {
+                        handle = bag.awaitResource(10000);
+                    }
+                    if (handle == null) {
+                        continue;
+                    }
+                    if (!inUse.add(handle)) {
+                        overlaps.incrementAndGet();
+                    }
+                    served.incrementAndGet();
+                    inUse.remove(handle);
+                    bag.returnResource(handle);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> borrower : borrowers) {
+            borrower.get(60, TimeUnit.SECONDS);
+        }
+
+        assertEquals(0, overlaps.get());
+        assertEquals(threads * 500, served.get());
+        assertEquals(MAX_SIZE, bag.getFreeListSize());
+        assertEquals(0, bag.getWaitingThreadCount());
+    }
+
+    private static class StubResourceHandler implements ResourceHandler {
+
+        final AtomicInteger deleted = new AtomicInteger();
+
+        @Override
+        public void deleteResource(ResourceHandle resourceHandle) {
+            deleted.incrementAndGet();
+        }
+
+        @Override
+        public ResourceHandle createResource(ResourceAllocator allocator) {
+            return new ResourceHandle(null, null, null, null);
+        }
+
+        @Override
+        public void createResourceAndAddToPool() {
+        }
+
+        @Override
+        public Set getInvalidConnections(Set connections) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void invalidConnectionDetected(ResourceHandle h) {
+        }
+    }
+}
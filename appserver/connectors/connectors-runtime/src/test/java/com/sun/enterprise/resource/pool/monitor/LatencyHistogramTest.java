@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.resource.pool.monitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramSummary() {
+        LatencySummary summary = new LatencyHistogram().getSummary();
+        assertEquals(0, summary.getCount());
+        assertEquals(0.0, summary.getMean(), 0.0);
+        assertEquals(0.0, summary.getP99(), 0.0);
+        assertEquals(0.0, summary.getMax(), 0.0);
+    }
+
+    @Test
+    public void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getSummary().getP50(), 0.0);
+    }
+
+    @Test
+    public void percentilesAreWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+
+        LatencySummary summary = histogram.getSummary();
+        assertEquals(100000, summary.getCount());
+        assertEquals(50.0005, summary.getMean(), 0.000001);
+        assertEquals(100.0, summary.getMax(), 0.0);
+        assertWithinRelativeError(50.0, summary.getP50());
+        assertWithinRelativeError(95.0, summary.getP95());
+        assertWithinRelativeError(99.0, summary.getP99());
+    }
+
+    @Test
+    public void percentilesNeverExceedMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(1001);
+
+        LatencySummary summary = histogram.getSummary();
+        assertEquals(1.0, summary.getP50(), 0.1);
+        assertEquals(1.001, summary.getP99(), 0.0);
+        assertEquals(1.001, summary.getMax(), 0.0);
+    }
+
+    @Test
+    public void outlierShowsOnlyInHighPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(200);
+        }
+        histogram.record(5000000);
+
+        LatencySummary summary = histogram.getSummary();
+        assertWithinRelativeError(0.2, summary.getP50());
+        assertWithinRelativeError(0.2, summary.getP95());
+        assertWithinRelativeError(0.2, summary.getP99());
+        assertEquals(5000.0, summary.getMax(), 0.0);
+    }
+
+    private static void assertWithinRelativeError(double expected, double actual) {
+        assertTrue("expected " + expected + " but was " + actual,
+                actual >= expected && actual <= expected * (1 + 1.0 / 16));
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.resource.pool.resizer;
+
+import com.sun.appserv.connectors.internal.api.PoolingException;
+import com.sun.enterprise.resource.ResourceHandle;
+import com.sun.enterprise.resource.allocator.ResourceAllocator;
+import com.sun.enterprise.resource.pool.ResourceHandler;
+import com.sun.enterprise.resource.pool.datastructure.ConcurrentBagDataStructure;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.resource.ResourceException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BackgroundValidatorTest {
+
+    private static final long INTERVAL = 60000;
+
+    private final StubAllocator allocator = new StubAllocator();
+    private final StubResourceHandler handler = new StubResourceHandler();
+    private final AtomicInteger afterValidationRuns = new AtomicInteger();
+    private ConcurrentBagDataStructure bag;
+    private List<ResourceHandle> handles;
+
+    @Before
+    public void setUp() throws PoolingException {
+        bag = new ConcurrentBagDataStructure(null, 8, handler, null);
+        bag.addResource(allocator, 4);
+        handles = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            handles.add(bag.getResource());
+        }
+        for (ResourceHandle handle : handles) {
+            bag.returnResource(handle);
+        }
+    }
+
+    @Test
+    public void invalidResourcesAreRemoved() {
+        allocator.invalid.add(handles.get(0));
+        handles.get(1).setConnectionErrorOccurred();
+
+        assertEquals(2, newValidator(2).validateFreeResources());
+        assertEquals(2, bag.getResourcesSize());
+        assertEquals(2, bag.getFreeListSize());
+        assertEquals(2, handler.invalidDetected.get());
+        assertEquals(2, handler.deleted.get());
+    }
+
+    @Test
+    public void validResourcesAreReturnedAndMarkedValidated() {
+        assertEquals(0, newValidator(1).validateFreeResources());
+        assertEquals(4, allocator.validations.get());
+        assertEquals(4, bag.getFreeListSize());
+        for (ResourceHandle handle : handles) {
+            assertTrue(handle.getLastValidated() > 0);
+        }
+    }
+
+    @Test
+    public void recentlyValidatedResourcesAreSkipped() {
+        long now = System.currentTimeMillis();
+        for (ResourceHandle handle : handles.subList(0, 3)) {
+            handle.setLastValidated(now);
+        }
+
+        assertEquals(0, newValidator(4).validateFreeResources());
+        assertEquals(1, allocator.validations.get());
+        assertEquals(4, bag.getFreeListSize());
+    }
+
+    @Test
+    public void failingValidationRemovesResource() {
+        allocator.failing = true;
+
+        assertEquals(4, newValidator(3).validateFreeResources());
+        assertEquals(0, bag.getResourcesSize());
+    }
+
+    @Test
+    public void afterValidationRunsWhenValidationFails() {
+        allocator.invalid.add(handles.get(0));
+        handler.failOnInvalid = true;
+
+        newValidator(4).run();
+        assertEquals(1, afterValidationRuns.get());
+    }
+
+    @Test
+    public void cancelledValidatorIsNotRunAgain() throws Exception {
+        CountDownLatch ran = new CountDownLatch(2);
+        BackgroundValidator validator = new BackgroundValidator(null, bag, handler, INTERVAL, 4, () -> {
+            afterValidationRuns.incrementAndGet();
+            ran.countDown();
+        });
+        Timer timer = new Timer(true);
+        try {
+            timer.schedule(validator, 1, 1);
+            assertTrue(ran.await(10, TimeUnit.SECONDS));
+            validator.cancel();
+            //a run in progress when the task is cancelled still completes
+            Thread.sleep(50);
+            int runs = afterValidationRuns.get();
+            Thread.sleep(100);
+            assertEquals(runs, afterValidationRuns.get());
+        } finally {
+            timer.cancel();
+        }
+    }
+
+    private BackgroundValidator newValidator(int batchSize) {
+        return new BackgroundValidator(null, bag, handler, INTERVAL, batchSize,
+                afterValidationRuns::incrementAndGet);
+    }
+
+    private static class StubResourceHandler implements ResourceHandler {
+
+        final AtomicInteger deleted = new AtomicInteger();
+        final AtomicInteger invalidDetected = new AtomicInteger();
+        volatile boolean failOnInvalid;
+
+        @Override
+        public void deleteResource(ResourceHandle resourceHandle) {
+            deleted.incrementAndGet();
+        }
+
+        @Override
+        public ResourceHandle createResource(ResourceAllocator allocator) {
+            return new ResourceHandle(null, null, allocator, null);
+        }
+
+        @Override
+        public void createResourceAndAddToPool() {
+        }
+
+        @Override
+        public Set getInvalidConnections(Set connections) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void invalidConnectionDetected(ResourceHandle h) {
+            invalidDetected.incrementAndGet();
+            if (failOnInvalid) {
+                throw new IllegalStateException("Failed to handle invalid connection");
+            }
+        }
+    }
+
+    private static class StubAllocator implements ResourceAllocator {
+
+        final Set<ResourceHandle> invalid = ConcurrentHashMap.newKeySet();
+        final AtomicInteger validations = new AtomicInteger();
+        volatile boolean failing;
+
+        @Override
+        public boolean isConnectionValid(ResourceHandle resource) {
+            validations.incrementAndGet();
+            if (failing) {
+                throw new IllegalStateException("Validation failed");
+            }
+            return !invalid.contains(resource);
+        }
+
+        @Override
+        public ResourceHandle createResource() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void fillInResourceObjects(ResourceHandle resource) {
+        }
+
+        @Override
+        public void closeUserConnection(ResourceHandle resource) {
+        }
+
+        @Override
+        public void destroyResource(ResourceHandle resource) {
+        }
+
+        @Override
+        public boolean matchConnection(ResourceHandle h) {
+            return true;
+        }
+
+        @Override
+        public boolean supportsReauthentication() {
+            return false;
+        }
+
+        @Override
+        public boolean isTransactional() {
+            return false;
+        }
+
+        @Override
+        public void cleanup(ResourceHandle resource) {
+        }
+
+        @Override
+        public boolean shareableWithinComponent() {
+            return false;
+        }
+
+        @Override
+        public Object getSharedConnection(ResourceHandle h) {
+            return null;
+        }
+
+        @Override
+        public Set getInvalidConnections(Set connectionSet) throws ResourceException {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public boolean hasValidatingMCF() {
+            return false;
+        }
+    }
+}
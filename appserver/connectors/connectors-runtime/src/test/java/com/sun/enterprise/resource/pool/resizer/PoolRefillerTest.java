@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.resource.pool.resizer;
+
+import com.sun.appserv.connectors.internal.api.PoolingException;
+import com.sun.enterprise.resource.ResourceHandle;
+import com.sun.enterprise.resource.allocator.ResourceAllocator;
+import com.sun.enterprise.resource.pool.PoolProperties;
+import com.sun.enterprise.resource.pool.ResourceHandler;
+import com.sun.enterprise.resource.pool.datastructure.ConcurrentBagDataStructure;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class PoolRefillerTest {
+
+    private static final int MAX_SIZE = 6;
+
+    private final StubPool pool = new StubPool();
+    private final AtomicBoolean refillPending = new AtomicBoolean(true);
+    private ConcurrentBagDataStructure bag;
+
+    @Before
+    public void setUp() {
+        bag = new ConcurrentBagDataStructure(null, MAX_SIZE, pool, null);
+    }
+
+    @Test
+    public void refillsUpToLowWaterMark() throws PoolingException {
+        bag.addResource(null, 1);
+
+        assertEquals(3, newRefiller(4).refillPool());
+        assertEquals(4, bag.getFreeListSize());
+        assertEquals(0, newRefiller(4).refillPool());
+    }
+
+    @Test
+    public void busyResourcesAreNotCountedAsFree() throws PoolingException {
+        bag.addResource(null, 2);
+        assertNotNull(bag.getResource());
+
+        assertEquals(1, newRefiller(2).refillPool());
+        assertEquals(3, bag.getResourcesSize());
+        assertEquals(2, bag.getFreeListSize());
+    }
+
+    @Test
+    public void refillStopsAtMaxPoolSize() throws PoolingException {
+        bag.addResource(null, 4);
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(bag.getResource());
+        }
+
+        assertEquals(2, newRefiller(4).refillPool());
+        assertEquals(MAX_SIZE, bag.getResourcesSize());
+    }
+
+    @Test
+    public void refillStopsWhenCreationFails() {
+        pool.failAfter = 2;
+
+        assertEquals(2, newRefiller(5).refillPool());
+        assertEquals(2, bag.getResourcesSize());
+        assertEquals(3, pool.attempts.get());
+    }
+
+    @Test
+    public void runClearsPendingFlag() {
+        newRefiller(3).run();
+
+        assertFalse(refillPending.get());
+        assertEquals(3, bag.getFreeListSize());
+    }
+
+    @Test
+    public void runClearsPendingFlagWhenCreationThrows() {
+        pool.unexpectedFailure = true;
+        try {
+            newRefiller(3).run();
+            fail("Expected the creation failure to propagate");
+        } catch (IllegalStateException expected) {
+        }
+
+        assertFalse(refillPending.get());
+    }
+
+    private PoolRefiller newRefiller(int lowWaterMark) {
+        return new PoolRefiller(null, bag, pool, pool, lowWaterMark, refillPending);
+    }
+
+    private class StubPool implements PoolProperties, ResourceHandler {
+
+        final AtomicInteger attempts = new AtomicInteger();
+        volatile int failAfter = Integer.MAX_VALUE;
+        volatile boolean unexpectedFailure;
+
+        @Override
+        public void createResourceAndAddToPool() throws PoolingException {
+            if (unexpectedFailure) {
+                throw new IllegalStateException("Resource creation failed");
+            }
+            if (attempts.incrementAndGet() > failAfter) {
+                throw new PoolingException("Resource creation failed");
+            }
+            bag.addResource(null, 1);
+        }
+
+        @Override
+        public ResourceHandle createResource(ResourceAllocator allocator) {
+            return new ResourceHandle(null, null, allocator, null);
+        }
+
+        @Override
+        public void deleteResource(ResourceHandle resourceHandle) {
+        }
+
+        @Override
+        public Set getInvalidConnections(Set connections) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void invalidConnectionDetected(ResourceHandle h) {
+        }
+
+        @Override
+        public int getMaxPoolSize() {
+            return MAX_SIZE;
+        }
+
+        @Override
+        public int getSteadyPoolSize() {
+            return 0;
+        }
+
+        @Override
+        public int getResizeQuantity() {
+            return 1;
+        }
+
+        @Override
+        public long getIdleTimeout() {
+            return 0;
+        }
+
+        @Override
+        public int getWaitQueueLength() {
+            return 0;
+        }
+    }
+}
@@ -37,13 +37,15 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2019] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2019-2020] [Payara Foundation and/or its affiliates]
 package com.sun.ejb;
 
 import com.sun.ejb.containers.interceptors.InterceptorManager;
+import com.sun.ejb.containers.interceptors.InterceptorUtil;
 import com.sun.enterprise.security.jacc.cache.CachedPermission;
 import org.glassfish.ejb.deployment.descriptor.EjbRemovalInfo;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 
 /**
@@ -104,6 +106,9 @@ public class InvocationInfo {
     // Stringified method signature to be used for monitoring
     public String str_method_sig;
 
+    // Handle for the bean class method last dispatched through this info
+    private volatile BeanMethodHandle beanMethodHandle;
+
     public InvocationInfo() {}
 
     public InvocationInfo(Method method) {
@@ -118,6 +123,21 @@ public class InvocationInfo {
         return asyncMethodFlag;
     }
 
+    /**
+     * Returns a method handle of type {@code (Object, Object[])Object} that invokes
+     * the given bean class method. The handle is resolved on first use and kept with
+     * this info so that business method dispatch does not go through reflection.
+     * It is meant to be invoked through {@link InterceptorUtil#invokeSpread}.
+     */
+    public MethodHandle getBeanMethodHandle(Method beanMethod) {
+        BeanMethodHandle cached = beanMethodHandle;
+        if (cached == null || (cached.method != beanMethod && !cached.method.equals(beanMethod))) {
+            cached = new BeanMethodHandle(beanMethod, InterceptorUtil.unreflectSpread(beanMethod));
+            beanMethodHandle = cached;
+        }
+        return cached.handle;
+    }
+
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Invocation Info for ejb " + ejbName + "\t");
@@ -140,4 +160,14 @@ public class InvocationInfo {
         sb.append("\n");
         return sb.toString();
     }
+
+    private static final class BeanMethodHandle {
+        final Method method;
+        final MethodHandle handle;
+
+        BeanMethodHandle(Method method, MethodHandle handle) {
+            this.method = method;
+            this.handle = handle;
+        }
+    }
 }
@@ -51,6 +51,7 @@ import com.sun.ejb.MethodLockInfo;
 import com.sun.ejb.codegen.EjbOptionalIntfGenerator;
 import com.sun.ejb.codegen.ServiceInterfaceGenerator;
 import com.sun.ejb.containers.interceptors.InterceptorManager;
+import com.sun.ejb.containers.interceptors.InterceptorUtil;
 import com.sun.ejb.containers.interceptors.SystemInterceptorProxy;
 import com.sun.ejb.containers.util.MethodMap;
 import com.sun.ejb.monitoring.probes.EjbCacheProbeProvider;
@@ -92,6 +93,7 @@ import fish.payara.notification.requesttracing.RequestTraceSpanLog;
 import fish.payara.nucleus.requesttracing.RequestTracingService;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
@@ -4203,10 +4205,12 @@ public abstract class BaseContainer implements Container, EjbContainerFacade, Ja
         try {
             onEjbMethodStart(inv.invocationInfo.str_method_sig);
             if (inv.useFastPath) {
-                return inv.getBeanMethod().invoke(inv.ejb, inv.methodParams);
+                MethodHandle handle = inv.invocationInfo.getBeanMethodHandle(inv.getBeanMethod());
+                return InterceptorUtil.invokeSpread(handle, inv.ejb, inv.methodParams);
             } else {
 
-                return securityManager.invoke(beanClassMethod, inv.isLocal, target,
+                return securityManager.invoke(beanClassMethod,
+                        inv.invocationInfo.getBeanMethodHandle(beanClassMethod), inv.isLocal, target,
                         params);
             }
         } catch (InvocationTargetException ite) {
@@ -4793,8 +4797,13 @@ public abstract class BaseContainer implements Container, EjbContainerFacade, Ja
     {
         try {
 
-            return securityManager.invoke(inv.getBeanMethod(), inv.isLocal, inv.ejb,
+            Method beanMethod = inv.getBeanMethod();
+            if (inv.invocationInfo == null) {
+                return securityManager.invoke(beanMethod, inv.isLocal, inv.ejb,
                                        inv.getParameters());
+            }
+            return securityManager.invoke(beanMethod, inv.invocationInfo.getBeanMethodHandle(beanMethod),
+                                       inv.isLocal, inv.ejb, inv.getParameters());
 
         } catch(InvocationTargetException ite) {
             throw ite.getCause();
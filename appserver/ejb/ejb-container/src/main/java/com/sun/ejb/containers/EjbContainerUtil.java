@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2017] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.ejb.containers;
 
@@ -62,6 +62,7 @@ import javax.transaction.RollbackException;
 import javax.transaction.SystemException;
 import javax.transaction.Transaction;
 import javax.transaction.Synchronization;
+import fish.payara.nucleus.executorservice.PayaraExecutorService;
 import java.util.Timer;
 import java.util.Vector;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -108,6 +109,11 @@ public interface EjbContainerUtil {
 
     public  Timer getTimer();
 
+    /**
+     * @return the shared Payara executor, or {@code null} if it is not available
+     */
+    public PayaraExecutorService getPayaraExecutorService();
+
     public  void setInsideContainer(boolean bool);
 
     public  boolean isInsideContainer();
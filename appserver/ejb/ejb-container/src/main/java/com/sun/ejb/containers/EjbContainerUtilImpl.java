@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2017] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.ejb.containers;
 
@@ -56,6 +56,7 @@ import com.sun.enterprise.admin.monitor.callflow.Agent;
 import com.sun.enterprise.util.Utility;
 import com.sun.logging.LogDomains;
 import fish.payara.enterprise.config.serverbeans.DeploymentGroup;
+import fish.payara.nucleus.executorservice.PayaraExecutorService;
 import org.glassfish.ejb.spi.CMPDeployer;
 import com.sun.enterprise.deployment.xml.RuntimeTagNames;
 
@@ -179,6 +180,9 @@ public class EjbContainerUtilImpl
     @Inject
     private Provider<CMPDeployer> cmpDeployerProvider;
 
+    @Inject @Optional
+    private PayaraExecutorService payaraExecutorService;
+
     private  static EjbContainerUtil _me;
 
     @Override
@@ -312,6 +316,11 @@ public class EjbContainerUtilImpl
         return _timer;
     }
 
+    @Override
+    public PayaraExecutorService getPayaraExecutorService() {
+        return payaraExecutorService;
+    }
+
     @Override
     public  void setInsideContainer(boolean bool) {
         _insideContainer = bool;
@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 package com.sun.ejb.containers;
 
@@ -58,6 +59,7 @@ import com.sun.ejb.base.sfsb.util.ScrambledKeyGenerator;
 import com.sun.ejb.base.sfsb.util.SimpleKeyGenerator;
 import com.sun.ejb.containers.util.cache.FIFOSessionCache;
 import com.sun.ejb.containers.util.cache.LruSessionCache;
+import com.sun.ejb.containers.util.cache.SegmentedLruSessionCache;
 import com.sun.ejb.containers.util.cache.NRUSessionCache;
 import com.sun.ejb.containers.util.cache.UnBoundedSessionCache;
 import com.sun.enterprise.config.serverbeans.AvailabilityService;
@@ -194,6 +196,18 @@ public class StatefulContainerFactory extends BaseContainerFactory
 
     EjbContainer ejbContainerConfig;
 
+    /**
+     * ejb-container property giving the off-heap memory, in MB, used by each
+     * stateful bean cache to hold passivated beans. Disabled when not set.
+     */
+    static final String SFSB_OFF_HEAP_PASSIVATION_SIZE_MB = "sfsb-off-heap-passivation-size-mb";
+
+    /**
+     * ejb-container property that, when true, makes stateful bean caches with
+     * the lru victim selection policy use a SegmentedLruSessionCache.
+     */
+    static final String SFSB_SEGMENTED_LRU_CACHE = "sfsb-segmented-lru-cache";
+
     @Inject @Optional
     HazelcastCore hazelcast;
     
@@ -379,9 +393,15 @@ public class StatefulContainerFactory extends BaseContainerFactory
                     cacheProps.getCacheIdleTimeoutInSeconds(),
                     cacheProps.getRemovalTimeoutInSeconds());
         } else if ("lru".equalsIgnoreCase(victimPolicy)) {
-            sessionCache = new LruSessionCache(cacheName, sfsbContainer,
-                    cacheProps.getCacheIdleTimeoutInSeconds(),
-                    cacheProps.getRemovalTimeoutInSeconds());
+            if (isSegmentedLruCacheEnabled(ejbContainerConfig)) {
+                sessionCache = new SegmentedLruSessionCache(cacheName, sfsbContainer,
+                        cacheProps.getCacheIdleTimeoutInSeconds(),
+                        cacheProps.getRemovalTimeoutInSeconds());
+            } else {
+                sessionCache = new LruSessionCache(cacheName, sfsbContainer,
+                        cacheProps.getCacheIdleTimeoutInSeconds(),
+                        cacheProps.getRemovalTimeoutInSeconds());
+            }
         } else if ("fifo".equalsIgnoreCase(victimPolicy)) {
             sessionCache = new FIFOSessionCache(cacheName, sfsbContainer,
                     cacheProps.getCacheIdleTimeoutInSeconds(),
@@ -411,6 +431,7 @@ public class StatefulContainerFactory extends BaseContainerFactory
         sfsbContainer.setSessionCache(sessionCache);
         sessionCache.setBackingStore(backingStore);
         sfsbContainer.setBackingStore(this.backingStore);
+        buildOffHeapStore();
         if (cacheProps.getNumberOfVictimsToSelect() >
                 sfsbContainer.MIN_PASSIVATION_BATCH_COUNT) {
             sfsbContainer.setPassivationBatchCount(
@@ -424,6 +445,36 @@ public class StatefulContainerFactory extends BaseContainerFactory
         }
     }
 
+    static boolean isSegmentedLruCacheEnabled(EjbContainer ejbContainerConfig) {
+        return ejbContainerConfig != null
+                && Boolean.parseBoolean(ejbContainerConfig.getPropertyValue(SFSB_SEGMENTED_LRU_CACHE));
+    }
+
+    /**
+     * Keeps passivated beans in direct memory before they go to the backing
+     * store, if the ejb-container has a size configured for it. Not used with
+     * HA, where passivated state must reach the replicated store.
+     */
+    private void buildOffHeapStore() {
+        String val = ejbContainerConfig == null ? null
+                : ejbContainerConfig.getPropertyValue(SFSB_OFF_HEAP_PASSIVATION_SIZE_MB);
+        if (val == null || HAEnabled) {
+            return;
+        }
+
+        try {
+            long sizeInMb = Long.parseLong(val.trim());
+            if (sizeInMb > 0) {
+                sessionCache.setOffHeapStoreCapacity(sizeInMb * 1024 * 1024);
+                _logger.log(Level.FINE, "Passivating {0} to {1}MB of off-heap memory before the backing store",
+                        new Object[]{ejbDescriptor.getName(), sizeInMb});
+            }
+        } catch (NumberFormatException e) {
+            _logger.log(Level.WARNING, "Ignoring invalid value {0} of ejb-container property {1}",
+                    new Object[]{val, SFSB_OFF_HEAP_PASSIVATION_SIZE_MB});
+        }
+    }
+
     private void scheduleTimerTasks(StatefulSessionContainer container) {
         String ejbName = ejbDescriptor.getEjbClassName();
 
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.ejb.containers;
 
@@ -2973,6 +2973,9 @@ public final class StatefulSessionContainer
             if (backingStore != null) {
                 val = backingStore.removeExpired(this.removalGracePeriodInSeconds * 1000L);
             }
+            if (sessionBeanCache != null) {
+                val += sessionBeanCache.removeExpiredOffHeapSessions();
+            }
 
             if (cacheProbeNotifier != null) {
                 cacheProbeNotifier.ejbExpiredSessionsRemovedEvent( //
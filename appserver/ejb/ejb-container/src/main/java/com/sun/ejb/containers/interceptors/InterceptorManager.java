@@ -36,15 +36,15 @@
  * and therefore, elected the GPL Version 2 license, then the option applies
  * only if the new code is made subject to such option by the copyright
  * holder.
- * Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates]
+ * Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
  */
 
 package com.sun.ejb.containers.interceptors;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.security.AccessController;
-import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -55,7 +55,6 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
-import javax.ejb.EJBException;
 import javax.interceptor.InvocationContext;
 
 import com.sun.ejb.EJBUtils;
@@ -847,54 +846,20 @@ class AroundInvokeChainImpl
 
 
 class AroundInvokeInterceptor {
+    private static final MethodType INTERCEPTOR_TYPE = MethodType.methodType(Object.class, Object.class, Object.class);
+
     protected int index;
     protected Method method;
+    protected MethodHandle handle;
 
     AroundInvokeInterceptor(int index, Method method) {
         this.index = index;
         this.method = method;
-
-        try {
-            final Method finalM = method;
-            if(System.getSecurityManager() == null) {
-                if (!finalM.isAccessible()) {
-                    finalM.setAccessible(true);
-                }
-            } else {
-                PrivilegedExceptionAction<Void> action = () -> {
-                    if (!finalM.isAccessible()) {
-                        finalM.setAccessible(true);
-                    }
-                    return null;
-                };
-                AccessController.doPrivileged(action);
-            }
-        } catch(Exception e) {
-            throw new EJBException(e);
-        }
-
+        this.handle = InterceptorUtil.unreflect(method, INTERCEPTOR_TYPE);
     }
 
     Object intercept(final InterceptorManager.AroundInvokeContext invCtx) throws Throwable {
-        try {
-            final Object[] interceptors = invCtx.getInterceptorInstances();
-
-            if( System.getSecurityManager() != null ) {
-            // Wrap actual value insertion in doPrivileged to
-            // allow for private/protected field access.
-                PrivilegedExceptionAction<Object> action = () -> method.invoke(interceptors[index], invCtx);
-                return AccessController.doPrivileged(action);
-            }
-            return method.invoke(interceptors[index], invCtx);
-        } catch (java.lang.reflect.InvocationTargetException invEx) {
-            throw invEx.getCause();
-        } catch (java.security.PrivilegedActionException paEx) {
-            Throwable th = paEx.getCause();
-            if (th.getCause() != null) {
-                throw th.getCause();
-            }
-            throw th;
-        }
+        return (Object) handle.invokeExact(invCtx.getInterceptorInstances()[index], (Object) invCtx);
     }
 
     @Override
@@ -913,78 +878,30 @@ class BeanAroundInvokeInterceptor
 
     @Override
     Object intercept(final InterceptorManager.AroundInvokeContext invCtx) throws Throwable {
-        try {
-            if( System.getSecurityManager() != null ) {
-                // Wrap actual value insertion in doPrivileged to
-                // allow for private/protected field access.
-                PrivilegedExceptionAction<Object> action = () -> method.invoke(invCtx.getTarget(), invCtx);
-                return AccessController.doPrivileged(action);
-            }
-            return method.invoke(invCtx.getTarget(), invCtx);
-        } catch (java.lang.reflect.InvocationTargetException invEx) {
-            throw invEx.getCause();
-        } catch (java.security.PrivilegedActionException paEx) {
-            Throwable th = paEx.getCause();
-            if (th.getCause() != null) {
-                throw th.getCause();
-            }
-            throw th;
-        }
+        return (Object) handle.invokeExact(invCtx.getTarget(), (Object) invCtx);
     }
 }
 
 class CallbackInterceptor {
+    private static final MethodType INTERCEPTOR_TYPE = MethodType.methodType(Object.class, Object.class, Object.class);
+
     protected int index;
     protected Method method;
+    protected MethodHandle handle;
 
     CallbackInterceptor(int index, Method method) {
+        this(index, method, INTERCEPTOR_TYPE);
+    }
+
+    protected CallbackInterceptor(int index, Method method, MethodType handleType) {
         this.index = index;
         this.method = method;
-
-        try {
-            final Method finalM = method;
-            if(System.getSecurityManager() == null) {
-                if (!finalM.isAccessible()) {
-                    finalM.setAccessible(true);
-                }
-            } else {
-                PrivilegedExceptionAction<Void> action = () -> {
-                    if (!finalM.isAccessible()) {
-                        finalM.setAccessible(true);
-                    }
-                    return null;
-                };
-                AccessController.doPrivileged(action);
-            }
-        } catch(Exception e) {
-            throw new EJBException(e);
-        }
-
+        this.handle = InterceptorUtil.unreflect(method, handleType);
     }
 
     Object intercept(final CallbackInvocationContext invContext) 
         throws Throwable {
-        try {
-
-            final Object[] interceptors = invContext
-                    .getInterceptorInstances();
-
-            if( System.getSecurityManager() != null ) {
-                // Wrap actual value insertion in doPrivileged to
-                // allow for private/protected field access.
-                PrivilegedExceptionAction<Object> action = () -> method.invoke(interceptors[index], invContext);
-                return AccessController.doPrivileged(action);
-            }
-            return method.invoke(interceptors[index], invContext);
-        } catch (java.lang.reflect.InvocationTargetException invEx) {
-            throw invEx.getCause();
-        } catch (java.security.PrivilegedActionException paEx) {
-            Throwable th = paEx.getCause();
-            if (th.getCause() != null) {
-                throw th.getCause();
-            }
-            throw th;
-        }
+        return (Object) handle.invokeExact(invContext.getInterceptorInstances()[index], (Object) invContext);
     }
 
     boolean isBeanCallback() {
@@ -999,39 +916,17 @@ class CallbackInterceptor {
 
 class BeanCallbackInterceptor
         extends CallbackInterceptor {
-    private static final Object[] NULL_ARGS = null;
+    private static final MethodType BEAN_CALLBACK_TYPE = MethodType.methodType(void.class, Object.class);
 
     BeanCallbackInterceptor(Method method) {
-        super(-1, method);
+        super(-1, method, BEAN_CALLBACK_TYPE);
     }
 
     @Override
     Object intercept(final CallbackInvocationContext invContext) 
         throws Throwable {
-        try {
-
-            if( System.getSecurityManager() != null ) {
-            // Wrap actual value insertion in doPrivileged to
-            // allow for private/protected field access.
-                PrivilegedExceptionAction<Void> action = () -> {
-                    method.invoke(invContext.getTarget(), NULL_ARGS);
-                    return null;
-                };
-                AccessController.doPrivileged(action);
-            } else {
-                method.invoke(invContext.getTarget(), NULL_ARGS);
-            }
-            return invContext.proceed();
-
-        } catch (java.lang.reflect.InvocationTargetException invEx) {
-            throw invEx.getCause();
-        } catch (java.security.PrivilegedActionException paEx) {
-            Throwable th = paEx.getCause();
-            if (th.getCause() != null) {
-                throw th.getCause();
-            }
-            throw th;
-        }
+        handle.invokeExact(invContext.getTarget());
+        return invContext.proceed();
     }
 
     @Override
@@ -37,20 +37,38 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2018-2019] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2018-2020] [Payara Foundation and/or its affiliates]
 package com.sun.ejb.containers.interceptors;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
 import java.util.Set;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import javax.ejb.EJBException;
 
 public class InterceptorUtil {
 
     private static final Map<Class<?>, Set<Class<?>>> compatiblePrimitiveWrapper = createMapping();
 
+    private static final MethodHandle WRAP_TARGET_EXCEPTION;
+
+    static {
+        try {
+            WRAP_TARGET_EXCEPTION = MethodHandles.lookup().findStatic(InterceptorUtil.class, "wrapTargetException",
+                    MethodType.methodType(Object.class, Throwable.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     static Map<Class<?>, Set<Class<?>>> createMapping() {
         Map<Class<?>, Set<Class<?>>> mapping = new HashMap<>();
         mapping.put(byte.class, asSet(Byte.class));
@@ -119,4 +137,70 @@ public class InterceptorUtil {
         }
     }
 
+
+    /**
+     * Makes the given method accessible and returns a method handle for it, adapted to the given type.
+     * The handle is meant to be resolved once and then invoked without any reflection or privileged action.
+     */
+    public static MethodHandle unreflect(Method method, MethodType type) {
+        return unreflect(method).asType(type);
+    }
+
+    /**
+     * Returns a method handle of type {@code (Object, Object[])Object} invoking the given method on the first
+     * argument with the elements of the second one as parameters. A {@code void} method returns {@code null}.
+     * Anything thrown by the method itself is wrapped in an {@link InvocationTargetException}, so it can be told
+     * apart from a failure to pass the arguments, see {@link #invokeSpread(MethodHandle, Object, Object[])}.
+     */
+    public static MethodHandle unreflectSpread(Method method) {
+        int parameterCount = method.getParameterTypes().length;
+        MethodHandle handle = unreflect(method);
+        MethodHandle wrapTargetException = WRAP_TARGET_EXCEPTION
+                .asType(MethodType.methodType(handle.type().returnType(), Throwable.class));
+        return MethodHandles.catchException(handle, Throwable.class, wrapTargetException)
+                .asType(MethodType.genericMethodType(parameterCount + 1))
+                .asSpreader(Object[].class, parameterCount);
+    }
+
+    /**
+     * Invokes a handle returned by {@link #unreflectSpread(Method)} with the semantics of {@link Method#invoke}.
+     *
+     * @throws InvocationTargetException wrapping anything thrown by the method
+     * @throws IllegalArgumentException if the arguments could not be passed to the method, for instance because
+     * their number or types do not match its parameters or a {@code null} is passed for a primitive parameter
+     */
+    public static Object invokeSpread(MethodHandle handle, Object target, Object[] parameters)
+            throws InvocationTargetException {
+        try {
+            return (Object) handle.invokeExact(target, parameters);
+        } catch (InvocationTargetException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            // the method was not entered, the handle failed to adapt the arguments
+            throw new IllegalArgumentException(t);
+        }
+    }
+
+    private static Object wrapTargetException(Throwable t) throws InvocationTargetException {
+        throw new InvocationTargetException(t);
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            if (System.getSecurityManager() == null) {
+                return unreflectAccessible(method);
+            }
+            PrivilegedExceptionAction<MethodHandle> action = () -> unreflectAccessible(method);
+            return AccessController.doPrivileged(action);
+        } catch (Exception e) {
+            throw new EJBException(e);
+        }
+    }
+
+    private static MethodHandle unreflectAccessible(Method method) throws IllegalAccessException {
+        if (!method.isAccessible()) {
+            method.setAccessible(true);
+        }
+        return MethodHandles.lookup().unreflect(method);
+    }
 }
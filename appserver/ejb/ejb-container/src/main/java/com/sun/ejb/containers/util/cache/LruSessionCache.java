@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 package com.sun.ejb.containers.util.cache;
 
@@ -53,6 +54,8 @@ import org.glassfish.ha.store.api.BackingStore;
 import org.glassfish.ha.store.util.SimpleMetadata;
 import org.glassfish.logging.annotation.LogMessageInfo;
 import org.glassfish.ha.store.api.BackingStoreException;
+import org.glassfish.external.statistics.TimeStatistic;
+import org.glassfish.external.statistics.impl.TimeStatisticImpl;
 
 import java.io.Serializable;
 import java.util.*;
@@ -108,7 +111,7 @@ public class LruSessionCache
     @LogMessageInfo(
         message = "[{0}]: Exiting TrimTimedoutBeans() because current cache state: [{1}]",
         level = "WARNING")
-    private static final String EXITING_TRIM_TIMEDOUT_BEANS = "AS-EJB-00009";
+    protected static final String EXITING_TRIM_TIMEDOUT_BEANS = "AS-EJB-00009";
 
     @LogMessageInfo(
         message = "[{0}]: TrimTimedoutBeans(), resetting head.lPrev",
@@ -126,6 +129,11 @@ public class LruSessionCache
         level = "INFO")
     private static final String SFSB_NOT_FOUND_WHEN_PASSIVATION_DISABLED = "AS-EJB-00049";
 
+    @LogMessageInfo(
+        message = "[{0}]: Exception while writing the off-heap passivated sessions to the backing store",
+        level = "WARNING")
+    private static final String EXCEPTION_FLUSHING_OFF_HEAP_STORE = "AS-EJB-00064";
+
     protected int		    cacheIdleTimeoutInSeconds;
     protected int		    removalTimeoutInSeconds;
 
@@ -134,11 +142,23 @@ public class LruSessionCache
 
     protected boolean removeIfIdle = false;
 
-    private int numVictimsAccessed = 0;
+    protected int numVictimsAccessed = 0;
 
     protected SFSBContainerCallback     container;
     protected BackingStore<Serializable, SimpleMetadata> backingStore;
 
+    // optional tier holding passivated beans in direct memory before the backingStore
+    protected OffHeapSessionStore offHeapStore;
+
+    private final TimeStatisticImpl passivationTime = new TimeStatisticImpl(0, 0, 0, 0,
+        "PassivationTime", "milliseconds",
+        "Time spent writing the state of passivated beans to the session store",
+        System.currentTimeMillis(), System.currentTimeMillis());
+    private final TimeStatisticImpl activationTime = new TimeStatisticImpl(0, 0, 0, 0,
+        "ActivationTime", "milliseconds",
+        "Time spent reading the state of passivated beans from the session store",
+        System.currentTimeMillis(), System.currentTimeMillis());
+
     private static final byte CACHE_ITEM_VALID = 0;
     private static final byte CACHE_ITEM_LOADING = 1;
     private static final byte CACHE_ITEM_REMOVED = 2;
@@ -166,6 +186,9 @@ public class LruSessionCache
     public void destroy() {
         this.currentCacheState = STATE_DESTROYED;
         this.container = null;
+        if (offHeapStore != null) {
+            offHeapStore.destroy();
+        }
 
         super.destroy();
     }
@@ -196,6 +219,19 @@ public class LruSessionCache
         this.backingStore = store;
     }
 
+    /**
+     * Keeps up to the given number of bytes of passivated beans in direct
+     * memory, the eldest ones being written to the backingStore when it is full.
+     */
+    public void setOffHeapStoreCapacity(long capacity) {
+        this.offHeapStore = new OffHeapSessionStore(capacity, OffHeapSessionStore.DEFAULT_BLOCK_SIZE,
+            (sessionKey, state, isNew) -> {
+                if (backingStore != null) {
+                    backingStore.save(sessionKey, state, isNew);
+                }
+            });
+    }
+
     public void setStatefulSessionStoreMonitor(
 	StatefulSessionStoreMonitor storeMonitor)
     {
@@ -407,6 +443,9 @@ public class LruSessionCache
             //  remove it from BackingStore outside sync block
 	    if (removeFromStore) {
 		try {
+            if (offHeapStore != null) {
+                offHeapStore.remove((Serializable) sessionKey);
+            }
             if (backingStore != null) {
 		        backingStore.remove((Serializable) sessionKey);
             }
@@ -529,9 +568,13 @@ public class LruSessionCache
 
         Object object = null;
 
+        long startTime = System.currentTimeMillis();
         try {
             SimpleMetadata beanState = null;
-            if (backingStore != null) {
+            if (offHeapStore != null) {
+                beanState = offHeapStore.take(sessionKey);
+            }
+            if (beanState == null && backingStore != null) {
                 beanState = backingStore.load(sessionKey, null);
             }
             byte[] data = (beanState != null)
@@ -550,6 +593,8 @@ public class LruSessionCache
             _logger.log(Level.SEVERE, EXCEPTION_LOADING_BACKUP_SESSION, new Object[]{cacheName, sessionKey, ex});
         } catch ( Error ex ) {
             _logger.log(Level.SEVERE, ERROR_LOADING_BACKUP_SESSION, new Object[]{cacheName, sessionKey, ex});
+        } finally {
+            activationTime.incrementCount(System.currentTimeMillis() - startTime);
         }
 
         return object;
@@ -571,15 +616,20 @@ public class LruSessionCache
         //  this is called on an async thread and the client
         //  already has the correct version
         beanState.setVersion(ctx.getVersion());
+        long startTime = System.currentTimeMillis();
 	    try {
-            if(backingStore != null) {
+            if (offHeapStore != null && offHeapStore.save(sessionKey, beanState, !ctx.existsInStore())) {
+                status = true;
+            } else if(backingStore != null) {
                 backingStore.save(sessionKey, beanState, !ctx.existsInStore());
                 // sfsbStoreMonitor.setPassivationSize(data.length);
                 status = true;
             }
 	    } catch (BackingStoreException sfsbEx) {
 		_logger.log(Level.WARNING, EXCEPTION_DURING_PASSIVATE_SAVE, new Object[]{cacheName, sessionKey, sfsbEx});
-	    }
+	    } finally {
+            passivationTime.incrementCount(System.currentTimeMillis() - startTime);
+        }
 	}
 
 	return status;
@@ -635,6 +685,18 @@ public class LruSessionCache
     }
 
     public void shutdown() {
+        for (StatefulEJBContext ctx : trimAll()) {
+            container.passivateEJB(ctx);
+        }
+        flushOffHeapStore();
+    }
+
+    /**
+     * Marks all the beans in the cache as trimmed, for passivation on shutdown.
+     *
+     * @return the contexts of the trimmed beans
+     */
+    protected List<StatefulEJBContext> trimAll() {
         ArrayList<StatefulEJBContext> valueList = new ArrayList<StatefulEJBContext>();
 
         synchronized (this) {
@@ -656,11 +718,41 @@ public class LruSessionCache
             }
         }
 
-        for (StatefulEJBContext ctx : valueList) {
-            container.passivateEJB(ctx);
+        return valueList;
+    }
+
+    /**
+     * Writes the beans passivated to the off-heap tier to the backingStore,
+     * so that they survive a restart.
+     */
+    protected void flushOffHeapStore() {
+        if (offHeapStore != null) {
+            try {
+                offHeapStore.flush();
+            } catch (BackingStoreException sfsbEx) {
+                _logger.log(Level.WARNING, EXCEPTION_FLUSHING_OFF_HEAP_STORE, new Object[]{cacheName, sfsbEx});
+            }
         }
     }
 
+    /**
+     * Removes the beans passivated to the off-heap tier whose removal timeout
+     * has elapsed.
+     *
+     * @return the number of beans removed
+     */
+    public int removeExpiredOffHeapSessions() {
+        return (offHeapStore == null) ? 0 : offHeapStore.removeExpired(System.currentTimeMillis());
+    }
+
+    protected boolean isCacheRunning() {
+        return currentCacheState == STATE_RUNNING;
+    }
+
+    protected int getCacheState() {
+        return currentCacheState;
+    }
+
 
     /**
      * trim the timedOut entries from the cache.
@@ -872,7 +964,17 @@ public class LruSessionCache
 	    .append("Size=").append(entryCount).append("; ")
 	    .append("HitCount=").append(hitCount).append("; ")
 	    .append("MissCount=").append(missCount).append("; ")
-	    .append("Passivations=").append(getNumPassivations()).append("; ");
+	    .append("Passivations=").append(getNumPassivations()).append("; ")
+	    .append("PassivationTime=").append(passivationTime.getTotalTime()).append("ms/")
+	    .append(passivationTime.getCount()).append("; ")
+	    .append("ActivationTime=").append(activationTime.getTotalTime()).append("ms/")
+	    .append(activationTime.getCount()).append("; ");
+	if (offHeapStore != null) {
+	    sbuf.append("OffHeap=").append(offHeapStore.getEntryCount()).append(" beans/")
+	        .append(offHeapStore.getUsedBytes()).append(" of ")
+	        .append(offHeapStore.getCapacity()).append(" bytes, ")
+	        .append(offHeapStore.getSpillCount()).append(" spilled; ");
+	}
 	if (configData != null) {
 	    sbuf.append(configData);
 	}
@@ -909,6 +1011,16 @@ public class LruSessionCache
         return 0;
     }
 
+    @Override
+    public TimeStatistic getPassivationTime() {
+        return passivationTime;
+    }
+
+    @Override
+    public TimeStatistic getActivationTime() {
+        return activationTime;
+    }
+
     public int getNumPassivationSuccess() {
 	/*return (sfsbStoreMonitor == null)
         ? 0 : sfsbStoreMonitor.getNumPassivationSuccess(); */
@@ -0,0 +1,448 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.ejb.containers.util.cache;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.ejb.LogFacade;
+import org.glassfish.ha.store.api.BackingStoreException;
+import org.glassfish.ha.store.util.SimpleMetadata;
+import org.glassfish.logging.annotation.LogMessageInfo;
+
+/**
+ * Keeps the serialized state of passivated stateful session beans in direct
+ * memory, outside of the Java heap, before it reaches the backing store.
+ * <p>
+ * The memory is allocated once and split into blocks of a fixed size, the
+ * state of a bean taking as many blocks as it needs. When there are not enough
+ * free blocks left, the states that were stored first are spilled to the
+ * backing store to make room. A state is taken out of this store when its bean
+ * is activated again, so only passivated beans use the memory.
+ * <p>
+ * Spilled states are written to the backing store without holding the lock of
+ * this store. Until the backing store has them they are kept on the heap, where
+ * they can still be taken or removed, and the writes that failed are retried on
+ * the next save. Only one state of a bean is written at a time, so an older
+ * state can not overwrite a newer one in the backing store. When the states
+ * waiting on the heap take as many bytes as the direct memory, new states are
+ * refused and go to the backing store directly.
+ */
+public class OffHeapSessionStore {
+
+    private static final Logger _logger = LogFacade.getLogger();
+
+    @LogMessageInfo(
+        message = "Cannot write the passivated session [{0}] to the backing store, keeping it on the heap until it can be written: {1}",
+        level = "WARNING")
+    private static final String SPILL_FAILED = "AS-EJB-00065";
+
+    /**
+     * Where the states that do not fit in memory any more are written to.
+     */
+    public interface SpillTarget {
+        void save(Serializable sessionKey, SimpleMetadata state, boolean isNew)
+            throws BackingStoreException;
+    }
+
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private final int blockSize;
+    private final int blockCount;
+    private final int maxBlocksPerEntry;
+    private final SpillTarget spillTarget;
+
+    // states in the order they were stored, eldest first
+    private final LinkedHashMap<Serializable, Entry> entries = new LinkedHashMap<>();
+
+    // states moved out of memory that the backing store does not have yet
+    private final Map<Serializable, Spill> spills = new HashMap<>();
+    private long spilledBytes;
+
+    // states being written to the backing store, at most one per bean
+    private final Map<Serializable, Spill> writing = new HashMap<>();
+
+    private ByteBuffer memory;
+    private final int[] freeBlocks;
+    private int freeCount;
+
+    private long spillCount;
+
+    /**
+     * @param capacity number of bytes of direct memory to allocate
+     * @param blockSize size of the blocks the memory is split into
+     * @param spillTarget where to write the states evicted from memory
+     */
+    public OffHeapSessionStore(long capacity, int blockSize, SpillTarget spillTarget) {
+        this.blockSize = blockSize;
+        this.blockCount = (int) (Math.min(capacity, Integer.MAX_VALUE) / blockSize);
+        if (blockCount <= 0) {
+            throw new IllegalArgumentException("Off-heap session store capacity " + capacity
+                + " is smaller than the block size " + blockSize);
+        }
+        // a single bean may not take more than a quarter of the store
+        this.maxBlocksPerEntry = Math.max(1, blockCount / 4);
+        this.spillTarget = spillTarget;
+        this.memory = ByteBuffer.allocateDirect(blockCount * blockSize);
+        this.freeBlocks = new int[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            freeBlocks[i] = blockCount - 1 - i;
+        }
+        this.freeCount = blockCount;
+    }
+
+    /**
+     * Stores the state of a passivated bean, spilling the eldest states to the
+     * backing store when there is not enough room for it.
+     *
+     * @return false if the state is too large for this store or too many states
+     * wait to be spilled, in which case it should go to the backing store
+     * directly. Any older state of the bean has been dropped or written by then.
+     * @throws BackingStoreException if spilling an older state failed, in which
+     * case the given state is not stored and the older one is kept until it can
+     * be written
+     */
+    public boolean save(Serializable sessionKey, SimpleMetadata state, boolean isNew)
+        throws BackingStoreException
+    {
+        byte[] data = state.getState();
+        int needed = (data.length + blockSize - 1) / blockSize;
+
+        List<Spill> toSpill = new ArrayList<>();
+        List<Spill> toRetry = new ArrayList<>();
+        Entry entry = null;
+        synchronized (this) {
+            release(entries.remove(sessionKey));
+            forget(sessionKey);
+            for (Spill spill : spills.values()) {
+                if (spill.failures > 0 && !writing.containsKey(spill.sessionKey)) {
+                    toRetry.add(spill);
+                }
+            }
+            if (memory == null || needed > maxBlocksPerEntry || spilledBytes >= getCapacity()) {
+                // the caller writes the state itself, after any older one
+                awaitWrite(sessionKey);
+            } else {
+                while (freeCount < needed) {
+                    toSpill.add(moveEldestToHeap());
+                }
+
+                int[] blocks = new int[needed];
+                for (int i = 0; i < needed; i++) {
+                    blocks[i] = freeBlocks[--freeCount];
+                    int offset = i * blockSize;
+                    memory.clear().position(blocks[i] * blockSize);
+                    memory.put(data, offset, Math.min(blockSize, data.length - offset));
+                }
+                entry = new Entry(blocks, data.length, state, isNew);
+                entries.put(sessionKey, entry);
+            }
+        }
+
+        if (entry != null) {
+            try {
+                spill(toSpill);
+            } catch (BackingStoreException e) {
+                synchronized (this) {
+                    if (entries.remove(sessionKey, entry)) {
+                        release(entry);
+                    }
+                }
+                throw e;
+            }
+        }
+
+        try {
+            spill(toRetry);
+        } catch (BackingStoreException e) {
+            // already logged, the states are kept for the next save
+        }
+        return entry != null;
+    }
+
+    /**
+     * Removes the state of a bean from this store and returns it.
+     *
+     * @return the state, or null if it is not held by this store
+     */
+    public synchronized SimpleMetadata take(Serializable sessionKey) {
+        Entry entry = entries.remove(sessionKey);
+        if (entry == null) {
+            Spill spill = forget(sessionKey);
+            return spill == null ? null : spill.state;
+        }
+        SimpleMetadata state = read(entry);
+        release(entry);
+        return state;
+    }
+
+    /**
+     * Drops the state of a bean. Returns once the state is not being written to
+     * the backing store any more, so the caller can remove it from there.
+     */
+    public synchronized boolean remove(Serializable sessionKey) {
+        Entry entry = entries.remove(sessionKey);
+        release(entry);
+        boolean removed = forget(sessionKey) != null || entry != null;
+        awaitWrite(sessionKey);
+        return removed;
+    }
+
+    /**
+     * Drops the states of the beans that have not been accessed within their
+     * removal timeout.
+     *
+     * @return the number of states removed
+     */
+    public synchronized int removeExpired(long now) {
+        int removed = 0;
+        Iterator<Entry> iter = entries.values().iterator();
+        while (iter.hasNext()) {
+            Entry entry = iter.next();
+            if (entry.maxInactiveInterval > 0
+                    && entry.lastAccessTime + entry.maxInactiveInterval < now) {
+                iter.remove();
+                release(entry);
+                removed++;
+            }
+        }
+        Iterator<Spill> spillIter = spills.values().iterator();
+        while (spillIter.hasNext()) {
+            SimpleMetadata state = spillIter.next().state;
+            if (state.getMaxInactiveInterval() > 0
+                    && state.getLastAccessTime() + state.getMaxInactiveInterval() < now) {
+                spillIter.remove();
+                spilledBytes -= state.getState().length;
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Writes all the states held in memory to the backing store.
+     */
+    public void flush() throws BackingStoreException {
+        List<Spill> toSpill;
+        synchronized (this) {
+            while (!entries.isEmpty()) {
+                moveEldestToHeap();
+            }
+            toSpill = new ArrayList<>(spills.values());
+        }
+        spill(toSpill);
+    }
+
+    /**
+     * Drops all the states and lets the direct memory be reclaimed.
+     */
+    public synchronized void destroy() {
+        entries.clear();
+        spills.clear();
+        spilledBytes = 0;
+        freeCount = 0;
+        memory = null;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size() + spills.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return (long) (blockCount - freeCount) * blockSize;
+    }
+
+    public long getCapacity() {
+        return (long) blockCount * blockSize;
+    }
+
+    public synchronized long getSpillCount() {
+        return spillCount;
+    }
+
+    /**
+     * Frees the memory of the eldest state, keeping the state on the heap
+     * until it is spilled. Must hold the lock.
+     */
+    private Spill moveEldestToHeap() {
+        Iterator<Map.Entry<Serializable, Entry>> iter = entries.entrySet().iterator();
+        Map.Entry<Serializable, Entry> eldest = iter.next();
+        Entry entry = eldest.getValue();
+        iter.remove();
+
+        Spill spill = new Spill(eldest.getKey(), read(entry), entry.isNew);
+        release(entry);
+        spills.put(spill.sessionKey, spill);
+        spilledBytes += spill.state.getState().length;
+        return spill;
+    }
+
+    /**
+     * Drops the state of a bean waiting to be spilled. Must hold the lock.
+     */
+    private Spill forget(Serializable sessionKey) {
+        Spill spill = spills.remove(sessionKey);
+        if (spill != null) {
+            spilledBytes -= spill.state.getState().length;
+        }
+        return spill;
+    }
+
+    /**
+     * Waits until no state of the bean is being written. Must hold the lock.
+     */
+    private void awaitWrite(Serializable sessionKey) {
+        boolean interrupted = false;
+        while (writing.containsKey(sessionKey)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes states to the backing store, stopping at the first failure. Must
+     * not hold the lock.
+     */
+    private void spill(List<Spill> toSpill) throws BackingStoreException {
+        for (Spill spill : toSpill) {
+            synchronized (this) {
+                if (writing.get(spill.sessionKey) == spill) {
+                    // another thread is writing it
+                    continue;
+                }
+                awaitWrite(spill.sessionKey);
+                if (spills.get(spill.sessionKey) != spill) {
+                    // written, activated or passivated again meanwhile
+                    continue;
+                }
+                writing.put(spill.sessionKey, spill);
+            }
+
+            try {
+                spillTarget.save(spill.sessionKey, spill.state, spill.isNew);
+            } catch (BackingStoreException | RuntimeException e) {
+                int failures;
+                synchronized (this) {
+                    writing.remove(spill.sessionKey);
+                    failures = ++spill.failures;
+                    notifyAll();
+                }
+                _logger.log(failures == 1 ? Level.WARNING : Level.FINE, SPILL_FAILED,
+                    new Object[]{spill.sessionKey, e});
+                throw e;
+            }
+            synchronized (this) {
+                writing.remove(spill.sessionKey);
+                // only forget the state once the backing store has it
+                if (spills.get(spill.sessionKey) == spill) {
+                    forget(spill.sessionKey);
+                    spillCount++;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private SimpleMetadata read(Entry entry) {
+        byte[] data = new byte[entry.length];
+        for (int i = 0; i < entry.blocks.length; i++) {
+            int offset = i * blockSize;
+            memory.clear().position(entry.blocks[i] * blockSize);
+            memory.get(data, offset, Math.min(blockSize, data.length - offset));
+        }
+        return new SimpleMetadata(entry.version, entry.lastAccessTime,
+            entry.maxInactiveInterval, data);
+    }
+
+    private void release(Entry entry) {
+        if (entry != null && memory != null) {
+            for (int block : entry.blocks) {
+                freeBlocks[freeCount++] = block;
+            }
+        }
+    }
+
+    private static final class Spill {
+        final Serializable sessionKey;
+        final SimpleMetadata state;
+        final boolean isNew;
+        // guarded by the lock of the store
+        int failures;
+
+        Spill(Serializable sessionKey, SimpleMetadata state, boolean isNew) {
+            this.sessionKey = sessionKey;
+            this.state = state;
+            this.isNew = isNew;
+        }
+    }
+
+    private static final class Entry {
+        final int[] blocks;
+        final int length;
+        final long version;
+        final long lastAccessTime;
+        final long maxInactiveInterval;
+        final boolean isNew;
+
+        Entry(int[] blocks, int length, SimpleMetadata state, boolean isNew) {
+            this.blocks = blocks;
+            this.length = length;
+            this.version = state.getVersion();
+            this.lastAccessTime = state.getLastAccessTime();
+            this.maxInactiveInterval = state.getMaxInactiveInterval();
+            this.isNew = isNew;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.ejb.containers.util.cache;
+
+import com.sun.appserv.util.cache.Constants;
+import com.sun.ejb.spi.container.SFSBContainerCallback;
+import com.sun.ejb.spi.container.StatefulEJBContext;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * LRU session cache whose LRU list is split into segments, each with its own
+ * lock, so that looking up, adding and evicting beans does not go through a
+ * lock on the whole cache.
+ * <p>
+ * A bean belongs to the segment picked by the hash of its session key. Victims
+ * are taken from the tail of the largest segment. Moving an accessed bean to
+ * the head of its segment is skipped when the segment is busy, so the order is
+ * only approximately LRU under contention.
+ */
+public class SegmentedLruSessionCache
+    extends LruSessionCache
+{
+
+    private static final int MAX_SEGMENTS = 64;
+
+    private Segment[] segments;
+    private int segmentMask;
+
+    private final AtomicInteger segmentTrimCount = new AtomicInteger();
+
+    public SegmentedLruSessionCache(String cacheName,
+                                    SFSBContainerCallback container,
+                                    int cacheIdleTime, int removalTime) {
+        super(cacheName, container, cacheIdleTime, removalTime);
+    }
+
+    @Override
+    public void init(int maxEntries, float loadFactor, Properties props) {
+        super.init(maxEntries, loadFactor, props);
+
+        // a power of two close to the number of cores, without having
+        // segments of less than a few beans
+        int wanted = Math.min(Math.min(MAX_SEGMENTS,
+            Runtime.getRuntime().availableProcessors()), Math.max(1, threshold / 8));
+        int count = 1;
+        while (count < wanted) {
+            count <<= 1;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment();
+        }
+        segmentMask = count - 1;
+    }
+
+    @Override
+    protected CacheItem itemAdded(CacheItem item) {
+        LruCacheItem lc = (LruCacheItem) item;
+        Segment segment = segmentFor(lc);
+
+        segment.lock();
+        try {
+            lc.setLastAccessed(System.currentTimeMillis());
+            segment.addFirst(lc);
+        } finally {
+            segment.unlock();
+        }
+
+        return isThresholdReached() ? trimLargestSegment() : null;
+    }
+
+    @Override
+    protected void itemAccessed(CacheItem item) {
+        LruCacheItem lc = (LruCacheItem) item;
+        Segment segment = segmentFor(lc);
+
+        if (lc.isTrimmed()) {
+            // picked as a victim but used again before being passivated
+            boolean restored = false;
+            segment.lock();
+            try {
+                if (lc.isTrimmed()) {
+                    lc.setTrimmed(false);
+                    lc.setLastAccessed(System.currentTimeMillis());
+                    segment.addFirst(lc);
+                    restored = true;
+                }
+            } finally {
+                segment.unlock();
+            }
+
+            if (restored) {
+                synchronized (this) {
+                    numVictimsAccessed += 1;
+                }
+                if (isThresholdReached()) {
+                    CacheItem overflow = trimLargestSegment();
+                    if (overflow != null) {
+                        trimItem(overflow);
+                    }
+                }
+            }
+            return;
+        }
+
+        // the LRU order is only a hint, do not wait for a busy segment
+        if (segment.tryLock()) {
+            try {
+                if (!lc.isTrimmed()) {
+                    lc.setLastAccessed(System.currentTimeMillis());
+                    segment.moveToFirst(lc);
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    @Override
+    protected void itemRemoved(CacheItem item) {
+        LruCacheItem lc = (LruCacheItem) item;
+        Segment segment = segmentFor(lc);
+
+        segment.lock();
+        try {
+            // if the item is already trimmed from the LRU list, nothing to do.
+            if (!lc.isTrimmed()) {
+                segment.unlink(lc);
+            }
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    protected CacheItem trimLru(long currentTime) {
+        return trimLargestSegment();
+    }
+
+    /**
+     * trim the timedOut entries from the cache.
+     * This call is to be scheduled by a thread managed by the container.
+     * Each segment is scanned from its tail until a bean that is not idle
+     * is found.
+     */
+    @Override
+    public void trimTimedoutItems(int maxTrimCount) {
+        long idleThresholdTime = System.currentTimeMillis() - cacheIdleTimeoutInSeconds*1000L;
+        ArrayList<LruCacheItem> victimList = new ArrayList<>();
+
+        if(_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE,
+                "[" + cacheName + "]: TrimTimedoutBeans started...");
+        }
+
+        for (Segment segment : segments) {
+            if (!isCacheRunning()) {
+                _logger.log(Level.WARNING, EXITING_TRIM_TIMEDOUT_BEANS, new Object[]{cacheName, getCacheState()});
+                break;
+            }
+
+            segment.lock();
+            try {
+                LruCacheItem item = segment.tail;
+                while (item != null) {
+                    LruCacheItem prev = item.getLPrev();
+                    StatefulEJBContext ctx = (StatefulEJBContext) item.getValue();
+                    // beans still being created or activated have no context yet
+                    if (ctx != null) {
+                        if (ctx.getLastAccessTime() > idleThresholdTime || !ctx.canBePassivated()) {
+                            break;
+                        }
+                        segment.unlink(item);
+                        item.setTrimmed(true);
+                        victimList.add(item);
+                    }
+                    item = prev;
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+
+        segmentTrimCount.addAndGet(victimList.size());
+        for (LruCacheItem item : victimList) {
+            trimItem(item);
+        }
+
+        if(_logger.isLoggable(Level.FINE)) {
+            _logger.log(Level.FINE,
+                        "[" + cacheName + "]: TrimTimedoutBeans "
+                        + " finished after removing " + victimList.size() + " idle beans");
+        }
+    }
+
+    /**
+     * get an Iterator for the values stored in the cache
+     * @returns an Iterator
+     */
+    @Override
+    public Iterator values() {
+        ArrayList<Object> valueList = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                for (LruCacheItem item = segment.tail; item != null; item = item.getLPrev()) {
+                    if (item.getValue() != null) {
+                        valueList.add(item.getValue());
+                    }
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        return valueList.iterator();
+    }
+
+    @Override
+    protected List<StatefulEJBContext> trimAll() {
+        ArrayList<StatefulEJBContext> valueList = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                for (LruCacheItem item = segment.tail; item != null; item = item.getLPrev()) {
+                    StatefulEJBContext ctx = (StatefulEJBContext) item.getValue();
+                    if (ctx != null) {
+                        item.setTrimmed(true);
+                        valueList.add(ctx);
+                    }
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        return valueList;
+    }
+
+    @Override
+    public Object getStatByName(String key) {
+        if (Constants.STAT_LRUCACHE_LIST_LENGTH.equals(key)) {
+            return getListLength();
+        } else if (Constants.STAT_LRUCACHE_TRIM_COUNT.equals(key)) {
+            return segmentTrimCount.get();
+        }
+        return super.getStatByName(key);
+    }
+
+    @Override
+    public Map getStats() {
+        Map stats = super.getStats();
+        stats.put(Constants.STAT_LRUCACHE_LIST_LENGTH, getListLength());
+        stats.put(Constants.STAT_LRUCACHE_TRIM_COUNT, segmentTrimCount.get());
+        return stats;
+    }
+
+    private int getListLength() {
+        int length = 0;
+        for (Segment segment : segments) {
+            length += segment.size;
+        }
+        return length;
+    }
+
+    private Segment segmentFor(CacheItem item) {
+        int h = item.getHashCode();
+        return segments[(h ^ (h >>> 16)) & segmentMask];
+    }
+
+    /**
+     * Takes the least recently used bean of the largest segment off the LRU
+     * list.
+     *
+     * @return the victim, or null if all the segments are empty
+     */
+    private LruCacheItem trimLargestSegment() {
+        for (int attempt = 0; attempt < segments.length; attempt++) {
+            Segment largest = segments[0];
+            for (Segment segment : segments) {
+                if (segment.size > largest.size) {
+                    largest = segment;
+                }
+            }
+
+            largest.lock();
+            try {
+                LruCacheItem victim = largest.tail;
+                if (victim != null) {
+                    largest.unlink(victim);
+                    victim.setTrimmed(true);
+                    segmentTrimCount.incrementAndGet();
+                    return victim;
+                }
+            } finally {
+                largest.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One segment of the LRU list, the lock guards its links and size.
+     */
+    private static final class Segment extends ReentrantLock {
+
+        private static final long serialVersionUID = 1L;
+
+        LruCacheItem head;
+        LruCacheItem tail;
+        volatile int size;
+
+        void addFirst(LruCacheItem item) {
+            item.setLPrev(null);
+            item.setLNext(head);
+            if (head != null) {
+                head.setLPrev(item);
+            } else {
+                tail = item;
+            }
+            head = item;
+            size++;
+        }
+
+        void moveToFirst(LruCacheItem item) {
+            if (item != head) {
+                unlink(item);
+                addFirst(item);
+            }
+        }
+
+        void unlink(LruCacheItem item) {
+            LruCacheItem prev = item.getLPrev();
+            LruCacheItem next = item.getLNext();
+
+            if (prev != null) {
+                prev.setLNext(next);
+            } else {
+                head = next;
+            }
+            if (next != null) {
+                next.setLPrev(prev);
+            } else {
+                tail = prev;
+            }
+            item.setLPrev(null);
+            item.setLNext(null);
+            size--;
+        }
+    }
+}
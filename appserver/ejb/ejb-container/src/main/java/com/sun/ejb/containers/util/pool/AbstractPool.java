@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 /**
  * <BR> <I>$Source: /cvs/glassfish/appserv-core/src/java/com/sun/ejb/containers/util/pool/AbstractPool.java,v $</I>
@@ -54,6 +54,7 @@ import com.sun.ejb.monitoring.stats.EjbMonitoringUtils;
 import org.glassfish.flashlight.provider.ProbeProviderFactory;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -93,7 +94,7 @@ public abstract class AbstractPool
     protected ClassLoader	   containerClassLoader;
 
     protected int		   destroyedCount = 0;
-    protected int 		   poolSuccess = 0;
+    protected final LongAdder	   poolSuccess = new LongAdder();
     protected String		   poolName;
     protected int                  poolReturned = 0;
 
@@ -162,7 +163,7 @@ public abstract class AbstractPool
     }
 
     public int getPoolSuccess() {
-        return poolSuccess;
+        return poolSuccess.intValue();
     }
 
     public int getSize() {
@@ -201,7 +202,7 @@ public abstract class AbstractPool
     //Methods on EJBPoolStatsProvider
     public void appendStats(StringBuilder sbuf) {
 	sbuf.append("[Pool: ")
-	    .append("SZ=").append(list.size()).append("; ")
+	    .append("SZ=").append(getSize()).append("; ")
 	    .append("CC=").append(createdCount).append("; ")
 	    .append("DC=").append(destroyedCount).append("; ")
 	    .append("WC=").append(waitCount).append("; ")
@@ -217,7 +218,7 @@ public abstract class AbstractPool
     }
 
     public int getNumBeansInPool() {
-	return list.size();
+	return getSize();
     }
 
     public int getNumThreadsWaiting() {
@@ -238,7 +239,7 @@ public abstract class AbstractPool
             sbuf.append("createdCount=").append(createdCount).append(";")
                 .append("destroyedCount=").append(destroyedCount).append(";")
                 .append("waitCount=").append(waitCount).append(";")
-                .append("size=").append(list.size()).append(";");
+                .append("size=").append(getSize()).append(";");
         }
         sbuf.append("maxPoolSize=").append(maxPoolSize).append(";");
         return sbuf.toString();
@@ -256,7 +257,7 @@ public abstract class AbstractPool
             .append("TD=").append(destroyedCount).append(",")
 			.append("PR=").append(poolReturned).append(",")
             .append("TW=").append(waitCount).append(",")
-            .append("CS=").append(list.size()).append(",")
+            .append("CS=").append(getSize()).append(",")
             .append("MS=").append(maxPoolSize);
 
         return sbuf.toString();
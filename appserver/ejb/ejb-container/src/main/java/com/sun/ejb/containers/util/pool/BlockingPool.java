@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2018-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.ejb.containers.util.pool;
 
@@ -64,7 +64,7 @@ public class BlockingPool extends NonBlockingPool {
         long t1, totalWaitTime = 0;
         synchronized (list) {
             while (!singletonBeanPool) {
-                if (list.size() > 0) {
+                if (getSize() > 0) {
                     return super.getObject(param);
                 } else if ((createdCount - destroyedCount) < maxPoolSize) {
                     return super.getObject(param);
@@ -82,7 +82,7 @@ public class BlockingPool extends NonBlockingPool {
                     }
                     waitCount--;
                     totalWaitTime += System.currentTimeMillis() - t1;
-                    if (list.size() > 0) {
+                    if (getSize() > 0) {
                         return super.getObject(param);
                     } else if (maxWaitTimeInMillis > 0 && totalWaitTime >= maxWaitTimeInMillis) {
                         throw new PoolException("Pool Instance not obtained" +
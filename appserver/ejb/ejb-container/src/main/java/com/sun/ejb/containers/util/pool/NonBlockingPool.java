@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 /**
  * <BR> <I>$Source: /cvs/glassfish/appserv-core/src/java/com/sun/ejb/containers/util/pool/NonBlockingPool.java,v $</I>
@@ -49,23 +49,35 @@
 package com.sun.ejb.containers.util.pool;
 
 import com.sun.ejb.containers.EJBContextImpl;
+import com.sun.ejb.containers.EjbContainerUtil;
 import com.sun.ejb.containers.EjbContainerUtilImpl;
 import com.sun.enterprise.util.Utility;
+import fish.payara.nucleus.executorservice.PayaraExecutorService;
 
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 /**
  * <p>NonBlockingPool pool provides the basic implementation of an object
- * pool. The implementation uses a linked list to maintain a list of
- * (available) objects. If the pool is empty it simply creates one using the
+ * pool. If the pool is empty it simply creates one using the
  * ObjectFactory instance. Subclasses can change this behaviour by overriding
  * getObject(...) and returnObject(....) methods. This class provides basic
  * support for synchronization, event notification, pool shutdown
  * and pool object recycling. It also does some very basic bookkeeping like the
  * number of objects created, number of threads waiting for object.
+ * <p> The available objects are kept in stripes, one per processor, so that
+ * getObject() and returnObject() do not take a lock when the pool has an
+ * object to hand out. A thread uses its own stripe first and steals from the
+ * other stripes when it is empty. The {@link #list} monitor only guards the
+ * creation and destruction book keeping, resizing and singleton bean pools.
  * <p> Subclasses can make use of these book-keeping data to provide complex
  * pooling mechanism like LRU / MRU / Random. Also, note that AbstractPool
  * does not have a notion of  pool limit. It is upto to the derived classes
@@ -77,7 +89,8 @@ public class NonBlockingPool
 {
 
     private TimerTask	  poolTimerTask;
-    protected boolean	  addedResizeTask = false;
+    private ScheduledFuture<?> poolResizeFuture;
+    protected final AtomicBoolean addedResizeTask = new AtomicBoolean();
     volatile protected boolean	  addedIdleBeanWork = false;
     protected boolean	  inResizing = false;
     private boolean	  maintainSteadySize = false;
@@ -92,10 +105,17 @@ public class NonBlockingPool
 
     // Set to true after close().  Prevents race condition
     // of async resize task kicking in after close().
-    private boolean poolClosed = false;
+    private volatile boolean poolClosed = false;
 
     private int		  resizeTaskCount;
 
+    /** Available objects, most recently returned first in each stripe */
+    private ConcurrentLinkedDeque<Object>[] stripes = createStripes(1);
+    private int stripeMask;
+
+    /** Number of available objects across all stripes */
+    private final AtomicInteger available = new AtomicInteger();
+
     protected NonBlockingPool() {
     }
 
@@ -139,13 +159,26 @@ public class NonBlockingPool
 
         this.containerClassLoader = loader;
 
+        // no point having more stripes than objects the pool may hold
+        int stripeCount = this.singletonBeanPool ? 1
+                : Math.min(Runtime.getRuntime().availableProcessors(), this.maxPoolSize);
+        this.stripes = createStripes(stripeCount);
+        this.stripeMask = stripes.length - 1;
+
         this.maintainSteadySize = !this.singletonBeanPool && (this.steadyPoolSize > 0);
         if ((this.idleTimeoutInSeconds > 0) && (this.resizeQuantity > 0)) {
             try {
                 this.poolTimerTask =  new PoolResizeTimerTask();
-                EjbContainerUtilImpl.getInstance().getTimer().scheduleAtFixedRate
-                    (poolTimerTask, idleTimeoutInSeconds*1000L,
-                     idleTimeoutInSeconds*1000L);
+                EjbContainerUtil ejbContainerUtil = EjbContainerUtilImpl.getInstance();
+                PayaraExecutorService executor = ejbContainerUtil.getPayaraExecutorService();
+                if (executor != null) {
+                    poolResizeFuture = executor.scheduleAtFixedRate(poolTimerTask,
+                            idleTimeoutInSeconds, idleTimeoutInSeconds, TimeUnit.SECONDS);
+                } else {
+                    ejbContainerUtil.getTimer().scheduleAtFixedRate
+                        (poolTimerTask, idleTimeoutInSeconds*1000L,
+                         idleTimeoutInSeconds*1000L);
+                }
                 if(_logger.isLoggable(Level.FINE)) {
                     _logger.log(Level.FINE, "[Pool-{0}]: Added PoolResizeTimerTask...", poolName);
                 }
@@ -157,76 +190,137 @@ public class NonBlockingPool
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private static ConcurrentLinkedDeque<Object>[] createStripes(int count) {
+        // round up to a power of two so a stripe can be picked with a mask
+        int size = count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+        ConcurrentLinkedDeque<Object>[] newStripes = new ConcurrentLinkedDeque[size];
+        for (int i = 0; i < size; i++) {
+            newStripes[i] = new ConcurrentLinkedDeque<>();
+        }
+        return newStripes;
+    }
 
-    @Override
-    public Object getObject(Object param)
-    {
-        boolean toAddResizeTask = false;
-        Object obj = null;
-        synchronized (list) {
-            int size = list.size();
-            if (size > steadyPoolSize) {
-                poolSuccess++;
-                return list.remove(size-1);
-            } else if (size > 0) {
-                poolSuccess++;
-                if ((maintainSteadySize) && !addedResizeTask) {
-                    toAddResizeTask = addedResizeTask = true;
-                    obj = list.remove(size-1);
-                } else {
-                    return list.remove(size-1);
-                }
-            } else if(!singletonBeanPool){
-                if ((maintainSteadySize) && !addedResizeTask) {
-                    toAddResizeTask = addedResizeTask = true;
-                }
-                poolProbeNotifier.ejbObjectAddedEvent(beanId, appName, modName, ejbName);
-                createdCount++;	//hope that everything will be OK.
+    private int homeStripe() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & stripeMask;
+    }
+
+    /**
+     * Takes the most recently returned object from the stripe of the current
+     * thread, or from another stripe if that one is empty.
+     */
+    private Object pollAvailable() {
+        ConcurrentLinkedDeque<Object>[] currentStripes = stripes;
+        int home = homeStripe();
+        for (int i = 0; i < currentStripes.length; i++) {
+            Object obj = currentStripes[(home + i) & stripeMask].pollFirst();
+            if (obj != null) {
+                available.decrementAndGet();
+                return obj;
             }
         }
+        return null;
+    }
 
-        if (toAddResizeTask) {
-            addResizeTaskForImmediateExecution();
+    /**
+     * Adds an object to the stripe of the current thread unless the pool
+     * already holds maxPoolSize objects.
+     */
+    private boolean offerAvailable(Object obj) {
+        if (available.incrementAndGet() > maxPoolSize) {
+            available.decrementAndGet();
+            return false;
         }
+        stripes[homeStripe()].offerFirst(obj);
+        return true;
+    }
 
+    /**
+     * Takes the least recently returned object of a stripe if it has been
+     * idle since the given time.
+     */
+    private Object pollIdle(long allowedIdleTime) {
+        for (ConcurrentLinkedDeque<Object> stripe : stripes) {
+            Object obj = stripe.pollLast();
+            if (obj == null) {
+                continue;
+            }
+            if (((EJBContextImpl) obj).getLastTimeUsed() <= allowedIdleTime) {
+                available.decrementAndGet();
+                return obj;
+            }
+            stripe.offerLast(obj);
+        }
+        return null;
+    }
+
+    @Override
+    public Object getObject(Object param)
+    {
+        if (singletonBeanPool) {
+            return getSingletonObject(param);
+        }
+
+        Object obj = pollAvailable();
         if (obj != null) {
+            poolSuccess.increment();
+            if (maintainSteadySize && available.get() < steadyPoolSize) {
+                addResizeTaskIfNotAdded();
+            }
             return obj;
         }
 
-        if (singletonBeanPool) {
+        synchronized (list) {
+            poolProbeNotifier.ejbObjectAddedEvent(beanId, appName, modName, ejbName);
+            createdCount++;	//hope that everything will be OK.
+        }
+        if (maintainSteadySize) {
+            addResizeTaskIfNotAdded();
+        }
+
+        try {
+            return factory.create(param);
+        } catch (RuntimeException th) {
             synchronized (list) {
-                while (list.isEmpty() && (createdCount - destroyedCount) > 0) {
-                    try {
-                        list.wait();
-                    } catch (InterruptedException ex) {  //ignore
-                    }
-                }
-                if (!list.isEmpty()) {
-                    obj = list.remove(0);
-                    return obj;
-                }
+                poolProbeNotifier.ejbObjectAddFailedEvent(beanId, appName, modName, ejbName);
+                createdCount--;
+            }
+            throw th;
+        }
+    }
+
+    private Object getSingletonObject(Object param) {
+        synchronized (list) {
+            while (available.get() == 0 && (createdCount - destroyedCount) > 0) {
                 try {
-                    obj = factory.create(param);
-                    createdCount++;
-                    return obj;
-                } catch (RuntimeException th) {
-                    poolProbeNotifier.ejbObjectAddFailedEvent(beanId, appName, modName, ejbName);
-                    throw th;
+                    list.wait();
+                } catch (InterruptedException ex) {  //ignore
                 }
             }
-        } else {
+            Object obj = pollAvailable();
+            if (obj != null) {
+                poolSuccess.increment();
+                return obj;
+            }
             try {
-                return factory.create(param);
+                obj = factory.create(param);
+                createdCount++;
+                return obj;
             } catch (RuntimeException th) {
-                synchronized (list) {
-                    poolProbeNotifier.ejbObjectAddFailedEvent(beanId, appName, modName, ejbName);
-                    createdCount--;
-                }
+                poolProbeNotifier.ejbObjectAddFailedEvent(beanId, appName, modName, ejbName);
                 throw th;
             }
         }
     }
 
+    private void addResizeTaskIfNotAdded() {
+        if (addedResizeTask.compareAndSet(false, true)) {
+            addResizeTaskForImmediateExecution();
+        }
+    }
+
     private void addResizeTaskForImmediateExecution() {
         try {
             ReSizeWork work = new ReSizeWork();
@@ -236,9 +330,7 @@ public class NonBlockingPool
             }
             resizeTaskCount++;
         } catch (Exception ex) {
-            synchronized (list) {
-                addedResizeTask = false;
-            }
+            addedResizeTask.set(false);
             if(_logger.isLoggable(Level.WARNING)) {
             	_logger.log(Level.WARNING,
                             "[Pool-"+poolName+"]: Cannot perform "
@@ -255,17 +347,20 @@ public class NonBlockingPool
      */
     @Override
     public void returnObject(Object object) {
-    	synchronized (list) {
-            if (list.size() < maxPoolSize) {
-                list.add(object);
-                if(this.singletonBeanPool) {
+        if (singletonBeanPool) {
+            synchronized (list) {
+                if (offerAvailable(object)) {
                     list.notifyAll();
+                    return;
                 }
-                return;
-            } else {
-                poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
-                destroyedCount++;
             }
+        } else if (offerAvailable(object)) {
+            return;
+        }
+
+        synchronized (list) {
+            poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
+            destroyedCount++;
         }
 
         try {
@@ -321,22 +416,14 @@ public class NonBlockingPool
             return;
         }
     	synchronized (list) {
-            // check current pool size & adjust add size
-            int currsize = list.size();
-            int addsz = sz;
-            if (currsize + sz > maxPoolSize) {
-                addsz = maxPoolSize - currsize;
-            }
-
-            for (int i = 0; i < addsz; i++) {
-                list.add(instances.remove(0));
-            }
             createdCount += sz;
         }
 
-        // destroys unnecessary instances
+        // destroys the instances that do not fit in the pool
         for (Object o : instances) {
-            destroyObject(o);
+            if (!offerAvailable(o)) {
+                destroyObject(o);
+            }
         }
     }
 
@@ -364,6 +451,9 @@ public class NonBlockingPool
             if (poolTimerTask != null) {
                 try {
                     poolTimerTask.cancel();
+                    if (poolResizeFuture != null) {
+                        poolResizeFuture.cancel(false);
+                    }
                     if(_logger.isLoggable(Level.FINE)) {
                         _logger.log(Level.FINE,
                             "[Pool-{0}"
@@ -375,7 +465,7 @@ public class NonBlockingPool
             }
 
             if(_logger.isLoggable(Level.FINE)) {
-                _logger.log(Level.FINE, "[Pool-{0}]: Destroying {1} beans from the pool...", new Object[]{poolName, list.size()});
+                _logger.log(Level.FINE, "[Pool-{0}]: Destroying {1} beans from the pool...", new Object[]{poolName, getSize()});
             }
 
             // since we're calling into ejb code, we need to set context
@@ -383,8 +473,7 @@ public class NonBlockingPool
             ClassLoader origLoader =
                 Utility.setContextClassLoader(containerClassLoader);
 
-            Object[] array = list.toArray();
-            for (Object elt : array) {
+            for (Object elt = pollAvailable(); elt != null; elt = pollAvailable()) {
                 try {
                     poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
                     destroyedCount++;
@@ -401,27 +490,31 @@ public class NonBlockingPool
             if(_logger.isLoggable(Level.FINE)) {
                 _logger.log(Level.FINE, "Pool-{0}]: Pool closed....", poolName);
             }
-            list.clear();
             unregisterProbeProvider();
 
             Utility.setContextClassLoader(origLoader);
 
             poolClosed = true;
 
-            this.list.clear();
             this.factory               = null;
             this.poolTimerTask         = null;
+            this.poolResizeFuture      = null;
             this.containerClassLoader  = null;
         }
 
     }
 
     protected void remove(int count) {
-        ArrayList<Object> removeList = new ArrayList<>();
+        List<Object> removeList = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Object obj = pollAvailable();
+            if (obj == null) {
+                break;
+            }
+            removeList.add(obj);
+        }
         synchronized (list) {
-            int size = list.size();
-            for (int i=0; (i<count) && (size > 0); i++) {
-                removeList.add(list.remove(--size));
+            for (int i = 0; i < removeList.size(); i++) {
                 poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
                 destroyedCount++;
             }
@@ -437,6 +530,11 @@ public class NonBlockingPool
         }
     }
 
+    @Override
+    public int getSize() {
+        return available.get();
+    }
+
     @Override
     protected void removeIdleObjects() {
     }
@@ -485,7 +583,7 @@ public class NonBlockingPool
                 enteredResizeBlock = true;
                 inResizing = true;
 
-                int curSize = list.size();
+                int curSize = available.get();
 
                 if (curSize > steadyPoolSize) {
 
@@ -504,16 +602,13 @@ public class NonBlockingPool
                                     "[Pool-{0}]: Resize:: reducing " + " pool size by: {1}", new Object[]{poolName, victimCount});
                     }
                     for (int i=0; i<victimCount; i++) {
-                        //removeList.add(list.remove(--curSize));
-               		//destroyedCount++;
-                        EJBContextImpl ctx = (EJBContextImpl) list.get(0);
-                        if (ctx.getLastTimeUsed() <= allowedIdleTime) {
-                            removeList.add(list.remove(0));
-                            poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
-                            destroyedCount++;
-                        } else {
+                        Object victim = pollIdle(allowedIdleTime);
+                        if (victim == null) {
                             break;
                         }
+                        removeList.add(victim);
+                        poolProbeNotifier.ejbObjectDestroyedEvent(beanId, appName, modName, ejbName);
+                        destroyedCount++;
                     }
                 } else if (curSize < steadyPoolSize) {
 
@@ -550,7 +645,7 @@ public class NonBlockingPool
 
                 if(_logger.isLoggable(Level.FINE)) {
                     _logger.log(Level.FINE, "[Pool-{0}]: Attempting to preload {1} beans. CurSize/MaxPoolSize: {2}/{3}",
-                            new Object[]{poolName, populateCount, list.size(), maxPoolSize});
+                            new Object[]{poolName, populateCount, getSize(), maxPoolSize});
                 }
 
                 preload((int)populateCount);
@@ -558,7 +653,7 @@ public class NonBlockingPool
                 if(_logger.isLoggable(Level.FINE)) {
                     _logger.log(Level.FINE,
                             "[Pool-{0}" + "]: After preload " + "CurSize/MaxPoolSize: {1}/{2}",
-                            new Object[]{poolName, list.size(), maxPoolSize});
+                            new Object[]{poolName, getSize(), maxPoolSize});
                 }
             }
 
@@ -599,7 +694,7 @@ public class NonBlockingPool
         StringBuilder sbuf = new StringBuilder("[Pool-"+poolName+"] ");
         sbuf.append("CC=").append(createdCount).append("; ")
             .append("DC=").append(destroyedCount).append("; ")
-            .append("CS=").append(list.size()).append("; ")
+            .append("CS=").append(getSize()).append("; ")
             .append("SS=").append(steadyPoolSize).append("; ")
             .append("MS=").append(maxPoolSize).append(";");
         return sbuf.toString();
@@ -626,9 +721,7 @@ public class NonBlockingPool
                 _logger.log(Level.WARNING,
                     "[Pool-"+poolName+"]: Exception during reSize", ex);
             } finally {
-                synchronized (list) {
-                    addedResizeTask = false;
-                }
+                addedResizeTask.set(false);
             }
         }
     }
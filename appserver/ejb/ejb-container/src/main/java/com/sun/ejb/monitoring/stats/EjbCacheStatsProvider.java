@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016] [Payara Foundation]
+// Portions Copyright [2016-2020] [Payara Foundation]
 
 package com.sun.ejb.monitoring.stats;
 
@@ -85,6 +85,16 @@ public class EjbCacheStatsProvider {
             "Provides a count value reflecting the number of passivations for a "
                 + "StatefulSessionBean from the bean cache that succeeded");
 
+    private TimeStatisticImpl noPassivationTime = new TimeStatisticImpl(0, 0, 0, 0,
+            "PassivationTime", "milliseconds",
+            "Provides the time spent writing the state of passivated beans to the session store",
+            System.currentTimeMillis(), System.currentTimeMillis());
+
+    private TimeStatisticImpl noActivationTime = new TimeStatisticImpl(0, 0, 0, 0,
+            "ActivationTime", "milliseconds",
+            "Provides the time spent reading the state of passivated beans from the session store",
+            System.currentTimeMillis(), System.currentTimeMillis());
+
     private BoundedRangeStatisticImpl cacheHits;
     private BoundedRangeStatisticImpl cacheMisses;
     private BoundedRangeStatisticImpl numBeans;
@@ -184,6 +194,20 @@ public class EjbCacheStatsProvider {
         return passivationSuccess;
     }
 
+    @ManagedAttribute(id="passivationtime")
+    @Description( "Time spent writing the state of passivated beans to the session store")
+    public TimeStatistic getPassivationTime() {
+        TimeStatistic stat = delegate.getPassivationTime();
+        return (stat != null) ? stat : noPassivationTime;
+    }
+
+    @ManagedAttribute(id="activationtime")
+    @Description( "Time spent reading the state of passivated beans from the session store")
+    public TimeStatistic getActivationTime() {
+        TimeStatistic stat = delegate.getActivationTime();
+        return (stat != null) ? stat : noActivationTime;
+    }
+
     @ProbeListener("glassfish:ejb:cache:beanPassivatedEvent")
     public void ejbBeanPassivatedEvent(
             @ProbeParam("beanId") long beanId,
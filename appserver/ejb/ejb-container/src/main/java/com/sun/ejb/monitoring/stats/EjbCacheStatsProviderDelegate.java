@@ -37,9 +37,12 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 package com.sun.ejb.monitoring.stats;
 
+import org.glassfish.external.statistics.TimeStatistic;
+
 public interface EjbCacheStatsProviderDelegate
     extends com.sun.ejb.spi.stats.StatsProvider
 {
@@ -59,4 +62,20 @@ public interface EjbCacheStatsProviderDelegate
     public int getNumPassivationSuccess();
 
     public int getMaxCacheSize();
+
+    /**
+     * @return the time spent writing passivated beans to the store, or null
+     * if this cache does not passivate beans
+     */
+    default TimeStatistic getPassivationTime() {
+        return null;
+    }
+
+    /**
+     * @return the time spent reading passivated beans back from the store, or
+     * null if this cache does not passivate beans
+     */
+    default TimeStatistic getActivationTime() {
+        return null;
+    }
 }
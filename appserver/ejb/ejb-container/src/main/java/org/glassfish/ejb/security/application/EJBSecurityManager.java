@@ -37,10 +37,11 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 package org.glassfish.ejb.security.application;
 
 import com.sun.ejb.EjbInvocation;
+import com.sun.ejb.containers.interceptors.InterceptorUtil;
 import com.sun.enterprise.deployment.EjbIORConfigurationDescriptor;
 import com.sun.enterprise.deployment.RunAsIdentityDescriptor;
 import com.sun.enterprise.security.SecurityContext;
@@ -68,6 +69,7 @@ import org.glassfish.external.probe.provider.StatsProviderManager;
 import javax.security.auth.Subject;
 import javax.security.auth.SubjectDomainCombiner;
 import javax.security.jacc.*;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -415,6 +417,24 @@ public final class EJBSecurityManager implements SecurityManager {
         }
     }
 
+    @Override
+    public Object invoke(Method beanClassMethod, MethodHandle beanClassMethodHandle, boolean isLocal, Object beanObject, Object[] parameters) throws Throwable {
+
+        // Same optimization as above, but calling the method handle directly. Invocations
+        // that must run as the caller subject under a System Security Manager still go
+        // through doAsPrivileged.
+        if ((isLocal && getUsesCallerIdentity()) || System.getSecurityManager() == null) {
+            String oldContextId = setPolicyContext(contextId);
+            try {
+                return InterceptorUtil.invokeSpread(beanClassMethodHandle, beanObject, parameters);
+            } finally {
+                resetPolicyContext(oldContextId, contextId);
+            }
+        }
+
+        return invoke(beanClassMethod, isLocal, beanObject, parameters);
+    }
+
     @Override
     public void resetPolicyContext() {
         try {
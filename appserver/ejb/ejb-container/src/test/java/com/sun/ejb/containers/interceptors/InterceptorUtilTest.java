@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.ejb.containers.interceptors;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InterceptorUtilTest {
+
+    public static class Bean {
+
+        private int calls;
+
+        public String greet(String name) {
+            return "Hello " + name;
+        }
+
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        public void touch() {
+            calls++;
+        }
+
+        public void fail() throws IOException {
+            throw new IOException("failed");
+        }
+
+        public void reject(String value) {
+            throw new IllegalArgumentException(value);
+        }
+    }
+
+    private final Bean bean = new Bean();
+
+    @Test
+    public void invokesMethodWithSpreadArguments() throws Exception {
+        assertEquals("Hello Duke", invoke("greet", bean, "Duke"));
+        assertEquals(5, invoke("add", bean, 2, 3));
+        assertNull(invoke("touch", bean));
+        assertEquals(1, bean.calls);
+    }
+
+    @Test
+    public void exceptionThrownByMethodIsWrapped() {
+        InvocationTargetException ite = expectInvocationTargetException("fail", bean);
+        assertTrue(ite.getCause() instanceof IOException);
+    }
+
+    @Test
+    public void illegalArgumentThrownByMethodIsWrapped() {
+        InvocationTargetException ite = expectInvocationTargetException("reject", bean, "value");
+        assertTrue(ite.getCause() instanceof IllegalArgumentException);
+        assertEquals("value", ite.getCause().getMessage());
+    }
+
+    @Test
+    public void wrongArgumentTypeIsIllegalArgument() {
+        expectIllegalArgument("greet", bean, 42);
+    }
+
+    @Test
+    public void nullForPrimitiveParameterIsIllegalArgument() {
+        expectIllegalArgument("add", bean, null, 3);
+    }
+
+    @Test
+    public void wrongArgumentCountIsIllegalArgument() {
+        expectIllegalArgument("add", bean, 2);
+    }
+
+    @Test
+    public void wrongTargetTypeIsIllegalArgument() {
+        expectIllegalArgument("touch", "not a bean");
+    }
+
+    private static Object invoke(String methodName, Object target, Object... arguments) throws InvocationTargetException {
+        return InterceptorUtil.invokeSpread(handle(methodName), target, arguments);
+    }
+
+    private static InvocationTargetException expectInvocationTargetException(String methodName, Object target,
+            Object... arguments) {
+        try {
+            invoke(methodName, target, arguments);
+        } catch (InvocationTargetException ite) {
+            return ite;
+        }
+        throw new AssertionError("expected InvocationTargetException");
+    }
+
+    private static void expectIllegalArgument(String methodName, Object target, Object... arguments) {
+        try {
+            invoke(methodName, target, arguments);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // the method was not entered
+        } catch (InvocationTargetException ite) {
+            throw new AssertionError("argument failure reported as thrown by the method", ite);
+        }
+    }
+
+    private static MethodHandle handle(String methodName) {
+        for (Method method : Bean.class.getMethods()) {
+            if (method.getName().equals(methodName)) {
+                return InterceptorUtil.unreflectSpread(method);
+            }
+        }
+        throw new AssertionError("no method " + methodName);
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.ejb.containers.util.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.glassfish.ha.store.api.BackingStoreException;
+import org.glassfish.ha.store.util.SimpleMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class OffHeapSessionStoreTest {
+
+    private static final int BLOCK_SIZE = 64;
+
+    private final Map<Serializable, SimpleMetadata> spilled = new ConcurrentHashMap<>();
+    private OffHeapSessionStore store;
+    private volatile boolean failSpills;
+    private final CountDownLatch spillStarted = new CountDownLatch(1);
+    private volatile CountDownLatch spillGate;
+
+    @Before
+    public void setUp() {
+        store = new OffHeapSessionStore(16 * BLOCK_SIZE, BLOCK_SIZE, (sessionKey, state, isNew) -> {
+            assertFalse("spilled while holding the store lock", Thread.holdsLock(store));
+            spillStarted.countDown();
+            if (spillGate != null) {
+                try {
+                    spillGate.await();
+                } catch (InterruptedException e) {
+                    throw new BackingStoreException("interrupted", e);
+                }
+            }
+            if (failSpills) {
+                throw new BackingStoreException("spill failed");
+            }
+            spilled.put(sessionKey, state);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        store.destroy();
+    }
+
+    @Test
+    public void takeReturnsSavedState() throws Exception {
+        byte[] data = bytes(150, 1);
+        assertTrue(store.save("a", new SimpleMetadata(3, 1000, 60000, data), true));
+        assertEquals(1, store.getEntryCount());
+        assertEquals(3 * BLOCK_SIZE, store.getUsedBytes());
+
+        SimpleMetadata state = store.take("a");
+        assertArrayEquals(data, state.getState());
+        assertEquals(3, state.getVersion());
+        assertEquals(1000, state.getLastAccessTime());
+        assertEquals(60000, state.getMaxInactiveInterval());
+
+        assertNull(store.take("a"));
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    @Test
+    public void saveReplacesPreviousState() throws Exception {
+        store.save("a", new SimpleMetadata(1, 0, 0, bytes(200, 1)), true);
+        store.save("a", new SimpleMetadata(2, 0, 0, bytes(10, 2)), false);
+
+        assertEquals(1, store.getEntryCount());
+        assertEquals(BLOCK_SIZE, store.getUsedBytes());
+        assertArrayEquals(bytes(10, 2), store.take("a").getState());
+    }
+
+    @Test
+    public void eldestStatesAreSpilledWhenFull() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(store.save("s" + i, new SimpleMetadata(i, 0, 0, bytes(4 * BLOCK_SIZE, i)), true));
+        }
+
+        assertEquals(4, store.getEntryCount());
+        assertEquals(1, store.getSpillCount());
+        assertArrayEquals(bytes(4 * BLOCK_SIZE, 0), spilled.get("s0").getState());
+        assertNull(store.take("s0"));
+        assertArrayEquals(bytes(4 * BLOCK_SIZE, 4), store.take("s4").getState());
+    }
+
+    @Test
+    public void failedSpillKeepsEldestStateAndRejectsNewOne() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            store.save("s" + i, new SimpleMetadata(i, 0, 0, bytes(4 * BLOCK_SIZE, i)), true);
+        }
+
+        failSpills = true;
+        try {
+            store.save("s4", new SimpleMetadata(4, 0, 0, bytes(4 * BLOCK_SIZE, 4)), true);
+            fail("expected the spill to fail");
+        } catch (BackingStoreException expected) {
+            // s0 could not be written
+        }
+        assertNull(store.take("s4"));
+        assertEquals(4, store.getEntryCount());
+        assertEquals(0, store.getSpillCount());
+
+        failSpills = false;
+        store.flush();
+        assertEquals(0, store.getEntryCount());
+        assertEquals(4, store.getSpillCount());
+        assertArrayEquals(bytes(4 * BLOCK_SIZE, 0), spilled.get("s0").getState());
+    }
+
+    @Test
+    public void stateWaitingToBeSpilledCanBeTaken() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            store.save("s" + i, new SimpleMetadata(i, 0, 0, bytes(4 * BLOCK_SIZE, i)), true);
+        }
+        failSpills = true;
+        try {
+            store.save("s4", new SimpleMetadata(4, 0, 0, bytes(4 * BLOCK_SIZE, 4)), true);
+            fail("expected the spill to fail");
+        } catch (BackingStoreException expected) {
+            // s0 is kept on the heap
+        }
+
+        assertArrayEquals(bytes(4 * BLOCK_SIZE, 0), store.take("s0").getState());
+        failSpills = false;
+        store.flush();
+        assertFalse(spilled.containsKey("s0"));
+    }
+
+    @Test
+    public void failedSpillIsRetriedOnNextSave() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            store.save("s" + i, new SimpleMetadata(i, 0, 0, bytes(4 * BLOCK_SIZE, i)), true);
+        }
+        failSpills = true;
+        try {
+            store.save("s4", new SimpleMetadata(4, 0, 0, bytes(4 * BLOCK_SIZE, 4)), true);
+            fail("expected the spill to fail");
+        } catch (BackingStoreException expected) {
+            // s0 is kept on the heap
+        }
+
+        failSpills = false;
+        assertTrue(store.save("s5", new SimpleMetadata(5, 0, 0, bytes(10, 5)), true));
+        assertEquals(1, store.getSpillCount());
+        assertArrayEquals(bytes(4 * BLOCK_SIZE, 0), spilled.get("s0").getState());
+        assertNull(store.take("s0"));
+    }
+
+    @Test
+    public void statesAreRefusedWhileSpillsKeepFailing() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            store.save("s" + i, new SimpleMetadata(i, 0, 0, bytes(4 * BLOCK_SIZE, i)), true);
+        }
+        failSpills = true;
+        boolean refused = false;
+        for (int i = 4; i < 20 && !refused; i++) {
+            try {
+                refused = !store.save("s" + i, new SimpleMetadata(i, 0, 0, bytes(4 * BLOCK_SIZE, i)), true);
+            } catch (BackingStoreException expected) {
+                // the eldest state is kept on the heap
+            }
+        }
+        assertTrue("the states waiting to be spilled are not bounded", refused);
+        assertTrue(store.getEntryCount() <= 8);
+
+        failSpills = false;
+        store.save("x", new SimpleMetadata(0, 0, 0, bytes(10, 1)), true);
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(spilled.get("s" + i));
+        }
+        assertTrue(store.save("y", new SimpleMetadata(0, 0, 0, bytes(10, 2)), true));
+    }
+
+    @Test
+    public void directSaveWaitsUntilOlderStateIsSpilled() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            store.save("s" + i, new SimpleMetadata(i, 0, 0, bytes(4 * BLOCK_SIZE, i)), true);
+        }
+        spillGate = new CountDownLatch(1);
+        Thread passivation = new Thread(() -> {
+            try {
+                store.save("s4", new SimpleMetadata(4, 0, 0, bytes(4 * BLOCK_SIZE, 4)), true);
+            } catch (BackingStoreException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        passivation.start();
+        assertTrue(spillStarted.await(10, SECONDS));
+
+        // s0 is activated while being spilled, then passivated with a larger state
+        assertArrayEquals(bytes(4 * BLOCK_SIZE, 0), store.take("s0").getState());
+        SimpleMetadata newer = new SimpleMetadata(9, 0, 0, bytes(5 * BLOCK_SIZE, 9));
+        AtomicBoolean savedDirectly = new AtomicBoolean();
+        Thread direct = new Thread(() -> {
+            try {
+                if (!store.save("s0", newer, false)) {
+                    spilled.put("s0", newer);
+                    savedDirectly.set(true);
+                }
+            } catch (BackingStoreException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        direct.start();
+        direct.join(200);
+        assertTrue("did not wait for the older state to be written", direct.isAlive());
+
+        spillGate.countDown();
+        direct.join(10000);
+        passivation.join(10000);
+        assertTrue(savedDirectly.get());
+        assertEquals(9, spilled.get("s0").getVersion());
+    }
+
+    @Test
+    public void tooLargeStateIsRejected() throws Exception {
+        assertFalse(store.save("big", new SimpleMetadata(0, 0, 0, bytes(5 * BLOCK_SIZE, 1)), true));
+        assertEquals(0, store.getEntryCount());
+        assertTrue(spilled.isEmpty());
+    }
+
+    @Test
+    public void expiredStatesAreRemoved() throws Exception {
+        store.save("expired", new SimpleMetadata(0, 1000, 500, bytes(10, 1)), true);
+        store.save("alive", new SimpleMetadata(0, 1000, 5000, bytes(10, 2)), true);
+        store.save("noTimeout", new SimpleMetadata(0, 1000, 0, bytes(10, 3)), true);
+
+        assertEquals(1, store.removeExpired(2000));
+        assertNull(store.take("expired"));
+        assertEquals(2, store.getEntryCount());
+    }
+
+    @Test
+    public void flushSpillsEverything() throws Exception {
+        store.save("a", new SimpleMetadata(0, 0, 0, bytes(10, 1)), true);
+        store.save("b", new SimpleMetadata(0, 0, 0, bytes(100, 2)), true);
+
+        store.flush();
+
+        assertEquals(0, store.getEntryCount());
+        assertEquals(0, store.getUsedBytes());
+        assertArrayEquals(bytes(10, 1), spilled.get("a").getState());
+        assertArrayEquals(bytes(100, 2), spilled.get("b").getState());
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) seed);
+        for (int i = 0; i < length; i += 7) {
+            data[i] = (byte) (i + seed);
+        }
+        return data;
+    }
+}
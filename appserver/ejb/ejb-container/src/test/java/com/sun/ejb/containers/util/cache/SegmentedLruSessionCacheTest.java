@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.ejb.containers.util.cache;
+
+import com.sun.ejb.spi.container.StatefulEJBContext;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class SegmentedLruSessionCacheTest {
+
+    private static final int CACHE_IDLE_TIMEOUT_IN_SECONDS = 60;
+
+    private final List<Object> trimmed = new ArrayList<>();
+    private SegmentedLruSessionCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new SegmentedLruSessionCache("test", null, CACHE_IDLE_TIMEOUT_IN_SECONDS, 0);
+        // small enough to have a single segment, so the order is strictly LRU
+        cache.init(8, 0.75f, null);
+        cache.addCacheListener((key, value) -> trimmed.add(key));
+    }
+
+    @Test
+    public void leastRecentlyUsedBeanIsTrimmedWhenFull() {
+        // fill up to the threshold of 7 entries plus the one that reaches it
+        for (int i = 0; i < 8; i++) {
+            cache.put("b" + i, context(System.currentTimeMillis()));
+        }
+        cache.get("b0");
+
+        cache.put("b8", context(System.currentTimeMillis()));
+
+        assertEquals(asList("b1"), trimmed);
+    }
+
+    @Test
+    public void idleBeansAreTrimmedUpToFirstActiveBean() {
+        cache.put("idle1", context(0));
+        cache.put("idle2", context(0));
+        cache.put("active", context(System.currentTimeMillis()));
+        cache.put("idle3", context(0));
+
+        cache.trimTimedoutItems(Integer.MAX_VALUE);
+
+        assertEquals(asList("idle1", "idle2"), trimmed);
+    }
+
+    @Test
+    public void beansWithoutContextAreSkippedWhenTrimmingIdleBeans() {
+        cache.put("idle1", context(0));
+        cache.put("loading", null);
+        cache.put("idle2", context(0));
+        cache.put("active", context(System.currentTimeMillis()));
+
+        cache.trimTimedoutItems(Integer.MAX_VALUE);
+
+        assertEquals(asList("idle1", "idle2"), trimmed);
+    }
+
+    private static StatefulEJBContext context(long lastAccessTime) {
+        return (StatefulEJBContext) Proxy.newProxyInstance(StatefulEJBContext.class.getClassLoader(),
+            new Class<?>[] { StatefulEJBContext.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getLastAccessTime":
+                        return lastAccessTime;
+                    case "canBePassivated":
+                        return true;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
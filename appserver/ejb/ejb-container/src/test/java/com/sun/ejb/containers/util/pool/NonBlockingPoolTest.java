@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.ejb.containers.util.pool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sun.ejb.monitoring.probes.EjbPoolProbeProvider;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NonBlockingPoolTest {
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger destroyed = new AtomicInteger();
+
+    private final ObjectFactory factory = new ObjectFactory() {
+
+        @Override
+        public Object create(Object param) {
+            return "bean-" + created.incrementAndGet();
+        }
+
+        @Override
+        public void destroy(Object object) {
+            destroyed.incrementAndGet();
+        }
+    };
+
+    private NonBlockingPool pool;
+
+    @Test
+    public void returnedObjectIsHandedOutAgain() {
+        pool = createPool(0, 0, 10);
+
+        Object bean = pool.getObject(null);
+        pool.returnObject(bean);
+
+        assertSame(bean, pool.getObject(null));
+        assertEquals(1, created.get());
+        assertEquals(1, pool.getPoolSuccess());
+    }
+
+    @Test
+    public void concurrentGetAndReturnNeverSharesAnObject() throws Exception {
+        pool = createPool(0, 0, 0);
+        int threads = 8;
+        int iterations = 10000;
+        Set<Object> inUse = ConcurrentHashMap.newKeySet();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < iterations; j++) {
+                        Object bean = pool.getObject(null);
+                        assertTrue("object handed out twice: " + bean, inUse.add(bean));
+                        inUse.remove(bean);
+                        pool.returnObject(bean);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertNull(failure.get());
+        assertTrue(created.get() <= threads);
+        assertEquals(0, destroyed.get());
+        assertEquals(created.get(), pool.getSize());
+        assertEquals(pool.getCreatedCount() - pool.getDestroyedCount(), pool.getSize());
+        assertEquals(threads * iterations - created.get(), pool.getPoolSuccess());
+    }
+
+    @Test
+    public void objectReturnedByAnotherThreadIsStolen() throws Exception {
+        pool = createPool(0, 0, 10);
+        Object bean = pool.getObject(null);
+        Thread returner = new Thread(() -> pool.returnObject(bean));
+        returner.start();
+        returner.join();
+
+        assertSame(bean, pool.getObject(null));
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void objectsBeyondMaxPoolSizeAreDestroyed() {
+        pool = createPool(0, 0, 2);
+        List<Object> beans = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            beans.add(pool.getObject(null));
+        }
+        for (Object bean : beans) {
+            pool.returnObject(bean);
+        }
+
+        assertEquals(2, pool.getSize());
+        assertEquals(2, destroyed.get());
+        assertEquals(2, pool.getCreatedCount() - pool.getDestroyedCount());
+    }
+
+    @Test
+    public void exhaustedPoolCreatesNewObjects() {
+        pool = createPool(0, 0, 2);
+        pool.returnObject(pool.getObject(null));
+
+        assertNotNull(pool.getObject(null));
+        assertNotNull(pool.getObject(null));
+        assertEquals(0, pool.getSize());
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void resizePopulatesUpToSteadyPoolSize() {
+        pool = createPool(3, 2, 10);
+
+        pool.doResize();
+
+        assertEquals(4, pool.getSize());
+        assertEquals(4, created.get());
+    }
+
+    @Test
+    public void resizeDoesNotPopulateBeyondMaxPoolSize() {
+        pool = createPool(3, 2, 3);
+
+        pool.doResize();
+
+        assertEquals(3, pool.getSize());
+        assertEquals(3, created.get());
+    }
+
+    @Test
+    public void removeDestroysAvailableObjects() {
+        pool = createPool(0, 0, 10);
+        pool.prepopulate(5);
+
+        pool.remove(3);
+
+        assertEquals(2, pool.getSize());
+        assertEquals(3, destroyed.get());
+        assertEquals(3, pool.getDestroyedCount());
+    }
+
+    @Test
+    public void closeDestroysAvailableObjects() {
+        pool = createPool(0, 0, 10);
+        pool.prepopulate(5);
+
+        pool.close();
+
+        assertEquals(0, pool.getSize());
+        assertEquals(5, destroyed.get());
+    }
+
+    private NonBlockingPool createPool(int steadyPoolSize, int resizeQuantity, int maxPoolSize) {
+        NonBlockingPool newPool = new NonBlockingPool(1L, "test", factory,
+            steadyPoolSize, resizeQuantity, maxPoolSize, 0, getClass().getClassLoader());
+        newPool.poolProbeNotifier = new EjbPoolProbeProvider();
+        return newPool;
+    }
+}
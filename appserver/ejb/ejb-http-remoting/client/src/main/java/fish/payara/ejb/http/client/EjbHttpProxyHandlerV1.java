@@ -1,7 +1,7 @@
 /*
  *    DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- *    Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2019-2020] Payara Foundation and/or its affiliates. All rights reserved.
  *
  *    The contents of this file are subject to the terms of either the GNU
  *    General Public License Version 2 only ("GPL") or the Common Development
@@ -40,6 +40,7 @@
 
 package fish.payara.ejb.http.client;
 
+import fish.payara.ejb.http.protocol.BinaryEncoding;
 import fish.payara.ejb.http.protocol.ErrorResponse;
 import fish.payara.ejb.http.protocol.InvokeMethodRequest;
 import fish.payara.ejb.http.protocol.InvokeMethodResponse;
@@ -138,6 +139,12 @@ final class EjbHttpProxyHandlerV1 implements InvocationHandler {
                 throw new UndeclaredThrowableException(e);
             }
             argValues = bos.toByteArray();
+        } else if (MediaTypes.BINARY.equals(mediaType)) {
+            try {
+                argValues = BinaryEncoding.encodeArguments(args);
+            } catch (IOException e) {
+                throw new UndeclaredThrowableException(e);
+            }
         }
         return argValues;
     }
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2019-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -58,6 +58,8 @@ import fish.payara.ejb.http.protocol.LookupRequest;
 import fish.payara.ejb.http.protocol.LookupResponse;
 import fish.payara.ejb.http.protocol.MediaTypes;
 import fish.payara.ejb.http.protocol.SerializationType;
+import fish.payara.ejb.http.protocol.rs.BinaryMessageBodyReader;
+import fish.payara.ejb.http.protocol.rs.BinaryMessageBodyWriter;
 import fish.payara.ejb.http.protocol.rs.ObjectStreamMessageBodyReader;
 import fish.payara.ejb.http.protocol.rs.ObjectStreamMessageBodyWriter;
 
@@ -71,10 +73,14 @@ public class LookupV1 extends Lookup {
         super(environment);
         this.client = client
                 .register(ObjectStreamMessageBodyWriter.class)
-                .register(ObjectStreamMessageBodyReader.class);
+                .register(ObjectStreamMessageBodyReader.class)
+                .register(BinaryMessageBodyWriter.class)
+                .register(BinaryMessageBodyReader.class);
         this.v1lookup = v1lookup
                 .register(ObjectStreamMessageBodyReader.class)
-                .register(ObjectStreamMessageBodyWriter.class);
+                .register(ObjectStreamMessageBodyWriter.class)
+                .register(BinaryMessageBodyReader.class)
+                .register(BinaryMessageBodyWriter.class);
         this.mediaType = environment.containsKey(JAXRS_CLIENT_SERIALIZATION)
                 ? SerializationType.valueOf(
                         environment.get(JAXRS_CLIENT_SERIALIZATION).toString().toUpperCase()).getMediaType()
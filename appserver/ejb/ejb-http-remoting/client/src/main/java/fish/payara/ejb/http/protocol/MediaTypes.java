@@ -1,7 +1,7 @@
 /*
  *    DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- *    Copyright (c) [2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2019-2020] Payara Foundation and/or its affiliates. All rights reserved.
  *
  *    The contents of this file are subject to the terms of either the GNU
  *    General Public License Version 2 only ("GPL") or the Common Development
@@ -45,4 +45,5 @@ import javax.ws.rs.core.MediaType;
 public interface MediaTypes {
     String JSON = MediaType.APPLICATION_JSON;
     String JAVA_OBJECT = "application/x-java-object";
+    String BINARY = "application/x-payara-ejb-binary";
 }
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2019-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -47,7 +47,8 @@ package fish.payara.ejb.http.protocol;
 public enum SerializationType {
 
     JSON(MediaTypes.JSON),
-    JAVA(MediaTypes.JAVA_OBJECT);
+    JAVA(MediaTypes.JAVA_OBJECT),
+    BINARY(MediaTypes.BINARY);
 
     private final String mediaType;
 
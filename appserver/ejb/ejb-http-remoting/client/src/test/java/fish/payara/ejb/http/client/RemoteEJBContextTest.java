@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2019-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -43,6 +43,7 @@ import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
@@ -79,6 +80,8 @@ import org.junit.runners.Parameterized.Parameters;
 import fish.payara.ejb.http.endpoint.EjbOverHttpResource;
 import fish.payara.ejb.http.endpoint.EjbOverHttpService;
 import fish.payara.ejb.http.protocol.SerializationType;
+import fish.payara.ejb.http.protocol.rs.BinaryMessageBodyReader;
+import fish.payara.ejb.http.protocol.rs.BinaryMessageBodyWriter;
 import fish.payara.ejb.http.protocol.rs.ErrorResponseExceptionMapper;
 import fish.payara.ejb.http.protocol.rs.JsonbInvokeMethodMessageBodyReader;
 import fish.payara.ejb.http.protocol.rs.JsonbLookupMessageBodyReader;
@@ -156,7 +159,9 @@ public class RemoteEJBContextTest {
                 .register(ObjectStreamMessageBodyWriter.class)
                 .register(ObjectStreamInvokeMethodMessageBodyReader.class)
                 .register(JsonbInvokeMethodMessageBodyReader.class)
-                .register(JsonbLookupMessageBodyReader.class);
+                .register(JsonbLookupMessageBodyReader.class)
+                .register(BinaryMessageBodyReader.class)
+                .register(BinaryMessageBodyWriter.class);
         return GrizzlyHttpServerFactory.createHttpServer(baseUri, config);
     }
 
@@ -325,7 +330,7 @@ public class RemoteEJBContextTest {
             assertNotNull(result);
             assertEquals("Only works in JSONB", result.value);
         } catch (UndeclaredThrowableException ex) {
-            assertEquals(SerializationType.JAVA, serializationType);
+            assertNotEquals(SerializationType.JSON, serializationType);
             assertSame(NotSerializableException.class, ex.getUndeclaredThrowable().getClass());
             assertEquals("fish.payara.ejb.http.client.RemoteEJBContextTest$CustomNonSerializableType", ex.getUndeclaredThrowable().getMessage());
         }
@@ -339,7 +344,7 @@ public class RemoteEJBContextTest {
             assertEquals(SerializationType.JSON, serializationType);
             assertTrue(result);
         } catch (UndeclaredThrowableException ex) {
-            assertEquals(SerializationType.JAVA, serializationType);
+            assertNotEquals(SerializationType.JSON, serializationType);
             assertSame(NotSerializableException.class, ex.getUndeclaredThrowable().getClass());
             assertEquals("fish.payara.ejb.http.client.RemoteEJBContextTest$CustomNonSerializableType", ex.getUndeclaredThrowable().getMessage());
         }
@@ -358,7 +363,7 @@ public class RemoteEJBContextTest {
         assertEquals(3, result.get(0).size());
         assertEquals(asList("a", "b", "c"), result.get(0));
         assertEquals(ArrayList.class, result.getClass());
-        if (serializationType == SerializationType.JAVA) {
+        if (serializationType != SerializationType.JSON) {
             // java serialisation preserves the exact types
             assertSame(LinkedList.class, result.get(0).getClass());
         }
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.ejb.http.protocol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link BinaryEncoding} of the protocol messages without any JAX-RS involved.
+ */
+public class BinaryEncodingTest {
+
+    @Test
+    public void lookupRequestRoundTrip() throws Exception {
+        LookupRequest request = roundTrip(new LookupRequest("java:global/myapp/MyBean"));
+        assertEquals("java:global/myapp/MyBean", request.jndiName);
+    }
+
+    @Test
+    public void lookupResponseRoundTrip() throws Exception {
+        LookupResponse response = roundTrip(new LookupResponse(List.class));
+        assertEquals(List.class.getName(), response.typeName);
+        assertEquals("Stateless", response.kind);
+    }
+
+    @Test
+    public void invokeMethodRequestRoundTrip() throws Exception {
+        Object[] args = { 42, "text", null, 3L, true, 'c', 1.5d, new byte[] { 1, 2 }, UUID.randomUUID(),
+                new BigDecimal("1.25"), new LinkedList<>(Arrays.asList("a", "b")) };
+        InvokeMethodRequest request = roundTrip(new InvokeMethodRequest("user", "", "java:global/myapp/MyBean",
+                "call", new String[] { "int", "java.lang.String" }, new String[] { "int", "java.lang.String" },
+                BinaryEncoding.encodeArguments(args), null));
+        assertEquals("user", request.principal);
+        assertEquals("", request.credentials);
+        assertEquals("java:global/myapp/MyBean", request.jndiName);
+        assertEquals("call", request.method);
+        assertArrayEquals(new String[] { "int", "java.lang.String" }, request.argTypes);
+        assertArrayEquals(new String[] { "int", "java.lang.String" }, request.argActualTypes);
+
+        Object[] decoded = BinaryEncoding.decodeArguments((byte[]) request.argValues, getClass().getClassLoader());
+        assertEquals(args.length, decoded.length);
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof byte[]) {
+                assertArrayEquals((byte[]) args[i], (byte[]) decoded[i]);
+            } else {
+                assertEquals(args[i], decoded[i]);
+            }
+        }
+        assertSame(LinkedList.class, decoded[10].getClass());
+    }
+
+    @Test
+    public void nullArgumentsRoundTrip() throws Exception {
+        assertNull(BinaryEncoding.decodeArguments(BinaryEncoding.encodeArguments(null), null));
+        assertEquals(0, BinaryEncoding.decodeArguments(BinaryEncoding.encodeArguments(new Object[0]), null).length);
+    }
+
+    @Test
+    public void invokeMethodResponseRoundTrip() throws Exception {
+        List<Object> cyclic = new LinkedList<>();
+        cyclic.add(cyclic);
+        InvokeMethodResponse response = roundTrip(new InvokeMethodResponse(cyclic));
+        assertEquals(LinkedList.class.getName(), response.type);
+        @SuppressWarnings("unchecked")
+        List<Object> result = (List<Object>) response.result;
+        assertSame(result, result.get(0));
+
+        response = roundTrip(new InvokeMethodResponse(null));
+        assertEquals("", response.type);
+        assertNull(response.result);
+    }
+
+    @Test
+    public void errorResponseRoundTrip() throws Exception {
+        ErrorResponse error = roundTrip(new ErrorResponse(
+                new IllegalStateException("outer", new IOException("inner"))));
+        assertEquals(IllegalStateException.class.getName(), error.exceptionType);
+        assertEquals("outer", error.message);
+        assertEquals(IOException.class.getName(), error.cause.exceptionType);
+        assertEquals("inner", error.cause.message);
+        assertNull(error.cause.cause);
+    }
+
+    @Test(expected = NotSerializableException.class)
+    public void nonSerializableArgumentIsRejected() throws Exception {
+        BinaryEncoding.encodeArguments(new Object[] { new Object() });
+    }
+
+    @Test
+    public void malformedArgumentsAreRejected() throws Exception {
+        try {
+            BinaryEncoding.decodeArguments(new byte[] { 42 }, null);
+            fail("Should have failed");
+        } catch (StreamCorruptedException ex) {
+            // expected
+        }
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void argumentCountBeyondInputIsRejected() throws Exception {
+        BinaryEncoding.decodeArguments(new byte[] { 12, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 },
+                null);
+    }
+
+    @Test(expected = EOFException.class)
+    public void stringLengthBeyondInputIsNotAllocated() throws Exception {
+        // lookup request with a new string claiming Integer.MAX_VALUE bytes
+        BinaryEncoding.read(new ByteArrayInputStream(new byte[] { (byte) 0xEB, 1, 1, 1,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 }), null);
+    }
+
+    @Test(expected = EOFException.class)
+    public void stringCountBeyondInputIsNotAllocated() throws Exception {
+        // invoke method request with four null strings and Integer.MAX_VALUE argument types
+        BinaryEncoding.read(new ByteArrayInputStream(new byte[] { (byte) 0xEB, 1, 3, 0, 0, 0, 0,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 }), null);
+    }
+
+    @Test
+    public void largeBytesRoundTrip() throws Exception {
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Object[] args = BinaryEncoding.decodeArguments(BinaryEncoding.encodeArguments(new Object[] { data }), null);
+        assertArrayEquals(data, (byte[]) args[0]);
+    }
+
+    @Test
+    public void encodingIsSmallerThanJavaSerialisation() throws Exception {
+        Object[] args = { 1, 2L, "text" };
+        String[] argTypes = { "int", "long", "java.lang.String" };
+        ByteArrayOutputStream javaArgs = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(javaArgs)) {
+            oos.writeObject(args);
+        }
+        int javaSize = encodeJava(new InvokeMethodRequest("", "", "java:global/myapp/MyBean", "call", argTypes,
+                argTypes, javaArgs.toByteArray(), null)).length;
+        int binarySize = encode(new InvokeMethodRequest("", "", "java:global/myapp/MyBean", "call", argTypes,
+                argTypes, BinaryEncoding.encodeArguments(args), null)).length;
+        assertTrue("binary: " + binarySize + ", java: " + javaSize, binarySize * 4 < javaSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T message) throws Exception {
+        return (T) BinaryEncoding.read(new ByteArrayInputStream(encode(message)), null);
+    }
+
+    private static byte[] encode(Object message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoding.write(message, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeJava(Object message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(message);
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2019-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -120,6 +120,14 @@ public class EjbOverHttpResource {
         return lookup(body, MediaTypes.JAVA_OBJECT);
     }
 
+    @POST
+    @Path("jndi/lookup")
+    @Produces(MediaTypes.BINARY)
+    @Consumes(MediaTypes.BINARY)
+    public Response lookupBinary(LookupRequest body) {
+        return lookup(body, MediaTypes.BINARY);
+    }
+
     @POST
     @Path("jndi/lookup")
     @Produces(MediaTypes.JSON)
@@ -153,6 +161,14 @@ public class EjbOverHttpResource {
         return invoke(body, MediaTypes.JAVA_OBJECT, (type, result) -> result);
     }
 
+    @POST
+    @Path("jndi/invoke")
+    @Produces(MediaTypes.BINARY)
+    @Consumes(MediaTypes.BINARY)
+    public Response invokeBinary(InvokeMethodRequest body) {
+        return invoke(body, MediaTypes.BINARY, (type, result) -> result);
+    }
+
     @POST
     @Path("jndi/invoke")
     @Produces(MediaTypes.JSON)
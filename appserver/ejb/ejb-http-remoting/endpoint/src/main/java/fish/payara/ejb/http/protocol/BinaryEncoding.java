@@ -0,0 +1,566 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.ejb.http.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compact binary encoding of the protocol messages used with {@link MediaTypes#BINARY}.
+ * <p>
+ * A message starts with a header of a magic byte, the encoding version and the kind of message followed by its
+ * fields. Each string is written only once per message and referred to by index afterwards, so that the type names
+ * repeated in {@link InvokeMethodRequest#argTypes} and {@link InvokeMethodRequest#argActualTypes} are only sent once.
+ * <p>
+ * Method arguments and results are encoded as tagged values. {@code null}, primitive wrappers, {@link String}s and
+ * {@code byte[]} are written directly, all other values are java serialised into a single object stream per encoded
+ * value so class descriptors are only written once even if several arguments share a type.
+ * <p>
+ * Lengths read from a message are not trusted: bytes are buffered as they arrive and counts of values are checked
+ * against the input left, so a corrupt or hostile message cannot make the reader allocate more than it sends.
+ *
+ * @see #write(Object, OutputStream)
+ * @see #read(InputStream, ClassLoader)
+ */
+public final class BinaryEncoding {
+
+    private static final int MAGIC = 0xEB;
+    private static final int VERSION = 1;
+
+    private static final int LOOKUP_REQUEST = 1;
+    private static final int LOOKUP_RESPONSE = 2;
+    private static final int INVOKE_METHOD_REQUEST = 3;
+    private static final int INVOKE_METHOD_RESPONSE = 4;
+    private static final int ERROR_RESPONSE = 5;
+
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int BYTE = 3;
+    private static final int SHORT = 4;
+    private static final int CHAR = 5;
+    private static final int INT = 6;
+    private static final int LONG = 7;
+    private static final int FLOAT = 8;
+    private static final int DOUBLE = 9;
+    private static final int STRING = 10;
+    private static final int BYTES = 11;
+    private static final int ARGUMENTS = 12;
+    private static final int OBJECT = 13;
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private BinaryEncoding() {
+        // util
+    }
+
+    /**
+     * @param type a message type
+     * @return true if messages of the given type can be written and read by this encoding
+     */
+    public static boolean isEncodable(Class<?> type) {
+        return type == LookupRequest.class || type == LookupResponse.class || type == InvokeMethodRequest.class
+                || type == InvokeMethodResponse.class || type == ErrorResponse.class;
+    }
+
+    /**
+     * Writes a message to the given stream. The stream is flushed but not closed.
+     *
+     * @param message a {@link LookupRequest}, {@link LookupResponse}, {@link InvokeMethodRequest},
+     *                {@link InvokeMethodResponse} or {@link ErrorResponse}, for {@link InvokeMethodRequest}s the
+     *                {@link InvokeMethodRequest#argValues} have to be encoded by {@link #encodeArguments(Object[])}
+     *                already
+     * @param out     the stream to write to
+     * @throws IOException if writing to the stream fails or if a value is not serialisable
+     */
+    public static void write(Object message, OutputStream out) throws IOException {
+        MessageOutput msg = new MessageOutput(out);
+        msg.out.writeByte(MAGIC);
+        msg.out.writeByte(VERSION);
+        if (message instanceof LookupRequest) {
+            msg.out.writeByte(LOOKUP_REQUEST);
+            msg.writeString(((LookupRequest) message).jndiName);
+        } else if (message instanceof LookupResponse) {
+            LookupResponse response = (LookupResponse) message;
+            msg.out.writeByte(LOOKUP_RESPONSE);
+            msg.writeString(response.typeName);
+            msg.writeString(response.kind);
+        } else if (message instanceof InvokeMethodRequest) {
+            InvokeMethodRequest request = (InvokeMethodRequest) message;
+            msg.out.writeByte(INVOKE_METHOD_REQUEST);
+            msg.writeString(request.principal);
+            msg.writeString(request.credentials);
+            msg.writeString(request.jndiName);
+            msg.writeString(request.method);
+            msg.writeStrings(request.argTypes);
+            msg.writeStrings(request.argActualTypes);
+            msg.writeBytes((byte[]) request.argValues);
+        } else if (message instanceof InvokeMethodResponse) {
+            InvokeMethodResponse response = (InvokeMethodResponse) message;
+            msg.out.writeByte(INVOKE_METHOD_RESPONSE);
+            msg.writeString(response.type);
+            writeValue(response.result, msg.out);
+        } else if (message instanceof ErrorResponse) {
+            msg.out.writeByte(ERROR_RESPONSE);
+            for (ErrorResponse error = (ErrorResponse) message; error != null; error = error.cause) {
+                msg.writeString(error.exceptionType);
+                msg.writeString(error.message);
+                msg.out.writeBoolean(error.cause != null);
+            }
+        } else {
+            throw new IllegalArgumentException("Not a protocol message: " + message);
+        }
+        msg.out.flush();
+    }
+
+    /**
+     * Reads a message written by {@link #write(Object, OutputStream)}.
+     * <p>
+     * The {@link InvokeMethodRequest#argValues} of a read {@link InvokeMethodRequest} are still encoded and have to be
+     * decoded by {@link #decodeArguments(byte[], ClassLoader)} once the application {@link ClassLoader} is known.
+     *
+     * @param in          the stream to read from
+     * @param classLoader used to load the classes of java serialised values, if null the default resolution of
+     *                    {@link ObjectInputStream} is used
+     * @return the message read
+     * @throws IOException            if reading from the stream fails or the stream is not a valid message
+     * @throws ClassNotFoundException if the class of a result value cannot be loaded
+     */
+    public static Object read(InputStream in, ClassLoader classLoader) throws IOException, ClassNotFoundException {
+        MessageInput msg = new MessageInput(in);
+        int magic = msg.in.readUnsignedByte();
+        int version = msg.in.readUnsignedByte();
+        if (magic != MAGIC || version != VERSION) {
+            throw new StreamCorruptedException("Unsupported message header: " + magic + "/" + version);
+        }
+        int kind = msg.in.readUnsignedByte();
+        switch (kind) {
+        case LOOKUP_REQUEST:
+            return new LookupRequest(msg.readString());
+        case LOOKUP_RESPONSE:
+            return new LookupResponse(msg.readString(), msg.readString());
+        case INVOKE_METHOD_REQUEST:
+            return new InvokeMethodRequest(msg.readString(), msg.readString(), msg.readString(), msg.readString(),
+                    msg.readStrings(), msg.readStrings(), readBytes(msg.in), null);
+        case INVOKE_METHOD_RESPONSE:
+            return new InvokeMethodResponse(msg.readString(), readValue(msg.in, classLoader));
+        case ERROR_RESPONSE:
+            ErrorResponse first = new ErrorResponse();
+            ErrorResponse error = first;
+            while (true) {
+                error.exceptionType = msg.readString();
+                error.message = msg.readString();
+                if (!msg.in.readBoolean()) {
+                    return first;
+                }
+                error.cause = new ErrorResponse();
+                error = error.cause;
+            }
+        default:
+            throw new StreamCorruptedException("Unknown message kind: " + kind);
+        }
+    }
+
+    /**
+     * Encodes method arguments as they are send in {@link InvokeMethodRequest#argValues}.
+     *
+     * @param args the method arguments, may be null
+     * @return the encoded arguments
+     * @throws IOException if an argument is not serialisable
+     */
+    public static byte[] encodeArguments(Object[] args) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        if (args == null) {
+            out.writeByte(NULL);
+        } else {
+            out.writeByte(ARGUMENTS);
+            writeVarInt(out, args.length);
+        }
+        new ValueOutput(out).writeAll(args == null ? new Object[0] : args);
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Decodes method arguments encoded by {@link #encodeArguments(Object[])}.
+     *
+     * @param args        the encoded arguments
+     * @param classLoader used to load the classes of java serialised arguments
+     * @return the method arguments, may be null
+     * @throws IOException            if the arguments are not validly encoded
+     * @throws ClassNotFoundException if the class of an argument cannot be loaded
+     */
+    public static Object[] decodeArguments(byte[] args, ClassLoader classLoader)
+            throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(args));
+        int tag = in.readUnsignedByte();
+        if (tag != NULL && tag != ARGUMENTS) {
+            throw new StreamCorruptedException("Not encoded method arguments");
+        }
+        // each value takes at least its tag byte
+        Object[] values = new Object[tag == NULL ? 0 : readCount(in, in.available())];
+        new ValueInput(in, classLoader).readAll(values);
+        return tag == NULL ? null : values;
+    }
+
+    private static void writeValue(Object value, DataOutputStream out) throws IOException {
+        new ValueOutput(out).writeAll(new Object[] { value });
+    }
+
+    private static Object readValue(DataInputStream in, ClassLoader classLoader)
+            throws IOException, ClassNotFoundException {
+        Object[] value = new Object[1];
+        new ValueInput(in, classLoader).readAll(value);
+        return value[0];
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed length");
+    }
+
+    static int readCount(DataInputStream in, int max) throws IOException {
+        int count = readVarInt(in);
+        if (count > max) {
+            throw new StreamCorruptedException("Length " + count + " exceeds the remaining input");
+        }
+        return count;
+    }
+
+    /**
+     * Reads a length prefixed byte array. Large arrays are read in chunks so that the memory allocated is bounded by
+     * the bytes actually received rather than by the length claimed.
+     */
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length <= CHUNK_SIZE) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        for (int remaining = length; remaining > 0;) {
+            int read = in.read(chunk, 0, Math.min(remaining, CHUNK_SIZE));
+            if (read < 0) {
+                throw new EOFException("Expected " + remaining + " more bytes");
+            }
+            bytes.write(chunk, 0, read);
+            remaining -= read;
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the fields of a message, each distinct string is only written once.
+     * <p>
+     * A string is written as {@code 0} for null, {@code 1} followed by its UTF-8 bytes the first time and as its
+     * index in the message offset by {@code 2} the following times.
+     */
+    private static final class MessageOutput {
+
+        final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        MessageOutput(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        void writeString(String str) throws IOException {
+            if (str == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            Integer index = strings.get(str);
+            if (index != null) {
+                writeVarInt(out, index + 2);
+                return;
+            }
+            strings.put(str, strings.size());
+            writeVarInt(out, 1);
+            byte[] utf8 = str.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, utf8.length);
+            out.write(utf8);
+        }
+
+        void writeStrings(String[] strs) throws IOException {
+            writeVarInt(out, strs.length);
+            for (String str : strs) {
+                writeString(str);
+            }
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static final class MessageInput {
+
+        final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+
+        MessageInput(InputStream in) {
+            this.in = new DataInputStream(in);
+        }
+
+        String readString() throws IOException {
+            int ref = readVarInt(in);
+            if (ref == 0) {
+                return null;
+            }
+            if (ref == 1) {
+                String str = new String(readBytes(in), StandardCharsets.UTF_8);
+                strings.add(str);
+                return str;
+            }
+            if (ref - 2 >= strings.size()) {
+                throw new StreamCorruptedException("Unknown string reference: " + ref);
+            }
+            return strings.get(ref - 2);
+        }
+
+        String[] readStrings() throws IOException {
+            // the input left is unknown, so the array grows with the strings actually read
+            int count = readVarInt(in);
+            List<String> strs = new ArrayList<>(Math.min(count, 16));
+            for (int i = 0; i < count; i++) {
+                strs.add(readString());
+            }
+            return strs.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * Writes values as a block of tags and plain values followed by a block with the java serialised values. The
+     * object stream is only created when a value needs it.
+     */
+    private static final class ValueOutput {
+
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream plainBytes = new ByteArrayOutputStream();
+        private final DataOutputStream plain = new DataOutputStream(plainBytes);
+        private ByteArrayOutputStream objectBytes;
+        private ObjectOutputStream objects;
+
+        ValueOutput(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeAll(Object[] values) throws IOException {
+            for (Object value : values) {
+                write(value);
+            }
+            plain.flush();
+            writeVarInt(out, plainBytes.size());
+            plainBytes.writeTo(out);
+            if (objects == null) {
+                writeVarInt(out, 0);
+            } else {
+                objects.flush();
+                writeVarInt(out, objectBytes.size());
+                objectBytes.writeTo(out);
+            }
+        }
+
+        private void write(Object value) throws IOException {
+            Class<?> type = value == null ? null : value.getClass();
+            if (type == null) {
+                plain.writeByte(NULL);
+            } else if (type == String.class) {
+                byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+                plain.writeByte(STRING);
+                writeVarInt(plain, utf8.length);
+                plain.write(utf8);
+            } else if (type == Integer.class) {
+                plain.writeByte(INT);
+                plain.writeInt((Integer) value);
+            } else if (type == Long.class) {
+                plain.writeByte(LONG);
+                plain.writeLong((Long) value);
+            } else if (type == Boolean.class) {
+                plain.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (type == Double.class) {
+                plain.writeByte(DOUBLE);
+                plain.writeDouble((Double) value);
+            } else if (type == Float.class) {
+                plain.writeByte(FLOAT);
+                plain.writeFloat((Float) value);
+            } else if (type == Short.class) {
+                plain.writeByte(SHORT);
+                plain.writeShort((Short) value);
+            } else if (type == Byte.class) {
+                plain.writeByte(BYTE);
+                plain.writeByte((Byte) value);
+            } else if (type == Character.class) {
+                plain.writeByte(CHAR);
+                plain.writeChar((Character) value);
+            } else if (type == byte[].class) {
+                byte[] bytes = (byte[]) value;
+                plain.writeByte(BYTES);
+                writeVarInt(plain, bytes.length);
+                plain.write(bytes);
+            } else {
+                plain.writeByte(OBJECT);
+                if (objects == null) {
+                    objectBytes = new ByteArrayOutputStream();
+                    objects = new ObjectOutputStream(objectBytes);
+                }
+                objects.writeObject(value);
+            }
+        }
+    }
+
+    private static final class ValueInput {
+
+        private final DataInputStream plain;
+        private final ObjectInputStream objects;
+
+        ValueInput(DataInputStream in, ClassLoader classLoader) throws IOException {
+            byte[] plainBytes = readBytes(in);
+            this.plain = new DataInputStream(new ByteArrayInputStream(plainBytes));
+            byte[] objectBytes = readBytes(in);
+            this.objects = objectBytes.length == 0
+                    ? null
+                    : new ClassLoaderObjectInputStream(new ByteArrayInputStream(objectBytes), classLoader);
+        }
+
+        void readAll(Object[] values) throws IOException, ClassNotFoundException {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = read();
+            }
+        }
+
+        private Object read() throws IOException, ClassNotFoundException {
+            int tag = plain.readUnsignedByte();
+            switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case BYTE:
+                return plain.readByte();
+            case SHORT:
+                return plain.readShort();
+            case CHAR:
+                return plain.readChar();
+            case INT:
+                return plain.readInt();
+            case LONG:
+                return plain.readLong();
+            case FLOAT:
+                return plain.readFloat();
+            case DOUBLE:
+                return plain.readDouble();
+            case STRING:
+            case BYTES:
+                byte[] bytes = readBytes(plain);
+                return tag == BYTES ? bytes : new String(bytes, StandardCharsets.UTF_8);
+            case OBJECT:
+                if (objects == null) {
+                    throw new StreamCorruptedException("Missing serialised value");
+                }
+                return objects.readObject();
+            default:
+                throw new StreamCorruptedException("Unknown value tag: " + tag);
+            }
+        }
+    }
+
+    private static final class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException ex) {
+                    // fall back to default resolution, for example for primitive types
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2019-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -81,12 +81,15 @@ import org.junit.runners.Parameterized.Parameters;
 
 import fish.payara.ejb.http.endpoint.EjbOverHttpResource;
 import fish.payara.ejb.http.endpoint.EjbOverHttpService;
+import fish.payara.ejb.http.protocol.BinaryEncoding;
 import fish.payara.ejb.http.protocol.ErrorResponse;
 import fish.payara.ejb.http.protocol.InvokeMethodRequest;
 import fish.payara.ejb.http.protocol.InvokeMethodResponse;
 import fish.payara.ejb.http.protocol.LookupRequest;
 import fish.payara.ejb.http.protocol.LookupResponse;
 import fish.payara.ejb.http.protocol.MediaTypes;
+import fish.payara.ejb.http.protocol.rs.BinaryMessageBodyReader;
+import fish.payara.ejb.http.protocol.rs.BinaryMessageBodyWriter;
 import fish.payara.ejb.http.protocol.rs.ErrorResponseExceptionMapper;
 import fish.payara.ejb.http.protocol.rs.JsonbInvokeMethodMessageBodyReader;
 import fish.payara.ejb.http.protocol.rs.JsonbLookupMessageBodyReader;
@@ -106,7 +109,7 @@ public class EjbOverHttpResourceTest {
 
     @Parameters(name = "{0}")
     public static Iterable<String> mediaTypes() {
-        return Arrays.asList(MediaTypes.JAVA_OBJECT, MediaTypes.JSON);
+        return Arrays.asList(MediaTypes.JAVA_OBJECT, MediaTypes.JSON, MediaTypes.BINARY);
     }
 
     /**
@@ -216,7 +219,9 @@ public class EjbOverHttpResourceTest {
                 .register(ObjectStreamMessageBodyWriter.class)
                 .register(ObjectStreamInvokeMethodMessageBodyReader.class)
                 .register(JsonbInvokeMethodMessageBodyReader.class)
-                .register(JsonbLookupMessageBodyReader.class);
+                .register(JsonbLookupMessageBodyReader.class)
+                .register(BinaryMessageBodyReader.class)
+                .register(BinaryMessageBodyWriter.class);
         return GrizzlyHttpServerFactory.createHttpServer(baseUri, config);
     }
 
@@ -224,7 +229,9 @@ public class EjbOverHttpResourceTest {
         return ClientBuilder.newClient()
                 .target(baseUri)
                 .register(ObjectStreamMessageBodyReader.class)
-                .register(ObjectStreamMessageBodyWriter.class);
+                .register(ObjectStreamMessageBodyWriter.class)
+                .register(BinaryMessageBodyReader.class)
+                .register(BinaryMessageBodyWriter.class);
     }
 
     @Test
@@ -435,8 +442,11 @@ public class EjbOverHttpResourceTest {
         }
     }
 
+    /**
+     * The binary encoding falls back to java serialisation for all values that are not strings or primitives.
+     */
     private boolean isJavaObjectSerialisation() {
-        return mediaType.equals("application/x-java-object");
+        return mediaType.equals("application/x-java-object") || mediaType.equals(MediaTypes.BINARY);
     }
 
     /**
@@ -448,6 +458,13 @@ public class EjbOverHttpResourceTest {
         if (!isJavaObjectSerialisation()) {
             return argValues;
         }
+        if (mediaType.equals(MediaTypes.BINARY)) {
+            try {
+                return BinaryEncoding.encodeArguments(argValues);
+            } catch (IOException e) {
+                throw new AssertionError("Failed to pack arguments: ", e);
+            }
+        }
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
             oos.writeObject(argValues);
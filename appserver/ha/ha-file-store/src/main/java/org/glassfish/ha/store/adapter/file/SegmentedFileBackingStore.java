@@ -0,0 +1,614 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.ha.store.adapter.file;
+
+import org.glassfish.ha.store.api.BackingStore;
+import org.glassfish.ha.store.api.BackingStoreConfiguration;
+import org.glassfish.ha.store.api.BackingStoreException;
+import org.glassfish.ha.store.api.BackingStoreFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An implementation of BackingStore that appends the serialized data to a few
+ * memory mapped segment files instead of writing one file per key.
+ * <p>
+ * The location and last access time of each key are kept in memory, so loads
+ * do not touch the directory and expired keys are found without scanning it.
+ * Saves are not synced individually, segments are forced to disk when they
+ * are full and on shutdown. Segments in which most records are outdated are
+ * compacted into the current segment when expired keys are removed.
+ * <p>
+ * Each record consists of a type byte, the length of the key, the length of
+ * the value, the last access time, the key as UTF-8 and the value. A removal
+ * is written as a record without value so that the index can be rebuilt from
+ * the segments after a restart.
+ */
+public class SegmentedFileBackingStore<K extends Serializable, V extends Serializable>
+        extends BackingStore<K, V> {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private static final byte END = 0;
+
+    private static final byte PUT = 1;
+
+    private static final byte REMOVE = 2;
+
+    // type, key length, value length, timestamp
+    private static final int HEADER_SIZE = 1 + 4 + 4 + 8;
+
+    private static final int TIMESTAMP_OFFSET = 1 + 4 + 4;
+
+    private static final long DEFAULT_SEGMENT_SIZE = 16L * 1024 * 1024;
+
+    /**
+     * A segment is compacted once this part of it is taken by outdated records.
+     */
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    protected Logger logger =
+            Logger.getLogger(SegmentedFileBackingStore.class.getName());
+
+    protected File baseDir;
+
+    private volatile boolean shutdown;
+
+    private static Level TRACE_LEVEL = Level.FINE;
+
+    private String debugStr;
+
+    private BackingStoreFactory factory;
+
+    private long defaultMaxIdleTimeoutInSeconds = 10L * 60L;
+
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+
+    // guarded by lock, ordered by id, the last one is appended to
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    private Segment current;
+
+    /**
+     * No arg constructor
+     */
+    public SegmentedFileBackingStore() {
+    }
+
+    @Override
+    protected void initialize(BackingStoreConfiguration<K, V> conf)
+        throws BackingStoreException {
+
+        if (conf.getLogger() != null) {
+            logger = conf.getLogger();
+        }
+
+        super.initialize(conf);
+        debugStr = "[SegmentedFileBackingStore - " + conf.getStoreName() + "] ";
+
+        baseDir = conf.getBaseDirectory();
+
+        Map<String, Object> vendorMap = conf.getVendorSpecificSettings();
+        try {
+            defaultMaxIdleTimeoutInSeconds = Long.parseLong(
+                    (String) vendorMap.get("max.idle.timeout.in.seconds"));
+        } catch (Exception ex) {
+            //Ignore. Use default
+        }
+        try {
+            segmentSize = Long.parseLong(
+                    (String) vendorMap.get("segment.size.in.mb")) * 1024 * 1024;
+        } catch (Exception ex) {
+            //Ignore. Use default
+        }
+        segmentSize = Math.max(HEADER_SIZE, Math.min(segmentSize, Integer.MAX_VALUE));
+
+        if ((baseDir.mkdirs() == false) && (! baseDir.isDirectory())) {
+            throw new BackingStoreException("[SegmentedFileBackingStore::initialize] Create base directory ("
+                    + baseDir.getAbsolutePath() + ") failed");
+        }
+
+        lock.writeLock().lock();
+        try {
+            recover();
+            logger.log(Level.INFO, "[SegmentedFileBackingStore::initialize] Successfully Created and initialized store. "
+                    + "Working dir: " + baseDir + "; Recovered keys: " + index.size() + "; Configuration: " + conf);
+        } catch (IOException ex) {
+            throw new BackingStoreException(debugStr + "Exception during initialization", ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*package*/ void setBackingStoreFactory(BackingStoreFactory factory) {
+        this.factory = factory;
+    }
+
+    public BackingStoreFactory getBackingStoreFactory() {
+        return factory;
+    }
+
+    @Override
+    public V load(K key, String version) throws BackingStoreException {
+
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered load(" + key + ", " + version + ")");
+        }
+
+        byte[] data = null;
+        lock.readLock().lock();
+        try {
+            Location location = index.get(key.toString());
+            if (location != null) {
+                ByteBuffer buffer = location.segment.buffer.duplicate();
+                buffer.position(location.offset + HEADER_SIZE + location.keyLength);
+                data = new byte[location.valueLength];
+                buffer.get(data);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        V value = null;
+        if (data != null) {
+            try (ObjectInputStream ois =
+                     super.createObjectInputStream(new ByteArrayInputStream(data))) {
+                value = (V) ois.readObject();
+                if (logger.isLoggable(TRACE_LEVEL)) {
+                    logger.log(TRACE_LEVEL, debugStr + "Done load(" + key + ", " + version + ")");
+                }
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, debugStr + "Failed to load(" + key + ", " + version + ")", ex);
+            }
+        }
+
+        return value;
+    }
+
+    @Override
+    public String save(K sessionKey, V value, boolean isNew)
+            throws BackingStoreException {
+
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered save(" + sessionKey + ")");
+        }
+        byte[] data = getSerializedState(value);
+        String key = sessionKey.toString();
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Location location = append(PUT, key, data, System.currentTimeMillis());
+            release(index.put(key, location));
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, debugStr + "save(" + sessionKey + ") failed", ex);
+            throw new BackingStoreException("Could not save session: " + sessionKey, ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Done save(" + sessionKey + ")");
+        }
+        return getBackingStoreConfiguration().getInstanceName();
+    }
+
+    public void remove(K sessionKey) {
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered remove(" + sessionKey + ")");
+        }
+        boolean status = false;
+        lock.writeLock().lock();
+        try {
+            status = !shutdown && removeKey(sessionKey.toString());
+        } catch (IOException ex) {
+            logger.log(TRACE_LEVEL, debugStr + "Failed to remove(" + sessionKey + ")", ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Done remove( " + sessionKey + "); status => " + status);
+        }
+    }
+
+    //TODO: deprecate after next shoal integration
+    public void updateTimeStamp(K k, String version, long timeStamp)
+            throws BackingStoreException {
+        updateTimestamp(k, timeStamp);
+    }
+
+    public void updateTimestamp(K sessionKey, long time)
+            throws BackingStoreException {
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered updateTimestamp(" + sessionKey + ", " + time + ")");
+        }
+        // the time is written in place, it does not make the record outdated
+        lock.readLock().lock();
+        try {
+            Location location = index.get(sessionKey.toString());
+            if (location == null) {
+                logger.log(Level.WARNING, debugStr
+                        + ": Cannot update timsestamp for: " + sessionKey
+                        + "; Key does not exist");
+                return;
+            }
+            location.lastAccessed = time;
+            location.segment.buffer.putLong(location.offset + TIMESTAMP_OFFSET, time);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Done updateTimestamp(" + sessionKey + ", " + time + ")");
+        }
+    }
+
+    public int removeExpired() {
+        return removeExpired(defaultMaxIdleTimeoutInSeconds * 1000L);
+    }
+
+    //TODO: deprecate after next shoal integration
+    public int removeExpired(long idleForMillis) {
+        long threshold = System.currentTimeMillis() - idleForMillis;
+        int expiredSessions = 0;
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered removeExpired()");
+        }
+        lock.writeLock().lock();
+        try {
+            Iterator<Map.Entry<String, Location>> iter = index.entrySet().iterator();
+            while (iter.hasNext() && !shutdown) {
+                Map.Entry<String, Location> entry = iter.next();
+                if (entry.getValue().lastAccessed < threshold) {
+                    removeKey(entry.getKey());
+                    expiredSessions++;
+                }
+            }
+            if (!shutdown) {
+                compact();
+            }
+            if (logger.isLoggable(TRACE_LEVEL)) {
+                logger.log(TRACE_LEVEL, debugStr + "Done removeExpired()");
+            }
+        } catch (Exception ex) {
+            logger.log(Level.WARNING, debugStr + " Exception while removing "
+                    + "expired sessions", ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return expiredSessions;
+    }
+
+    @Override
+    public int size() throws BackingStoreException {
+        return index.size();
+    }
+
+    public void shutdown() {
+        lock.writeLock().lock();
+        try {
+            shutdown = true;
+            closeSegments(false);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        //DO NOT DELETE THE WORKING DIRECTORY
+    }
+
+    @Override
+    public void destroy() {
+        if (logger.isLoggable(TRACE_LEVEL)) {
+            logger.log(TRACE_LEVEL, debugStr + "Entered destroy()");
+        }
+        lock.writeLock().lock();
+        try {
+            shutdown = true;
+            closeSegments(true);
+            index.clear();
+            if (baseDir.delete() == false) {
+                if (baseDir.exists()) {
+                    logger.log(Level.WARNING, debugStr + " destroy() failed to remove dir: " + baseDir.getAbsolutePath());
+                }
+            }
+            if (logger.isLoggable(TRACE_LEVEL)) {
+                logger.log(TRACE_LEVEL, debugStr + "Done destroy()");
+            }
+        } catch (Throwable th) {
+            logger.log(Level.WARNING, debugStr + " destroy() failed ", th);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkOpen() throws BackingStoreException {
+        if (shutdown) {
+            throw new BackingStoreException(debugStr + "Store has been shut down");
+        }
+    }
+
+    private boolean removeKey(String key) throws IOException {
+        Location location = index.remove(key);
+        if (location == null) {
+            return false;
+        }
+        release(location);
+        // the removal record itself is outdated as soon as it is written,
+        // it is only needed until older segments are compacted
+        Location removal = append(REMOVE, key, new byte[0], System.currentTimeMillis());
+        removal.segment.deadBytes += removal.length();
+        return true;
+    }
+
+    private void release(Location location) {
+        if (location != null) {
+            location.segment.deadBytes += location.length();
+        }
+    }
+
+    private Location append(byte type, String key, byte[] value, long timestamp) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_SIZE + keyBytes.length + value.length;
+        Segment segment = segmentFor(length);
+        int offset = segment.position;
+
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(offset);
+        buffer.put(END).putInt(keyBytes.length).putInt(value.length).putLong(timestamp)
+              .put(keyBytes).put(value);
+        // the type is written last so a partially written record is never read back
+        segment.buffer.put(offset, type);
+        segment.position += length;
+
+        return new Location(segment, offset, keyBytes.length, value.length, timestamp);
+    }
+
+    private Segment segmentFor(int length) throws IOException {
+        if (current == null || current.buffer.capacity() - current.position < length) {
+            if (current != null) {
+                current.buffer.force();
+            }
+            int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+            current = Segment.open(new File(baseDir, SEGMENT_PREFIX + id + SEGMENT_SUFFIX), id,
+                    Math.max(segmentSize, length));
+            segments.put(id, current);
+        }
+        return current;
+    }
+
+    /**
+     * Moves the live records of segments that are mostly outdated to the
+     * current segment and deletes their files.
+     */
+    private void compact() throws IOException {
+        for (Segment segment : segments.values().toArray(new Segment[0])) {
+            if (segment == current || segment.deadBytes < segment.position * COMPACTION_THRESHOLD) {
+                continue;
+            }
+            boolean oldest = segment.id == segments.firstKey();
+            ByteBuffer buffer = segment.buffer.duplicate();
+            int offset = 0;
+            int moved = 0;
+            while (offset + HEADER_SIZE <= segment.position) {
+                byte type = buffer.get(offset);
+                int keyLength = buffer.getInt(offset + 1);
+                int valueLength = buffer.getInt(offset + 5);
+                long timestamp = buffer.getLong(offset + TIMESTAMP_OFFSET);
+                String key = readKey(buffer, offset, keyLength);
+                Location location = index.get(key);
+                if (type == PUT && location != null && location.segment == segment && location.offset == offset) {
+                    byte[] value = new byte[valueLength];
+                    ByteBuffer src = segment.buffer.duplicate();
+                    src.position(offset + HEADER_SIZE + keyLength);
+                    src.get(value);
+                    index.put(key, append(PUT, key, value, location.lastAccessed));
+                    moved++;
+                } else if (type == REMOVE && !oldest && location == null) {
+                    // an older segment may still hold a record of the key
+                    Location removal = append(REMOVE, key, new byte[0], timestamp);
+                    removal.segment.deadBytes += removal.length();
+                }
+                offset += HEADER_SIZE + keyLength + valueLength;
+            }
+            segments.remove(segment.id);
+            current.buffer.force();
+            segment.close(true);
+            if (logger.isLoggable(TRACE_LEVEL)) {
+                logger.log(TRACE_LEVEL, debugStr + "Compacted segment " + segment.id + "; moved " + moved + " records");
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index from the segment files in the base directory.
+     */
+    private void recover() throws IOException {
+        File[] files = baseDir.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(id, Segment.open(file, id, file.length()));
+            } catch (NumberFormatException ex) {
+                logger.log(Level.WARNING, debugStr + "Ignoring unknown file " + name);
+            }
+        }
+        for (Segment segment : segments.values()) {
+            ByteBuffer buffer = segment.buffer;
+            int offset = 0;
+            while (offset + HEADER_SIZE <= buffer.capacity()) {
+                byte type = buffer.get(offset);
+                int keyLength = buffer.getInt(offset + 1);
+                int valueLength = buffer.getInt(offset + 5);
+                long end = (long) offset + HEADER_SIZE + keyLength + valueLength;
+                if ((type != PUT && type != REMOVE) || keyLength < 0 || valueLength < 0 || end > buffer.capacity()) {
+                    break;
+                }
+                String key = readKey(buffer, offset, keyLength);
+                if (type == PUT) {
+                    release(index.put(key, new Location(segment, offset, keyLength, valueLength,
+                            buffer.getLong(offset + TIMESTAMP_OFFSET))));
+                } else {
+                    release(index.remove(key));
+                    segment.deadBytes += HEADER_SIZE + keyLength;
+                }
+                offset = (int) end;
+            }
+            segment.position = offset;
+        }
+        if (!segments.isEmpty()) {
+            current = segments.lastEntry().getValue();
+        }
+    }
+
+    private static String readKey(ByteBuffer buffer, int offset, int keyLength) {
+        byte[] keyBytes = new byte[keyLength];
+        ByteBuffer src = buffer.duplicate();
+        src.position(offset + HEADER_SIZE);
+        src.get(keyBytes);
+        return new String(keyBytes, StandardCharsets.UTF_8);
+    }
+
+    private void closeSegments(boolean delete) {
+        for (Segment segment : segments.values()) {
+            try {
+                if (!delete) {
+                    segment.buffer.force();
+                }
+                segment.close(delete);
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, debugStr + "Failed to close segment " + segment.id, ex);
+            }
+        }
+        segments.clear();
+        current = null;
+    }
+
+    private byte[] getSerializedState(V value)
+            throws BackingStoreException {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(value);
+            oos.flush();
+            return bos.toByteArray();
+        } catch (IOException ioEx) {
+            throw new BackingStoreException("Error during getSerializedState", ioEx);
+        }
+    }
+
+    private static final class Segment {
+
+        final int id;
+        final File file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int position;
+        long deadBytes;
+
+        private Segment(int id, File file, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(File file, int id, long size) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                FileChannel channel = raf.getChannel();
+                return new Segment(id, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException | RuntimeException ex) {
+                raf.close();
+                throw ex;
+            }
+        }
+
+        void close(boolean delete) throws IOException {
+            channel.close();
+            // the mapping is only released once the buffer is collected,
+            // on some platforms the file cannot be deleted before that
+            if (delete && !file.delete() && file.exists()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    private static final class Location {
+
+        final Segment segment;
+        final int offset;
+        final int keyLength;
+        final int valueLength;
+        volatile long lastAccessed;
+
+        Location(Segment segment, int offset, int keyLength, int valueLength, long lastAccessed) {
+            this.segment = segment;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.lastAccessed = lastAccessed;
+        }
+
+        int length() {
+            return HEADER_SIZE + keyLength + valueLength;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ha.store.adapter.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.glassfish.ha.store.api.BackingStoreConfiguration;
+import org.glassfish.ha.store.api.BackingStoreException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedFileBackingStoreTest {
+
+    private static final int HEADER_SIZE = 1 + 4 + 4 + 8;
+
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File baseDir;
+    private SegmentedFileBackingStore<String, byte[]> store;
+
+    @Before
+    public void setUp() throws Exception {
+        baseDir = folder.newFolder("store");
+        store = open();
+    }
+
+    @After
+    public void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    public void loadReturnsLastSavedValue() throws Exception {
+        store.save("a", bytes(100, 1), true);
+        store.save("b", bytes(200, 2), true);
+        store.save("a", bytes(50, 3), false);
+
+        assertEquals(2, store.size());
+        assertArrayEquals(bytes(50, 3), store.load("a", null));
+        assertArrayEquals(bytes(200, 2), store.load("b", null));
+        assertNull(store.load("c", null));
+
+        store.remove("a");
+        assertNull(store.load("a", null));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void indexIsRecoveredAfterRestart() throws Exception {
+        store.save("a", bytes(100, 1), true);
+        store.save("b", bytes(100, 2), true);
+        store.save("b", bytes(100, 3), false);
+        store.remove("a");
+        store.updateTimestamp("b", 1234);
+        store.shutdown();
+
+        store = open();
+
+        assertEquals(1, store.size());
+        assertNull(store.load("a", null));
+        assertArrayEquals(bytes(100, 3), store.load("b", null));
+        // the timestamp written in place survives the restart
+        assertEquals(1, store.removeExpired(60000));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void recordCutOffAtTheEndOfASegmentIsIgnored() throws Exception {
+        store.save("a", bytes(100, 1), true);
+        store.save("b", bytes(100, 2), true);
+        store.shutdown();
+
+        // lose the last bytes of b, as if the file was cut short by a crash
+        try (RandomAccessFile raf = new RandomAccessFile(new File(baseDir, "segment-0.dat"), "rw")) {
+            raf.setLength(recordLength("a", bytes(100, 1)) + recordLength("b", bytes(100, 2)) - 3);
+        }
+
+        store = open();
+
+        assertEquals(1, store.size());
+        assertArrayEquals(bytes(100, 1), store.load("a", null));
+        assertNull(store.load("b", null));
+
+        // new records go to a new segment and are found again after a restart
+        store.save("c", bytes(100, 4), true);
+        store.shutdown();
+        store = open();
+        assertEquals(2, store.size());
+        assertArrayEquals(bytes(100, 4), store.load("c", null));
+    }
+
+    @Test
+    public void mostlyOutdatedSegmentIsCompacted() throws Exception {
+        // five values fill most of a segment, the sixth one starts the next
+        int valueSize = SEGMENT_SIZE / 5 - 1024;
+        for (int i = 0; i < 8; i++) {
+            store.save("k" + i, bytes(valueSize, i), true);
+        }
+        File firstSegment = new File(baseDir, "segment-0.dat");
+        assertTrue(firstSegment.exists());
+
+        for (int i = 0; i < 4; i++) {
+            store.updateTimestamp("k" + i, 0);
+        }
+        assertEquals(4, store.removeExpired(60000));
+
+        assertFalse(firstSegment.exists());
+        assertEquals(4, store.size());
+        for (int i = 4; i < 8; i++) {
+            assertArrayEquals(bytes(valueSize, i), store.load("k" + i, null));
+        }
+
+        store.shutdown();
+        store = open();
+
+        assertEquals(4, store.size());
+        assertNull(store.load("k0", null));
+        for (int i = 4; i < 8; i++) {
+            assertArrayEquals(bytes(valueSize, i), store.load("k" + i, null));
+        }
+    }
+
+    private SegmentedFileBackingStore<String, byte[]> open() throws BackingStoreException {
+        BackingStoreConfiguration<String, byte[]> conf = new BackingStoreConfiguration<>();
+        conf.setStoreName("test")
+            .setInstanceName("instance")
+            .setBaseDirectory(baseDir)
+            .setKeyClazz(String.class)
+            .setValueClazz(byte[].class)
+            .setClassLoader(getClass().getClassLoader());
+        conf.getVendorSpecificSettings().put("segment.size.in.mb", "1");
+
+        SegmentedFileBackingStore<String, byte[]> opened = new SegmentedFileBackingStore<>();
+        opened.initialize(conf);
+        return opened;
+    }
+
+    private static int recordLength(String key, byte[] value) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(value);
+        }
+        return HEADER_SIZE + key.getBytes(StandardCharsets.UTF_8).length + bos.size();
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) seed);
+        for (int i = 0; i < length; i += 7) {
+            data[i] = (byte) (i + seed);
+        }
+        return data;
+    }
+}
@@ -39,12 +39,20 @@
  */
 package fish.payara.ha.hazelcast.store;
 
+import fish.payara.nucleus.hazelcast.HazelcastCore;
 import fish.payara.nucleus.store.ClusteredStore;
 import org.glassfish.ha.store.api.BackingStore;
 import org.glassfish.ha.store.api.BackingStoreException;
 import org.glassfish.ha.store.api.BackingStoreFactory;
+import org.glassfish.web.ha.session.management.CompositeMetadata;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -59,11 +67,15 @@ public class HazelcastBackingStore<K extends Serializable, V extends Serializabl
     private final String storeName;
     private String instanceName;
     private ClusteredStore clusteredStore;
+    private final HazelcastCore hzCore;
+    private final ConcurrentMap<K, DeltaBatch> pendingDeltas = new ConcurrentHashMap<>();
 
-    public HazelcastBackingStore(BackingStoreFactory factory, String storeName, ClusteredStore clusteredStore) {
+    public HazelcastBackingStore(BackingStoreFactory factory, String storeName, ClusteredStore clusteredStore,
+            HazelcastCore hzCore) {
         this.factory = factory;
         this.storeName = storeName;
         this.clusteredStore = clusteredStore;
+        this.hzCore = hzCore;
     }
 
     @Override
@@ -86,11 +98,37 @@ public class HazelcastBackingStore<K extends Serializable, V extends Serializabl
     @Override
     public String save(K k, V v, boolean bln) throws BackingStoreException {
         init();
-        clusteredStore.set(storeName, k, v);
-        
+        if (v instanceof CompositeMetadata) {
+            saveDelta(k, SessionDeltaEntryProcessor.encode((CompositeMetadata) v));
+        } else {
+            clusteredStore.set(storeName, k, v);
+        }
         return instanceName;
     }
 
+    /**
+     * Replicates only the dirty attributes of a session. Saves of the same session arriving while a previous save is
+     * still being replicated are batched together and sent as a single operation once it has completed.
+     */
+    private void saveDelta(K k, byte[] delta) throws BackingStoreException {
+        DeltaBatch batch = pendingDeltas.compute(k, (key, current) ->
+                current != null && current.offer(delta) ? current : new DeltaBatch(current, delta));
+        try {
+            batch.flush(deltas -> applyDeltas(k, deltas));
+        } finally {
+            pendingDeltas.remove(k, batch);
+        }
+    }
+
+    private void applyDeltas(K k, byte[][] deltas) {
+        if (hzCore.isDatagridEncryptionEnabled()) {
+            // the stored value is encrypted so the owning member cannot merge into it
+            clusteredStore.set(storeName, k, SessionDeltaEntryProcessor.apply(clusteredStore.get(storeName, k), deltas));
+        } else {
+            hzCore.getInstance().getMap(storeName).executeOnKey(k, new SessionDeltaEntryProcessor(deltas));
+        }
+    }
+
     @Override
     public void remove(K k) throws BackingStoreException {
         init();
@@ -115,4 +153,76 @@ public class HazelcastBackingStore<K extends Serializable, V extends Serializabl
         }
         instanceName = clusteredStore.getInstanceId();
     }
+
+    /**
+     * The deltas of one session waiting to be replicated together. A batch is only sent once the batch before it for
+     * the same session has completed, so deltas are always applied in order.
+     */
+    private static final class DeltaBatch {
+
+        private final List<byte[]> deltas = new ArrayList<>(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile DeltaBatch previous;
+        private volatile RuntimeException failure;
+        private boolean sealed;
+
+        DeltaBatch(DeltaBatch previous, byte[] delta) {
+            this.previous = previous;
+            deltas.add(delta);
+        }
+
+        synchronized boolean offer(byte[] delta) {
+            if (sealed) {
+                return false;
+            }
+            deltas.add(delta);
+            return true;
+        }
+
+        private synchronized byte[][] drain() {
+            if (sealed) {
+                return null;
+            }
+            sealed = true;
+            return deltas.toArray(new byte[deltas.size()][]);
+        }
+
+        void flush(Consumer<byte[][]> replication) throws BackingStoreException {
+            DeltaBatch before = previous;
+            if (before != null) {
+                awaitUninterruptibly(before.done);
+                previous = null;
+            }
+            byte[][] drained = drain();
+            if (drained == null) {
+                awaitUninterruptibly(done);
+            } else {
+                try {
+                    replication.accept(drained);
+                } catch (RuntimeException ex) {
+                    failure = ex;
+                } finally {
+                    done.countDown();
+                }
+            }
+            if (failure != null) {
+                throw new BackingStoreException(failure.getMessage(), failure);
+            }
+        }
+
+        private static void awaitUninterruptibly(CountDownLatch latch) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.ha.hazelcast.store;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import org.glassfish.web.ha.session.management.CompositeMetadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Applies one or more session deltas to the {@link CompositeMetadata} held in a Hazelcast map entry.
+ * <p>
+ * The processor is executed on the member owning the entry (and on its backups) so only the dirty attributes of a
+ * session travel over the network. Each delta is the compact binary form written by
+ * {@link CompositeMetadata#_storeable_writeState(java.io.OutputStream)} and the processor itself is written as
+ * {@link DataSerializable} instead of going through {@link java.io.ObjectOutputStream}.
+ */
+public class SessionDeltaEntryProcessor extends AbstractEntryProcessor<Serializable, Serializable>
+        implements DataSerializable {
+
+    private byte[][] deltas;
+
+    /**
+     * Required by Hazelcast for deserialisation
+     */
+    public SessionDeltaEntryProcessor() {
+        super(true);
+    }
+
+    /**
+     * @param deltas encoded deltas, in the order they must be applied
+     */
+    public SessionDeltaEntryProcessor(byte[]... deltas) {
+        super(true);
+        this.deltas = deltas;
+    }
+
+    @Override
+    public Object process(Map.Entry<Serializable, Serializable> entry) {
+        entry.setValue(apply(entry.getValue(), deltas));
+        return null;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeInt(deltas.length);
+        for (byte[] delta : deltas) {
+            out.writeByteArray(delta);
+        }
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        deltas = new byte[in.readInt()][];
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = in.readByteArray();
+        }
+    }
+
+    /**
+     * Encodes the dirty parts of the given metadata as a delta.
+     *
+     * @param metadata the metadata produced for a single save
+     * @return the compact binary delta
+     */
+    public static byte[] encode(CompositeMetadata metadata) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            metadata._storeable_writeState(bytes);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Applies the deltas on top of the currently stored value.
+     *
+     * @param current the stored value, may be {@code null} when the session has not been stored yet
+     * @param deltas the encoded deltas to apply, in order
+     * @return the merged metadata
+     */
+    public static CompositeMetadata apply(Serializable current, byte[]... deltas) {
+        CompositeMetadata metadata = current instanceof CompositeMetadata
+                ? (CompositeMetadata) current
+                : new CompositeMetadata();
+        try {
+            for (byte[] delta : deltas) {
+                metadata._storeable_readState(new ByteArrayInputStream(delta));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return metadata;
+    }
+}
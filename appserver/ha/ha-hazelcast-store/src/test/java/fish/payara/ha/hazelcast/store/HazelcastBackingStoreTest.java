@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.ha.hazelcast.store;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import fish.payara.nucleus.hazelcast.HazelcastCore;
+import fish.payara.nucleus.store.ClusteredStore;
+import org.glassfish.ha.store.api.BackingStoreException;
+import org.glassfish.web.ha.session.management.CompositeMetadata;
+import org.glassfish.web.ha.session.management.SessionAttributeMetadata;
+import org.glassfish.web.ha.session.management.SessionAttributeMetadata.Operation;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fish.payara.ha.hazelcast.store.SessionDeltaEntryProcessorTest.attribute;
+import static fish.payara.ha.hazelcast.store.SessionDeltaEntryProcessorTest.attributes;
+import static fish.payara.ha.hazelcast.store.SessionDeltaEntryProcessorTest.map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests saving sessions as deltas, both through the entry processor and, with datagrid encryption, by merging
+ * locally.
+ */
+public class HazelcastBackingStoreTest {
+
+    private static HazelcastInstance hazelcast;
+
+    @BeforeClass
+    public static void startHazelcast() {
+        Config config = new Config();
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(false);
+        hazelcast = Hazelcast.newHazelcastInstance(config);
+    }
+
+    @AfterClass
+    public static void stopHazelcast() {
+        hazelcast.shutdown();
+    }
+
+    @Test
+    public void sessionDeltasAreMergedByEntryProcessor() throws BackingStoreException {
+        StubCore core = new StubCore(false);
+        HazelcastBackingStore<String, Serializable> store = newStore(core, new StubClusteredStore(true));
+
+        assertEquals("instance", store.save("s1", session(1,
+                attribute("a", Operation.ADD, "1"), attribute("b", Operation.ADD, "2")), true));
+        store.save("s1", session(2, attribute("a", Operation.UPDATE, "10"), attribute("b", Operation.DELETE, null)),
+                false);
+
+        CompositeMetadata stored = (CompositeMetadata) hazelcast.getMap("sessions").get("s1");
+        assertEquals(2, stored.getVersion());
+        assertEquals(map("a", "10"), attributes(stored));
+    }
+
+    @Test
+    public void encryptedSessionDeltasAreMergedLocally() throws BackingStoreException {
+        StubClusteredStore clusteredStore = new StubClusteredStore(false);
+        HazelcastBackingStore<String, Serializable> store = newStore(new StubCore(true), clusteredStore);
+
+        store.save("s1", session(1, attribute("a", Operation.ADD, "1")), true);
+        store.save("s1", session(2, attribute("b", Operation.ADD, "2")), false);
+        store.save("s1", session(3, attribute("a", Operation.DELETE, null)), false);
+
+        CompositeMetadata stored = (CompositeMetadata) store.load("s1", null);
+        assertEquals(3, stored.getVersion());
+        assertEquals(map("b", "2"), attributes(stored));
+        assertEquals(3, clusteredStore.sets.get());
+        assertNull(hazelcast.getMap("sessions").get("s1"));
+    }
+
+    @Test
+    public void otherValuesAreSetAsTheyAre() throws BackingStoreException {
+        StubClusteredStore clusteredStore = new StubClusteredStore(false);
+        HazelcastBackingStore<String, Serializable> store = newStore(new StubCore(false), clusteredStore);
+
+        store.save("k", "value", true);
+        assertSame("value", store.load("k", null));
+    }
+
+    @Test
+    public void concurrentSavesOfOneSessionAreAppliedInOrder() throws Exception {
+        StubClusteredStore clusteredStore = new StubClusteredStore(false);
+        clusteredStore.slow = true;
+        HazelcastBackingStore<String, Serializable> store = newStore(new StubCore(true), clusteredStore);
+        int threads = 4;
+        int saves = 50;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> savers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String name = "attr" + t;
+                savers.add(executor.submit(() -> {
+                    for (int i = 0; i <= saves; i++) {
+                        store.save("s1", session(i, attribute(name, Operation.UPDATE, Integer.toString(i))), false);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> saver : savers) {
+                saver.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, String> expected = map();
+        for (int t = 0; t < threads; t++) {
+            expected.put("attr" + t, Integer.toString(saves));
+        }
+        assertEquals(expected, attributes((CompositeMetadata) store.load("s1", null)));
+    }
+
+    @Test
+    public void failedReplicationIsReportedAndDoesNotBlockLaterSaves() throws BackingStoreException {
+        StubClusteredStore clusteredStore = new StubClusteredStore(false);
+        HazelcastBackingStore<String, Serializable> store = newStore(new StubCore(true), clusteredStore);
+
+        clusteredStore.failing.set(true);
+        try {
+            store.save("s1", session(1, attribute("a", Operation.ADD, "1")), true);
+            fail("Expected the replication failure to be reported");
+        } catch (BackingStoreException expected) {
+        }
+
+        clusteredStore.failing.set(false);
+        store.save("s1", session(2, attribute("b", Operation.ADD, "2")), false);
+        assertEquals(map("b", "2"), attributes((CompositeMetadata) store.load("s1", null)));
+    }
+
+    private static HazelcastBackingStore<String, Serializable> newStore(HazelcastCore core,
+            ClusteredStore clusteredStore) {
+        return new HazelcastBackingStore<>(null, "sessions", clusteredStore, core);
+    }
+
+    private static CompositeMetadata session(long version, SessionAttributeMetadata... attributes) {
+        List<SessionAttributeMetadata> entries = new ArrayList<>();
+        for (SessionAttributeMetadata attribute : attributes) {
+            entries.add(attribute);
+        }
+        return new CompositeMetadata(version, 0L, 0L, entries, null, null);
+    }
+
+    private static class StubCore extends HazelcastCore {
+
+        private final boolean encrypted;
+
+        StubCore(boolean encrypted) {
+            this.encrypted = encrypted;
+        }
+
+        @Override
+        public HazelcastInstance getInstance() {
+            return hazelcast;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean isDatagridEncryptionEnabled() {
+            return encrypted;
+        }
+    }
+
+    /**
+     * Reads from the Hazelcast map when values are merged there, otherwise keeps the values to itself like an
+     * encrypted map whose values the owning member cannot read.
+     */
+    private static class StubClusteredStore extends ClusteredStore {
+
+        private final boolean readHazelcast;
+        private final Map<Serializable, Serializable> values = new ConcurrentHashMap<>();
+        final AtomicInteger sets = new AtomicInteger();
+        final AtomicBoolean failing = new AtomicBoolean();
+        volatile boolean slow;
+
+        StubClusteredStore(boolean readHazelcast) {
+            this.readHazelcast = readHazelcast;
+        }
+
+        @Override
+        public String getInstanceId() {
+            return "instance";
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean set(String storeName, Serializable key, Serializable value) {
+            if (failing.get()) {
+                throw new IllegalStateException("Member left the cluster");
+            }
+            if (slow) {
+                Thread.yield();
+            }
+            sets.incrementAndGet();
+            values.put(key, value);
+            return true;
+        }
+
+        @Override
+        public Serializable get(String storeName, Serializable key) {
+            return readHazelcast ? (Serializable) hazelcast.getMap(storeName).get(key) : values.get(key);
+        }
+    }
+}
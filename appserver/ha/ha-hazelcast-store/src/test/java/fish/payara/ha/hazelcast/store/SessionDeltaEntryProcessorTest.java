@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.ha.hazelcast.store;
+
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import org.glassfish.web.ha.session.management.CompositeMetadata;
+import org.glassfish.web.ha.session.management.SessionAttributeMetadata;
+import org.glassfish.web.ha.session.management.SessionAttributeMetadata.Operation;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests encoding session deltas and merging them into the stored {@link CompositeMetadata}.
+ */
+public class SessionDeltaEntryProcessorTest {
+
+    @Test
+    public void applyOnMissingValueCreatesMetadata() {
+        CompositeMetadata merged = SessionDeltaEntryProcessor.apply(null,
+                delta(3, attribute("a", Operation.ADD, "1"), attribute("b", Operation.ADD, "2")));
+
+        assertEquals(3, merged.getVersion());
+        assertEquals(map("a", "1", "b", "2"), attributes(merged));
+    }
+
+    @Test
+    public void addUpdateAndDeleteAreMergedOntoStoredValue() {
+        CompositeMetadata stored = SessionDeltaEntryProcessor.apply(null,
+                delta(1, attribute("a", Operation.ADD, "1"), attribute("b", Operation.ADD, "2")));
+
+        CompositeMetadata merged = SessionDeltaEntryProcessor.apply(stored, delta(2,
+                attribute("a", Operation.UPDATE, "10"),
+                attribute("b", Operation.DELETE, null),
+                attribute("c", Operation.ADD, "3")));
+
+        assertSame(stored, merged);
+        assertEquals(2, merged.getVersion());
+        assertEquals(map("a", "10", "c", "3"), attributes(merged));
+    }
+
+    @Test
+    public void deltasAreAppliedInOrder() {
+        byte[] first = delta(1, attribute("a", Operation.ADD, "1"));
+        byte[] second = delta(2, attribute("a", Operation.UPDATE, "2"));
+        byte[] third = delta(3, attribute("a", Operation.DELETE, null), attribute("b", Operation.ADD, "3"));
+
+        CompositeMetadata merged = SessionDeltaEntryProcessor.apply(null, first, second, third);
+        assertEquals(3, merged.getVersion());
+        assertEquals(map("b", "3"), attributes(merged));
+
+        merged = SessionDeltaEntryProcessor.apply(null, third, second);
+        assertEquals(2, merged.getVersion());
+        assertEquals(map("a", "2", "b", "3"), attributes(merged));
+    }
+
+    @Test
+    public void valueOfAnotherTypeIsReplaced() {
+        CompositeMetadata merged = SessionDeltaEntryProcessor.apply("not a session",
+                delta(1, attribute("a", Operation.ADD, "1")));
+
+        assertEquals(map("a", "1"), attributes(merged));
+    }
+
+    @Test
+    public void processReplacesEntryValue() {
+        Map.Entry<Serializable, Serializable> entry = new SimpleEntry<>("session", null);
+
+        new SessionDeltaEntryProcessor(delta(1, attribute("a", Operation.ADD, "1"))).process(entry);
+        new SessionDeltaEntryProcessor(delta(2, attribute("a", Operation.UPDATE, "2"))).process(entry);
+
+        assertTrue(entry.getValue() instanceof CompositeMetadata);
+        assertEquals(map("a", "2"), attributes((CompositeMetadata) entry.getValue()));
+    }
+
+    @Test
+    public void processorSurvivesSerialization() {
+        InternalSerializationService serialization = new DefaultSerializationServiceBuilder().build();
+        SessionDeltaEntryProcessor processor = new SessionDeltaEntryProcessor(
+                delta(1, attribute("a", Operation.ADD, "1")),
+                delta(2, attribute("b", Operation.ADD, "2")));
+
+        SessionDeltaEntryProcessor copy = serialization.toObject(serialization.toData(processor));
+        Map.Entry<Serializable, Serializable> entry = new SimpleEntry<>("session", null);
+        copy.process(entry);
+
+        assertEquals(map("a", "1", "b", "2"), attributes((CompositeMetadata) entry.getValue()));
+    }
+
+    static byte[] delta(long version, SessionAttributeMetadata... attributes) {
+        List<SessionAttributeMetadata> entries = new ArrayList<>();
+        for (SessionAttributeMetadata attribute : attributes) {
+            entries.add(attribute);
+        }
+        return SessionDeltaEntryProcessor.encode(new CompositeMetadata(version, 0L, 0L, entries, null, null));
+    }
+
+    static SessionAttributeMetadata attribute(String name, Operation operation, String value) {
+        return new SessionAttributeMetadata(name, operation,
+                value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Map<String, String> attributes(CompositeMetadata metadata) {
+        Map<String, String> attributes = new TreeMap<>();
+        for (SessionAttributeMetadata entry : metadata.getEntries()) {
+            attributes.put(entry.getAttributeName(), new String(entry.getState(), StandardCharsets.UTF_8));
+        }
+        return attributes;
+    }
+
+    static Map<String, String> map(String... keysAndValues) {
+        Map<String, String> map = new TreeMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+}
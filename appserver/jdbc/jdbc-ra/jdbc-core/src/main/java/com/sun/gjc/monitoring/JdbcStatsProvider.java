@@ -38,7 +38,7 @@
  * holder.
  */
 
-// Portions Copyright [2016-2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.gjc.monitoring;
 
@@ -46,6 +46,8 @@ import com.sun.gjc.util.SQLTrace;
 import fish.payara.jdbc.stats.FrequentSQLTraceCache;
 import fish.payara.jdbc.stats.SlowSqlTrace;
 import fish.payara.jdbc.stats.SlowSqlTraceCache;
+import fish.payara.jdbc.stats.SqlFingerprint;
+import fish.payara.jdbc.stats.SqlTraceStatistics;
 import java.util.List;
 import org.glassfish.external.probe.provider.annotations.ProbeListener;
 import org.glassfish.external.probe.provider.annotations.ProbeParam;
@@ -70,6 +72,10 @@ import org.glassfish.resourcebase.resources.api.PoolInfo;
 @Description("JDBC RA Statistics")
 public class JdbcStatsProvider {
 
+    // Number of statement fingerprints tracked per top query reported
+    private static final int SQL_STATISTICS_ENTRIES_PER_REPORTED = 8;
+    private static final int MIN_SQL_STATISTICS_ENTRIES = 64;
+
     private ListStatisticImpl freqUsedSqlQueries = new ListStatisticImpl(
             "FreqUsedSqlQueries", "List",
             "Most frequently used sql queries");
@@ -84,6 +90,10 @@ public class JdbcStatsProvider {
             "NumStatementCacheMiss", StatisticImpl.UNIT_COUNT,
             "The total number of Statement Cache misses.");
 
+    private CountStatisticImpl numStatementCacheEviction = new CountStatisticImpl(
+            "NumStatementCacheEviction", StatisticImpl.UNIT_COUNT,
+            "The total number of statements evicted from full Statement Caches.");
+
     private CountStatisticImpl numPotentialStatementLeak = new CountStatisticImpl(
             "NumPotentialStatementLeak", StatisticImpl.UNIT_COUNT,
             "The total number of potential Statement leaks");
@@ -91,6 +101,9 @@ public class JdbcStatsProvider {
     private PoolInfo poolInfo;
     private FrequentSQLTraceCache freqSqlTraceCache;
     private SlowSqlTraceCache slowSqlTraceCache;
+    private SqlTraceStatistics sqlTraceStatistics;
+    private int sqlTraceCacheSize;
+    private volatile boolean fingerprintSql = true;
 
     public JdbcStatsProvider(String poolName, String appName, String moduleName, int sqlTraceCacheSize,
             long timeToKeepQueries) {
@@ -98,6 +111,7 @@ public class JdbcStatsProvider {
         if(sqlTraceCacheSize > 0) {
             this.freqSqlTraceCache = new FrequentSQLTraceCache(poolName, sqlTraceCacheSize, timeToKeepQueries);
             this.slowSqlTraceCache = new SlowSqlTraceCache(poolName, sqlTraceCacheSize, timeToKeepQueries);
+            initSqlTraceStatistics(sqlTraceCacheSize, timeToKeepQueries);
         }
     }
     
@@ -107,9 +121,27 @@ public class JdbcStatsProvider {
         if(sqlTraceCacheSize > 0) {
             this.freqSqlTraceCache = new FrequentSQLTraceCache(poolName, sqlTraceCacheSize, timeToKeepQueries, maxStoredEntries);
             this.slowSqlTraceCache = new SlowSqlTraceCache(poolName, sqlTraceCacheSize, timeToKeepQueries);
+            initSqlTraceStatistics(sqlTraceCacheSize, timeToKeepQueries);
         }
     }
 
+    private void initSqlTraceStatistics(int sqlTraceCacheSize, long timeToKeepQueries) {
+        this.sqlTraceCacheSize = sqlTraceCacheSize;
+        this.sqlTraceStatistics = new SqlTraceStatistics(Math.max(MIN_SQL_STATISTICS_ENTRIES,
+                sqlTraceCacheSize * SQL_STATISTICS_ENTRIES_PER_REPORTED), timeToKeepQueries);
+    }
+
+    /**
+     * Sets whether traced sql is reduced to its fingerprint, so that
+     * statements differing only by their literals are traced as one. When
+     * disabled, the sql is traced as it was executed.
+     *
+     * @param fingerprintSql true to trace the fingerprint of the sql
+     */
+    public void setFingerprintSql(boolean fingerprintSql) {
+        this.fingerprintSql = fingerprintSql;
+    }
+
     /**
      * Whenever statement cache is hit, increment numStatementCacheHit count.
      * @param poolName JdbcConnectionPool that has got a statement cache hit event.
@@ -142,11 +174,30 @@ public class JdbcStatsProvider {
         }
     }
 
+    /**
+     * Whenever a statement is evicted from a full statement cache, increment
+     * numStatementCacheEviction count.
+     * @param poolName JdbcConnectionPool that has got a statement cache eviction event.
+     */
+    @ProbeListener(JdbcRAConstants.STATEMENT_CACHE_DOTTED_NAME + JdbcRAConstants.STATEMENT_CACHE_EVICTION)
+    public void statementCacheEvictionEvent(@ProbeParam("poolName") String poolName,
+                                            @ProbeParam("appName") String appName,
+                                            @ProbeParam("moduleName") String moduleName
+                                            ) {
+
+        PoolInfo poolInfo = new PoolInfo(poolName, appName, moduleName);
+        if(this.poolInfo.equals(poolInfo)){
+            numStatementCacheEviction.increment();
+        }
+    }
+
     /**
      * Whenever a sql statement that is traced is to be cache for monitoring
-     * purpose, the SQLTrace object is created for the specified sql and
-     * updated in the SQLTraceCache. This is used to update the
-     * frequently used and slowest sql queries.
+     * purpose, the SQLTrace object is created for the fingerprint of the
+     * specified sql, or the sql itself if fingerprinting is disabled, and
+     * updated in the SQLTraceCache. This is used to update
+     * the frequently used and slowest sql queries and the per statement
+     * execution statistics.
      *
      * @param poolName
      * @param appName
@@ -163,20 +214,19 @@ public class JdbcStatsProvider {
                                    @ProbeParam("executionTime") long executionTime) {
 
         PoolInfo poolInfo = new PoolInfo(poolName, appName, moduleName);
-        if(this.poolInfo.equals(poolInfo)){
-            if(freqSqlTraceCache != null) {
-                if (sql != null) {
-                    SQLTrace cacheObj = new SQLTrace(sql, 1, System.currentTimeMillis());
-                    freqSqlTraceCache.checkAndUpdateCache(cacheObj);
-                }
-            }
-            
+        if(this.poolInfo.equals(poolInfo) && sql != null && freqSqlTraceCache != null){
+            // Statements differing only by their literals are traced as one
+            String fingerprint = fingerprintSql ? SqlFingerprint.of(sql) : sql;
+            long now = System.currentTimeMillis();
+
+            freqSqlTraceCache.checkAndUpdateCache(new SQLTrace(fingerprint, 1, now));
+
             // If the slowSqlTraceCache has been initialised, create a new SlowSqlTrace object and add it to or update 
             // the cache
-            if (slowSqlTraceCache != null && sql != null) {
-                SQLTrace cacheObj = new SlowSqlTrace(sql, 1, System.currentTimeMillis(), executionTime);
-                slowSqlTraceCache.checkAndUpdateCache(cacheObj);
+            if (slowSqlTraceCache != null) {
+                slowSqlTraceCache.checkAndUpdateCache(new SlowSqlTrace(fingerprint, 1, now, executionTime));
             }
+            sqlTraceStatistics.record(fingerprint, executionTime);
         }
     }
 
@@ -207,6 +257,11 @@ public class JdbcStatsProvider {
         return numStatementCacheMiss;
     }
 
+    @ManagedAttribute(id="numstatementcacheeviction")
+    public CountStatistic getNumStatementCacheEviction() {
+        return numStatementCacheEviction;
+    }
+
     @ManagedAttribute(id="frequsedsqlqueries")
     public ListStatistic getfreqUsedSqlQueries() {
         List<SQLTrace> sqlTraces = freqSqlTraceCache.getTopQueries();
@@ -237,6 +292,51 @@ public class JdbcStatsProvider {
         return slowSqlQueries;
     }
 
+    @ManagedAttribute(id = "topsqlqueriesbycount")
+    public ListStatistic getTopSqlQueriesByCount() {
+        ListStatisticImpl topQueries = new ListStatisticImpl("TopSqlQueriesByCount", "List",
+                "Most executed sql statement fingerprints");
+        if (sqlTraceStatistics != null) {
+            for (SqlTraceStatistics.Summary summary : sqlTraceStatistics.getTopByCount(sqlTraceCacheSize)) {
+                CountStatisticImpl stat = new CountStatisticImpl(summary.getFingerprint(), StatisticImpl.UNIT_COUNT,
+                        "Number of executions");
+                stat.setCount(summary.getCount());
+                topQueries.add(stat);
+            }
+        }
+        return topQueries;
+    }
+
+    @ManagedAttribute(id = "topsqlqueriesbytotaltime")
+    public ListStatistic getTopSqlQueriesByTotalTime() {
+        ListStatisticImpl topQueries = new ListStatisticImpl("TopSqlQueriesByTotalTime", "List",
+                "Sql statement fingerprints with the highest total execution time");
+        if (sqlTraceStatistics != null) {
+            for (SqlTraceStatistics.Summary summary : sqlTraceStatistics.getTopByTotalTime(sqlTraceCacheSize)) {
+                CountStatisticImpl stat = new CountStatisticImpl(summary.getFingerprint(),
+                        StatisticImpl.UNIT_MILLISECOND, "Total execution time");
+                stat.setCount(summary.getTotalTime());
+                topQueries.add(stat);
+            }
+        }
+        return topQueries;
+    }
+
+    @ManagedAttribute(id = "topsqlqueriesbyp99")
+    public ListStatistic getTopSqlQueriesByP99() {
+        ListStatisticImpl topQueries = new ListStatisticImpl("TopSqlQueriesByP99", "List",
+                "Sql statement fingerprints with the highest 99th percentile execution time");
+        if (sqlTraceStatistics != null) {
+            for (SqlTraceStatistics.Summary summary : sqlTraceStatistics.getTopByP99(sqlTraceCacheSize)) {
+                CountStatisticImpl stat = new CountStatisticImpl(summary.getFingerprint(),
+                        StatisticImpl.UNIT_MILLISECOND, "Estimated 99th percentile execution time");
+                stat.setCount(summary.getP99());
+                topQueries.add(stat);
+            }
+        }
+        return topQueries;
+    }
+
     @ManagedAttribute(id="numpotentialstatementleak")
     public CountStatistic getNumPotentialStatementLeak() {
         return numPotentialStatementLeak;
@@ -257,4 +357,12 @@ public class JdbcStatsProvider {
     public SlowSqlTraceCache getSlowSqlTraceCache() {
         return slowSqlTraceCache;
     }
+
+    /**
+     * Get the per statement execution statistics associated with this stats provider.
+     * @return SqlTraceStatistics The statistics, or null if SQL tracing is not enabled
+     */
+    public SqlTraceStatistics getSqlTraceStatistics() {
+        return sqlTraceStatistics;
+    }
 }
@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 package com.sun.gjc.monitoring;
 
@@ -83,4 +84,18 @@ public class StatementCacheProbeProvider {
 
     }
 
+    /**
+     * Emits probe event/notification that the given connection pool
+     * <code>poolName</code>has evicted a statement from a full statement cache
+     *
+     * @param poolName for which the statement cache eviction occurred
+     */
+    @Probe(name=JdbcRAConstants.STATEMENT_CACHE_EVICTION)
+    public void statementCacheEvictionEvent(@ProbeParam("poolName") String poolName,
+                                            @ProbeParam("appName") String appName,
+                                            @ProbeParam("moduleName") String moduleName
+                                            ) {
+
+    }
+
 }
@@ -46,6 +46,7 @@ import com.sun.enterprise.util.i18n.StringManager;
 import com.sun.gjc.common.DataSourceObjectBuilder;
 import com.sun.gjc.common.DataSourceSpec;
 import com.sun.gjc.monitoring.JdbcStatsProvider;
+import com.sun.gjc.spi.base.datastructure.FrequencySketch;
 import com.sun.gjc.util.SQLTraceDelegator;
 import com.sun.gjc.util.SQLTraceLogger;
 import com.sun.gjc.util.SecurityUtils;
@@ -110,6 +111,9 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
     private long statementLeakTimeout = 0;
     private boolean statementLeakReclaim = false;
 
+    //Statement access frequencies shared by the TINYLFU caches of the pool
+    private transient volatile FrequencySketch statementFrequencySketch = null;
+
     //Jdbc Stats provider that is created
     private JdbcStatsProvider jdbcStatsProvider = null;
 
@@ -1047,6 +1051,7 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
     public void setStatementCacheSize(String value){
         spec.setDetail(DataSourceSpec.STATEMENTCACHESIZE, value);
         detectStatementCachingSupport();
+        statementFrequencySketch = null;
     }
 
     public String getStatementCacheSize(){
@@ -1118,6 +1123,7 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
     public void setStatementCacheType(String statementCacheType) {
         spec.setDetail(DataSourceSpec.STATEMENTCACHETYPE, statementCacheType);
         this.statementCacheType = getStatementCacheType();
+        statementFrequencySketch = null;
         if(this.statementCacheType == null || this.statementCacheType.trim().equals("")) {
             if(_logger.isLoggable(Level.FINE)) {
                 _logger.fine(" Default StatementCaching Type : " +
@@ -1130,6 +1136,29 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
         }
     }
     
+    /**
+     * Returns the access frequencies of statements shared by the TINYLFU
+     * statement caches of all connections of this pool. It is created on first
+     * use and dropped when the statement cache is reconfigured or the pool is
+     * destroyed.
+     *
+     * @param cacheSize the statement cache size of the connections
+     * @return the frequency sketch of the pool
+     */
+    public FrequencySketch getStatementFrequencySketch(int cacheSize) {
+        FrequencySketch sketch = statementFrequencySketch;
+        if (sketch == null) {
+            synchronized (this) {
+                sketch = statementFrequencySketch;
+                if (sketch == null) {
+                    sketch = new FrequencySketch(cacheSize);
+                    statementFrequencySketch = sketch;
+                }
+            }
+        }
+        return sketch;
+    }
+
     public String getMaxCacheSize(){
         return spec.getDetail(DataSourceSpec.MAXCACHESIZE);
     }
@@ -1153,6 +1182,14 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
     public void setTimeToKeepQueriesInMinutes(String timeToKeepQueries) {
         spec.setDetail(DataSourceSpec.TIMETOKEEPQUERIESINMINUTES, timeToKeepQueries);
     }
+
+    public String getFingerprintSql() {
+        return spec.getDetail(DataSourceSpec.FINGERPRINTSQL);
+    }
+
+    public void setFingerprintSql(String fingerprintSql) {
+        spec.setDetail(DataSourceSpec.FINGERPRINTSQL, fingerprintSql);
+    }
     
     public String getInitSql() {
         return spec.getDetail(DataSourceSpec.INITSQL);
@@ -1500,6 +1537,10 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
                 statementLeakTimeout > 0) {
             jdbcStatsProvider = new JdbcStatsProvider(getPoolName(), getApplicationName(), getModuleName(),
                     sqlTraceCacheSize, timeToKeepQueries, maxCacheSize);
+            if (getFingerprintSql() != null && !getFingerprintSql().equals("null")) {
+                //Traced sql is fingerprinted unless the property is set to false
+                jdbcStatsProvider.setFingerprintSql(Boolean.parseBoolean(getFingerprintSql()));
+            }
             //get the poolname and use it to initialize the stats provider n register
             StatsProviderManager.register(
                     "jdbc-connection-pool",
@@ -1521,6 +1562,15 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
                 Timer timer = ((com.sun.gjc.spi.ResourceAdapterImpl) ra).getTimer();
                 jdbcStatsProvider.getSlowSqlTraceCache().scheduleTimerTask(timer);
             }
+
+            if (jdbcStatsProvider.getSqlTraceStatistics() != null) {
+                if (_logger.isLoggable(Level.FINEST)) {
+                    _logger.finest("Scheduling timer task for sql trace statistics");
+                }
+
+                Timer timer = ((com.sun.gjc.spi.ResourceAdapterImpl) ra).getTimer();
+                jdbcStatsProvider.getSqlTraceStatistics().scheduleTimerTask(timer);
+            }
             
             if(_logger.isLoggable(Level.FINEST)) {
                 _logger.finest("Registered JDBCRA Stats Provider");
@@ -1533,6 +1583,7 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
         if(_logger.isLoggable(Level.FINEST)) {
             _logger.finest("MCF Destroyed");
         }
+        statementFrequencySketch = null;
         if(jdbcStatsProvider != null) {
             if(jdbcStatsProvider.getFreqSqlTraceCache() != null) {
                 if(_logger.isLoggable(Level.FINEST)) {
@@ -1547,6 +1598,13 @@ public abstract class ManagedConnectionFactoryImpl implements javax.resource.spi
                 }
                 jdbcStatsProvider.getSlowSqlTraceCache().cancelTimerTask();
             }
+
+            if(jdbcStatsProvider.getSqlTraceStatistics() != null) {
+                if(_logger.isLoggable(Level.FINEST)) {
+                    _logger.finest("Canceling timer task for sql trace statistics");
+                }
+                jdbcStatsProvider.getSqlTraceStatistics().cancelTimerTask();
+            }
             
             StatsProviderManager.unregister(jdbcStatsProvider);
             jdbcStatsProvider = null;
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2018] [Payara Foundation and/or its affiliates.]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates.]
 
 package com.sun.gjc.spi;
 
@@ -51,6 +51,7 @@ import com.sun.gjc.common.DataSourceObjectBuilder;
 import com.sun.gjc.spi.base.*;
 import com.sun.gjc.spi.base.datastructure.Cache;
 import com.sun.gjc.spi.base.datastructure.CacheFactory;
+import com.sun.gjc.spi.base.datastructure.FrequencySketch;
 import com.sun.gjc.util.SQLTraceDelegator;
 import com.sun.gjc.util.StatementLeakDetector;
 import com.sun.logging.LogDomains;
@@ -282,7 +283,8 @@ public class ManagedConnectionImpl implements javax.resource.spi.ManagedConnecti
         cacheType = statementCacheType;
         if (cacheSize > 0) {
             try {
-                statementCache = CacheFactory.getDataStructure(poolInfo, cacheType, cacheSize);
+                statementCache = CacheFactory.getDataStructure(poolInfo, cacheType, cacheSize,
+                        () -> getStatementFrequencySketch(statementCacheSize));
                 statementCaching = true;
             } catch (ResourceException ex) {
                 _logger.severe(ex.getMessage());
@@ -290,6 +292,17 @@ public class ManagedConnectionImpl implements javax.resource.spi.ManagedConnecti
         }
     }
 
+    /**
+     * The statement frequencies are shared by the connections of a pool through
+     * its factory, a connection of any other factory keeps its own.
+     */
+    private FrequencySketch getStatementFrequencySketch(int statementCacheSize) {
+        if (mcf instanceof ManagedConnectionFactoryImpl) {
+            return ((ManagedConnectionFactoryImpl) mcf).getStatementFrequencySketch(statementCacheSize);
+        }
+        return new FrequencySketch(statementCacheSize);
+    }
+
     private void tuneStatementLeakTracing(PoolInfo poolInfo, long statementLeakTimeout,
             boolean statementLeakReclaim) {
         stmtLeakTimeout = statementLeakTimeout;
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2019] Payara Foundation and/or affiliates
+// Portions Copyright [2019-2020] Payara Foundation and/or affiliates
 
 package com.sun.gjc.spi.base.datastructure;
 
@@ -50,6 +50,7 @@ import javax.resource.ResourceException;
 import java.lang.reflect.Constructor;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,6 +67,16 @@ public class CacheFactory {
 
     public static Cache getDataStructure(PoolInfo poolInfo, String cacheType,
             int maxSize) throws ResourceException {
+        return getDataStructure(poolInfo, cacheType, maxSize, () -> new FrequencySketch(maxSize));
+    }
+
+    /**
+     * @param frequencySketch supplies the access frequencies of statements
+     * shared by the TINYLFU caches of all connections in a pool, only called
+     * for that cache type
+     */
+    public static Cache getDataStructure(PoolInfo poolInfo, String cacheType,
+            int maxSize, Supplier<FrequencySketch> frequencySketch) throws ResourceException {
         Cache stmtCacheStructure;
 
         if(cacheType == null || cacheType.trim().equals("")) {
@@ -74,6 +85,9 @@ public class CacheFactory {
         } else if(cacheType.equals("FIXED")) {
             debug("Initializing FIXED Cache Implementation");
             stmtCacheStructure = new FIXEDCacheImpl(poolInfo, maxSize);
+        } else if(cacheType.equals("TINYLFU")) {
+            debug("Initializing TINYLFU Cache Implementation");
+            stmtCacheStructure = new TinyLFUCacheImpl(poolInfo, maxSize, frequencySketch.get());
         } else { // consider the value of cacheType as a className
             stmtCacheStructure = initCustomCacheStructurePrivileged(cacheType,
                     maxSize);
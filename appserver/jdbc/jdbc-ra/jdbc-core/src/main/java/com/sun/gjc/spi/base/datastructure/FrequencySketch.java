@@ -0,0 +1,146 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.gjc.spi.base.datastructure;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A TinyLFU frequency sketch shared by the statement caches of all connections
+ * in a pool.
+ * <p>
+ * It is a count-min sketch of 4-bit counters, four to a hashed key, packed
+ * sixteen to a long. Once the number of recorded accesses reaches ten times
+ * the sketch's width all counters are halved, so that the popularity of a
+ * statement ages out. Updates are lock-free; a racing update may be lost, which
+ * only makes the estimate slightly less accurate.
+ */
+public final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final int sampleSize;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param maximumSize the number of statements the pool's caches are expected to hold
+     */
+    public FrequencySketch(int maximumSize) {
+        int width = Integer.highestOneBit(Math.max(Math.min(maximumSize, 1 << 24), 16) - 1) << 1;
+        this.table = new AtomicLongArray(width);
+        this.tableMask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * @return the estimated number of recent accesses of the key, at most 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hash, i);
+            int offset = offsetOf(hash, i);
+            int count = (int) ((table.get(index) >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access of the key.
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= incrementAt(indexOf(hash, i), offsetOf(hash, i));
+        }
+        if (added && size.incrementAndGet() == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int offset) {
+        long mask = 0xfL << offset;
+        while (true) {
+            long current = table.get(index);
+            if ((current & mask) == mask) {
+                return false;
+            }
+            if (table.compareAndSet(index, current, current + (1L << offset))) {
+                return true;
+            }
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length(); i++) {
+            long current;
+            do {
+                current = table.get(i);
+            } while (!table.compareAndSet(i, current, (current >>> 1) & RESET_MASK));
+        }
+        size.set(0);
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    private static int offsetOf(int hash, int i) {
+        // each of the four hashes uses its own quarter of the long's sixteen counters
+        return ((i << 2) + ((hash >>> (i << 3)) & 3)) << 2;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2019] Payara Foundation and/or affiliates
+// Portions Copyright [2019-2020] Payara Foundation and/or affiliates
 
 package com.sun.gjc.spi.base.datastructure;
 
@@ -85,12 +85,12 @@ public class SynchronizedCache implements Cache {
     }
 
     @Override
-    public void flushCache() {
+    public synchronized void flushCache() {
         cacheImpl.flushCache();
     }
 
     @Override
-    public void purge(Object entry) {
+    public synchronized void purge(Object entry) {
         cacheImpl.purge(entry);
     }
 }
@@ -0,0 +1,235 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.gjc.spi.base.datastructure;
+
+import com.sun.gjc.monitoring.StatementCacheProbeProvider;
+import com.sun.gjc.spi.base.CacheObjectKey;
+import com.sun.gjc.spi.base.PreparedStatementWrapper;
+import com.sun.logging.LogDomains;
+import org.glassfish.resourcebase.resources.api.PoolInfo;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A statement cache that evicts the least recently used statement, but only
+ * admits a new statement in its place if the statement is used more often
+ * across the pool than the victim.
+ * <p>
+ * The statements are kept in a {@link LinkedHashMap} in access order, so the
+ * eviction candidate is found at its head. Like {@link LRUCacheImpl} it is not
+ * synchronized itself and is wrapped in a {@link SynchronizedCache}. The access
+ * frequencies come from a {@link FrequencySketch} shared by all connections of
+ * the pool, so a statement that is new to this connection but popular in the
+ * pool is admitted straight away.
+ */
+public class TinyLFUCacheImpl implements Cache {
+
+    protected static final Logger _logger = LogDomains.getLogger(TinyLFUCacheImpl.class, LogDomains.RSR_LOGGER);
+
+    /**
+     * Stores the objects for statement caching, least recently used first
+     */
+    private final Map<CacheObjectKey, Object> list = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final int maxSize;
+    private final PoolInfo poolInfo;
+    private StatementCacheProbeProvider probeProvider = null;
+
+    TinyLFUCacheImpl(PoolInfo poolInfo, int maxSize, FrequencySketch sketch) {
+        this.poolInfo = poolInfo;
+        this.maxSize = maxSize;
+        this.sketch = sketch;
+        try {
+            probeProvider = new StatementCacheProbeProvider();
+        } catch (Exception ex) {
+            _logger.log(Level.FINE, "Unable to create the statement cache probe provider", ex);
+        }
+    }
+
+    @Override
+    public Object checkAndUpdateCache(CacheObjectKey key) {
+        sketch.increment(key);
+        Object result = list.get(key);
+        if (probeProvider != null) {
+            if (result != null) {
+                probeProvider.statementCacheHitEvent(poolInfo.getName(), poolInfo.getApplicationName(), poolInfo.getModuleName());
+            } else {
+                probeProvider.statementCacheMissEvent(poolInfo.getName(), poolInfo.getApplicationName(), poolInfo.getModuleName());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void addToCache(CacheObjectKey key, Object o, boolean force) {
+        if (!force && list.containsKey(key)) {
+            return;
+        }
+        if (list.size() >= maxSize && !list.containsKey(key)) {
+            Map.Entry<CacheObjectKey, Object> victim = findVictim();
+            if (victim != null) {
+                if (sketch.frequency(key) <= sketch.frequency(victim.getKey())) {
+                    // Not admitted, the statement is closed when the application closes it
+                    if (_logger.isLoggable(Level.FINEST)) {
+                        _logger.finest("Statement not admitted to cache");
+                    }
+                    uncache(o);
+                    return;
+                }
+                list.remove(victim.getKey());
+                close(victim.getValue());
+                if (probeProvider != null) {
+                    probeProvider.statementCacheEvictionEvent(poolInfo.getName(), poolInfo.getApplicationName(), poolInfo.getModuleName());
+                }
+            }
+        }
+        Object previous = list.put(key, o);
+        if (previous != null && previous != o) {
+            close(previous);
+        }
+    }
+
+    @Override
+    public void clearCache() {
+        if (_logger.isLoggable(Level.FINE)) {
+            _logger.fine("clearing objects in cache");
+        }
+        list.clear();
+    }
+
+    @Override
+    public void purge() {
+        Map.Entry<CacheObjectKey, Object> victim = findVictim();
+        if (victim != null) {
+            list.remove(victim.getKey());
+            close(victim.getValue());
+        }
+    }
+
+    @Override
+    public void flushCache() {
+        Iterator<Object> iterator = list.values().iterator();
+        while (iterator.hasNext()) {
+            Object statement = iterator.next();
+            iterator.remove();
+            close(statement);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return list.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public boolean isSynchronized() {
+        return false;
+    }
+
+    // Used only for purging the bad statements.
+    @Override
+    public void purge(Object obj) {
+        Iterator<Object> iterator = list.values().iterator();
+        while (iterator.hasNext()) {
+            Object statement = iterator.next();
+            if (statement.equals(obj)) {
+                if (_logger.isLoggable(Level.FINEST)) {
+                    _logger.log(Level.FINEST, "Purging an entry from cache");
+                }
+                iterator.remove();
+                close(statement);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the least recently used statement, preferring one that is not in
+     * use. Statements in use are few, so this rarely looks beyond the head.
+     */
+    private Map.Entry<CacheObjectKey, Object> findVictim() {
+        Map.Entry<CacheObjectKey, Object> oldest = null;
+        for (Map.Entry<CacheObjectKey, Object> entry : list.entrySet()) {
+            if (oldest == null) {
+                oldest = entry;
+            }
+            if (!isBusy(entry.getValue())) {
+                return entry;
+            }
+        }
+        return oldest;
+    }
+
+    // The statement hooks below are package-private so that tests can cache
+    // plain objects.
+
+    boolean isBusy(Object statement) {
+        return ((PreparedStatementWrapper) statement).isBusy();
+    }
+
+    void uncache(Object statement) {
+        ((PreparedStatementWrapper) statement).setCached(false);
+    }
+
+    /**
+     * Closes a statement that has left the cache. A statement still in use is
+     * closed by the application instead, as it is no longer marked as cached.
+     */
+    void close(Object statement) {
+        uncache(statement);
+        if (!isBusy(statement)) {
+            try {
+                ((PreparedStatementWrapper) statement).close();
+            } catch (SQLException e) {
+                //ignore
+            }
+        }
+    }
+}
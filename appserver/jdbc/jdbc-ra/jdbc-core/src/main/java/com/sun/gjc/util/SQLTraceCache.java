@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2017] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.gjc.util;
 
@@ -45,7 +45,11 @@ import com.sun.logging.LogDomains;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.Timer;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.logging.Level;
@@ -54,15 +58,16 @@ import java.util.logging.Logger;
 /**
  * Base class for Sql Tracing Caches used to store SQL statements used by applications.
  *
+ * @param <T> the type of SQLTrace held by the cache
  * @author Shalini M
  */
-public abstract class SQLTraceCache {
+public abstract class SQLTraceCache<T extends SQLTrace> {
 
     //Maximum size of the cache.
     protected int numTopQueriesToReport = 10;
     protected long timeToKeepQueries = 60000;
     protected final String poolName;
-    protected ConcurrentSkipListMap<String, SQLTrace> cache;
+    protected ConcurrentSkipListMap<String, T> cache;
     
     private SQLTraceTimerTask sqlTraceTimerTask;
     protected final static Logger _logger = LogDomains.getLogger(SQLTraceCache.class,
@@ -140,23 +145,62 @@ public abstract class SQLTraceCache {
      * 
      * @param cacheObj
      */
-    public abstract void checkAndUpdateCache(SQLTrace cacheObj);
+    public abstract void checkAndUpdateCache(T cacheObj);
 
     /**
-     * Entries are removed from the list after sorting
-     * them in the least frequently used order. Only numTopQueriesToReport number of
-     * entries are maintained in the list after the purgeEntries.
+     * Entries are removed from the list in the least frequently used order.
+     * Only numTopQueriesToReport number of entries are maintained in the list
+     * after the purgeEntries.
      */
     public void purgeEntries() {
-        List<SQLTrace> sqlTraceList = new ArrayList(cache.values());
-        Collections.sort(sqlTraceList, SQLTrace.SQLTraceFrequencyComparator);
-        
-        int elementCount = sqlTraceList.size();        
-        while (elementCount > numTopQueriesToReport) {
-            SQLTrace sqlTrace = sqlTraceList.get(elementCount - 1);
-            cache.remove(sqlTrace.getQueryName());
-            sqlTraceList.remove(sqlTrace);
-            elementCount --;
+        purgeEntries(SQLTrace.SQLTraceFrequencyComparator);
+    }
+
+    /**
+     * Removes all but the first numTopQueriesToReport entries in the given order.
+     * The entries to keep are selected without sorting the whole cache.
+     *
+     * @param order the order in which entries are kept
+     */
+    protected void purgeEntries(Comparator<? super T> order) {
+        if (cache.size() <= numTopQueriesToReport) {
+            return;
+        }
+        Set<String> retained = new HashSet<>();
+        for (T sqlTrace : selectTop(cache.values(), numTopQueriesToReport, order)) {
+            retained.add(sqlTrace.getQueryName());
+        }
+        cache.keySet().retainAll(retained);
+    }
+
+    /**
+     * Returns the first n elements of the given collection in the given order.
+     * Rather than sorting the whole collection, a heap of at most n elements is
+     * kept while walking it, so only the selected elements are ever sorted.
+     *
+     * @param <T> the type of the elements
+     * @param elements the elements to select from
+     * @param n the maximum number of elements to return
+     * @param order the order of the result
+     * @return a new list of at most n elements
+     */
+    public static <T> List<T> selectTop(Collection<? extends T> elements, int n, Comparator<? super T> order) {
+        if (n <= 0) {
+            return new ArrayList<>();
+        }
+        // The head of the heap is the lowest ranked of the current top n
+        PriorityQueue<T> top = new PriorityQueue<>(Math.min(n, elements.size()) + 1,
+                Collections.reverseOrder(order));
+        for (T element : elements) {
+            if (top.size() < n) {
+                top.add(element);
+            } else if (order.compare(element, top.peek()) < 0) {
+                top.poll();
+                top.add(element);
+            }
         }
+        List<T> result = new ArrayList<>(top);
+        Collections.sort(result, order);
+        return result;
     }
 }
@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 package com.sun.gjc.util;
 
@@ -50,9 +51,9 @@ import java.util.TimerTask;
  */
 public class SQLTraceTimerTask extends TimerTask {
 
-    private SQLTraceCache cache;
+    private SQLTraceCache<?> cache;
 
-    SQLTraceTimerTask(SQLTraceCache cache) {
+    SQLTraceTimerTask(SQLTraceCache<?> cache) {
         this.cache = cache;
     }
 
@@ -37,14 +37,12 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 package fish.payara.jdbc.stats;
 
 import com.sun.gjc.util.SQLTrace;
 import com.sun.gjc.util.SQLTraceCache;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -55,7 +53,7 @@ import java.util.logging.Level;
  *
  * @author Shalini M
  */
-public class FrequentSQLTraceCache extends SQLTraceCache {
+public class FrequentSQLTraceCache extends SQLTraceCache<SQLTrace> {
 
     //Maximum size of the cache.
     protected long maxStoredEntries = 10000;
@@ -104,16 +102,12 @@ public class FrequentSQLTraceCache extends SQLTraceCache {
      * Returns the String representation of the list of traced sql queries
      * ordered by the number most frequently used, followed by the usage
      * timestamp. Only the top 'n' queries represented by the numTopQueriesToReport are
-     * chosen for display.
+     * chosen for display, without sorting the whole cache.
      *
      * @return string representation of the list of sql queries sorted
      */
     public List<SQLTrace> getTopQueries() {
         purgeEntries();
-        
-        List<SQLTrace> sqlTraceList = new ArrayList(cache.values());
-        Collections.sort(sqlTraceList, SQLTrace.SQLTraceFrequencyComparator);
-        
-        return sqlTraceList;
+        return selectTop(cache.values(), numTopQueriesToReport, SQLTrace.SQLTraceFrequencyComparator);
     }
 }
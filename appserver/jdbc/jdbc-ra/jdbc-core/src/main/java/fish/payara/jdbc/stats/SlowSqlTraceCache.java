@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -39,17 +39,14 @@
  */
 package fish.payara.jdbc.stats;
 
-import com.sun.gjc.util.SQLTrace;
 import com.sun.gjc.util.SQLTraceCache;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
  * 
  * @author Andrew Pielage
  */
-public class SlowSqlTraceCache extends SQLTraceCache {
+public class SlowSqlTraceCache extends SQLTraceCache<SlowSqlTrace> {
     
     public SlowSqlTraceCache(String poolName, int maxNumberOfQueries, long timeToKeepQueries) {
         super(poolName, maxNumberOfQueries, timeToKeepQueries);
@@ -61,14 +58,12 @@ public class SlowSqlTraceCache extends SQLTraceCache {
      * along with the timestamp. If its slowest execution time has also increased, this is updated.
      * If the query is a new one, it is added to the list.
      * 
-     * @param sqlTrace
+     * @param slowSqlTrace
      */
     @Override
-    public void checkAndUpdateCache(SQLTrace sqlTrace) {    
-        if (sqlTrace != null) {
-            // Cast to a slowSqlTrace object
-            SlowSqlTrace slowSqlTrace = (SlowSqlTrace) sqlTrace;
-            SlowSqlTrace storedSlowSqlTrace = (SlowSqlTrace) cache.get(slowSqlTrace.getQueryName());
+    public void checkAndUpdateCache(SlowSqlTrace slowSqlTrace) {
+        if (slowSqlTrace != null) {
+            SlowSqlTrace storedSlowSqlTrace = cache.get(slowSqlTrace.getQueryName());
 
             if (storedSlowSqlTrace != null) {
                 //If already found in the cache
@@ -90,16 +85,7 @@ public class SlowSqlTraceCache extends SQLTraceCache {
      */
     @Override
     public void purgeEntries() {
-        List<SlowSqlTrace> slowSqlTraceList = new ArrayList(cache.values());
-        Collections.sort(slowSqlTraceList, SlowSqlTrace.SlowSqlTraceSlowestExecutionComparator);
-        
-        int elementCount = slowSqlTraceList.size();        
-        while (elementCount > numTopQueriesToReport) {
-            SlowSqlTrace slowSqlTrace = slowSqlTraceList.get(elementCount - 1);
-            cache.remove(slowSqlTrace.getQueryName());
-            slowSqlTraceList.remove(slowSqlTrace);
-            elementCount --;
-        }
+        purgeEntries(SlowSqlTrace.SlowSqlTraceSlowestExecutionComparator);
     }
     
     /**
@@ -108,10 +94,7 @@ public class SlowSqlTraceCache extends SQLTraceCache {
      */
     public List<SlowSqlTrace> getSlowestSqlQueries() {
         purgeEntries();
-        
-        List<SlowSqlTrace> slowSqlTraceList = new ArrayList(cache.values());
-        Collections.sort(slowSqlTraceList, SlowSqlTrace.SlowSqlTraceSlowestExecutionComparator);
-        
-        return slowSqlTraceList;
+        return selectTop(cache.values(), numTopQueriesToReport,
+                SlowSqlTrace.SlowSqlTraceSlowestExecutionComparator);
     }
 }
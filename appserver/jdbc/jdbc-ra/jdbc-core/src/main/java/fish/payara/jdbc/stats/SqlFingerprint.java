@@ -0,0 +1,200 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.jdbc.stats;
+
+/**
+ * Reduces SQL text to a parameterised fingerprint so that statements which only
+ * differ by their literal values are traced as a single query.
+ * <p>
+ * String and numeric literals are replaced by {@code ?}, runs of whitespace are
+ * collapsed to a single space and parenthesised lists made up only of
+ * placeholders, such as {@code IN (1, 2, 3)}, are collapsed to {@code (?)}.
+ * Quoted identifiers and comments are kept as they are, so a quote within them
+ * does not start a literal. This is done in a single pass without regular
+ * expressions as it runs for every traced statement.
+ */
+public final class SqlFingerprint {
+
+    private static final char PLACEHOLDER = '?';
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * Returns the fingerprint of the given SQL statement.
+     *
+     * @param sql the SQL text as executed, may be null
+     * @return the parameterised form of the statement, or null if sql was null
+     */
+    public static String of(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        int length = sql.length();
+        StringBuilder fingerprint = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i = skipWhitespace(sql, i);
+                if (fingerprint.length() > 0 && i < length) {
+                    fingerprint.append(' ');
+                }
+            } else if (c == '\'') {
+                i = skipStringLiteral(sql, i);
+                appendPlaceholder(fingerprint);
+            } else if (c == '-' && sql.startsWith("--", i)) {
+                int end = sql.indexOf('\n', i);
+                end = end < 0 ? length : end;
+                fingerprint.append(sql, i, end);
+                i = end;
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                fingerprint.append(sql, i, end);
+                i = end;
+            } else if (c == '"' || c == '`') {
+                int end = skipQuoted(sql, i, c);
+                fingerprint.append(sql, i, end);
+                i = end;
+            } else if (isNumberStart(sql, i)) {
+                i = skipNumber(sql, i);
+                appendPlaceholder(fingerprint);
+            } else if (c == PLACEHOLDER) {
+                appendPlaceholder(fingerprint);
+                i++;
+            } else {
+                fingerprint.append(c);
+                i++;
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Appends a placeholder unless it continues a parenthesised list of
+     * placeholders, in which case the list is collapsed into the first one.
+     */
+    private static void appendPlaceholder(StringBuilder fingerprint) {
+        int end = fingerprint.length();
+        int i = end - 1;
+        if (i >= 0 && fingerprint.charAt(i) == ' ') {
+            i--;
+        }
+        if (i < 0 || fingerprint.charAt(i) != ',') {
+            fingerprint.append(PLACEHOLDER);
+            return;
+        }
+        // Walk back over "?, ?, " until the opening parenthesis of the list
+        for (int j = i; j >= 0; j--) {
+            char c = fingerprint.charAt(j);
+            if (c == '(') {
+                // Keep whatever spacing preceded the first placeholder
+                int first = fingerprint.indexOf(String.valueOf(PLACEHOLDER), j);
+                if (first < 0) {
+                    break;
+                }
+                fingerprint.setLength(first + 1);
+                return;
+            }
+            if (c != PLACEHOLDER && c != ',' && c != ' ') {
+                break;
+            }
+        }
+        fingerprint.append(PLACEHOLDER);
+    }
+
+    private static int skipWhitespace(String sql, int i) {
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipStringLiteral(String sql, int i) {
+        i++;
+        while (i < sql.length()) {
+            if (sql.charAt(i++) == '\'') {
+                // A doubled quote is an escaped quote within the literal
+                if (i < sql.length() && sql.charAt(i) == '\'') {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+        }
+        return i;
+    }
+
+    private static int skipQuoted(String sql, int i, char quote) {
+        int end = sql.indexOf(quote, i + 1);
+        return end < 0 ? sql.length() : end + 1;
+    }
+
+    private static boolean isNumberStart(String sql, int i) {
+        char c = sql.charAt(i);
+        boolean digit = c >= '0' && c <= '9';
+        if (!digit && !(c == '.' && i + 1 < sql.length() && Character.isDigit(sql.charAt(i + 1)))) {
+            return false;
+        }
+        // Digits that are part of an identifier such as TABLE1 or t1.col are not literals
+        return i == 0 || !isIdentifierPart(sql.charAt(i - 1));
+    }
+
+    private static int skipNumber(String sql, int i) {
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if ((c == '+' || c == '-') && (sql.charAt(i - 1) == 'e' || sql.charAt(i - 1) == 'E')) {
+                i++;
+            } else if (c == '.' || Character.isLetterOrDigit(c)) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.' || c == '"' || c == '`';
+    }
+}
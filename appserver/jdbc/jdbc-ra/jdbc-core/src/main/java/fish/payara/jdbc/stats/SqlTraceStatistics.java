@@ -0,0 +1,368 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.jdbc.stats;
+
+import com.sun.enterprise.util.LogLinearBuckets;
+import com.sun.enterprise.util.LogLinearHistogram;
+import com.sun.gjc.util.SQLTraceCache;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming per-fingerprint execution statistics for traced SQL, kept in a
+ * bounded space-saving (heavy hitters) sketch.
+ * <p>
+ * At most {@code capacity} fingerprints are tracked. When a new fingerprint
+ * arrives and the sketch is full, the entry with the lowest count is replaced
+ * and the newcomer inherits that count as its overestimation error, so the most
+ * frequently executed statements are always retained however many distinct
+ * statements are seen. Each entry keeps its execution count, total and maximum
+ * execution time and a log-linear latency histogram from which percentiles are
+ * estimated to within about 25%.
+ * <p>
+ * Recording a known fingerprint is lock free. Replacing an entry is serialised,
+ * and an execution recorded concurrently against an entry being replaced may be
+ * lost, which is acceptable for monitoring purposes. The entry to replace is
+ * found with a min-heap ordered by the counts the entries had when they were
+ * last queued. As counts only grow, an entry whose count has moved on since is
+ * queued again with its current count, and the first entry found with an up to
+ * date count is the true minimum. Top-N reports are selected with a bounded
+ * heap rather than by sorting every tracked entry.
+ * <p>
+ * Like the frequent and slow SQL caches, the statistics only cover recent
+ * executions: they are cleared every time-to-keep-queries period.
+ */
+public class SqlTraceStatistics {
+
+    // Histogram buckets: values below 8 get their own bucket, every power of two
+    // above that is split into 4 sub-buckets.
+    private static final LogLinearBuckets BUCKETS = new LogLinearBuckets(2);
+
+    // Order in which the top-N reports are returned, highest first
+    public static final Comparator<Summary> COUNT_COMPARATOR
+            = Comparator.comparingLong(Summary::getCount).reversed();
+    public static final Comparator<Summary> TOTAL_TIME_COMPARATOR
+            = Comparator.comparingLong(Summary::getTotalTime).reversed();
+    public static final Comparator<Summary> P99_COMPARATOR
+            = Comparator.comparingLong(Summary::getP99).reversed();
+
+    private final int capacity;
+    private final long timeToKeepQueries;
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final PriorityQueue<Entry> minimumCounts;
+    private TimerTask clearTimerTask;
+
+    /**
+     * @param capacity the maximum number of statement fingerprints tracked
+     * @param timeToKeepQueries the period in minutes after which the statistics
+     * are cleared, if the timer task is scheduled
+     */
+    public SqlTraceStatistics(int capacity, long timeToKeepQueries) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.timeToKeepQueries = timeToKeepQueries * 60 * 1000;
+        this.entries = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        this.minimumCounts = new PriorityQueue<>(capacity, Comparator.comparingLong((Entry entry) -> entry.queuedCount));
+    }
+
+    /**
+     * Schedules a timer task that clears the statistics after every
+     * timeToKeepQueries period.
+     *
+     * @param timer the timer to schedule the task on
+     */
+    public synchronized void scheduleTimerTask(Timer timer) {
+        cancelTimerTask();
+        if (timer != null && timeToKeepQueries > 0) {
+            clearTimerTask = new TimerTask() {
+                @Override
+                public void run() {
+                    clear();
+                }
+            };
+            timer.scheduleAtFixedRate(clearTimerTask, timeToKeepQueries, timeToKeepQueries);
+        }
+    }
+
+    /**
+     * Cancels the timer task that clears the statistics.
+     */
+    public synchronized void cancelTimerTask() {
+        if (clearTimerTask != null) {
+            clearTimerTask.cancel();
+            clearTimerTask = null;
+        }
+    }
+
+    /**
+     * Records an execution of the given statement fingerprint.
+     *
+     * @param fingerprint the fingerprint of the executed statement, see {@link SqlFingerprint}
+     * @param executionTime the execution time in milliseconds
+     */
+    public void record(String fingerprint, long executionTime) {
+        if (fingerprint == null) {
+            return;
+        }
+        Entry entry = entries.get(fingerprint);
+        if (entry == null) {
+            entry = admit(fingerprint);
+        }
+        entry.record(executionTime);
+    }
+
+    private synchronized Entry admit(String fingerprint) {
+        Entry entry = entries.get(fingerprint);
+        if (entry != null) {
+            return entry;
+        }
+        long error = 0;
+        if (entries.size() >= capacity) {
+            Entry minimum = pollMinimum();
+            entries.remove(minimum.fingerprint);
+            error = minimum.count.get();
+        }
+        entry = new Entry(fingerprint, error);
+        entries.put(fingerprint, entry);
+        minimumCounts.add(entry);
+        return entry;
+    }
+
+    /**
+     * Removes the entry with the lowest count from the min-heap. Must be called
+     * while holding the lock of this object.
+     */
+    private Entry pollMinimum() {
+        while (true) {
+            Entry candidate = minimumCounts.poll();
+            long count = candidate.count.get();
+            if (count == candidate.queuedCount) {
+                return candidate;
+            }
+            candidate.queuedCount = count;
+            minimumCounts.add(candidate);
+        }
+    }
+
+    /**
+     * @param n the maximum number of statements to return
+     * @return the n most frequently executed statements, most frequent first
+     */
+    public List<Summary> getTopByCount(int n) {
+        return getTop(n, COUNT_COMPARATOR);
+    }
+
+    /**
+     * @param n the maximum number of statements to return
+     * @return the n statements with the highest total execution time, highest first
+     */
+    public List<Summary> getTopByTotalTime(int n) {
+        return getTop(n, TOTAL_TIME_COMPARATOR);
+    }
+
+    /**
+     * @param n the maximum number of statements to return
+     * @return the n statements with the highest 99th percentile execution time, highest first
+     */
+    public List<Summary> getTopByP99(int n) {
+        return getTop(n, P99_COMPARATOR);
+    }
+
+    /**
+     * Selects the n highest ranked statements by keeping a heap of at most n
+     * summaries while walking the sketch, so only those n are ever sorted.
+     *
+     * @param n the maximum number of statements to return
+     * @param order the order of the result, highest ranked first
+     * @return the top n statements in the given order
+     */
+    public List<Summary> getTop(int n, Comparator<Summary> order) {
+        if (n <= 0) {
+            return Collections.emptyList();
+        }
+        return SQLTraceCache.selectTop(summarise(entries.values()), n, order);
+    }
+
+    /**
+     * @return the number of statement fingerprints currently tracked
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Discards all recorded statistics.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        minimumCounts.clear();
+    }
+
+    private static List<Summary> summarise(Collection<Entry> entries) {
+        List<Summary> summaries = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            summaries.add(entry.summarise());
+        }
+        return summaries;
+    }
+
+    private static final class Entry {
+
+        private final String fingerprint;
+        private final long error;
+        private final AtomicLong count;
+        private final LogLinearHistogram histogram = new LogLinearHistogram(BUCKETS);
+        // the count this entry was last queued with in the min-heap, guarded by the statistics lock
+        private long queuedCount;
+
+        Entry(String fingerprint, long error) {
+            this.fingerprint = fingerprint;
+            this.error = error;
+            this.count = new AtomicLong(error);
+            this.queuedCount = error;
+        }
+
+        void record(long executionTime) {
+            count.incrementAndGet();
+            histogram.record(executionTime);
+        }
+
+        Summary summarise() {
+            long[] counts = histogram.getCounts();
+            long max = histogram.getMax();
+            return new Summary(fingerprint, count.get(), error, histogram.getTotal(), max,
+                    BUCKETS.valueAtPercentile(counts, 50.0, max),
+                    BUCKETS.valueAtPercentile(counts, 99.0, max));
+        }
+    }
+
+    /**
+     * Point in time statistics of a single statement fingerprint.
+     */
+    public static final class Summary {
+
+        private final String fingerprint;
+        private final long count;
+        private final long countError;
+        private final long totalTime;
+        private final long maxTime;
+        private final long median;
+        private final long p99;
+
+        Summary(String fingerprint, long count, long countError, long totalTime, long maxTime, long median, long p99) {
+            this.fingerprint = fingerprint;
+            this.count = count;
+            this.countError = countError;
+            this.totalTime = totalTime;
+            this.maxTime = maxTime;
+            this.median = median;
+            this.p99 = p99;
+        }
+
+        /**
+         * @return the parameterised SQL statement
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return the number of executions, which may overestimate the true
+         * count by at most {@link #getCountError()}
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the maximum overestimation of {@link #getCount()}, inherited
+         * from the entry this statement replaced in the sketch
+         */
+        public long getCountError() {
+            return countError;
+        }
+
+        /**
+         * @return the total execution time in milliseconds since the statement
+         * entered the sketch
+         */
+        public long getTotalTime() {
+            return totalTime;
+        }
+
+        /**
+         * @return the slowest execution time in milliseconds
+         */
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        /**
+         * @return the estimated median execution time in milliseconds
+         */
+        public long getMedian() {
+            return median;
+        }
+
+        /**
+         * @return the estimated 99th percentile execution time in milliseconds
+         */
+        public long getP99() {
+            return p99;
+        }
+
+        @Override
+        public String toString() {
+            return "Summary{fingerprint=" + fingerprint + ", count=" + count + ", countError=" + countError
+                    + ", totalTime=" + totalTime + ", maxTime=" + maxTime + ", median=" + median + ", p99=" + p99 + '}';
+        }
+    }
+}
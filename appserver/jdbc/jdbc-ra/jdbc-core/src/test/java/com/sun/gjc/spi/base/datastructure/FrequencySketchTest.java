@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.gjc.spi.base.datastructure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void unseenKeyHasNoFrequency() {
+        assertEquals(0, new FrequencySketch(100).frequency("select 1"));
+    }
+
+    @Test
+    public void incrementCountsAccesses() {
+        FrequencySketch sketch = new FrequencySketch(100);
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("select 1");
+        }
+        sketch.increment("select 2");
+
+        assertEquals(5, sketch.frequency("select 1"));
+        assertEquals(1, sketch.frequency("select 2"));
+        assertEquals(0, sketch.frequency("select 3"));
+    }
+
+    @Test
+    public void frequencySaturatesAtFifteen() {
+        FrequencySketch sketch = new FrequencySketch(100);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("select 1");
+        }
+        assertEquals(15, sketch.frequency("select 1"));
+    }
+
+    @Test
+    public void frequenciesAreHalvedAfterSample() {
+        // 16 counters wide, so reset after 160 recorded accesses
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("popular");
+        }
+        assertEquals(15, sketch.frequency("popular"));
+
+        int accesses = 15;
+        for (int i = 0; sketch.frequency("popular") == 15; i++) {
+            assertTrue("no reset after " + accesses + " accesses", accesses < 160);
+            sketch.increment("select " + i);
+            accesses++;
+        }
+        assertEquals(7, sketch.frequency("popular"));
+    }
+
+    @Test
+    public void sketchIsSizedForSmallAndHugeCaches() {
+        FrequencySketch tiny = new FrequencySketch(0);
+        tiny.increment("select 1");
+        assertEquals(1, tiny.frequency("select 1"));
+
+        FrequencySketch huge = new FrequencySketch(Integer.MAX_VALUE);
+        huge.increment("select 1");
+        assertTrue(huge.frequency("select 1") >= 1);
+    }
+}
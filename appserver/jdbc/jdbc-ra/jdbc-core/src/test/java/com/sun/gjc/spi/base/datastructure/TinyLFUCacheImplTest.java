@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.gjc.spi.base.datastructure;
+
+import com.sun.gjc.spi.base.CacheObjectKey;
+import org.glassfish.resourcebase.resources.api.PoolInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TinyLFUCacheImplTest {
+
+    private static final PoolInfo POOL = new PoolInfo("pool");
+
+    private final Set<Object> busy = new HashSet<>();
+    private final List<Object> uncached = new ArrayList<>();
+    private final List<Object> closed = new ArrayList<>();
+    private FrequencySketch sketch;
+    private TinyLFUCacheImpl cache;
+
+    @Before
+    public void setUp() {
+        sketch = new FrequencySketch(100);
+        cache = newCache(3);
+        for (int i = 1; i <= 3; i++) {
+            // a miss followed by adding the prepared statement, as the connection does
+            assertNull(cache.checkAndUpdateCache(key(i)));
+            cache.addToCache(key(i), "statement " + i, false);
+        }
+    }
+
+    @Test
+    public void cachedStatementsAreHits() {
+        assertEquals(3, cache.getSize());
+        assertEquals("statement 2", cache.checkAndUpdateCache(key(2)));
+    }
+
+    @Test
+    public void rareStatementIsNotAdmitted() {
+        cache.checkAndUpdateCache(key(1));
+        cache.checkAndUpdateCache(key(2));
+        cache.checkAndUpdateCache(key(3));
+
+        assertNull(cache.checkAndUpdateCache(key(4)));
+        cache.addToCache(key(4), "statement 4", false);
+
+        assertEquals(3, cache.getSize());
+        assertNull(cache.checkAndUpdateCache(key(4)));
+        assertEquals(1, uncached.size());
+        assertEquals("statement 4", uncached.get(0));
+        assertEquals(0, closed.size());
+    }
+
+    @Test
+    public void statementPopularInPoolEvictsLeastRecentlyUsed() {
+        // other connections of the pool share the sketch
+        TinyLFUCacheImpl other = newCache(3);
+        for (int i = 0; i < 5; i++) {
+            other.checkAndUpdateCache(key(4));
+        }
+        cache.checkAndUpdateCache(key(1));
+
+        cache.addToCache(key(4), "statement 4", false);
+
+        assertEquals(3, cache.getSize());
+        assertEquals("statement 4", cache.checkAndUpdateCache(key(4)));
+        assertNull(cache.checkAndUpdateCache(key(2)));
+        assertEquals(1, closed.size());
+        assertEquals("statement 2", closed.get(0));
+    }
+
+    @Test
+    public void statementInUseIsNotEvicted() {
+        busy.add("statement 1");
+        for (int i = 0; i < 5; i++) {
+            sketch.increment(key(4));
+        }
+
+        cache.addToCache(key(4), "statement 4", false);
+
+        assertEquals("statement 1", cache.checkAndUpdateCache(key(1)));
+        assertNull(cache.checkAndUpdateCache(key(2)));
+        assertEquals("statement 2", closed.get(0));
+    }
+
+    @Test
+    public void forcedAddReplacesStatement() {
+        cache.addToCache(key(1), "statement 1 again", true);
+
+        assertEquals(3, cache.getSize());
+        assertEquals("statement 1 again", cache.checkAndUpdateCache(key(1)));
+        assertEquals("statement 1", closed.get(0));
+    }
+
+    @Test
+    public void purgeEvictsLeastRecentlyUsed() {
+        cache.checkAndUpdateCache(key(1));
+
+        cache.purge();
+
+        assertEquals(2, cache.getSize());
+        assertNull(cache.checkAndUpdateCache(key(2)));
+        assertEquals("statement 2", closed.get(0));
+    }
+
+    private TinyLFUCacheImpl newCache(int maxSize) {
+        return new TinyLFUCacheImpl(POOL, maxSize, sketch) {
+
+            @Override
+            boolean isBusy(Object statement) {
+                return busy.contains(statement);
+            }
+
+            @Override
+            void uncache(Object statement) {
+                uncached.add(statement);
+            }
+
+            @Override
+            void close(Object statement) {
+                closed.add(statement);
+            }
+        };
+    }
+
+    private static CacheObjectKey key(int i) {
+        return new CacheObjectKey("select " + i, CacheObjectKey.PREPARED_STATEMENT, 0, 0);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.jdbc.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SqlFingerprintTest {
+
+    @Test
+    public void nullHasNoFingerprint() {
+        assertNull(SqlFingerprint.of(null));
+    }
+
+    @Test
+    public void stringLiteralsAreReplaced() {
+        assertEquals("SELECT * FROM person WHERE name = ? AND city <> ?",
+                SqlFingerprint.of("SELECT * FROM person WHERE name = 'O''Brien' AND city <> ''"));
+    }
+
+    @Test
+    public void numericLiteralsAreReplaced() {
+        assertEquals("SELECT * FROM item WHERE id = ? AND price > ? AND ratio < ? AND mask = ?",
+                SqlFingerprint.of("SELECT * FROM item WHERE id = 42 AND price > 1.5e+10 AND ratio < .5 AND mask = 0x1F"));
+    }
+
+    @Test
+    public void statementsDifferingOnlyByLiteralsShareFingerprint() {
+        assertEquals(SqlFingerprint.of("UPDATE account SET balance = 10 WHERE owner = 'alice'"),
+                SqlFingerprint.of("UPDATE account SET balance = 2500.75 WHERE owner = 'bob'"));
+    }
+
+    @Test
+    public void whitespaceIsCollapsed() {
+        assertEquals("SELECT * FROM item WHERE id = ?",
+                SqlFingerprint.of("  SELECT\n\t*   FROM item\r\n WHERE id = 7  "));
+    }
+
+    @Test
+    public void inListsAreCollapsed() {
+        assertEquals("SELECT * FROM item WHERE id IN (?)", SqlFingerprint.of("SELECT * FROM item WHERE id IN (1, 2, 3)"));
+        assertEquals("SELECT * FROM item WHERE id IN (?)", SqlFingerprint.of("SELECT * FROM item WHERE id IN (4)"));
+        assertEquals("SELECT * FROM item WHERE code IN (?)", SqlFingerprint.of("SELECT * FROM item WHERE code IN ('a','b')"));
+        assertEquals("SELECT * FROM item WHERE id IN (?)", SqlFingerprint.of("SELECT * FROM item WHERE id IN (?, ?, ?)"));
+    }
+
+    @Test
+    public void listsWithOtherExpressionsAreKept() {
+        assertEquals("SELECT COALESCE(price, ?) FROM item WHERE id IN (?, parent_id)",
+                SqlFingerprint.of("SELECT COALESCE(price, 0) FROM item WHERE id IN (1, parent_id)"));
+    }
+
+    @Test
+    public void commentsAreKept() {
+        assertEquals("SELECT ? -- it's 2 FROM dual", SqlFingerprint.of("SELECT 1 -- it's 2\nFROM dual"));
+        assertEquals("SELECT /* 'hint' 3 */ ? FROM dual", SqlFingerprint.of("SELECT /* 'hint' 3 */ 4 FROM dual"));
+        assertEquals("SELECT ? /* unterminated 'comment", SqlFingerprint.of("SELECT 5 /* unterminated 'comment"));
+    }
+
+    @Test
+    public void quotedIdentifiersAreKept() {
+        assertEquals("SELECT \"it's\", `col 2` FROM \"Table 1\" WHERE \"a\"=?",
+                SqlFingerprint.of("SELECT \"it's\", `col 2` FROM \"Table 1\" WHERE \"a\"=1"));
+    }
+
+    @Test
+    public void digitsInIdentifiersAreKept() {
+        assertEquals("SELECT col1, t2.x, x3_4 FROM table3 t2 WHERE t2.x = ?",
+                SqlFingerprint.of("SELECT col1, t2.x, x3_4 FROM table3 t2 WHERE t2.x = 5"));
+    }
+
+    @Test
+    public void unterminatedLiteralIsReplaced() {
+        assertEquals("SELECT * FROM item WHERE name = ?", SqlFingerprint.of("SELECT * FROM item WHERE name = 'abc"));
+    }
+}
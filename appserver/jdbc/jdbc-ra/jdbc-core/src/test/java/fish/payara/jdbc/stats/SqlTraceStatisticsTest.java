@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.jdbc.stats;
+
+import fish.payara.jdbc.stats.SqlTraceStatistics.Summary;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SqlTraceStatisticsTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePositive() {
+        new SqlTraceStatistics(0, 5);
+    }
+
+    @Test
+    public void nullFingerprintIsIgnored() {
+        SqlTraceStatistics statistics = new SqlTraceStatistics(4, 5);
+        statistics.record(null, 10);
+
+        assertEquals(0, statistics.size());
+    }
+
+    @Test
+    public void topByCountIsMostFrequentFirst() {
+        SqlTraceStatistics statistics = new SqlTraceStatistics(4, 5);
+        record(statistics, "a", 1, 1);
+        record(statistics, "b", 3, 1);
+        record(statistics, "c", 2, 1);
+
+        List<Summary> top = statistics.getTopByCount(2);
+
+        assertEquals(2, top.size());
+        assertEquals("b", top.get(0).getFingerprint());
+        assertEquals(3, top.get(0).getCount());
+        assertEquals(0, top.get(0).getCountError());
+        assertEquals("c", top.get(1).getFingerprint());
+        assertTrue(statistics.getTopByCount(0).isEmpty());
+    }
+
+    @Test
+    public void topByTotalTimeAndP99() {
+        SqlTraceStatistics statistics = new SqlTraceStatistics(4, 5);
+        record(statistics, "frequent", 100, 2);
+        record(statistics, "slow", 1, 1000);
+        record(statistics, "medium", 10, 50);
+
+        List<Summary> byTotalTime = statistics.getTopByTotalTime(3);
+        assertEquals("slow", byTotalTime.get(0).getFingerprint());
+        assertEquals("medium", byTotalTime.get(1).getFingerprint());
+        assertEquals("frequent", byTotalTime.get(2).getFingerprint());
+
+        List<Summary> byP99 = statistics.getTopByP99(1);
+        assertEquals(1, byP99.size());
+        assertEquals("slow", byP99.get(0).getFingerprint());
+    }
+
+    @Test
+    public void leastFrequentEntryIsReplaced() {
+        SqlTraceStatistics statistics = new SqlTraceStatistics(2, 5);
+        record(statistics, "a", 3, 1);
+        record(statistics, "b", 1, 1);
+        record(statistics, "c", 1, 1);
+
+        List<Summary> top = statistics.getTopByCount(3);
+
+        assertEquals(2, statistics.size());
+        assertEquals(2, top.size());
+        assertEquals("a", top.get(0).getFingerprint());
+        assertEquals("c", top.get(1).getFingerprint());
+        // c inherits the count of b as its error
+        assertEquals(2, top.get(1).getCount());
+        assertEquals(1, top.get(1).getCountError());
+        assertEquals(1, top.get(1).getTotalTime());
+    }
+
+    @Test
+    public void replacementFollowsCountsRecordedAfterAdmission() {
+        SqlTraceStatistics statistics = new SqlTraceStatistics(3, 5);
+        record(statistics, "a", 1, 1);
+        record(statistics, "b", 1, 1);
+        record(statistics, "c", 1, 1);
+        // a was admitted with the lowest count but is now the most frequent
+        record(statistics, "a", 5, 1);
+        record(statistics, "c", 1, 1);
+
+        record(statistics, "d", 1, 1);
+        assertEquals(names("a", "c", "d"), names(statistics.getTopByCount(3)));
+        assertEquals(2, countOf(statistics, "d"));
+
+        // c and d tie for the lowest count, the newcomer replaces one of them
+        record(statistics, "e", 1, 1);
+        List<Summary> top = statistics.getTopByCount(3);
+        assertEquals("a", top.get(0).getFingerprint());
+        assertEquals(6, top.get(0).getCount());
+        assertEquals(3, countOf(statistics, "e"));
+        assertEquals(3, statistics.size());
+    }
+
+    @Test
+    public void percentilesAreEstimatedFromHistogram() {
+        SqlTraceStatistics statistics = new SqlTraceStatistics(4, 5);
+        for (long executionTime = 1; executionTime <= 100; executionTime++) {
+            statistics.record("q", executionTime);
+        }
+
+        Summary summary = statistics.getTopByCount(1).get(0);
+
+        assertEquals(100, summary.getCount());
+        assertEquals(5050, summary.getTotalTime());
+        assertEquals(100, summary.getMaxTime());
+        // 50 is counted in the bucket of 48 to 55, 99 in the bucket of 96 to 111
+        assertEquals(55, summary.getMedian());
+        assertEquals(100, summary.getP99());
+    }
+
+    @Test
+    public void outlierShowsOnlyInP99() {
+        SqlTraceStatistics statistics = new SqlTraceStatistics(4, 5);
+        record(statistics, "q", 98, 10);
+        record(statistics, "q", 2, 10000);
+
+        Summary summary = statistics.getTopByCount(1).get(0);
+
+        assertEquals(11, summary.getMedian());
+        assertEquals(10000, summary.getP99());
+    }
+
+    @Test
+    public void clearDiscardsStatistics() {
+        SqlTraceStatistics statistics = new SqlTraceStatistics(2, 5);
+        record(statistics, "a", 2, 1);
+        record(statistics, "b", 1, 1);
+
+        statistics.clear();
+        record(statistics, "c", 1, 1);
+        record(statistics, "d", 1, 1);
+
+        assertEquals(names("c", "d"), names(statistics.getTopByCount(2)));
+        assertEquals(0, statistics.getTopByCount(2).get(0).getCountError());
+    }
+
+    private static void record(SqlTraceStatistics statistics, String fingerprint, int times, long executionTime) {
+        for (int i = 0; i < times; i++) {
+            statistics.record(fingerprint, executionTime);
+        }
+    }
+
+    private static long countOf(SqlTraceStatistics statistics, String fingerprint) {
+        for (Summary summary : statistics.getTopByCount(statistics.size())) {
+            if (summary.getFingerprint().equals(fingerprint)) {
+                return summary.getCount();
+            }
+        }
+        return 0;
+    }
+
+    private static Set<String> names(String... fingerprints) {
+        return new HashSet<>(Arrays.asList(fingerprints));
+    }
+
+    private static Set<String> names(List<Summary> summaries) {
+        Set<String> names = new HashSet<>();
+        for (Summary summary : summaries) {
+            names.add(summary.getFingerprint());
+        }
+        return names;
+    }
+}
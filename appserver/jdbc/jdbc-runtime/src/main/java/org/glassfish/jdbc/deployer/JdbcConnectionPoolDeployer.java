@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2017] [Payara Foundation]
+// Portions Copyright [2016-2020] [Payara Foundation]
 
 package org.glassfish.jdbc.deployer;
 
@@ -550,6 +550,14 @@ public class JdbcConnectionPoolDeployer implements ResourceDeployer {
                     propList.add(new ConnectorConfigProperty("MaxCacheSize",
                             rp.getValue(), "MaxCacheSize", "java.lang.String"));
                     
+                } else if ("FINGERPRINT-SQL".equals(name.toUpperCase(Locale.getDefault()))) {
+
+                    propList.add(new ConnectorConfigProperty("FingerprintSql",
+                            rp.getValue(), "FingerprintSql", "java.lang.String"));
+
+                } else if (ConnectionPoolObjectsUtils.setBackgroundMaintenanceProperty(name, rp.getValue(), conConnPool)) {
+                    logFine(name);
+
                 } else if (mcfConPropKeys.containsKey(name.toUpperCase(Locale.getDefault()))) {
 
                     propList.add(new ConnectorConfigProperty(
@@ -79,8 +79,10 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
     private static final String EJB_TIMER_CACHE_NAME = "HZEjbTmerCache";
     private static final String EJB_TIMER_CONTAINER_CACHE_NAME = "HZEjbTmerContainerCache";
     private static final String EJB_TIMER_APPLICAION_CACHE_NAME = "HZEjbTmerApplicationCache";
+    private static final String EJB_TIMER_OWNER_CACHE_NAME = "HZEjbTmerOwnerCache";
 
     private final IMap<String, HZTimer> pkCache;
+    private final TimerOwnerIndex ownerIndex;
     private final IMap<Long, Set<TimerPrimaryKey>> containerCache;
     private final IMap<Long, Set<TimerPrimaryKey>> applicationCache;
     private final String serverName;
@@ -104,6 +106,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
         pkCache = core.getInstance().getMap(EJB_TIMER_CACHE_NAME);
         containerCache = core.getInstance().getMap(EJB_TIMER_CONTAINER_CACHE_NAME);
         applicationCache = core.getInstance().getMap(EJB_TIMER_APPLICAION_CACHE_NAME);
+        ownerIndex = new TimerOwnerIndex(pkCache, core.getInstance().getMap(EJB_TIMER_OWNER_CACHE_NAME));
         serverName = core.getInstance().getCluster().getLocalMember().getStringAttribute(HazelcastCore.INSTANCE_ATTRIBUTE);
         this.ownerIdOfThisServer_ = serverName;
         this.domainName_ = core.getInstance().getConfig().getGroupConfig().getName();
@@ -120,6 +123,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
         if (timerConfig.isPersistent()) {
             
             pkCache.put(timerId.timerId, new HZTimer(timerId, containerId, applicationId, timedObjectPrimaryKey, server_name, server_name, initialExpiration, intervalDuration, schedule, timerConfig));
+            ownerIndex.put(timerId.timerId, server_name);
 
             // add to container cache
             Set<TimerPrimaryKey> keysForContainer = containerCache.get(containerId);
@@ -173,6 +177,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
 
         for (TimerPrimaryKey timerId : timerIds) {
             pkCache.remove(timerId.timerId);
+            ownerIndex.remove(timerId.timerId);
         }
         logger.log(Level.INFO, "Destroyed {0} timers for application {1}", new Object[]{timerIds.size(), applicationId});
         timerIds.clear();
@@ -274,9 +279,8 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
 
         if (timers != null) {
             HashSet<HZTimer> timersToCancel = new HashSet<>();
-            for (TimerPrimaryKey timer : timers) {
-                HZTimer hzTimer = pkCache.get(timer.timerId);
-                if (hzTimer != null && hzTimer.getTimedObjectPk().equals(primaryKey)) {
+            for (HZTimer hzTimer : getAll(timers).values()) {
+                if (hzTimer.getTimedObjectPk().equals(primaryKey)) {
                     timersToCancel.add(hzTimer);
                 }
             }
@@ -380,10 +384,9 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
 
             Collection<TimerPrimaryKey> timersForTimedObject = containerCache.get(containerId);
             if (timersForTimedObject != null) {
-                for (TimerPrimaryKey timer : timersForTimedObject) {
-                    HZTimer hzTimer = pkCache.get(timer.timerId);
-                    if (hzTimer != null && hzTimer.getTimedObjectPk().equals(timedObjectPrimaryKey)) {
-                        timerIdsForTimedObject.add(timer);
+                for (HZTimer hzTimer : getAll(timersForTimedObject).values()) {
+                    if (hzTimer.getTimedObjectPk().equals(timedObjectPrimaryKey)) {
+                        timerIdsForTimedObject.add(hzTimer.getKey());
                     }
 
                 }
@@ -471,13 +474,12 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
         return result;
     }
 
-    static String [] listTimers(Collection<HZTimer> timers, String[] serverIds) {
+    static String [] listTimers(Collection<String> memberNames, String[] serverIds) {
         String result[] = new String[serverIds.length];
 
         // count all server ids
         HashMap<String, Long> counts = new HashMap<>();
-        for (HZTimer timer : timers) {
-            String serverName = timer.getMemberName();
+        for (String serverName : memberNames) {
             Long val = counts.get(serverName);
             if (val == null) {
                 val = new Long(0);
@@ -499,7 +501,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
 
     @Override
     public String[] listTimers(String[] serverIds) {
-        return listTimers(pkCache.values(), serverIds);
+        return listTimers(ownerIndex.ownersIn(serverIds), serverIds);
     }
 
     @Override
@@ -523,20 +525,21 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
         TransactionManager tm = ejbContainerUtil.getTransactionManager();
 
         HashMap<String, HZTimer> toRestore = new HashMap<>();
+        HashMap<String, String> newOwners = new HashMap<>();
         int totalTimersMigrated = 0;
 
-        for (String pk : pkCache.keySet()) {
-            HZTimer hZTimer = pkCache.get(pk);
-            if (hZTimer.getOwnerId().equals(fromOwnerId)) {
-                toRestore.put(pk, hZTimer);
-                hZTimer.setOwnerId(ownerIdOfThisServer);
-                hZTimer.setMemberName(serverName);
-            }
+        for (Entry<String, HZTimer> entry : ownerIndex.timersOwnedBy(fromOwnerId).entrySet()) {
+            HZTimer hZTimer = entry.getValue();
+            toRestore.put(entry.getKey(), hZTimer);
+            newOwners.put(entry.getKey(), serverName);
+            hZTimer.setOwnerId(ownerIdOfThisServer);
+            hZTimer.setMemberName(serverName);
         }
 
-        for (Entry<String, HZTimer> entry : toRestore.entrySet()) {
-            pkCache.put(entry.getKey(), entry.getValue());
-            totalTimersMigrated++;
+        if (!toRestore.isEmpty()) {
+            pkCache.putAll(toRestore);
+            ownerIndex.putAll(newOwners);
+            totalTimersMigrated = toRestore.size();
         }
 
 // XXX if( totalTimersMigrated  == toRestore.size() ) { XXX ???
@@ -597,8 +600,9 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
         Set<TimerPrimaryKey> containerKeys = containerCache.get(containerId);
         Set<TimerPrimaryKey> deadKeys = new HashSet<>();
         if (containerKeys != null) {
+            Map<String, HZTimer> containerTimers = getAll(containerKeys);
             for (TimerPrimaryKey containerKey : containerKeys) {
-                HZTimer timer = pkCache.get(containerKey.timerId);
+                HZTimer timer = containerTimers.get(containerKey.timerId);
                 if (timer != null && timer.getMemberName().equals(this.serverName)) {
                     activeTimers.add(timer);
                 } else if (timer == null) {
@@ -748,6 +752,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
 
     private void removeTimer(HZTimer timer) {
         pkCache.remove(timer.getKey().timerId);
+        ownerIndex.remove(timer.getKey().timerId);
 
         Set<TimerPrimaryKey> keys = applicationCache.get(timer.getApplicationId());
         if (keys != null) {
@@ -1159,13 +1164,24 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
     }
 
     private Collection<HZTimer> findActiveTimersOwnedByThisServer() {
-        HashSet<HZTimer> result = new HashSet<>();
-        for (HZTimer timer : pkCache.values()) {
-            if (timer.getMemberName().equals(this.serverName)) {
-                result.add(timer);
-            }
+        return new HashSet<>(ownerIndex.timersOwnedBy(serverName).values());
+    }
+
+    private long countActiveTimersOwnedByThisServer() {
+        return ownerIndex.countOwnedBy(serverName);
+    }
+
+    /**
+     * Fetches the timers with the given keys in one batch per partition owner.
+     *
+     * @return the timers found, keyed by timer id
+     */
+    private Map<String, HZTimer> getAll(Collection<TimerPrimaryKey> keys) {
+        Set<String> timerIds = new HashSet<>(keys.size());
+        for (TimerPrimaryKey key : keys) {
+            timerIds.add(key.timerId);
         }
-        return result;
+        return pkCache.getAll(timerIds);
     }
 
     private boolean restoreEJBTimers() {
@@ -1175,7 +1191,7 @@ public class HazelcastTimerStore extends NonPersistentEJBTimerService {
                 restoreTimers();
                 rc = true;
             } else {
-                int s = (findActiveTimersOwnedByThisServer()).size();
+                long s = countActiveTimersOwnedByThisServer();
                 if (s > 0) {
                     logger.log(Level.INFO, "[" + s + "] EJB Timers owned by this server will be restored when timeout beans are loaded");
                 } else {
@@ -0,0 +1,159 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.ejb.timer.hazelcast;
+
+import com.hazelcast.aggregation.Aggregators;
+import com.hazelcast.core.IMap;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+import com.hazelcast.query.QueryConstants;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * The member name of the owner of each timer in the timer map, which is also its owner id. Queries by owner run
+ * against this map, so partition owners never have to deserialize an {@link HZTimer} and the application classes it
+ * refers to.
+ * <p>
+ * Members that do not maintain the index, and timers stored before it existed, leave timers without an owner entry.
+ * Before each query the index is reconciled with the timer map when the two differ in size, and timers whose owner
+ * was changed in the timer map only are corrected when they are read.
+ */
+class TimerOwnerIndex {
+
+    private static final String OWNER_ATTRIBUTE = QueryConstants.THIS_ATTRIBUTE_NAME.value();
+
+    private final IMap<String, HZTimer> timers;
+    private final IMap<String, String> owners;
+
+    TimerOwnerIndex(IMap<String, HZTimer> timers, IMap<String, String> owners) {
+        this.timers = timers;
+        this.owners = owners;
+        // lookups by server are run as predicate queries on the partition
+        // owners, the index keeps them from scanning every timer
+        owners.addIndex(OWNER_ATTRIBUTE, false);
+    }
+
+    void put(String timerId, String owner) {
+        owners.put(timerId, owner);
+    }
+
+    void putAll(Map<String, String> timerOwners) {
+        owners.putAll(timerOwners);
+    }
+
+    void remove(String timerId) {
+        owners.remove(timerId);
+    }
+
+    /**
+     * @return the timers owned by the given server, keyed by timer id
+     */
+    Map<String, HZTimer> timersOwnedBy(String owner) {
+        reconcile();
+        Map<String, HZTimer> result = new HashMap<>();
+        Map<String, String> corrected = new HashMap<>();
+        for (Entry<String, HZTimer> entry : timers.getAll(owners.keySet(ownedBy(owner))).entrySet()) {
+            String memberName = entry.getValue().getMemberName();
+            if (owner.equals(memberName)) {
+                result.put(entry.getKey(), entry.getValue());
+            } else {
+                corrected.put(entry.getKey(), memberName);
+            }
+        }
+        if (!corrected.isEmpty()) {
+            owners.putAll(corrected);
+        }
+        return result;
+    }
+
+    long countOwnedBy(String owner) {
+        reconcile();
+        return owners.aggregate(Aggregators.<Map.Entry<String, String>>count(), ownedBy(owner));
+    }
+
+    /**
+     * @return the owner of each timer owned by one of the given servers
+     */
+    Collection<String> ownersIn(String[] serverIds) {
+        reconcile();
+        Predicate<String, String> onServers = Predicates.in(OWNER_ATTRIBUTE, serverIds);
+        return owners.values(onServers);
+    }
+
+    /**
+     * Adds the timers missing from the index and drops the entries of timers no longer in the timer map. Both maps
+     * hold the same keys unless a member that does not maintain the index has changed the timer map, so this only
+     * costs a size call on each map.
+     */
+    void reconcile() {
+        if (owners.size() == timers.size()) {
+            return;
+        }
+        Set<String> timerIds = timers.keySet();
+        Set<String> missing = new HashSet<>(timerIds);
+        Set<String> removed = new HashSet<>(owners.keySet());
+        missing.removeAll(removed);
+        removed.removeAll(timerIds);
+
+        Map<String, String> missingOwners = new HashMap<>();
+        for (Entry<String, HZTimer> entry : timers.getAll(missing).entrySet()) {
+            missingOwners.put(entry.getKey(), entry.getValue().getMemberName());
+        }
+        if (!missingOwners.isEmpty()) {
+            owners.putAll(missingOwners);
+        }
+        for (String timerId : removed) {
+            // only drop the entry if the timer was not added since
+            if (!timers.containsKey(timerId)) {
+                owners.remove(timerId);
+            }
+        }
+    }
+
+    private static Predicate<String, String> ownedBy(String owner) {
+        return Predicates.equal(OWNER_ATTRIBUTE, owner);
+    }
+}
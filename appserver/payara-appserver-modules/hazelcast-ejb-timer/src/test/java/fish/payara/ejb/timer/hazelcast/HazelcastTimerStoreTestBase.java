@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2019-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -39,11 +39,17 @@
  */
 package fish.payara.ejb.timer.hazelcast;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 public abstract class HazelcastTimerStoreTestBase {
   public String[] callListTimers(Collection<HZTimer> timers, String... serverIds) {
-    return HazelcastTimerStore.listTimers(timers, serverIds);
+    List<String> memberNames = new ArrayList<>();
+    for (HZTimer timer : timers) {
+      memberNames.add(timer.getMemberName());
+    }
+    return HazelcastTimerStore.listTimers(memberNames, serverIds);
   }
 }
 
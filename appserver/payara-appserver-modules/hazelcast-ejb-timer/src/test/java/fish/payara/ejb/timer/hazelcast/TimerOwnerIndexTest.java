@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.ejb.timer.hazelcast;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.sun.ejb.containers.TimerPrimaryKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.ejb.TimerConfig;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimerOwnerIndexTest {
+  private static HazelcastInstance hazelcast;
+
+  private IMap<String, HZTimer> timers;
+  private IMap<String, String> owners;
+  private TimerOwnerIndex index;
+
+  @BeforeClass
+  public static void startHazelcast() {
+    Config config = new Config();
+    config.setProperty("hazelcast.phone.home.enabled", "false");
+    JoinConfig join = config.getNetworkConfig().getJoin();
+    join.getMulticastConfig().setEnabled(false);
+    join.getTcpIpConfig().setEnabled(false);
+    hazelcast = Hazelcast.newHazelcastInstance(config);
+  }
+
+  @AfterClass
+  public static void stopHazelcast() {
+    hazelcast.shutdown();
+  }
+
+  @Before
+  public void setUpMaps() {
+    timers = hazelcast.getMap("timers");
+    owners = hazelcast.getMap("owners");
+    timers.clear();
+    owners.clear();
+    index = new TimerOwnerIndex(timers, owners);
+  }
+
+  @Test
+  public void indexedTimersAreQueriedByOwner() {
+    addTimer("t1", "jb", true);
+    addTimer("t2", "hz", true);
+    addTimer("t3", "jb", true);
+
+    assertEquals(asList("t1", "t3"), sorted(index.timersOwnedBy("jb")));
+    assertEquals(2, index.countOwnedBy("jb"));
+    assertEquals(1, index.countOwnedBy("hz"));
+    assertEquals(0, index.countOwnedBy("ltd"));
+    assertEquals(asList("hz", "jb", "jb"), sorted(index.ownersIn(new String[] {"jb", "hz"})));
+  }
+
+  @Test
+  public void timersWithoutOwnerEntryAreBackfilled() {
+    addTimer("t1", "jb", false);
+    addTimer("t2", "hz", false);
+    addTimer("t3", "jb", true);
+
+    assertEquals(2, index.countOwnedBy("jb"));
+    assertEquals(asList("t1", "t3"), sorted(index.timersOwnedBy("jb")));
+    assertEquals(asList("hz"), sorted(index.ownersIn(new String[] {"hz"})));
+    assertEquals("hz", owners.get("t2"));
+  }
+
+  @Test
+  public void ownerEntriesOfRemovedTimersAreDropped() {
+    addTimer("t1", "jb", true);
+    addTimer("t2", "jb", true);
+    timers.remove("t2");
+
+    assertEquals(1, index.countOwnedBy("jb"));
+    assertEquals(singleton("t1"), index.timersOwnedBy("jb").keySet());
+    assertEquals(singleton("t1"), owners.keySet());
+  }
+
+  @Test
+  public void ownerChangedInTimerMapOnlyIsCorrectedWhenRead() {
+    addTimer("t1", "jb", true);
+    timers.put("t1", timer("t1", "hz"));
+
+    assertEquals(emptySet(), index.timersOwnedBy("jb").keySet());
+    assertEquals(singleton("t1"), index.timersOwnedBy("hz").keySet());
+    assertEquals(1, index.countOwnedBy("hz"));
+  }
+
+  @Test
+  public void changedOwnersAreQueriedFromTheIndex() {
+    addTimer("t1", "jb", true);
+    addTimer("t2", "jb", true);
+    Map<String, HZTimer> migrated = new HashMap<>();
+    Map<String, String> newOwners = new HashMap<>();
+    for (String timerId : index.timersOwnedBy("jb").keySet()) {
+      migrated.put(timerId, timer(timerId, "hz"));
+      newOwners.put(timerId, "hz");
+    }
+    timers.putAll(migrated);
+    index.putAll(newOwners);
+
+    assertEquals(0, index.countOwnedBy("jb"));
+    assertEquals(asList("t1", "t2"), sorted(index.timersOwnedBy("hz")));
+  }
+
+  private void addTimer(String timerId, String owner, boolean indexed) {
+    timers.put(timerId, timer(timerId, owner));
+    if (indexed) {
+      index.put(timerId, owner);
+    }
+  }
+
+  private static HZTimer timer(String timerId, String owner) {
+    return new HZTimer(new TimerPrimaryKey(timerId), 1L, 1L, null, owner, owner, new Date(), 0L, null,
+        new TimerConfig(null, true));
+  }
+
+  private static List<String> sorted(Map<String, HZTimer> timers) {
+    return new ArrayList<>(new TreeMap<>(timers).keySet());
+  }
+
+  private static List<String> sorted(Collection<String> values) {
+    List<String> result = new ArrayList<>(values);
+    Collections.sort(result);
+    return result;
+  }
+}
@@ -102,4 +102,22 @@ public interface FaultToleranceServiceConfiguration extends ConfigExtension {
     @Max(value = 60 * 24)
     String getCleanupIntervalInMinutes();
     void setCleanupIntervalInMinutes(String cleanupIntervalInMinutes);
+
+    /**
+     * @return When true, the circuit breaker state of a method is shared with the other members of the data grid
+     *         running the same application. Members exchange results and state transitions in batches so that they
+     *         eventually open and half-open together. Changes do need a restart of the server.
+     */
+    @Attribute(defaultValue = "false", dataType = Boolean.class)
+    String getClusteredCircuitBreaker();
+    void setClusteredCircuitBreaker(String clusteredCircuitBreaker);
+
+    /**
+     * @return The interval duration in milliseconds in which clustered circuit breaker state is exchanged with the
+     *         other members of the data grid. Changes do need a restart of the server.
+     */
+    @Attribute(defaultValue = "1000", dataType = Integer.class)
+    @Min(value = 100)
+    String getClusterSyncIntervalInMillis();
+    void setClusterSyncIntervalInMillis(String clusterSyncIntervalInMillis);
 }
@@ -78,7 +78,8 @@ import org.jvnet.hk2.annotations.Service;
 })
 public class GetFaultToleranceConfigurationCommand implements AdminCommand {
 
-    private final String OUTPUT_HEADERS[] = { "Async Max Pool Size", "Delay Max Pool Size" };
+    private final String OUTPUT_HEADERS[] = { "Async Max Pool Size", "Delay Max Pool Size", "Clustered Circuit Breaker",
+            "Cluster Sync Interval" };
 
     @Inject
     private Target targetUtil;
@@ -100,7 +101,8 @@ public class GetFaultToleranceConfigurationCommand implements AdminCommand {
                 .getExtensionByType(FaultToleranceServiceConfiguration.class);
 
         ColumnFormatter columnFormatter = new ColumnFormatter(OUTPUT_HEADERS);
-        Object[] outputValues = { config.getAsyncMaxPoolSize(), config.getDelayMaxPoolSize() };
+        Object[] outputValues = { config.getAsyncMaxPoolSize(), config.getDelayMaxPoolSize(),
+                config.getClusteredCircuitBreaker(), config.getClusterSyncIntervalInMillis() };
         columnFormatter.addRow(outputValues);
 
         acc.getActionReport().appendMessage(columnFormatter.toString());
@@ -108,6 +110,8 @@ public class GetFaultToleranceConfigurationCommand implements AdminCommand {
         Map<String, Object> extraPropertiesMap = new HashMap<>();
         extraPropertiesMap.put("asyncMaxPoolSize", config.getAsyncMaxPoolSize());
         extraPropertiesMap.put("delayMaxPoolSize", config.getDelayMaxPoolSize());
+        extraPropertiesMap.put("clusteredCircuitBreaker", config.getClusteredCircuitBreaker());
+        extraPropertiesMap.put("clusterSyncIntervalInMillis", config.getClusterSyncIntervalInMillis());
         Properties extraProperties = new Properties();
         extraProperties.put("faultToleranceConfiguration", extraPropertiesMap);
         acc.getActionReport().setExtraProperties(extraProperties);
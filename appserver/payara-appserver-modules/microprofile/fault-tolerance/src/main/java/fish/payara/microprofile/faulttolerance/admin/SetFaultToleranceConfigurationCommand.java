@@ -99,6 +99,12 @@ public class SetFaultToleranceConfigurationCommand implements AdminCommand {
     @Param(optional = true, alias = "cleanup-interval")
     private Integer _cleanupIntervalInMinutes;
 
+    @Param(optional = true, alias = "clustered-circuit-breaker")
+    private Boolean clusteredCircuitBreaker;
+
+    @Param(optional = true, alias = "cluster-sync-interval")
+    private Integer _clusterSyncIntervalInMillis;
+
     @Param(optional = true, defaultValue = "server-config")
     private String target;
 
@@ -122,6 +128,12 @@ public class SetFaultToleranceConfigurationCommand implements AdminCommand {
                 if (_cleanupIntervalInMinutes != null) {
                     configProxy.setCleanupIntervalInMinutes(_cleanupIntervalInMinutes.toString());
                 }
+                if (clusteredCircuitBreaker != null) {
+                    configProxy.setClusteredCircuitBreaker(clusteredCircuitBreaker.toString());
+                }
+                if (_clusterSyncIntervalInMillis != null) {
+                    configProxy.setClusterSyncIntervalInMillis(_clusterSyncIntervalInMillis.toString());
+                }
                 return null;
             }, faultToleranceServiceConfiguration);
         } catch (TransactionFailure ex) {
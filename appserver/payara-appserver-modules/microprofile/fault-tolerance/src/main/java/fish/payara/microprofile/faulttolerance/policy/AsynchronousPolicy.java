@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2019 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2019-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -40,7 +40,11 @@
 package fish.payara.microprofile.faulttolerance.policy;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 import javax.interceptor.InvocationContext;
@@ -87,6 +91,43 @@ public final class AsynchronousPolicy extends Policy {
                 : (Future<?>) asyncResult;
     }
 
+    /**
+     * Completes the given asynchronous result with the value of the given {@link Future} or {@link CompletionStage}
+     * as returned by the annotated method or a fallback. When it is a {@link CompletableFuture} the result is
+     * completed once it is done without waiting for it.
+     * 
+     * In both cases the result completes as if it was completed with the outcome of calling {@link Future#get()}.
+     *
+     * @param asyncResult the result to complete
+     * @param value the {@link Future} or {@link CompletionStage} to complete with
+     */
+    public static void completeWith(CompletableFuture<Object> asyncResult, Object value) {
+        try {
+            Future<?> futureResult = toFuture(value);
+            if (asyncResult.isCancelled()) {
+                futureResult.cancel(true);
+            } else if (futureResult instanceof CompletableFuture) {
+                ((CompletableFuture<?>) futureResult).whenComplete((result, ex) -> {
+                    if (ex == null) {
+                        asyncResult.complete(result);
+                    } else {
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                                ? ex.getCause()
+                                : ex;
+                        // same as calling get() on the future
+                        asyncResult.completeExceptionally(
+                                cause instanceof CancellationException ? cause : new ExecutionException(cause));
+                    }
+                });
+            } else if (!asyncResult.isDone()) {
+                asyncResult.complete(futureResult.get());
+            }
+        } catch (Exception ex) {
+            // Note that even ExecutionException is not unpacked (intentionally)
+            asyncResult.completeExceptionally(ex);
+        }
+    }
+
     public boolean isSuccessWhenCompletedExceptionally() {
         return this == FUTURE;
     }
@@ -44,12 +44,13 @@ import java.lang.reflect.Method;
 import java.time.Duration;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
@@ -66,9 +67,10 @@ import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
 
 import fish.payara.microprofile.faulttolerance.FaultToleranceConfig;
 import fish.payara.microprofile.faulttolerance.FaultToleranceMethodContext;
-import fish.payara.microprofile.faulttolerance.FaultToleranceService;
 import fish.payara.microprofile.faulttolerance.FaultToleranceMetrics;
+import fish.payara.microprofile.faulttolerance.state.BulkheadSemaphore;
 import fish.payara.microprofile.faulttolerance.state.CircuitBreakerState;
+import fish.payara.microprofile.faulttolerance.state.CircuitBreakerState.CircuitState;
 
 /**
  * The {@link FaultTolerancePolicy} describes the effective aggregated policies to use for a particular {@link Method}
@@ -247,8 +249,10 @@ public final class FaultTolerancePolicy implements Serializable {
      * </pre>
      * The call chain goes from 1) down to 6) skipping stages that are not requested by this policy.
      * 
-     * Asynchronous execution branches to new threads in stage 1) and 3) each executed by the
-     * {@link FaultToleranceService#runAsynchronous(CompletableFuture, Callable)}.
+     * Asynchronous execution continues stages 2) to 6) as a chain of {@link CompletableFuture}s. Each retry attempt,
+     * each bulkhead execution that had to wait for a permit and the fallback are run as new tasks by
+     * {@link FaultToleranceMethodContext#runAsynchronous(CompletableFuture, Callable)} so that no thread waits for a
+     * delay, a permit or the completion of another stage.
      * 
      * @param context intercepted call context
      * @param ftmContextSupplier the environment used to execute the FT behaviour
@@ -312,11 +316,64 @@ public final class FaultTolerancePolicy implements Serializable {
             }
         };
         FaultToleranceInvocation invocation = new FaultToleranceInvocation(context, metrics, asyncResult, workers);
-        context.runAsynchronous(asyncResult,
-                () -> invocation.runStageWithWorker(() -> processFallbackStage(invocation)));
+        processFallbackStageAsync(invocation).whenComplete((value, ex) -> completeWith(asyncResult, value, ex));
         return asyncResult;
     }
 
+    /**
+     * Completes the given asynchronous result like {@link AsynchronousPolicy#completeWith(CompletableFuture, Object)}
+     * unless the stage
+     * completed exceptionally in which case the result completes with the stage's exception.
+     */
+    private static void completeWith(CompletableFuture<Object> asyncResult, Object value, Throwable ex) {
+        if (ex != null) {
+            asyncResult.completeExceptionally(unwrapCompletion(ex));
+        } else {
+            AsynchronousPolicy.completeWith(asyncResult, value);
+        }
+    }
+
+    private static Throwable unwrapCompletion(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    /**
+     * Runs the given stage as a new task using {@link FaultToleranceMethodContext#runAsynchronous(CompletableFuture, Callable)}.
+     *
+     * Other than the result passed to the context the returned {@link CompletableFuture} completes with the value
+     * returned by the stage as is. Should that be a {@link Future} it is not waited for.
+     */
+    private static CompletableFuture<Object> runStageAsynchronous(FaultToleranceInvocation invocation,
+            Callable<Object> stage) {
+        CompletableFuture<Object> stageResult = new CompletableFuture<>();
+        try {
+            invocation.context.runAsynchronous(stageResult,
+                    () -> CompletableFuture.completedFuture(invocation.runStageWithWorker(stage)));
+        } catch (RejectedExecutionException ex) {
+            stageResult.completeExceptionally(ex);
+        }
+        return stageResult;
+    }
+
+    /**
+     * Runs the given stage in the current thread.
+     */
+    private static CompletableFuture<Object> runStage(Callable<Object> stage) {
+        CompletableFuture<Object> stageResult = new CompletableFuture<>();
+        try {
+            stageResult.complete(stage.call());
+        } catch (Exception ex) {
+            stageResult.completeExceptionally(ex);
+        }
+        return stageResult;
+    }
+
+    private static CompletableFuture<Object> failedStage(Throwable ex) {
+        CompletableFuture<Object> stageResult = new CompletableFuture<>();
+        stageResult.completeExceptionally(ex);
+        return stageResult;
+    }
+
     /**
      * Stage that takes care of the {@link FallbackPolicy} handling.
      */
@@ -341,6 +398,55 @@ public final class FaultTolerancePolicy implements Serializable {
         }
     }
 
+    /**
+     * Asynchronous variant of the {@link #processFallbackStage(FaultToleranceInvocation)}.
+     * 
+     * The returned {@link CompletableFuture} completes with the value the synchronous stage would have returned or
+     * exceptionally with the {@link Exception} it would have thrown.
+     *
+     * The last attempt might complete in a thread that is not associated with the invocation, like the one that timed
+     * it out. The fallback therefore is run as a new task of the invocation.
+     */
+    private CompletableFuture<Object> processFallbackStageAsync(FaultToleranceInvocation invocation) {
+        CompletableFuture<Object> retryResult = processRetryStageAsync(invocation);
+        if (!isFallbackPresent()) {
+            return retryResult;
+        }
+        logger.log(Level.FINER, "Proceeding invocation with fallback semantics");
+        CompletableFuture<Object> fallbackResult = new CompletableFuture<>();
+        retryResult.whenComplete((value, ex) -> {
+            Throwable cause = unwrapCompletion(ex);
+            if (!(cause instanceof Exception)) {
+                complete(fallbackResult, value, cause);
+                return;
+            }
+            invocation.metrics.incrementFallbackCallsTotal();
+            runStageAsynchronous(invocation, () -> {
+                invocation.trace("executeFallbackMethod");
+                try {
+                    if (fallback.isHandlerPresent()) {
+                        logger.log(Level.FINE, "Using fallback class: {0}", fallback.value.getName());
+                        return invocation.context.fallbackHandle(fallback.value, (Exception) cause);
+                    }
+                    logger.log(Level.FINE, "Using fallback method: {0}", fallback.method.getName());
+                    return invocation.context.fallbackInvoke(fallback.method);
+                } finally {
+                    invocation.endTrace();
+                }
+            }).whenComplete((fallbackValue, fallbackEx) ->
+                    complete(fallbackResult, fallbackValue, unwrapCompletion(fallbackEx)));
+        });
+        return fallbackResult;
+    }
+
+    private static void complete(CompletableFuture<Object> future, Object value, Throwable ex) {
+        if (ex == null) {
+            future.complete(value);
+        } else {
+            future.completeExceptionally(ex);
+        }
+    }
+
     /**
      * Stage that takes care of the {@link RetryPolicy} handling.
      */
@@ -359,9 +465,7 @@ public final class FaultTolerancePolicy implements Serializable {
                     logger.log(Level.FINER, "Attempting retry.");
                     invocation.metrics.incrementRetryRetriesTotal();
                 }
-                Object resultValue = isAsynchronous() 
-                        ? processRetryAsync(invocation)
-                        : processCircuitBreakerStage(invocation, null);
+                Object resultValue = processCircuitBreakerStage(invocation);
                 if (firstAttempt) {
                     invocation.metrics.incrementRetryCallsSucceededNotRetriedTotal();
                 } else {
@@ -385,42 +489,120 @@ public final class FaultTolerancePolicy implements Serializable {
         throw new FaultToleranceException("Retry failed"); 
     }
 
-    private CompletableFuture<Object> processRetryAsync(FaultToleranceInvocation invocation) throws Exception {
+    /**
+     * Asynchronous variant of the {@link #processRetryStage(FaultToleranceInvocation)}.
+     * 
+     * Each attempt is started when the previous one completed. A retry delay does not put a thread to sleep but
+     * schedules the next attempt using {@link FaultToleranceMethodContext#runDelayed(long, Runnable)}.
+     */
+    private CompletableFuture<Object> processRetryStageAsync(FaultToleranceInvocation invocation) {
+        if (!retry.isNone()) {
+            logger.log(Level.FINER, "Proceeding invocation with retry semantics");
+        }
+        CompletableFuture<Object> retryResult = new CompletableFuture<>();
+        int totalAttempts = retry.totalAttempts();
+        processRetryAttemptAsync(invocation, retryResult, totalAttempts, totalAttempts, retry.timeoutTimeNow());
+        return retryResult;
+    }
+
+    private void processRetryAttemptAsync(FaultToleranceInvocation invocation, CompletableFuture<Object> retryResult,
+            int totalAttempts, int attemptsLeftBefore, Long retryTimeoutTime) {
+        final int attemptsLeft = attemptsLeftBefore - 1;
+        final boolean firstAttempt = attemptsLeft == totalAttempts - 1;
+        if (!firstAttempt) {
+            if (invocation.asyncResult.isDone()) {
+                retryResult.completeExceptionally(
+                        new TimeoutException("Computation already concluded in a concurrent attempt"));
+                return;
+            }
+            logger.log(Level.FINER, "Attempting retry.");
+            invocation.metrics.incrementRetryRetriesTotal();
+        }
         CompletableFuture<Object> asyncAttempt = new CompletableFuture<>();
-        invocation.context.runAsynchronous(asyncAttempt,
-                () -> invocation.runStageWithWorker(() -> processCircuitBreakerStage(invocation, asyncAttempt)));
-        try {
-            asyncAttempt.get(); // wait and only proceed on success
-            invocation.timeoutIfConcludedConcurrently();
-            return asyncAttempt;
-        } catch (ExecutionException ex) { // this ExecutionException is from calling get() above in case completed exceptionally
-            if (ex.getCause() instanceof ExecutionException) { 
-                // this cause ExecutionException is caused by annotated method returned a Future that completed exceptionally
-                if (asynchronous.isSuccessWhenCompletedExceptionally()) {
-                    CompletableFuture<Object> exceptionalResult = new CompletableFuture<>();
-                    exceptionalResult.completeExceptionally(ex.getCause().getCause()); // unwrap
-                    return exceptionalResult;
+        runStageAsynchronous(invocation, () -> {
+            processCircuitBreakerStageAsync(invocation).whenComplete((value, ex) -> {
+                if (ex != null) {
+                    asyncAttempt.completeExceptionally(unwrapCompletion(ex));
+                    return;
+                }
+                try {
+                    // resolves the Future returned by the annotated method
+                    invocation.context.runAsynchronous(asyncAttempt, () -> value);
+                } catch (RejectedExecutionException rejected) {
+                    asyncAttempt.completeExceptionally(rejected);
+                }
+            });
+            return null;
+        }).whenComplete((value, ex) -> {
+            if (ex != null) {
+                asyncAttempt.completeExceptionally(unwrapCompletion(ex));
+            }
+        });
+        asyncAttempt.whenComplete((value, ex) -> {
+            Throwable failure = null;
+            if (ex == null) {
+                if (invocation.asyncResult.isDone()) {
+                    failure = new TimeoutException("Computation already concluded in a concurrent attempt");
+                }
+            } else {
+                failure = unwrapCompletion(ex);
+                if (failure instanceof ExecutionException) {
+                    // caused by annotated method returned a Future that completed exceptionally
+                    if (asynchronous.isSuccessWhenCompletedExceptionally()) {
+                        CompletableFuture<Object> exceptionalResult = new CompletableFuture<>();
+                        exceptionalResult.completeExceptionally(failure.getCause()); // unwrap
+                        incrementRetryCallsSucceeded(invocation, firstAttempt);
+                        retryResult.complete(exceptionalResult);
+                        return;
+                    }
+                    failure = failure.getCause(); // for retry handling use plain cause
                 }
-                throw (Exception) ex.getCause().getCause(); // for retry handling return plain cause
             }
-            throw (Exception) ex.getCause();
+            if (failure == null) {
+                incrementRetryCallsSucceeded(invocation, firstAttempt);
+                retryResult.complete(asyncAttempt);
+                return;
+            }
+            boolean timedOut = retryTimeoutTime != null && System.currentTimeMillis() >= retryTimeoutTime;
+            if (attemptsLeft <= 0 || !(failure instanceof Exception) || !retry.retryOn((Exception) failure) || timedOut) {
+                logger.log(Level.FINE, "Retry attemp failed. Giving up{0}", timedOut ? " due to time-out." : ".");
+                invocation.metrics.incrementRetryCallsFailedTotal();
+                retryResult.completeExceptionally(failure);
+                return;
+            }
+            logger.log(Level.FINE, "Retry attempt failed. {0} attempts left.", attemptsLeft);
+            Runnable nextAttempt = () -> processRetryAttemptAsync(invocation, retryResult, totalAttempts,
+                    attemptsLeft, retryTimeoutTime);
+            long delay = retry.isDelayed() ? retry.jitteredDelay() : 0L;
+            if (delay <= 0) {
+                nextAttempt.run();
+                return;
+            }
+            try {
+                invocation.context.runDelayed(delay, nextAttempt);
+            } catch (Exception scheduleEx) {
+                retryResult.completeExceptionally(scheduleEx);
+            }
+        });
+    }
+
+    private static void incrementRetryCallsSucceeded(FaultToleranceInvocation invocation, boolean firstAttempt) {
+        if (firstAttempt) {
+            invocation.metrics.incrementRetryCallsSucceededNotRetriedTotal();
+        } else {
+            invocation.metrics.incrementRetryCallsSucceededRetriedTotal();
         }
     }
 
     /**
      * Stage that takes care of the {@link CircuitBreakerPolicy} handling.
      */
-    private Object processCircuitBreakerStage(FaultToleranceInvocation invocation, CompletableFuture<Object> asyncAttempt) throws Exception {
+    private Object processCircuitBreakerStage(FaultToleranceInvocation invocation) throws Exception {
         if (!isCircuitBreakerPresent()) {
-            return processTimeoutStage(invocation, asyncAttempt);
+            return processTimeoutStage(invocation);
         }
         logger.log(Level.FINER, "Proceeding invocation with circuitbreaker semantics");
-        CircuitBreakerState state = invocation.context.getState(circuitBreaker.requestVolumeThreshold);
-        if (isMetricsEnabled) {
-            invocation.metrics.linkCircuitbreakerOpenTotal(state::nanosOpen);
-            invocation.metrics.linkCircuitbreakerHalfOpenTotal(state::nanosHalfOpen);
-            invocation.metrics.linkCircuitbreakerClosedTotal(state::nanosClosed);
-        }
+        CircuitBreakerState state = getCircuitBreakerState(invocation);
         Object resultValue = null;
         switch (state.getCircuitState()) {
         default:
@@ -431,47 +613,120 @@ public final class FaultTolerancePolicy implements Serializable {
         case HALF_OPEN:
             logger.log(Level.FINER, "Proceeding half open CircuitBreaker context");
             try {
-                resultValue = processTimeoutStage(invocation, asyncAttempt);
+                resultValue = processTimeoutStage(invocation);
             } catch (Exception ex) {
-                invocation.metrics.incrementCircuitbreakerCallsFailedTotal();
-                if (circuitBreaker.failOn(ex)) {
-                    logger.log(Level.FINE, "Exception causes CircuitBreaker to transit: half-open => open");
-                    openCircuit(invocation, state);
-                }
+                recordHalfOpenOutcome(invocation, state, ex);
                 throw ex;
             }
-            if (state.halfOpenSuccessfulClosedCircuit(circuitBreaker.successThreshold)) {
-                logger.log(Level.FINE, "Success threshold causes CircuitBreaker to transit: half-open => closed");
-            }
-            invocation.metrics.incrementCircuitbreakerCallsSucceededTotal();
+            recordHalfOpenOutcome(invocation, state, null);
             return resultValue;
         case CLOSED:
             logger.log(Level.FINER, "Proceeding closed CircuitBreaker context");
             Exception failedOn = null;
             try {
-                resultValue = processTimeoutStage(invocation, asyncAttempt);
-                state.recordClosedOutcome(true);
+                resultValue = processTimeoutStage(invocation);
             } catch (Exception ex) {
-                if (circuitBreaker.failOn(ex)) {
-                    state.recordClosedOutcome(false);
-                    invocation.metrics.incrementCircuitbreakerCallsFailedTotal();
-                } else {
-                    invocation.metrics.incrementCircuitbreakerCallsSucceededTotal();
-                }
                 failedOn = ex;
             }
-            if (state.isOverFailureThreshold(circuitBreaker.requestVolumeThreshold, circuitBreaker.failureRatio)) {
-                logger.log(Level.FINE, "Failure threshold causes CircuitBreaker to transit: closed => open");
-                openCircuit(invocation, state);
-            }
+            recordClosedOutcome(invocation, state, failedOn);
             if (failedOn != null) {
                 throw failedOn;
             }
-            invocation.metrics.incrementCircuitbreakerCallsSucceededTotal();
             return resultValue;
         }
     }
 
+    /**
+     * Asynchronous variant of the {@link #processCircuitBreakerStage(FaultToleranceInvocation)}.
+     */
+    private CompletableFuture<Object> processCircuitBreakerStageAsync(FaultToleranceInvocation invocation) {
+        if (!isCircuitBreakerPresent()) {
+            return processTimeoutStageAsync(invocation);
+        }
+        logger.log(Level.FINER, "Proceeding invocation with circuitbreaker semantics");
+        CircuitBreakerState state = getCircuitBreakerState(invocation);
+        CircuitState circuitState = state.getCircuitState();
+        switch (circuitState) {
+        default:
+        case OPEN:
+            logger.log(Level.FINER, "CircuitBreaker is open, throwing exception");
+            invocation.metrics.incrementCircuitbreakerCallsPreventedTotal();
+            return failedStage(new CircuitBreakerOpenException());
+        case HALF_OPEN:
+        case CLOSED:
+            logger.log(Level.FINER, "Proceeding {0} CircuitBreaker context",
+                    circuitState == CircuitState.HALF_OPEN ? "half open" : "closed");
+            CompletableFuture<Object> circuitBreakerResult = new CompletableFuture<>();
+            processTimeoutStageAsync(invocation).whenComplete((value, ex) -> {
+                Throwable failure = unwrapCompletion(ex);
+                try {
+                    if (failure == null || failure instanceof Exception) {
+                        if (circuitState == CircuitState.HALF_OPEN) {
+                            recordHalfOpenOutcome(invocation, state, (Exception) failure);
+                        } else {
+                            recordClosedOutcome(invocation, state, (Exception) failure);
+                        }
+                    }
+                    complete(circuitBreakerResult, value, failure);
+                } catch (Exception recordEx) {
+                    circuitBreakerResult.completeExceptionally(recordEx);
+                }
+            });
+            return circuitBreakerResult;
+        }
+    }
+
+    private CircuitBreakerState getCircuitBreakerState(FaultToleranceInvocation invocation) {
+        CircuitBreakerState state = invocation.context.getState(circuitBreaker.requestVolumeThreshold);
+        if (isMetricsEnabled) {
+            invocation.metrics.linkCircuitbreakerOpenTotal(state::nanosOpen);
+            invocation.metrics.linkCircuitbreakerHalfOpenTotal(state::nanosHalfOpen);
+            invocation.metrics.linkCircuitbreakerClosedTotal(state::nanosClosed);
+        }
+        return state;
+    }
+
+    /**
+     * @param failedOn the exception the attempt failed with or null if it was successful
+     */
+    private void recordHalfOpenOutcome(FaultToleranceInvocation invocation, CircuitBreakerState state,
+            Exception failedOn) throws Exception {
+        if (failedOn != null) {
+            invocation.metrics.incrementCircuitbreakerCallsFailedTotal();
+            if (circuitBreaker.failOn(failedOn)) {
+                logger.log(Level.FINE, "Exception causes CircuitBreaker to transit: half-open => open");
+                openCircuit(invocation, state);
+            }
+            return;
+        }
+        if (state.halfOpenSuccessfulClosedCircuit(circuitBreaker.successThreshold)) {
+            logger.log(Level.FINE, "Success threshold causes CircuitBreaker to transit: half-open => closed");
+        }
+        invocation.metrics.incrementCircuitbreakerCallsSucceededTotal();
+    }
+
+    /**
+     * @param failedOn the exception the attempt failed with or null if it was successful
+     */
+    private void recordClosedOutcome(FaultToleranceInvocation invocation, CircuitBreakerState state,
+            Exception failedOn) throws Exception {
+        if (failedOn == null) {
+            state.recordClosedOutcome(true);
+        } else if (circuitBreaker.failOn(failedOn)) {
+            state.recordClosedOutcome(false);
+            invocation.metrics.incrementCircuitbreakerCallsFailedTotal();
+        } else {
+            invocation.metrics.incrementCircuitbreakerCallsSucceededTotal();
+        }
+        if (state.isOverFailureThreshold(circuitBreaker.requestVolumeThreshold, circuitBreaker.failureRatio)) {
+            logger.log(Level.FINE, "Failure threshold causes CircuitBreaker to transit: closed => open");
+            openCircuit(invocation, state);
+        }
+        if (failedOn == null) {
+            invocation.metrics.incrementCircuitbreakerCallsSucceededTotal();
+        }
+    }
+
     private void openCircuit(FaultToleranceInvocation invocation, CircuitBreakerState state) throws Exception {
         invocation.metrics.incrementCircuitbreakerOpenedTotal();
         state.open();
@@ -485,7 +740,7 @@ public final class FaultTolerancePolicy implements Serializable {
     /**
      * Stage that takes care of the {@link TimeoutPolicy} handling.
      */
-    private Object processTimeoutStage(FaultToleranceInvocation invocation, CompletableFuture<Object> asyncAttempt) throws Exception {
+    private Object processTimeoutStage(FaultToleranceInvocation invocation) throws Exception {
         if (!isTimeoutPresent()) {
             return processBulkheadStage(invocation);
         }
@@ -499,10 +754,6 @@ public final class FaultTolerancePolicy implements Serializable {
             timedOut.set(true);
             current.interrupt();
             invocation.metrics.incrementTimeoutCallsTimedOutTotal();
-            if (asyncAttempt != null) {
-                // we do this since interrupting not necessarily returns directly or ever but the attempt should timeout now
-                asyncAttempt.completeExceptionally(new TimeoutException());
-            }
         });
         long executionStartTime = System.nanoTime();
         try {
@@ -530,6 +781,59 @@ public final class FaultTolerancePolicy implements Serializable {
         }
     }
 
+    /**
+     * Asynchronous variant of the {@link #processTimeoutStage(FaultToleranceInvocation)}.
+     * 
+     * When the timeout occurs the stage completes right away. The workers of the invocation get interrupted and the
+     * bulkhead stage is cancelled so that an attempt still waiting for a permit gives up its place in the queue.
+     */
+    private CompletableFuture<Object> processTimeoutStageAsync(FaultToleranceInvocation invocation) {
+        if (!isTimeoutPresent()) {
+            return processBulkheadStageAsync(invocation);
+        }
+        logger.log(Level.FINER, "Proceeding invocation with timeout semantics");
+        long timeoutDuration = Duration.of(timeout.value, timeout.unit).toMillis();
+        long timeoutTime = System.currentTimeMillis() + timeoutDuration;
+        CompletableFuture<Object> timeoutResult = new CompletableFuture<>();
+        Future<?> timeout;
+        try {
+            timeout = invocation.context.runDelayed(timeoutDuration, () -> {
+                if (timeoutResult.completeExceptionally(new TimeoutException())) {
+                    logger.log(Level.FINE, "Interrupting attempt due to timeout.");
+                    invocation.metrics.incrementTimeoutCallsTimedOutTotal();
+                    invocation.asyncWorkers.forEach(worker -> worker.interrupt());
+                }
+            });
+        } catch (Exception ex) {
+            return failedStage(ex);
+        }
+        long executionStartTime = System.nanoTime();
+        CompletableFuture<Object> bulkheadResult = processBulkheadStageAsync(invocation);
+        timeoutResult.whenComplete((value, ex) -> bulkheadResult.cancel(false));
+        bulkheadResult.whenComplete((value, ex) -> {
+            invocation.metrics.addTimeoutExecutionDuration(System.nanoTime() - executionStartTime);
+            timeout.cancel(true);
+            if (timeoutResult.isDone()) {
+                return; // timed out
+            }
+            Throwable failure = unwrapCompletion(ex);
+            boolean timedOut = System.currentTimeMillis() > timeoutTime;
+            if (failure == null && !timedOut) {
+                invocation.metrics.incrementTimeoutCallsNotTimedOutTotal();
+                timeoutResult.complete(value);
+                return;
+            }
+            if (failure instanceof TimeoutException || timedOut) {
+                logger.log(Level.FINE, "Execution timed out.");
+            }
+            if (timedOut && !(failure instanceof TimeoutException)) {
+                failure = failure == null ? new TimeoutException() : new TimeoutException(failure);
+            }
+            timeoutResult.completeExceptionally(failure);
+        });
+        return timeoutResult;
+    }
+
     /**
      * Stage that takes care of the {@link BulkheadPolicy} handling.
      */
@@ -538,61 +842,134 @@ public final class FaultTolerancePolicy implements Serializable {
             return proceed(invocation);
         }
         logger.log(Level.FINER, "Proceeding invocation with bulkhead semantics");
-        final boolean async = isAsynchronous();
         final int runCapacity = bulkhead.value;
-        final int queueCapacity = async ? bulkhead.waitingTaskQueue : 0;
         AtomicInteger queuingOrRunning = invocation.context.getQueuingOrRunningPopulation();
-        if (isMetricsEnabled && async) {
+        if (!enterBulkheadQueue(invocation, queuingOrRunning, runCapacity)) {
+            throw new BulkheadException("No free work or queue space.");
+        }
+        // we are in the queue, yeah
+        try {
+            BulkheadSemaphore running = getBulkheadSemaphore(invocation, runCapacity);
+            logger.log(Level.FINER, "Attempting to enter bulkhead execution.");
+            CompletableFuture<Void> permit = running.acquire();
+            try {
+                // can we run now?
+                permit.get();
+            } catch (InterruptedException ex) {
+                if (!permit.cancel(false)) {
+                    running.release(); // got the permit just now, give it back
+                }
+                throw ex;
+            }
+            // we are in!
+            long executionSince = System.nanoTime();
+            try {
+                logger.log(Level.FINE, "Entered bulkhead execution.");
+                // ok, lets run
+                return proceed(invocation);
+            } finally {
+                invocation.metrics.addBulkheadExecutionDuration(Math.max(1, System.nanoTime() - executionSince));
+                // successful or not, we are out...
+                running.release();
+            }
+        } finally {
+            // no we are leaving get out of queue area as well
+            queuingOrRunning.decrementAndGet();
+        }
+    }
+
+    /**
+     * Asynchronous variant of the {@link #processBulkheadStage(FaultToleranceInvocation)}.
+     * 
+     * The execution is chained onto the permit. When the permit was available right away the invocation proceeds in
+     * the current thread, otherwise it proceeds as a new task once the permit is handed over by a completing
+     * execution. Cancelling the returned {@link CompletableFuture} while waiting abandons the permit. The permit is
+     * released when the execution completes or gets cancelled.
+     */
+    private CompletableFuture<Object> processBulkheadStageAsync(FaultToleranceInvocation invocation) {
+        if (!isBulkheadPresent()) {
+            return runStage(() -> proceed(invocation));
+        }
+        logger.log(Level.FINER, "Proceeding invocation with bulkhead semantics");
+        final int runCapacity = bulkhead.value;
+        AtomicInteger queuingOrRunning = invocation.context.getQueuingOrRunningPopulation();
+        if (isMetricsEnabled) {
             invocation.metrics.linkBulkheadWaitingQueuePopulation(() -> Math.max(0, queuingOrRunning.get() - runCapacity));
         }
+        if (!enterBulkheadQueue(invocation, queuingOrRunning, runCapacity + bulkhead.waitingTaskQueue)) {
+            return failedStage(new BulkheadException("No free work or queue space."));
+        }
+        BulkheadSemaphore running = getBulkheadSemaphore(invocation, runCapacity);
+        logger.log(Level.FINER, "Attempting to enter bulkhead execution.");
+        long waitingSince = System.nanoTime();
+        CompletableFuture<Void> permit = running.acquire();
+        boolean waiting = !permit.isDone();
+        CompletableFuture<Object> bulkheadResult = new CompletableFuture<>();
+        permit.whenComplete((granted, ex) -> {
+            invocation.metrics.addBulkheadWaitingDuration(Math.max(1, System.nanoTime() - waitingSince));
+            if (ex != null) {
+                // abandoned while waiting, leave the queue area
+                queuingOrRunning.decrementAndGet();
+                bulkheadResult.completeExceptionally(unwrapCompletion(ex));
+                return;
+            }
+            // we are in!
+            long executionSince = System.nanoTime();
+            Callable<Object> execution = () -> {
+                logger.log(Level.FINE, "Entered bulkhead execution.");
+                return proceed(invocation);
+            };
+            CompletableFuture<Object> executionResult = waiting
+                    ? runStageAsynchronous(invocation, execution)
+                    : runStage(execution);
+            executionResult.whenComplete((value, executionEx) -> {
+                invocation.metrics.addBulkheadExecutionDuration(Math.max(1, System.nanoTime() - executionSince));
+                // successful or not, we are out... (before handing over the permit which might continue in this thread)
+                queuingOrRunning.decrementAndGet();
+                running.release();
+                complete(bulkheadResult, value, unwrapCompletion(executionEx));
+            });
+        });
+        bulkheadResult.whenComplete((value, ex) -> permit.cancel(false));
+        if (invocation.asyncResult != null) {
+            invocation.asyncResult.whenComplete((value, ex) -> bulkheadResult.cancel(false));
+        }
+        return bulkheadResult;
+    }
+
+    /**
+     * Enters the area of the bulkhead that is waiting or running.
+     * 
+     * @return true if the caller entered, false if the bulkhead is at its capacity
+     */
+    private boolean enterBulkheadQueue(FaultToleranceInvocation invocation, AtomicInteger queuingOrRunning,
+            int capacity) {
         while (true) {
             final int currentlyIn = queuingOrRunning.get();
-            if (currentlyIn >= runCapacity + queueCapacity) {
+            if (currentlyIn >= capacity) {
                 invocation.metrics.incrementBulkheadCallsRejectedTotal();
-                throw new BulkheadException("No free work or queue space.");
+                return false;
             }
-            if (queueCapacity > 0) {
+            if (capacity > bulkhead.value) {
                 logger.log(Level.FINER, "Attempting to enter bulkhead queue.");
             }
             // did someone else get next in row in the meantime?
             if (queuingOrRunning.compareAndSet(currentlyIn, currentlyIn + 1)) {
-                // we are in the queue, yeah
-                try {
-                    logger.log(Level.FINE, "Entered bulkhead queue.");
-                    BlockingQueue<Thread> running = invocation.context.getConcurrentExecutions(runCapacity);
-                    if (isMetricsEnabled) {
-                        invocation.metrics.incrementBulkheadCallsAcceptedTotal();
-                        invocation.metrics.linkBulkheadConcurrentExecutions(running::size);
-                    }
-                    logger.log(Level.FINER, "Attempting to enter bulkhead execution.");
-                    long waitingSince = System.nanoTime();
-                    try {
-                        // can we run now?
-                        running.put(Thread.currentThread());
-                    } finally {
-                        if (async) {
-                            invocation.metrics.addBulkheadWaitingDuration(Math.max(1, System.nanoTime() - waitingSince));
-                        }
-                    }
-                    // we are in!
-                    long executionSince = System.nanoTime();
-                    try {
-                        logger.log(Level.FINE, "Entered bulkhead execution.");
-                        // ok, lets run
-                        return proceed(invocation);
-                    } finally {
-                        invocation.metrics.addBulkheadExecutionDuration(Math.max(1, System.nanoTime() - executionSince));
-                        // successful or not, we are out...
-                        running.remove(Thread.currentThread());
-                    }
-                } finally {
-                    // no we are leaving get out of queue area as well
-                    queuingOrRunning.decrementAndGet();
-                }
+                logger.log(Level.FINE, "Entered bulkhead queue.");
+                return true;
             }
         }
     }
 
+    private BulkheadSemaphore getBulkheadSemaphore(FaultToleranceInvocation invocation, int runCapacity) {
+        BulkheadSemaphore running = invocation.context.getConcurrentExecutions(runCapacity);
+        if (isMetricsEnabled) {
+            invocation.metrics.incrementBulkheadCallsAcceptedTotal();
+            invocation.metrics.linkBulkheadConcurrentExecutions(running::acquiredPermits);
+        }
+        return running;
+    }
+
     /**
      * Final stage where the actual wrapped method call occurs.
      */
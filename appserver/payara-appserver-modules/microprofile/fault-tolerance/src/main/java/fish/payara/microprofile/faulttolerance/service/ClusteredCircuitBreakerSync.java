@@ -0,0 +1,199 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.microprofile.faulttolerance.service;
+
+import static java.lang.System.currentTimeMillis;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fish.payara.microprofile.faulttolerance.state.ClusteredCircuitBreakerState;
+import fish.payara.microprofile.faulttolerance.state.ClusteredCircuitBreakerState.Snapshot;
+import fish.payara.nucleus.store.ClusteredStore;
+
+/**
+ * Periodically exchanges the {@link ClusteredCircuitBreakerState}s of this member with the other members of the
+ * cluster using the {@link ClusteredStore}.
+ * 
+ * Each member publishes a single entry keyed by its instance ID that holds the {@link Snapshot}s of all its clustered
+ * circuit breakers. Updates are batched: all transitions and results recorded in between two synchronisations are
+ * published with one write. Entries are encoded as JDK types only. Entries of members that did not publish for
+ * {@value #STALE_AFTER_INTERVALS} intervals are ignored so that members leaving the cluster do not keep circuits open.
+ */
+final class ClusteredCircuitBreakerSync {
+
+    private static final Logger logger = Logger.getLogger(ClusteredCircuitBreakerSync.class.getName());
+
+    static final String STORE_NAME = "payara.microprofile.faulttolerance.circuitbreaker";
+    private static final String PUBLISHED_AT_KEY = "@published";
+    private static final int STALE_AFTER_INTERVALS = 5;
+
+    private final ClusteredStore store;
+    private final ScheduledExecutorService delayedExecution;
+    private final long intervalMillis;
+    private final ConcurrentMap<String, Set<ClusteredCircuitBreakerState>> statesByMethod = new ConcurrentHashMap<>();
+    private volatile boolean published;
+
+    ClusteredCircuitBreakerSync(ClusteredStore store, ScheduledExecutorService delayedExecution, long intervalMillis) {
+        this.store = store;
+        this.delayedExecution = delayedExecution;
+        this.intervalMillis = intervalMillis;
+        delayedExecution.scheduleWithFixedDelay(this::synchronise, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds the given state as a replica of the circuit breaker state for the given method. States are only weakly
+     * referenced and stop being synchronised once the method context holding them is cleaned.
+     * 
+     * @param methodKey identifies the method within the cluster
+     * @param state     the state to synchronise
+     * @return the given state
+     */
+    ClusteredCircuitBreakerState register(String methodKey, ClusteredCircuitBreakerState state) {
+        Set<ClusteredCircuitBreakerState> states = statesByMethod.computeIfAbsent(methodKey,
+                key -> Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>())));
+        states.add(state);
+        return state;
+    }
+
+    private void synchronise() {
+        try {
+            if (!store.isEnabled()) {
+                return;
+            }
+            Map<String, List<Snapshot>> remote = readRemoteSnapshots();
+            HashMap<String, long[]> local = new HashMap<>();
+            for (Entry<String, Set<ClusteredCircuitBreakerState>> entry : statesByMethod.entrySet()) {
+                String methodKey = entry.getKey();
+                List<ClusteredCircuitBreakerState> states;
+                synchronized (entry.getValue()) {
+                    states = new ArrayList<>(entry.getValue());
+                }
+                if (states.isEmpty()) {
+                    statesByMethod.remove(methodKey, entry.getValue());
+                    continue;
+                }
+                Snapshot combined = merge(states, remote.getOrDefault(methodKey, Collections.emptyList()));
+                local.put(methodKey, combined.toArray());
+            }
+            publish(local);
+        } catch (Exception ex) {
+            logger.log(Level.WARNING, "Failed to synchronise clustered circuit breaker state", ex);
+        }
+    }
+
+    private Snapshot merge(List<ClusteredCircuitBreakerState> states, List<Snapshot> remote) {
+        List<Snapshot> snapshots = new ArrayList<>(states.size());
+        for (ClusteredCircuitBreakerState state : states) {
+            snapshots.add(state.snapshot());
+        }
+        for (int i = 0; i < states.size(); i++) {
+            List<Snapshot> others = new ArrayList<>(remote);
+            for (int j = 0; j < snapshots.size(); j++) {
+                if (j != i) {
+                    others.add(snapshots.get(j));
+                }
+            }
+            ClusteredCircuitBreakerState state = states.get(i);
+            if (state.merge(others)) {
+                long delay = Math.max(0L, state.getHalfOpenAt() - currentTimeMillis());
+                delayedExecution.schedule(state::halfOpen, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+        snapshots.clear();
+        for (ClusteredCircuitBreakerState state : states) {
+            snapshots.add(state.snapshot());
+        }
+        return Snapshot.combine(snapshots);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, List<Snapshot>> readRemoteSnapshots() {
+        String instanceId = store.getInstanceId();
+        long staleBefore = currentTimeMillis() - STALE_AFTER_INTERVALS * intervalMillis;
+        Map<String, List<Snapshot>> snapshotsByMethod = new HashMap<>();
+        for (Entry<Serializable, Serializable> member : store.getMap(STORE_NAME).entrySet()) {
+            if (instanceId.equals(member.getKey()) || !(member.getValue() instanceof Map)) {
+                continue;
+            }
+            Map<String, long[]> snapshots = (Map<String, long[]>) member.getValue();
+            long[] publishedAt = snapshots.get(PUBLISHED_AT_KEY);
+            if (publishedAt == null || publishedAt[0] < staleBefore) {
+                continue;
+            }
+            for (Entry<String, long[]> snapshot : snapshots.entrySet()) {
+                if (!PUBLISHED_AT_KEY.equals(snapshot.getKey())) {
+                    snapshotsByMethod.computeIfAbsent(snapshot.getKey(), key -> new ArrayList<>())
+                            .add(Snapshot.fromArray(snapshot.getValue()));
+                }
+            }
+        }
+        return snapshotsByMethod;
+    }
+
+    private void publish(HashMap<String, long[]> snapshots) {
+        String instanceId = store.getInstanceId();
+        if (snapshots.isEmpty()) {
+            if (published) {
+                store.remove(STORE_NAME, instanceId);
+                published = false;
+            }
+            return;
+        }
+        snapshots.put(PUBLISHED_AT_KEY, new long[] { currentTimeMillis() });
+        store.set(STORE_NAME, instanceId, snapshots);
+        published = true;
+    }
+}
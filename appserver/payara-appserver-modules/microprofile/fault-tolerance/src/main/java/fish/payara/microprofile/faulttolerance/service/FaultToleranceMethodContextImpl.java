@@ -44,8 +44,7 @@ import static java.lang.System.currentTimeMillis;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.time.Duration;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
@@ -68,9 +67,12 @@ import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceDefiniti
 import fish.payara.microprofile.faulttolerance.FaultToleranceMethodContext;
 import fish.payara.microprofile.faulttolerance.FaultToleranceMetrics;
 import fish.payara.microprofile.faulttolerance.policy.AsynchronousPolicy;
+import fish.payara.microprofile.faulttolerance.policy.CircuitBreakerPolicy;
 import fish.payara.microprofile.faulttolerance.policy.FaultTolerancePolicy;
+import fish.payara.microprofile.faulttolerance.state.BulkheadSemaphore;
 import fish.payara.microprofile.faulttolerance.state.CircuitBreakerState;
 import fish.payara.microprofile.faulttolerance.state.CircuitBreakerState.CircuitState;
+import fish.payara.microprofile.faulttolerance.state.ClusteredCircuitBreakerState;
 import fish.payara.notification.requesttracing.RequestTraceSpan;
 
 /**
@@ -98,20 +100,24 @@ public final class FaultToleranceMethodContextImpl implements FaultToleranceMeth
         final ExecutorService asyncExecution;
         final ScheduledExecutorService delayedExecution;
         final WeakReference<Object> target;
+        final ClusteredCircuitBreakerSync clusterSync;
+        final String clusterMethodKey;
         final AtomicReference<CircuitBreakerState> circuitBreakerState = new AtomicReference<>();
-        final AtomicReference<BlockingQueue<Thread>> concurrentExecutions = new AtomicReference<>();
+        final AtomicReference<BulkheadSemaphore> concurrentExecutions = new AtomicReference<>();
         final AtomicInteger queuingOrRunningPopulation = new AtomicInteger();
         final AtomicInteger executingThreadCount = new AtomicInteger();
         final AtomicLong lastUsed = new AtomicLong(currentTimeMillis());
 
         FaultToleranceMethodState(FaultToleranceRequestTracing requestTracing, FaultToleranceMetrics metrics,
                 ExecutorService asyncExecution, ScheduledExecutorService delayedExecution,
-                WeakReference<Object> target) {
+                WeakReference<Object> target, ClusteredCircuitBreakerSync clusterSync, String clusterMethodKey) {
             this.requestTracing = requestTracing;
             this.metrics = metrics;
             this.asyncExecution = asyncExecution;
             this.delayedExecution = delayedExecution;
             this.target = target;
+            this.clusterSync = clusterSync;
+            this.clusterMethodKey = clusterMethodKey;
         }
 
         public boolean isExpired(long ttl) {
@@ -140,8 +146,21 @@ public final class FaultToleranceMethodContextImpl implements FaultToleranceMeth
 
     public FaultToleranceMethodContextImpl(FaultToleranceRequestTracing requestTracing, FaultToleranceMetrics metrics,
             ExecutorService asyncExecution, ScheduledExecutorService delayedExecution, Object target) {
+        this(requestTracing, metrics, asyncExecution, delayedExecution, target, null, null);
+    }
+
+    /**
+     * Creates a context which circuit breaker state is synchronised with the other members of the cluster.
+     * 
+     * @param clusterSync      the synchronisation to register the circuit breaker state with, or null when the
+     *                         circuit breaker state is local only
+     * @param clusterMethodKey identifies the method within the cluster
+     */
+    FaultToleranceMethodContextImpl(FaultToleranceRequestTracing requestTracing, FaultToleranceMetrics metrics,
+            ExecutorService asyncExecution, ScheduledExecutorService delayedExecution, Object target,
+            ClusteredCircuitBreakerSync clusterSync, String clusterMethodKey) {
         this(new FaultToleranceMethodState(requestTracing, metrics, asyncExecution, delayedExecution,
-                new WeakReference<>(target)), null, null);
+                new WeakReference<>(target), clusterSync, clusterMethodKey), null, null);
     }
 
     private FaultToleranceMethodContextImpl(FaultToleranceMethodState shared, InvocationContext context,
@@ -185,16 +204,26 @@ public final class FaultToleranceMethodContextImpl implements FaultToleranceMeth
 
     @Override
     public CircuitBreakerState getState(int requestVolumeThreshold) {
-        return requestVolumeThreshold < 0 
-                ? shared.circuitBreakerState.get()
-                : shared.circuitBreakerState.updateAndGet(value -> value != null ? value : new CircuitBreakerState(requestVolumeThreshold));
+        CircuitBreakerState state = shared.circuitBreakerState.get();
+        if (state != null || requestVolumeThreshold < 0) {
+            return state;
+        }
+        if (shared.clusterSync == null || policy == null || !policy.isCircuitBreakerPresent()) {
+            return shared.circuitBreakerState.updateAndGet(value -> value != null ? value : new CircuitBreakerState(requestVolumeThreshold));
+        }
+        CircuitBreakerPolicy circuitBreaker = policy.circuitBreaker;
+        ClusteredCircuitBreakerState created = new ClusteredCircuitBreakerState(requestVolumeThreshold,
+                circuitBreaker.failureRatio, Duration.of(circuitBreaker.delay, circuitBreaker.delayUnit).toMillis());
+        return shared.circuitBreakerState.compareAndSet(null, created)
+                ? shared.clusterSync.register(shared.clusterMethodKey, created)
+                : shared.circuitBreakerState.get();
     }
 
     @Override
-    public BlockingQueue<Thread> getConcurrentExecutions(int maxConcurrentThreads) {
+    public BulkheadSemaphore getConcurrentExecutions(int maxConcurrentThreads) {
         return maxConcurrentThreads < 0
                 ? shared.concurrentExecutions.get()
-                : shared.concurrentExecutions.updateAndGet(value -> value != null ? value : new ArrayBlockingQueue<>(maxConcurrentThreads));
+                : shared.concurrentExecutions.updateAndGet(value -> value != null ? value : new BulkheadSemaphore(maxConcurrentThreads));
     }
 
     @Override
@@ -222,14 +251,8 @@ public final class FaultToleranceMethodContextImpl implements FaultToleranceMeth
             if (!asyncResult.isCancelled() && !Thread.currentThread().isInterrupted()) {
                 try {
                     trace("runAsynchronous");
-                    Future<?> futureResult = AsynchronousPolicy.toFuture(task.call());
-                    if (!asyncResult.isCancelled()) { // could be cancelled in the meanwhile
-                        if (!asyncResult.isDone()) {
-                            asyncResult.complete(futureResult.get());
-                        }
-                    } else {
-                        futureResult.cancel(true);
-                    }
+                    // could be cancelled in the meanwhile, otherwise does not wait for a CompletableFuture result
+                    AsynchronousPolicy.completeWith(asyncResult, task.call());
                 } catch (Exception ex) {
                     // Note that even ExecutionException is not unpacked (intentionally)
                     asyncResult.completeExceptionally(ex); 
@@ -45,21 +45,23 @@ import fish.payara.microprofile.faulttolerance.FaultToleranceMetrics;
 import fish.payara.microprofile.faulttolerance.FaultToleranceService;
 import fish.payara.microprofile.faulttolerance.FaultToleranceServiceConfiguration;
 import fish.payara.microprofile.faulttolerance.policy.FaultTolerancePolicy;
+import fish.payara.microprofile.faulttolerance.state.BulkheadSemaphore;
 import fish.payara.microprofile.faulttolerance.state.CircuitBreakerState;
 import fish.payara.microprofile.metrics.MetricsService;
 import fish.payara.monitoring.collect.MonitoringData;
 import fish.payara.monitoring.collect.MonitoringDataCollector;
 import fish.payara.monitoring.collect.MonitoringDataSource;
 import fish.payara.notification.requesttracing.RequestTraceSpan;
+import fish.payara.nucleus.store.ClusteredStore;
 import fish.payara.nucleus.requesttracing.RequestTracingService;
 
+import static java.lang.Boolean.parseBoolean;
 import static java.lang.Integer.parseInt;
 
 import java.lang.reflect.Method;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
@@ -117,10 +119,14 @@ public class FaultToleranceServiceImpl
     @Inject
     private MetricsService metricsService;
 
+    @Inject
+    private ClusteredStore clusteredStore;
+
     private final ConcurrentMap<String, FaultToleranceMethodContextImpl> methodByTargetObjectAndName = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, BindableFaultToleranceConfig> configByApplication = new ConcurrentHashMap<>();
     private ThreadPoolExecutor asyncExecutorService;
     private ScheduledExecutorService delayExecutorService;
+    private ClusteredCircuitBreakerSync clusteredCircuitBreakerSync;
 
     @PostConstruct
     public void postConstruct() {
@@ -133,6 +139,11 @@ public class FaultToleranceServiceImpl
                 TimeUnit.SECONDS, new SynchronousQueue<Runnable>(true)); // a fair queue => FIFO
         int interval = getCleanupIntervalInMinutes();
         delayExecutorService.scheduleAtFixedRate(this::cleanMethodContexts, interval, interval, TimeUnit.MINUTES);
+        if (isClusteredCircuitBreaker()) {
+            logger.log(Level.INFO, "Fault tolerance circuit breaker state is shared with other data grid members");
+            clusteredCircuitBreakerSync = new ClusteredCircuitBreakerSync(clusteredStore, delayExecutorService,
+                    getClusterSyncIntervalInMillis());
+        }
         if (config != null) {
             if (!"concurrent/__defaultManagedExecutorService".equals(config.getManagedExecutorService())) {
                 logger.log(Level.WARNING,
@@ -190,6 +201,14 @@ public class FaultToleranceServiceImpl
         return config == null ? 1 : parseInt(config.getCleanupIntervalInMinutes());
     }
 
+    private boolean isClusteredCircuitBreaker() {
+        return config != null && clusteredStore != null && parseBoolean(config.getClusteredCircuitBreaker());
+    }
+
+    private int getClusterSyncIntervalInMillis() {
+        return config == null ? 1000 : parseInt(config.getClusterSyncIntervalInMillis());
+    }
+
     @Override
     public void event(Event<?> event) {
         if (event.is(Deployment.APPLICATION_UNLOADED)) {
@@ -206,7 +225,7 @@ public class FaultToleranceServiceImpl
             String group = methodValue.getKey();
             MonitoringDataCollector methodCollector = collector.group(group);
             FaultToleranceMethodContext context = methodValue.getValue();
-            BlockingQueue<Thread> concurrentExecutions = context.getConcurrentExecutions(-1);
+            BulkheadSemaphore concurrentExecutions = context.getConcurrentExecutions(-1);
             if (concurrentExecutions != null) {
                 collectBulkheadSemaphores(methodCollector, concurrentExecutions);
                 collectBulkheadSemaphores(methodCollector, concurrentExecutions, context.getQueuingOrRunningPopulation());
@@ -216,16 +235,16 @@ public class FaultToleranceServiceImpl
     }
 
     private static void collectBulkheadSemaphores(MonitoringDataCollector collector,
-            BlockingQueue<Thread> concurrentExecutions) {
+            BulkheadSemaphore concurrentExecutions) {
         collector
-            .collect("RemainingConcurrentExecutionsCapacity", concurrentExecutions.remainingCapacity())
-            .collect("ConcurrentExecutions", concurrentExecutions.size());
+            .collect("RemainingConcurrentExecutionsCapacity", concurrentExecutions.availablePermits())
+            .collect("ConcurrentExecutions", concurrentExecutions.acquiredPermits());
     }
 
     private static void collectBulkheadSemaphores(MonitoringDataCollector collector,
-            BlockingQueue<Thread> concurrentExecutions, AtomicInteger queuingOrRunningPopulation) {
+            BulkheadSemaphore concurrentExecutions, AtomicInteger queuingOrRunningPopulation) {
         collector
-            .collect("WaitingQueuePopulation", queuingOrRunningPopulation.get() - concurrentExecutions.size());
+            .collect("WaitingQueuePopulation", queuingOrRunningPopulation.get() - concurrentExecutions.acquiredPermits());
     }
 
     private static void collectCircuitBreakerState(MonitoringDataCollector collector, CircuitBreakerState state) {
@@ -313,7 +332,8 @@ public class FaultToleranceServiceImpl
         asyncExecutorService.setKeepAliveTime(getAsyncPoolKeepAliveInSeconds(), TimeUnit.SECONDS);
         logger.log(Level.INFO, "Creating FT method context for {0}", methodId);
         return new FaultToleranceMethodContextImpl(this, metrics, asyncExecutorService,
-                delayExecutorService, context.getTarget());
+                delayExecutorService, context.getTarget(), clusteredCircuitBreakerSync,
+                getApplicationContext(context) + '/' + getMethodSignature(context));
     }
 
     /**
@@ -323,18 +343,25 @@ public class FaultToleranceServiceImpl
      */
     private static String getTargetMethodId(InvocationContext context) {
         Object target = context.getTarget();
+        return Integer.toHexString(System.identityHashCode(target)) + '@' + getMethodSignature(context);
+    }
+
+    /**
+     * The signature is the same for all target {@link Object}s of the same {@link Class} which makes it suitable to
+     * identify the {@link Method} across members of a cluster.
+     */
+    private static String getMethodSignature(InvocationContext context) {
         Method method = context.getMethod();
-        StringBuilder methodId = new StringBuilder();
-        methodId.append(Integer.toHexString(System.identityHashCode(target))).append('@');
-        methodId.append(target.getClass().getName()).append('.').append(method.getName());
+        StringBuilder signature = new StringBuilder();
+        signature.append(context.getTarget().getClass().getName()).append('.').append(method.getName());
         if (method.getParameterCount() > 0) {
-            methodId.append('(');
+            signature.append('(');
             for (Class<?> param : method.getParameterTypes()) {
-                methodId.append(param.getName()).append(' ');
+                signature.append(param.getName()).append(' ');
             }
-            methodId.append(')');
+            signature.append(')');
         }
-        return methodId.toString();
+        return signature.toString();
     }
 
 }
@@ -0,0 +1,127 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.microprofile.faulttolerance.state;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The permits of a bulkhead.
+ *
+ * Permits are counted by a single {@link AtomicInteger} that holds the number of available permits or, when negative,
+ * the number of waiting acquisitions. An acquisition that cannot get a permit right away does not park the calling
+ * thread but receives a {@link CompletableFuture} that is queued and completed by the {@link #release()} that hands
+ * over its permit. Callers can therefore either wait for the future or continue asynchronously once it completes.
+ *
+ * A waiting acquisition is abandoned by cancelling its future. Should the future have been completed concurrently the
+ * cancellation fails and the caller has to {@link #release()} the permit it got.
+ */
+public final class BulkheadSemaphore {
+
+    private static final CompletableFuture<Void> ACQUIRED = CompletableFuture.completedFuture(null);
+
+    private final int permits;
+    private final AtomicInteger available;
+    private final Queue<CompletableFuture<Void>> waiting = new ConcurrentLinkedQueue<>();
+
+    public BulkheadSemaphore(int permits) {
+        this.permits = permits;
+        this.available = new AtomicInteger(permits);
+    }
+
+    /**
+     * Acquires a permit.
+     *
+     * @return an already completed future if a permit was available, otherwise a future that completes when a permit
+     *         is handed over to this acquisition
+     */
+    public CompletableFuture<Void> acquire() {
+        if (available.getAndDecrement() > 0) {
+            return ACQUIRED;
+        }
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        waiting.add(permit);
+        return permit;
+    }
+
+    /**
+     * Releases a permit. If acquisitions are waiting the permit is handed over to the longest waiting one which is
+     * still interested.
+     */
+    public void release() {
+        while (available.getAndIncrement() < 0) {
+            // a waiter has already decremented the count but might not have added its future yet
+            CompletableFuture<Void> next = waiting.poll();
+            while (next == null) {
+                Thread.yield();
+                next = waiting.poll();
+            }
+            if (next.complete(null)) {
+                return;
+            }
+            // the polled waiter was cancelled, the increment cleared its debt, try to give the permit to the next one
+        }
+    }
+
+    /**
+     * @return number of permits currently acquired, including those just handed over to a waiting acquisition
+     */
+    public int acquiredPermits() {
+        return permits - Math.max(0, available.get());
+    }
+
+    /**
+     * @return number of permits that can currently be acquired without waiting
+     */
+    public int availablePermits() {
+        return Math.max(0, available.get());
+    }
+
+    /**
+     * @return number of acquisitions currently waiting for a permit, this might include cancelled acquisitions until
+     *         they are cleared by the next {@link #release()}
+     */
+    public int waitingAcquisitions() {
+        return Math.max(0, -available.get());
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- *    Copyright (c) [2017-2018] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2017-2020] Payara Foundation and/or its affiliates. All rights reserved.
  *
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -116,6 +116,26 @@ public class CircuitBreakerState {
         return true;
     }
 
+    /**
+     * @return The number of results currently in the results queue of the closed state
+     */
+    public int getClosedOutcomeCount() {
+        return this.closedResultsQueue.size();
+    }
+
+    /**
+     * @return The number of failures currently in the results queue of the closed state
+     */
+    public int getClosedOutcomeFailureCount() {
+        int failures = 0;
+        for (Boolean success : this.closedResultsQueue) {
+            if (!success) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
     /**
      * Clears the results queue.
      */
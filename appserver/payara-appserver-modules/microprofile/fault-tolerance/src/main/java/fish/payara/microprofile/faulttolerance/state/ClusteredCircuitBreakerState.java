@@ -0,0 +1,216 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.microprofile.faulttolerance.state;
+
+import static java.lang.System.currentTimeMillis;
+
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link CircuitBreakerState} that is one of many replicas of the state of the same method in a cluster.
+ * 
+ * Each replica makes its local decisions as usual. In addition it can be merged with the {@link Snapshot}s of the
+ * other replicas. Merging adopts the most recent state transition made by any replica and opens the circuit when the
+ * combined closed state results of all replicas are over the failure threshold. This way all members open and
+ * half-open together.
+ * 
+ * Transitions are ordered by the wall-clock time of the member that made them. Merging is eventually consistent: in
+ * between two merges each replica can be in a different state.
+ */
+public class ClusteredCircuitBreakerState extends CircuitBreakerState {
+
+    private static final Logger logger = Logger.getLogger(ClusteredCircuitBreakerState.class.getName());
+
+    /**
+     * The state of a replica as exchanged between the members of the cluster. It can be encoded as a plain
+     * {@code long[]} so it can be read by members without loading classes of this module.
+     */
+    public static final class Snapshot {
+
+        public final CircuitState state;
+        /**
+         * Time in milliseconds at which the replica (or the replica it adopted the state from) transitioned to state
+         */
+        public final long since;
+        public final int outcomes;
+        public final int failures;
+
+        public Snapshot(CircuitState state, long since, int outcomes, int failures) {
+            this.state = state;
+            this.since = since;
+            this.outcomes = outcomes;
+            this.failures = failures;
+        }
+
+        public long[] toArray() {
+            return new long[] { state.ordinal(), since, outcomes, failures };
+        }
+
+        public static Snapshot fromArray(long[] encoded) {
+            return new Snapshot(CircuitState.values()[(int) encoded[0]], encoded[1], (int) encoded[2], (int) encoded[3]);
+        }
+
+        /**
+         * Combines the snapshots of replicas for the same method in a single member.
+         * 
+         * @return a snapshot with the most recent transition and the sum of all closed state results
+         */
+        public static Snapshot combine(Collection<Snapshot> snapshots) {
+            Snapshot latest = null;
+            int outcomes = 0;
+            int failures = 0;
+            for (Snapshot snapshot : snapshots) {
+                if (latest == null || snapshot.since > latest.since) {
+                    latest = snapshot;
+                }
+                outcomes += snapshot.outcomes;
+                failures += snapshot.failures;
+            }
+            return latest == null ? null
+                    : new Snapshot(latest.state, latest.since, outcomes, failures);
+        }
+
+        @Override
+        public String toString() {
+            return state + "@" + since + "[" + failures + "/" + outcomes + "]";
+        }
+    }
+
+    private final int requestVolumeThreshold;
+    private final double failureRatio;
+    private final long delayMillis;
+    /**
+     * Starts at zero so that any transition made by another replica is more recent and adopted by a new replica.
+     */
+    private volatile long since;
+
+    public ClusteredCircuitBreakerState(int requestVolumeThreshold, double failureRatio, long delayMillis) {
+        super(requestVolumeThreshold);
+        this.requestVolumeThreshold = requestVolumeThreshold;
+        this.failureRatio = failureRatio;
+        this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public void setCircuitState(CircuitState circuitState) {
+        boolean transition = getCircuitState() != circuitState;
+        super.setCircuitState(circuitState);
+        if (transition) {
+            since = currentTimeMillis();
+        }
+    }
+
+    /**
+     * A circuit only becomes half open when it is open. As other replicas can close the circuit before the delay of a
+     * local transition to half open has passed the transition otherwise could reopen a circuit closed in the meantime.
+     */
+    @Override
+    public void halfOpen() {
+        if (getCircuitState() == CircuitState.OPEN) {
+            super.halfOpen();
+        }
+    }
+
+    public long getHalfOpenAt() {
+        return since + delayMillis;
+    }
+
+    public Snapshot snapshot() {
+        CircuitState state = getCircuitState();
+        return state == CircuitState.CLOSED
+                ? new Snapshot(state, since, getClosedOutcomeCount(), getClosedOutcomeFailureCount())
+                : new Snapshot(state, since, 0, 0);
+    }
+
+    /**
+     * Merges the state of this replica with the state of the other replicas.
+     * 
+     * @param others the most recent known snapshots of all other replicas
+     * @return true, if merging opened the circuit of this replica so that the caller needs to schedule the transition
+     *         to half open at {@link #getHalfOpenAt()}.
+     */
+    public boolean merge(Collection<Snapshot> others) {
+        CircuitState current = getCircuitState();
+        Snapshot latest = null;
+        int outcomes = getClosedOutcomeCount();
+        int failures = getClosedOutcomeFailureCount();
+        for (Snapshot other : others) {
+            if (latest == null || other.since > latest.since) {
+                latest = other;
+            }
+            if (other.state == CircuitState.CLOSED) {
+                outcomes += other.outcomes;
+                failures += other.failures;
+            }
+        }
+        if (latest != null && latest.since > since && latest.state != current) {
+            adopt(latest);
+            return latest.state == CircuitState.OPEN;
+        }
+        if (current == CircuitState.CLOSED && outcomes >= requestVolumeThreshold && failures > 0
+                && failures >= Math.round(outcomes * failureRatio)) {
+            logger.log(Level.FINE, "Cluster wide failures {0} of {1} cause CircuitBreaker to transit: closed => open",
+                    new Object[] { failures, outcomes });
+            open();
+            return true;
+        }
+        return false;
+    }
+
+    private void adopt(Snapshot transition) {
+        logger.log(Level.FINE, "Adopting CircuitBreaker state {0} from other cluster member", transition);
+        switch (transition.state) {
+        case OPEN:
+            open();
+            break;
+        case HALF_OPEN:
+            super.halfOpen();
+            break;
+        default:
+        case CLOSED:
+            close();
+        }
+        // keep the transition time of the member making the transition so it is not seen as a new transition 
+        since = transition.since;
+    }
+}
@@ -57,13 +57,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BooleanSupplier;
@@ -76,6 +77,7 @@ import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
 import fish.payara.microprofile.faulttolerance.FaultToleranceMethodContext;
 import fish.payara.microprofile.faulttolerance.service.FaultToleranceMethodContextStub;
 import fish.payara.microprofile.faulttolerance.service.FaultToleranceServiceStub;
+import fish.payara.microprofile.faulttolerance.state.BulkheadSemaphore;
 import fish.payara.microprofile.faulttolerance.test.TestUtils;
 
 abstract class AbstractBulkheadTest {
@@ -84,20 +86,47 @@ abstract class AbstractBulkheadTest {
 
         @Override
         public FaultToleranceMethodContext getMethodContext(InvocationContext context, FaultTolerancePolicy policy) {
+            Thread caller = Thread.currentThread();
             return new FaultToleranceMethodContextStub(context, state, concurrentExecutions, waitingQueuePopulation) {
 
+                @Override
+                public void runAsynchronous(CompletableFuture<Object> asyncResult, Callable<Object> task)
+                        throws RejectedExecutionException {
+                    // a call waiting for a permit continues in the thread handing over the permit
+                    Thread before = executingFor.get();
+                    executingFor.set(caller);
+                    try {
+                        super.runAsynchronous(asyncResult, task);
+                    } finally {
+                        executingFor.set(before);
+                    }
+                }
+
                 @Override
                 public void delay(long delayMillis) throws InterruptedException {
                     waitSome(delayMillis);
                 }
+
+                @Override
+                public Future<?> runDelayed(long delayMillis, Runnable task) throws Exception {
+                    return CompletableFuture.runAsync(() -> {
+                        waitSome(delayMillis);
+                        task.run();
+                    });
+                }
             };
         }
 
     };
-    final AtomicReference<BlockingQueue<Thread>> concurrentExecutions = service.getConcurrentExecutionsReference();
+    final AtomicReference<BulkheadSemaphore> concurrentExecutions = service.getConcurrentExecutionsReference();
     final AtomicInteger waitingQueuePopulation = service.getWaitingQueuePopulationReference();
     protected final CompletableFuture<Void> commonWaiter = new CompletableFuture<>();
 
+    /**
+     * The caller thread the current thread executes a task for
+     */
+    final ThreadLocal<Thread> executingFor = new ThreadLocal<>();
+
     /*
      * For Verification:
      */
@@ -163,6 +192,7 @@ abstract class AbstractBulkheadTest {
 
     private final Map<Thread, String> executionResultsByThread = new ConcurrentHashMap<>();
     private final Map<Thread, Exception> executionErrorsByThread = new ConcurrentHashMap<>();
+    private final Map<Thread, Future<?>> callResultsByThread = new ConcurrentHashMap<>();
 
     /*
      * Helpers 
@@ -173,6 +203,11 @@ abstract class AbstractBulkheadTest {
         Runnable task = () ->  {
             try {
                 Object res = proceedToResultValue(this, annotatedMethod, waiter);
+                if (res instanceof Future) {
+                    callResultsByThread.put(Thread.currentThread(), (Future<?>) res);
+                } else if (res instanceof CompletionStage) {
+                    callResultsByThread.put(Thread.currentThread(), ((CompletionStage<?>) res).toCompletableFuture());
+                }
                 recordCallerResult(res);
             } catch (Exception e) {
                 Thread currentThread = Thread.currentThread();
@@ -183,6 +218,14 @@ abstract class AbstractBulkheadTest {
         return startDaemonThreadWith(task);
     }
 
+    /**
+     * Cancels the asynchronous call made by the given caller thread.
+     */
+    void cancelCall(Thread caller) {
+        waitSomeUnit(() -> callResultsByThread.containsKey(caller));
+        callResultsByThread.get(caller).cancel(true);
+    }
+
     private Thread startDaemonThreadWith(Runnable task) {
         Thread t = new Thread(task);
         t.setDaemon(true);
@@ -247,6 +290,7 @@ abstract class AbstractBulkheadTest {
     }
 
     void assertExecutionResult(String expected, Thread... forThreads) {
+        waitUntilAllThreadsDone(asList(forThreads)); // results are recorded after leaving the bulkhead
         for (Thread t : forThreads) {
             String actual = executionResultsByThread.get(t);
             if (!expected.equals(actual)) {
@@ -257,6 +301,7 @@ abstract class AbstractBulkheadTest {
     }
 
     void assertExecutionError(Exception expected, Thread... forThreads) {
+        waitUntilAllThreadsDone(asList(forThreads));
         for (Thread t : forThreads) {
             assertEqualExceptions(expected, executionErrorsByThread.get(t));
         }
@@ -344,7 +389,7 @@ abstract class AbstractBulkheadTest {
     <T> T bodyWaitThenReturn(Future<Void> waiter, Supplier<T> result) throws Exception {
         maxConcurrentExecutionsCount.accumulateAndGet(concurrentExecutionsCount.incrementAndGet(), Integer::max);
         bulkheadMethodCallCount.incrementAndGet();
-        Thread currentThread = Thread.currentThread();
+        Thread currentThread = executingFor.get() != null ? executingFor.get() : Thread.currentThread();
         threadsEntered.add(currentThread);
         threadsInOut.add(new InOut(currentThread, concurrentExecutionsCount.get()));
         try {
@@ -405,8 +450,8 @@ abstract class AbstractBulkheadTest {
 
     void waitUntilPermitsAquired(int concurrentExecutions, int waitingQueuePopulation) {
         waitSomeUnit(() -> {
-            BlockingQueue<Thread> queue = this.concurrentExecutions.get();
-            int actualConcurrentExecutions = queue == null ? 0 : queue.size();
+            BulkheadSemaphore semaphore = this.concurrentExecutions.get();
+            int actualConcurrentExecutions = semaphore == null ? 0 : semaphore.acquiredPermits();
             return concurrentExecutions == actualConcurrentExecutions
                     && waitingQueuePopulation == this.waitingQueuePopulation.get() - actualConcurrentExecutions;
         });
@@ -431,7 +476,7 @@ abstract class AbstractBulkheadTest {
     }
 
     void assertPermitsAquired(int concurrentExecutions, int waitingQueuePopulation) {
-        int actualConcurrentExecutions = this.concurrentExecutions.get().size();
+        int actualConcurrentExecutions = this.concurrentExecutions.get().acquiredPermits();
         assertEquals(concurrentExecutions, actualConcurrentExecutions);
         int actualQueueLength = this.waitingQueuePopulation.get();
         assertEquals(waitingQueuePopulation, actualQueueLength - actualConcurrentExecutions);
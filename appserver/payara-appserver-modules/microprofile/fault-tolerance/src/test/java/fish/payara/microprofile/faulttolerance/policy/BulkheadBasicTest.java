@@ -47,6 +47,7 @@ import static org.junit.Assert.assertTrue;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
@@ -150,8 +151,8 @@ public class BulkheadBasicTest extends AbstractBulkheadTest {
     }
 
     /**
-     * Similar to {@link #bulkheadWithQueue()} just that we interrupt the queueing threads and expect their permits to
-     * be released.
+     * Similar to {@link #bulkheadWithQueue()} just that we cancel the queueing calls and expect their permits to be
+     * released.
      */
     @Test(timeout = 3000)
     public void bulkheadWithQueueInterruptQueueing() {
@@ -165,16 +166,16 @@ public class BulkheadBasicTest extends AbstractBulkheadTest {
         waitUntilPermitsAquired(2, 2);
         assertEnteredAndExited(2, 0);
         assertEnteredSoFar(exec1, exec2);
-        queueing1.interrupt();
+        cancelCall(queueing1);
         waitUntilPermitsAquired(2, 1);
-        queueing2.interrupt();
+        cancelCall(queueing2);
         waitUntilPermitsAquired(2, 0);
         commonWaiter.complete(null);
         waitUntilPermitsAquired(0, 0);
         assertEnteredAndExited(2, 2);
         assertCompletedExecutionLimitedTo(2, exec1, exec2);
         assertExecutionResult("Success", exec1, exec2);
-        assertExecutionError(new ExecutionException(new InterruptedException()), queueing1, queueing2);
+        assertExecutionError(new CancellationException(), queueing1, queueing2);
     }
 
     @Asynchronous
@@ -307,6 +308,7 @@ public class BulkheadBasicTest extends AbstractBulkheadTest {
         assertEnteredAndExited(expectedMaxConcurrentExecutions, 0);
         assertFurtherThreadThrowsBulkheadException();
         waiterExec1.complete(null);
+        waitUntilPermitsAquired(expectedMaxConcurrentExecutions - 1, 0); // exec1 needs to be out to make room
         execs.add(callBulkheadWithNewThreadAndWaitFor(commonWaiter));
         assertEnteredAndExited(expectedMaxConcurrentExecutions + 1, 1);
         assertFurtherThreadThrowsBulkheadException();
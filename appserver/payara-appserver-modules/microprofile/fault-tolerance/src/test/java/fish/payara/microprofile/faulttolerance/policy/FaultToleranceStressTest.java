@@ -54,7 +54,6 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -81,6 +80,7 @@ import org.junit.Test;
 import fish.payara.microprofile.faulttolerance.FaultToleranceMethodContext;
 import fish.payara.microprofile.faulttolerance.service.FaultToleranceMethodContextStub;
 import fish.payara.microprofile.faulttolerance.service.FaultToleranceServiceStub;
+import fish.payara.microprofile.faulttolerance.state.BulkheadSemaphore;
 import fish.payara.microprofile.faulttolerance.state.CircuitBreakerState;
 import fish.payara.microprofile.faulttolerance.state.CircuitBreakerState.CircuitState;
 import fish.payara.microprofile.faulttolerance.test.TestUtils;
@@ -130,7 +130,7 @@ public class FaultToleranceStressTest implements FallbackHandler<Future<String>>
                 }
 
                 @Override
-                public BlockingQueue<Thread> getConcurrentExecutions(int maxConcurrentThreads) {
+                public BulkheadSemaphore getConcurrentExecutions(int maxConcurrentThreads) {
                     concurrentExecutionsAccessCount.incrementAndGet();
                     return super.getConcurrentExecutions(maxConcurrentThreads);
                 }
@@ -150,6 +150,12 @@ public class FaultToleranceStressTest implements FallbackHandler<Future<String>>
                     delayedMillis.addAndGet(delayMillis);
                 }
 
+                @Override
+                public Future<?> runDelayed(long delayMillis, Runnable task) throws Exception {
+                    delay(delayMillis);
+                    return executorService.submit(task);
+                }
+
                 @Override
                 public void runAsynchronous(CompletableFuture<Object> asyncResult,
                         Callable<Object> task) throws RejectedExecutionException {
@@ -178,7 +184,7 @@ public class FaultToleranceStressTest implements FallbackHandler<Future<String>>
         }
     };
     final AtomicReference<CircuitBreakerState> state = service.getStateReference();
-    final AtomicReference<BlockingQueue<Thread>> concurrentExecutions = service.getConcurrentExecutionsReference();
+    final AtomicReference<BulkheadSemaphore> concurrentExecutions = service.getConcurrentExecutionsReference();
     final AtomicInteger waitingQueuePopulation = service.getWaitingQueuePopulationReference();
 
     @Test
@@ -224,7 +230,7 @@ public class FaultToleranceStressTest implements FallbackHandler<Future<String>>
                 maxDelayMillis.get(), lessThanOrEqualTo(200L));
 
         // now check that the state makes sense
-        assertEquals("No execution should ongo", 0, concurrentExecutions.get().size());
+        assertEquals("No execution should ongo", 0, concurrentExecutions.get().acquiredPermits());
         assertEquals("No queueing should ongo", 0, waitingQueuePopulation.get());
         assertThat("Circuit should not be open (any more)", 
                 state.get().getCircuitState(), oneOf(CircuitState.HALF_OPEN, CircuitState.CLOSED));
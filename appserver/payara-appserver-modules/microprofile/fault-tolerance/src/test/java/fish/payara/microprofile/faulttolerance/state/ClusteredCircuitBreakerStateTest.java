@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.faulttolerance.state;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import fish.payara.microprofile.faulttolerance.state.CircuitBreakerState.CircuitState;
+import fish.payara.microprofile.faulttolerance.state.ClusteredCircuitBreakerState.Snapshot;
+
+public class ClusteredCircuitBreakerStateTest {
+
+    @Test
+    public void newReplicaAdoptsStateOfOtherReplicas() {
+        ClusteredCircuitBreakerState state = new ClusteredCircuitBreakerState(4, 0.5d, 1000L);
+        Snapshot open = new Snapshot(CircuitState.OPEN, System.currentTimeMillis(), 0, 0);
+        assertTrue("Adopting an open circuit should require scheduling half open", state.merge(singletonList(open)));
+        assertEquals(CircuitState.OPEN, state.getCircuitState());
+        assertEquals(open.since + 1000L, state.getHalfOpenAt());
+        assertEquals(open.since, state.snapshot().since);
+    }
+
+    @Test
+    public void olderTransitionsAreNotAdopted() throws Exception {
+        ClusteredCircuitBreakerState state = new ClusteredCircuitBreakerState(4, 0.5d, 1000L);
+        Snapshot open = new Snapshot(CircuitState.OPEN, System.currentTimeMillis() - 1, 0, 0);
+        state.open();
+        state.halfOpen();
+        assertFalse(state.merge(singletonList(open)));
+        assertEquals(CircuitState.HALF_OPEN, state.getCircuitState());
+    }
+
+    @Test
+    public void combinedFailuresOfAllReplicasOpenCircuit() {
+        ClusteredCircuitBreakerState state = new ClusteredCircuitBreakerState(4, 0.5d, 1000L);
+        state.recordClosedOutcome(false);
+        state.recordClosedOutcome(true);
+        assertFalse("Local results alone should not open circuit", state.isOverFailureThreshold(4, 0.5d));
+        Snapshot other = new Snapshot(CircuitState.CLOSED, 0L, 2, 1);
+        assertTrue(state.merge(singletonList(other)));
+        assertEquals(CircuitState.OPEN, state.getCircuitState());
+    }
+
+    @Test
+    public void combinedResultsBelowThresholdDoNotOpenCircuit() {
+        ClusteredCircuitBreakerState state = new ClusteredCircuitBreakerState(4, 0.5d, 1000L);
+        state.recordClosedOutcome(false);
+        state.recordClosedOutcome(true);
+        assertFalse("Too few results", state.merge(singletonList(new Snapshot(CircuitState.CLOSED, 0L, 1, 1))));
+        assertFalse("Too few failures", state.merge(singletonList(new Snapshot(CircuitState.CLOSED, 0L, 4, 0))));
+        assertFalse("Results of open replicas do not count",
+                state.merge(singletonList(new Snapshot(CircuitState.HALF_OPEN, -1L, 4, 4))));
+        assertEquals(CircuitState.CLOSED, state.getCircuitState());
+    }
+
+    @Test
+    public void halfOpenOnlyTransitionsOpenCircuit() {
+        ClusteredCircuitBreakerState state = new ClusteredCircuitBreakerState(4, 0.5d, 1000L);
+        state.halfOpen();
+        assertEquals(CircuitState.CLOSED, state.getCircuitState());
+        state.open();
+        state.halfOpen();
+        assertEquals(CircuitState.HALF_OPEN, state.getCircuitState());
+    }
+
+    @Test
+    public void snapshotsCanBeEncodedAndCombined() {
+        Snapshot a = new Snapshot(CircuitState.CLOSED, 10L, 4, 1);
+        Snapshot b = new Snapshot(CircuitState.HALF_OPEN, 20L, 0, 0);
+        Snapshot decoded = Snapshot.fromArray(b.toArray());
+        assertEquals(b.state, decoded.state);
+        assertEquals(b.since, decoded.since);
+        Snapshot combined = Snapshot.combine(asList(a, b));
+        assertArrayEquals(new long[] { CircuitState.HALF_OPEN.ordinal(), 20L, 4, 1 }, combined.toArray());
+        assertEquals(null, Snapshot.combine(emptyList()));
+    }
+}
@@ -43,7 +43,10 @@ import fish.payara.microprofile.metrics.admin.MetricsServiceConfiguration;
 import fish.payara.microprofile.metrics.cdi.MetricsHelper;
 import fish.payara.microprofile.metrics.exception.NoSuchMetricException;
 import fish.payara.microprofile.metrics.exception.NoSuchRegistryException;
+import fish.payara.microprofile.metrics.impl.ExponentiallyDecayingReservoir;
+import fish.payara.microprofile.metrics.impl.LogLinearHistogramReservoir;
 import fish.payara.microprofile.metrics.impl.MetricRegistryImpl;
+import fish.payara.microprofile.metrics.impl.Reservoir;
 import fish.payara.microprofile.metrics.jmx.MBeanMetadata;
 import fish.payara.microprofile.metrics.jmx.MBeanMetadataConfig;
 import fish.payara.microprofile.metrics.jmx.MBeanMetadataHelper;
@@ -52,6 +55,7 @@ import fish.payara.monitoring.collect.MonitoringDataSource;
 import fish.payara.nucleus.executorservice.PayaraExecutorService;
 import java.beans.PropertyChangeEvent;
 
+import org.eclipse.microprofile.config.ConfigProvider;
 import org.eclipse.microprofile.metrics.Gauge;
 import org.eclipse.microprofile.metrics.Metadata;
 import org.eclipse.microprofile.metrics.Metric;
@@ -79,6 +83,7 @@ import java.lang.annotation.Annotation;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.function.ToLongFunction;
 import java.util.logging.Logger;
 import org.eclipse.microprofile.metrics.MetricID;
@@ -96,6 +101,15 @@ public class MetricsService implements EventListener, ConfigListener, Monitoring
 
     private static final Logger LOGGER = Logger.getLogger(MetricsService.class.getName());
 
+    /**
+     * MicroProfile Config property an application can use to override the reservoir of the metrics service configuration
+     */
+    public static final String RESERVOIR_PROPERTY = "payara.metrics.reservoir";
+
+    public static final String EXPONENTIALLY_DECAYING_RESERVOIR = "exponentially-decaying";
+
+    public static final String LOG_LINEAR_HISTOGRAM_RESERVOIR = "log-linear-histogram";
+
     @Inject
     Events events;
 
@@ -375,7 +389,26 @@ public class MetricsService implements EventListener, ConfigListener, Monitoring
      * @return 
      */    
     public MetricRegistry getOrAddRegistry(String registryName) {
-        return REGISTRIES.computeIfAbsent(registryName.toLowerCase(), key -> new MetricRegistryImpl());
+        return REGISTRIES.computeIfAbsent(registryName.toLowerCase(),
+                key -> new MetricRegistryImpl(getReservoirFactory(key)));
+    }
+
+    /**
+     * Application registries are created while the application is deployed so the context class loader resolves the
+     * application's own {@link #RESERVOIR_PROPERTY}, base and vendor registries always use the configured reservoir.
+     */
+    private Supplier<Reservoir> getReservoirFactory(String registryName) {
+        String reservoir = metricsServiceConfiguration == null ? null : metricsServiceConfiguration.getReservoir();
+        if (!BASE.getName().equals(registryName) && !VENDOR.getName().equals(registryName)) {
+            try {
+                reservoir = ConfigProvider.getConfig().getOptionalValue(RESERVOIR_PROPERTY, String.class).orElse(reservoir);
+            } catch (RuntimeException ex) {
+                // no config for the current context, use the configured reservoir
+            }
+        }
+        return LOG_LINEAR_HISTOGRAM_RESERVOIR.equals(reservoir)
+                ? LogLinearHistogramReservoir::new
+                : ExponentiallyDecayingReservoir::new;
     }
     
     public MetricRegistry getApplicationRegistry() {
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2020] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -107,4 +107,12 @@ public interface MetricsServiceConfiguration extends ConfigBeanProxy, ConfigExte
     String getRoles();
     void setRoles(String value) throws PropertyVetoException;
 
+    /**
+     * @return the name of the reservoir used by histograms and timers unless
+     * an application sets the {@code payara.metrics.reservoir} property.
+     */
+    @Attribute(defaultValue = "exponentially-decaying", dataType = String.class)
+    String getReservoir();
+    void setReservoir(String value) throws PropertyVetoException;
+
 }
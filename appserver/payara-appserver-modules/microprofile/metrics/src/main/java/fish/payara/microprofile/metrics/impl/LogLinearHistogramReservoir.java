@@ -0,0 +1,230 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.microprofile.metrics.impl;
+
+import com.sun.enterprise.util.LogLinearBuckets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.eclipse.microprofile.metrics.Snapshot;
+
+/**
+ * A constant-memory {@link Reservoir} that counts values in fixed log-linear buckets instead of keeping samples.
+ * <p>
+ * Values below 32 get a bucket each, larger values are split into 16 linear sub-buckets per power of two which bounds
+ * the relative error of any reported quantile to about 3%, see {@link LogLinearBuckets}. Recording is a
+ * single {@link AtomicLongArray} increment on a stripe picked by the recording thread, so updates neither lock nor
+ * allocate and concurrent threads rarely touch the same counters.
+ * <p>
+ * Each stripe holds close to a thousand counters, so there are at most {@value #MAX_STRIPES} stripes per window and a
+ * stripe is only allocated once a thread records into it. A metric updated by a single thread, or not at all, keeps
+ * no more than one stripe per window.
+ * <p>
+ * To stay biased towards recent values like the {@link ExponentiallyDecayingReservoir} the reservoir keeps two
+ * windows, the current one and the one before it, which are rotated every {@link #DEFAULT_WINDOW_NANOS}. Snapshots
+ * merge both windows so they always cover between one and two window lengths of measurements.
+ */
+public class LogLinearHistogramReservoir implements Reservoir {
+
+    static final LogLinearBuckets LAYOUT = new LogLinearBuckets(4);
+
+    /**
+     * Buckets needed to cover all positive {@code long} values.
+     */
+    static final int BUCKETS = LAYOUT.getBucketCount();
+
+    private static final int SUM = BUCKETS;
+    private static final int MIN = BUCKETS + 1;
+    private static final int MAX = BUCKETS + 2;
+    private static final int STRIPE_LENGTH = BUCKETS + 3;
+
+    static final int MAX_STRIPES = 4;
+
+    private static final long DEFAULT_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(5) / 2;
+
+    private final int stripeMask;
+    private final long windowNanos;
+    private final Clock clock;
+    private final AtomicLong nextRotation;
+    private volatile Windows windows;
+
+    /**
+     * Creates a new {@link LogLinearHistogramReservoir} with a stripe per available processor, up to
+     * {@value #MAX_STRIPES}, whose snapshots cover the last two and a half to five minutes of measurements.
+     */
+    public LogLinearHistogramReservoir() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_WINDOW_NANOS, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new {@link LogLinearHistogramReservoir}.
+     *
+     * @param stripes the number of stripes updates are spread over, rounded up to a power of two and capped at
+     *                {@value #MAX_STRIPES}
+     * @param windowNanos the length of a window in nanoseconds
+     * @param clock the clock used to rotate windows
+     */
+    public LogLinearHistogramReservoir(int stripes, long windowNanos, Clock clock) {
+        int stripeCount = Integer.highestOneBit(Math.min(Math.max(1, stripes), MAX_STRIPES) * 2 - 1);
+        this.stripeMask = stripeCount - 1;
+        this.windowNanos = windowNanos;
+        this.clock = clock;
+        this.windows = new Windows(new AtomicReferenceArray<>(stripeCount), new AtomicReferenceArray<>(stripeCount));
+        this.nextRotation = new AtomicLong(clock.getTick() + windowNanos);
+    }
+
+    @Override
+    public int size() {
+        Windows current = rotateIfNeeded();
+        return (int) Math.min(Integer.MAX_VALUE, count(current.current) + count(current.previous));
+    }
+
+    @Override
+    public void update(long value) {
+        AtomicLongArray stripe = stripe(rotateIfNeeded().current, (int) Thread.currentThread().getId() & stripeMask);
+        long recorded = Math.max(0L, value);
+        stripe.incrementAndGet(LAYOUT.indexOf(recorded));
+        stripe.addAndGet(SUM, recorded);
+        long min = stripe.get(MIN);
+        while (recorded < min && !stripe.compareAndSet(MIN, min, recorded)) {
+            min = stripe.get(MIN);
+        }
+        long max = stripe.get(MAX);
+        while (recorded > max && !stripe.compareAndSet(MAX, max, recorded)) {
+            max = stripe.get(MAX);
+        }
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        Windows current = rotateIfNeeded();
+        long[] counts = new long[BUCKETS];
+        long[] totals = { 0L, Long.MAX_VALUE, 0L };
+        merge(current.previous, counts, totals);
+        merge(current.current, counts, totals);
+        return new LogLinearSnapshot(counts, totals[0], totals[1], totals[2]);
+    }
+
+    private Windows rotateIfNeeded() {
+        Windows current = windows;
+        long now = clock.getTick();
+        long next = nextRotation.get();
+        if (now - next >= 0 && nextRotation.compareAndSet(next, now + windowNanos)) {
+            AtomicReferenceArray<AtomicLongArray> recycled = current.previous;
+            reset(recycled);
+            // values older than two windows are dropped, a window without updates drops everything
+            if (now - next >= windowNanos) {
+                reset(current.current);
+            }
+            current = new Windows(recycled, current.current);
+            windows = current;
+        }
+        return current;
+    }
+
+    private static void merge(AtomicReferenceArray<AtomicLongArray> stripes, long[] counts, long[] totals) {
+        for (int s = 0; s < stripes.length(); s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+            totals[0] += stripe.get(SUM);
+            totals[1] = Math.min(totals[1], stripe.get(MIN));
+            totals[2] = Math.max(totals[2], stripe.get(MAX));
+        }
+    }
+
+    private static long count(AtomicReferenceArray<AtomicLongArray> stripes) {
+        long count = 0L;
+        for (int s = 0; s < stripes.length(); s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe != null) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    count += stripe.get(i);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the stripe with the given index, allocated if this is the first update recorded into it
+     */
+    private static AtomicLongArray stripe(AtomicReferenceArray<AtomicLongArray> stripes, int index) {
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            AtomicLongArray created = new AtomicLongArray(STRIPE_LENGTH);
+            created.set(MIN, Long.MAX_VALUE);
+            stripe = stripes.compareAndSet(index, null, created) ? created : stripes.get(index);
+        }
+        return stripe;
+    }
+
+    private static void reset(AtomicReferenceArray<AtomicLongArray> stripes) {
+        for (int s = 0; s < stripes.length(); s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe != null) {
+                for (int i = 0; i < STRIPE_LENGTH; i++) {
+                    stripe.set(i, 0L);
+                }
+                stripe.set(MIN, Long.MAX_VALUE);
+            }
+        }
+    }
+
+    /**
+     * The two windows of stripes, replaced as a whole on rotation so that readers never see a stripe in both roles.
+     */
+    private static final class Windows {
+
+        final AtomicReferenceArray<AtomicLongArray> current;
+        final AtomicReferenceArray<AtomicLongArray> previous;
+
+        Windows(AtomicReferenceArray<AtomicLongArray> current, AtomicReferenceArray<AtomicLongArray> previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.microprofile.metrics.impl;
+
+import static fish.payara.microprofile.metrics.impl.LogLinearHistogramReservoir.BUCKETS;
+import static fish.payara.microprofile.metrics.impl.LogLinearHistogramReservoir.LAYOUT;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Arrays;
+import org.eclipse.microprofile.metrics.Snapshot;
+
+/**
+ * A statistical snapshot of a {@link LogLinearHistogramReservoir}.
+ * <p>
+ * Each value is approximated by the middle of the bucket it was counted in, limited to the exact minimum and maximum.
+ * The mean is computed from the exact sum of all values.
+ */
+public class LogLinearSnapshot extends Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+
+    /**
+     * Create a new {@link Snapshot} from the given bucket counts.
+     *
+     * @param counts number of values per bucket of the {@link LogLinearHistogramReservoir}
+     * @param sum the sum of all values
+     * @param min the smallest value
+     * @param max the largest value
+     */
+    public LogLinearSnapshot(long[] counts, long sum, long min, long max) {
+        this.counts = counts;
+        long total = 0L;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        this.count = total;
+        this.sum = sum;
+        this.min = total == 0L ? 0L : min;
+        this.max = total == 0L ? 0L : max;
+    }
+
+    /**
+     * Returns the value at the given quantile.
+     *
+     * @param quantile a given quantile, in {@code [0..1]}
+     * @return the value in the distribution at {@code quantile}
+     */
+    @Override
+    public double getValue(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+            throw new IllegalArgumentException(quantile + " is not in [0..1]");
+        }
+        if (count == 0L) {
+            return 0.0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(quantile * count));
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return valueOf(i);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of values in the snapshot.
+     *
+     * @return the number of values
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+
+    /**
+     * Returns the approximated value of each non-empty bucket in ascending order.
+     * <p>
+     * The values are not repeated for each count as that would make the result as large as the number of
+     * measurements.
+     *
+     * @return one value per non-empty bucket
+     */
+    @Override
+    public long[] getValues() {
+        long[] values = new long[BUCKETS];
+        int length = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] > 0L) {
+                values[length++] = valueOf(i);
+            }
+        }
+        return Arrays.copyOf(values, length);
+    }
+
+    /**
+     * Returns the highest value in the snapshot.
+     *
+     * @return the highest value
+     */
+    @Override
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the lowest value in the snapshot.
+     *
+     * @return the lowest value
+     */
+    @Override
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the arithmetic mean of the values in the snapshot.
+     *
+     * @return the arithmetic mean
+     */
+    @Override
+    public double getMean() {
+        return count == 0L ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the standard deviation of the values in the snapshot.
+     *
+     * @return the standard deviation value
+     */
+    @Override
+    public double getStdDev() {
+        if (count <= 1L) {
+            return 0;
+        }
+        final double mean = getMean();
+        double variance = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] > 0L) {
+                final double diff = valueOf(i) - mean;
+                variance += counts[i] * diff * diff;
+            }
+        }
+        return Math.sqrt(variance / count);
+    }
+
+    /**
+     * Writes the approximated value and count of each non-empty bucket to the given stream.
+     *
+     * @param output an output stream
+     */
+    @Override
+    public void dump(OutputStream output) {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, UTF_8))) {
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] > 0L) {
+                    out.printf("%d %d%n", valueOf(i), counts[i]);
+                }
+            }
+        }
+    }
+
+    private long valueOf(int index) {
+        long lower = LAYOUT.lowerBound(index);
+        long middle = lower + (LAYOUT.upperBound(index) - lower) / 2;
+        return Math.max(min, Math.min(max, middle));
+    }
+}
@@ -50,6 +50,7 @@ import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import javax.enterprise.inject.Vetoed;
 import org.eclipse.microprofile.metrics.ConcurrentGauge;
@@ -102,6 +103,18 @@ public class MetricRegistryImpl extends MetricRegistry {
     }
 
     private final ConcurrentMap<String, MetricFamily<?>> metricsFamiliesByName = new ConcurrentHashMap<>();
+    private final Supplier<Reservoir> reservoirFactory;
+
+    public MetricRegistryImpl() {
+        this(ExponentiallyDecayingReservoir::new);
+    }
+
+    /**
+     * @param reservoirFactory creates the {@link Reservoir} of each new {@link Histogram} and {@link Timer}
+     */
+    public MetricRegistryImpl(Supplier<Reservoir> reservoirFactory) {
+        this.reservoirFactory = reservoirFactory;
+    }
 
     @Override
     public Counter counter(String name) {
@@ -471,7 +484,7 @@ public class MetricRegistryImpl extends MetricRegistry {
         }
     }
 
-    private static Metric createMetricInstance(Metadata metadata) {
+    private Metric createMetricInstance(Metadata metadata) {
         String name = metadata.getName();
         switch (metadata.getTypeRaw()) {
         case COUNTER:
@@ -483,9 +496,9 @@ public class MetricRegistryImpl extends MetricRegistry {
         case METERED:
             return new MeterImpl();
         case HISTOGRAM:
-            return new HistogramImpl();
+            return new HistogramImpl(reservoirFactory.get());
         case TIMER:
-            return new TimerImpl();
+            return new TimerImpl(reservoirFactory.get());
         case INVALID:
         default:
             throw new IllegalStateException("Invalid metric type : " + metadata.getTypeRaw());
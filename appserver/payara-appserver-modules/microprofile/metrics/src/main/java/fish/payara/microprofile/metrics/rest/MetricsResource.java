@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2020] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -50,8 +50,11 @@ import fish.payara.microprofile.metrics.writer.JsonMetricWriter;
 import fish.payara.microprofile.metrics.writer.MetricsWriter;
 import fish.payara.microprofile.metrics.writer.PrometheusWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.io.Writer;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.zip.GZIPOutputStream;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -63,6 +66,9 @@ import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static javax.ws.rs.HttpMethod.GET;
 import static javax.ws.rs.HttpMethod.OPTIONS;
 import static javax.ws.rs.core.HttpHeaders.ACCEPT;
+import static javax.ws.rs.core.HttpHeaders.ACCEPT_ENCODING;
+import static javax.ws.rs.core.HttpHeaders.CONTENT_ENCODING;
+import static javax.ws.rs.core.HttpHeaders.VARY;
 import javax.ws.rs.core.MediaType;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
@@ -71,6 +77,10 @@ import org.glassfish.internal.api.Globals;
 public class MetricsResource extends HttpServlet {
     
     private static final String APPLICATION_WILDCARD = "application/*";
+
+    private static final String GZIP = "gzip";
+
+    private static final int GZIP_BUFFER_SIZE = 8192;
     
     /**
      * Processes requests for both HTTP <code>GET</code> and <code>OPTIONS</code>
@@ -108,10 +118,12 @@ public class MetricsResource extends HttpServlet {
                 }
             }
         } catch (NoSuchRegistryException ex) {
+            resetEncoding(response);
             response.sendError(
                     SC_NOT_FOUND,
                     String.format("[%s] registry not found", metricsRequest.getRegistryName()));
         } catch (NoSuchMetricException ex) {
+            resetEncoding(response);
             response.sendError(
                     SC_NOT_FOUND,
                     String.format("[%s] metric not found", metricsRequest.getMetricName()));
@@ -132,7 +144,6 @@ public class MetricsResource extends HttpServlet {
     private MetricsWriter getOutputWriter(HttpServletRequest request, HttpServletResponse response) throws IOException {
         MetricsWriter outputWriter = null;
         String method = request.getMethod();
-        Writer writer = response.getWriter();
 
         String accept = request.getHeader(ACCEPT);
         if (accept == null) {
@@ -168,14 +179,14 @@ public class MetricsResource extends HttpServlet {
                 if (qJsonValue == 0 && qTextFormat == 0) {
                     response.sendError(SC_NOT_ACCEPTABLE, String.format("[%s] not acceptable", accept));
                 } else if (qJsonValue > qTextFormat) {
-                    outputWriter = new JsonMetricWriter(writer);
+                    outputWriter = new JsonMetricWriter(getWriter(request, response));
                 } else {
-                    outputWriter = new PrometheusWriter(writer);
+                    outputWriter = new PrometheusWriter(getWriter(request, response));
                 }
                 break;
             case OPTIONS:
                 if (accept.contains(APPLICATION_JSON) || accept.contains(APPLICATION_WILDCARD)) {
-                    outputWriter = new JsonMetadataWriter(writer);
+                    outputWriter = new JsonMetadataWriter(getWriter(request, response));
                 } else {
                     response.sendError(
                             SC_NOT_ACCEPTABLE,
@@ -190,6 +201,44 @@ public class MetricsResource extends HttpServlet {
         return outputWriter;
     }
 
+    /**
+     * Returns the writer for the response body, compressed if the client
+     * accepts gzip encoding.
+     */
+    private static Writer getWriter(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.addHeader(VARY, ACCEPT_ENCODING);
+        if (!acceptsGzip(request.getHeader(ACCEPT_ENCODING))) {
+            return response.getWriter();
+        }
+        response.setHeader(CONTENT_ENCODING, GZIP);
+        return new PrintWriter(new OutputStreamWriter(
+                new GZIPOutputStream(response.getOutputStream(), GZIP_BUFFER_SIZE), UTF_8));
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        //gzip, deflate;q=0.5, *;q=0
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] splitEncoding = encoding.split(";");
+            if (GZIP.equalsIgnoreCase(splitEncoding[0].trim())) {
+                return splitEncoding.length < 2 || !splitEncoding[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops a gzip encoding header and any compressed bytes so that an error
+     * can be sent instead.
+     */
+    private static void resetEncoding(HttpServletResponse response) {
+        if (response.containsHeader(CONTENT_ENCODING) && !response.isCommitted()) {
+            response.reset();
+        }
+    }
+
     /**
      * Handles the HTTP <code>GET</code> method.
      *
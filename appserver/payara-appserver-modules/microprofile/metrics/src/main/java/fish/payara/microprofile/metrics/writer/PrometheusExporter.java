@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2020] Payara Foundation and/or its affiliates. All rights reserved.
  *
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -50,13 +50,19 @@
 
 package fish.payara.microprofile.metrics.writer;
 
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import org.eclipse.microprofile.metrics.ConcurrentGauge;
 import org.eclipse.microprofile.metrics.Counter;
 import org.eclipse.microprofile.metrics.Counting;
 import org.eclipse.microprofile.metrics.Gauge;
 import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.Metadata;
 import org.eclipse.microprofile.metrics.Meter;
 import org.eclipse.microprofile.metrics.Metered;
 import org.eclipse.microprofile.metrics.MetricID;
@@ -64,7 +70,6 @@ import static org.eclipse.microprofile.metrics.MetricType.COUNTER;
 import static org.eclipse.microprofile.metrics.MetricType.CONCURRENT_GAUGE;
 import static org.eclipse.microprofile.metrics.MetricType.GAUGE;
 import org.eclipse.microprofile.metrics.MetricUnits;
-import org.eclipse.microprofile.metrics.Tag;
 import static org.eclipse.microprofile.metrics.MetricUnits.BITS;
 import static org.eclipse.microprofile.metrics.MetricUnits.BYTES;
 import static org.eclipse.microprofile.metrics.MetricUnits.DAYS;
@@ -86,8 +91,17 @@ import static org.eclipse.microprofile.metrics.MetricUnits.NONE;
 import static org.eclipse.microprofile.metrics.MetricUnits.PERCENT;
 import static org.eclipse.microprofile.metrics.MetricUnits.SECONDS;
 import org.eclipse.microprofile.metrics.Sampling;
+import org.eclipse.microprofile.metrics.Snapshot;
 import org.eclipse.microprofile.metrics.Timer;
 
+/**
+ * Writes metrics in the Prometheus text format.
+ * <p>
+ * Everything in a sample line but its value only depends on the {@link MetricID} and its {@link Metadata}. The
+ * exporter therefore renders the name, tags and any preceding {@code # TYPE} and {@code # HELP} lines of each sample
+ * only once into a {@link Template} which later exports of the same metric reuse, so that a scrape only has to write
+ * the cached text and the current values.
+ */
 public class PrometheusExporter {
 
     private static final String LF = "\n";
@@ -109,16 +123,24 @@ public class PrometheusExporter {
     private static final String TOTAL_SUFFIX = "_total";
     private static final String CURRENT_SUFFIX = "_current";
 
-    private static final String QUANTILE = "quantile";
-    private static final String RATE = "_rate_";
-    private static final String ONE_MIN_RATE = "_one_min_rate_";
-    private static final String FIVE_MIN_RATE = "_five_min_rate_";
-    private static final String FIFTEEN_MIN_RATE = "_fifteen_min_rate_";
+    private static final String QUANTILE_50 = "quantile=\"0.5\"";
+    private static final String QUANTILE_75 = "quantile=\"0.75\"";
+    private static final String QUANTILE_95 = "quantile=\"0.95\"";
+    private static final String QUANTILE_98 = "quantile=\"0.98\"";
+    private static final String QUANTILE_99 = "quantile=\"0.99\"";
+    private static final String QUANTILE_999 = "quantile=\"0.999\"";
+    private static final String RATE = "_rate_" + MetricUnits.PER_SECOND;
+    private static final String ONE_MIN_RATE = "_one_min_rate_" + MetricUnits.PER_SECOND;
+    private static final String FIVE_MIN_RATE = "_five_min_rate_" + MetricUnits.PER_SECOND;
+    private static final String FIFTEEN_MIN_RATE = "_fifteen_min_rate_" + MetricUnits.PER_SECOND;
 
     private static final String APPENDED_SECONDS = "_seconds";
     private static final String APPENDED_BYTES = "_bytes";
     private static final String APPENDED_PERCENT = "_percent";
 
+    private static final Pattern ILLEGAL_NAME_CHARACTERS = Pattern.compile("[^a-zA-Z0-9_]+");
+    private static final Pattern COLON_UNDERSCORE = Pattern.compile(":_");
+
     //Conversion factors
     private static final double NANOSECOND_CONVERSION = 1d / 1_000_000_000d;
     private static final double MICROSECOND_CONVERSION = 1d / 1_000_000d;
@@ -141,25 +163,58 @@ public class PrometheusExporter {
 
     private static final Logger LOGGER = Logger.getLogger(PrometheusExporter.class.getName());
 
-    private final StringBuilder builder;
+    private final PrintWriter writer;
     private final MetricID metricID;
-
-    public PrometheusExporter(StringBuilder builder, MetricID metricID){
-        this.builder = builder;
+    private final Template template;
+
+    /**
+     * Index of the next sample line
+     */
+    private int line;
+
+    /**
+     * Rendered sample line prefixes, only created once a line is not covered by the {@link #template}
+     */
+    private List<String> lines;
+
+    /**
+     * Type and help lines rendered ahead of the next sample line
+     */
+    private StringBuilder pending;
+
+    private String tags;
+
+    /**
+     * @param writer the output written to
+     * @param metricID the metric exported
+     * @param template the template of a previous export of the metric, or {@code null} to render everything
+     */
+    public PrometheusExporter(PrintWriter writer, MetricID metricID, Template template) {
+        this.writer = writer;
         this.metricID = metricID;
+        this.template = template;
     }
 
-    public void exportCounter(Counter counter, String name, String description, String tags) {
-        writeTypeHelpValueLine(name, COUNTER.toString(), description, counter.getCount(), tags, TOTAL_SUFFIX);
+    /**
+     * @param metadata the metadata the metric was exported with
+     * @return a template holding all the text rendered by this exporter, or {@code null} if the template given on
+     * construction covered all lines written
+     */
+    public Template getRenderedTemplate(Metadata metadata) {
+        return lines == null ? null : new Template(metadata, lines.toArray(new String[0]));
     }
-    
-    void exportConcurrentGuage(ConcurrentGauge concurrentGauge, String name, String description, String tags) {
-         writeTypeHelpValueLine(name + CURRENT_SUFFIX, CONCURRENT_GAUGE.toString(), description, concurrentGauge.getCount(), tags);
-         writeTypeHelpValueLine(name + MIN_SUFFIX, CONCURRENT_GAUGE.toString(), description, concurrentGauge.getMin(), tags);
-         writeTypeHelpValueLine(name + MAX_SUFFIX, CONCURRENT_GAUGE.toString(), description, concurrentGauge.getMax(), tags);
+
+    public void exportCounter(Counter counter, String name, String description) {
+        writeTypeHelpValueLine(name, TOTAL_SUFFIX, COUNTER.toString(), description, counter.getCount(), null);
+    }
+
+    void exportConcurrentGuage(ConcurrentGauge concurrentGauge, String name, String description) {
+        writeTypeHelpValueLine(name, CURRENT_SUFFIX, CONCURRENT_GAUGE.toString(), description, concurrentGauge.getCount(), null);
+        writeTypeHelpValueLine(name, MIN_SUFFIX, CONCURRENT_GAUGE.toString(), description, concurrentGauge.getMin(), null);
+        writeTypeHelpValueLine(name, MAX_SUFFIX, CONCURRENT_GAUGE.toString(), description, concurrentGauge.getMax(), null);
     }
 
-    public void exportGauge(Gauge<?> gauge, String name, String description, String tags, String unit) {
+    public void exportGauge(Gauge<?> gauge, String name, String description, String unit) {
         Number value;
         Object gaugeValue;
         try {
@@ -177,49 +232,50 @@ public class PrometheusExporter {
         if (!Double.isNaN(conversionFactor)) {
             value = value.doubleValue() * conversionFactor;
         }
-        writeTypeHelpValueLine(name, GAUGE.toString(), description, value, tags, getAppendUnit(unit));
+        writeTypeHelpValueLine(name, null, GAUGE.toString(), description, value, getAppendUnit(unit));
     }
 
-    public void exportHistogram(Histogram histogram, String name, String description, String tags, String unit) {
-        exportSampling(histogram, name, description, tags, getConversionFactor(unit), getAppendUnit(unit));
+    public void exportHistogram(Histogram histogram, String name, String description, String unit) {
+        exportSampling(histogram, name, description, getConversionFactor(unit), getAppendUnit(unit));
     }
 
-    public void exportMeter(Meter meter, String name, String description, String tags) {
-        exportCounting(meter, name, description, tags);
-        exportMetered(meter, name, description, tags);
+    public void exportMeter(Meter meter, String name, String description) {
+        exportCounting(meter, name, description);
+        exportMetered(meter, name);
     }
 
-    public void exportTimer(Timer timer, String name, String description, String tags, String unit) {
-        exportMetered(timer, name, description, tags);
-        exportSampling(timer, name, description, tags, NANOSECOND_CONVERSION, getAppendUnit(unit));
+    public void exportTimer(Timer timer, String name, String description, String unit) {
+        exportMetered(timer, name);
+        exportSampling(timer, name, description, NANOSECOND_CONVERSION, getAppendUnit(unit));
     }
 
-    private void exportCounting(Counting counting, String name, String description, String tags) {
-        writeTypeHelpValueLine(name + TOTAL_SUFFIX, COUNTER.toString(), description, counting.getCount(), tags);
+    private void exportCounting(Counting counting, String name, String description) {
+        writeTypeHelpValueLine(name, TOTAL_SUFFIX, COUNTER.toString(), description, counting.getCount(), null);
     }
 
-    private void exportMetered(Metered metered, String name, String description, String tags) {
-        writeTypeValueLine(name + RATE + MetricUnits.PER_SECOND, GAUGE.toString(), metered.getMeanRate(), tags);
-        writeTypeValueLine(name + ONE_MIN_RATE + MetricUnits.PER_SECOND, GAUGE.toString(), metered.getOneMinuteRate(), tags);
-        writeTypeValueLine(name + FIVE_MIN_RATE + MetricUnits.PER_SECOND, GAUGE.toString(), metered.getFiveMinuteRate(), tags);
-        writeTypeValueLine(name + FIFTEEN_MIN_RATE + MetricUnits.PER_SECOND, GAUGE.toString(), metered.getFifteenMinuteRate(), tags);
+    private void exportMetered(Metered metered, String name) {
+        writeTypeValueLine(name, RATE, GAUGE.toString(), metered.getMeanRate(), null);
+        writeTypeValueLine(name, ONE_MIN_RATE, GAUGE.toString(), metered.getOneMinuteRate(), null);
+        writeTypeValueLine(name, FIVE_MIN_RATE, GAUGE.toString(), metered.getFiveMinuteRate(), null);
+        writeTypeValueLine(name, FIFTEEN_MIN_RATE, GAUGE.toString(), metered.getFifteenMinuteRate(), null);
     }
 
     private void exportSampling(Sampling sampling, String name,
-            String description, String tags, Double conversionFactor,
+            String description, Double conversionFactor,
             String appendUnit) {
 
-        double mean = sampling.getSnapshot().getMean();
-        double max = sampling.getSnapshot().getMax();
-        double min = sampling.getSnapshot().getMin();
-        double stdDev = sampling.getSnapshot().getStdDev();
-        double median = sampling.getSnapshot().getMedian();
+        Snapshot snapshot = sampling.getSnapshot();
+        double mean = snapshot.getMean();
+        double max = snapshot.getMax();
+        double min = snapshot.getMin();
+        double stdDev = snapshot.getStdDev();
+        double median = snapshot.getMedian();
 
-        double percentile75th = sampling.getSnapshot().get75thPercentile();
-        double percentile95th = sampling.getSnapshot().get95thPercentile();
-        double percentile98th = sampling.getSnapshot().get98thPercentile();
-        double percentile99th = sampling.getSnapshot().get99thPercentile();
-        double percentile999th = sampling.getSnapshot().get999thPercentile();
+        double percentile75th = snapshot.get75thPercentile();
+        double percentile95th = snapshot.get95thPercentile();
+        double percentile98th = snapshot.get98thPercentile();
+        double percentile99th = snapshot.get99thPercentile();
+        double percentile999th = snapshot.get999thPercentile();
 
         if (!Double.isNaN(conversionFactor)) {
             mean *= conversionFactor;
@@ -235,67 +291,73 @@ public class PrometheusExporter {
             percentile999th *= conversionFactor;
         }
 
-        writeTypeValueLine(name + MEAN_SUFFIX, GAUGE.toString(), mean, tags, appendUnit);
-        writeTypeValueLine(name + MAX_SUFFIX, GAUGE.toString(), max, tags, appendUnit);
-        writeTypeValueLine(name + MIN_SUFFIX, GAUGE.toString(), min, tags, appendUnit);
-        writeTypeValueLine(name + STDDEV_SUFFIX, GAUGE.toString(), stdDev, tags, appendUnit);
+        writeTypeValueLine(name, MEAN_SUFFIX, GAUGE.toString(), mean, appendUnit);
+        writeTypeValueLine(name, MAX_SUFFIX, GAUGE.toString(), max, appendUnit);
+        writeTypeValueLine(name, MIN_SUFFIX, GAUGE.toString(), min, appendUnit);
+        writeTypeValueLine(name, STDDEV_SUFFIX, GAUGE.toString(), stdDev, appendUnit);
 
-        writeTypeLine(name, SUMMARY, appendUnit);
-        writeHelpLine(name, description, appendUnit);
+        writeTypeLine(name, null, SUMMARY, appendUnit);
+        writeHelpLine(name, null, description, appendUnit);
         if (Counting.class.isInstance(sampling)) {
-            writeValueLine(name, ((Counting) sampling).getCount(), tags, appendUnit == null ? COUNT_SUFFIX : appendUnit + COUNT_SUFFIX);
+            writeValueLine(name, null, ((Counting) sampling).getCount(), null, appendUnit == null ? COUNT_SUFFIX : appendUnit + COUNT_SUFFIX);
         }
 
-        writeValueLine(name, median, tags, new Tag(QUANTILE, "0.5"), appendUnit);
-        writeValueLine(name, percentile75th, tags, new Tag(QUANTILE, "0.75"), appendUnit);
-        writeValueLine(name, percentile95th, tags, new Tag(QUANTILE, "0.95"), appendUnit);
-        writeValueLine(name, percentile98th, tags, new Tag(QUANTILE, "0.98"), appendUnit);
-        writeValueLine(name, percentile99th, tags, new Tag(QUANTILE, "0.99"), appendUnit);
-        writeValueLine(name, percentile999th, tags, new Tag(QUANTILE, "0.999"), appendUnit);
+        writeValueLine(name, null, median, QUANTILE_50, appendUnit);
+        writeValueLine(name, null, percentile75th, QUANTILE_75, appendUnit);
+        writeValueLine(name, null, percentile95th, QUANTILE_95, appendUnit);
+        writeValueLine(name, null, percentile98th, QUANTILE_98, appendUnit);
+        writeValueLine(name, null, percentile99th, QUANTILE_99, appendUnit);
+        writeValueLine(name, null, percentile999th, QUANTILE_999, appendUnit);
     }
 
-    private void writeTypeHelpValueLine(String name, String type, String description, Number value, String tags) {
-        writeTypeHelpValueLine(name, type, description, value, tags, null);
+    private void writeTypeHelpValueLine(String name, String suffix, String type, String description, Number value, String appendUnit) {
+        writeTypeLine(name, suffix, type, appendUnit);
+        writeHelpLine(name, suffix, description, appendUnit);
+        writeValueLine(name, suffix, value, null, appendUnit);
     }
 
-    private void writeTypeHelpValueLine(String name, String type, String description, Number value, String tags, String appendUnit) {
-        writeTypeLine(name, type, appendUnit);
-        writeHelpLine(name, description, appendUnit);
-        writeValueLine(name, value, tags, appendUnit);
+    private void writeTypeValueLine(String name, String suffix, String type, Number value, String appendUnit) {
+        writeTypeLine(name, suffix, type, appendUnit);
+        writeValueLine(name, suffix, value, null, appendUnit);
     }
 
-    private void writeTypeValueLine(String name, String type, Number value, String tags) {
-        writeTypeValueLine(name, type, value, tags, null);
-    }
-
-    private void writeTypeValueLine(String name, String type, Number value, String tags, String appendUnit) {
-        writeTypeLine(name, type, appendUnit);
-        writeValueLine(name, value, tags, appendUnit);
-    }
-
-    private void writeValueLine(String name, Number value, String tags, Tag quantile, String appendUnit) {
-        String qunatileKeyValue = quantile.getTagName() + "=\"" + quantile.getTagValue() + "\"";
-        tags = tags == null || tags.isEmpty() ? qunatileKeyValue : tags + COMMA + qunatileKeyValue;
-        writeValueLine(name, value, tags, appendUnit);
-    }
-
-    private void writeValueLine(String name, Number value, String tags, String appendUnit) {
-        builder.append(sanitizeMetricName(name));
-        if (appendUnit != null) {
-            builder.append(appendUnit);
-        }
-        if (tags != null && tags.length() > 0) {
-            builder.append(LEFT_BRACES).append(tags).append(RIGHT_BRACES);
+    private void writeValueLine(String name, String suffix, Number value, String quantile, String appendUnit) {
+        String prefix;
+        if (isCached()) {
+            prefix = template.lines[line];
+        } else {
+            StringBuilder builder = pending();
+            builder.append(sanitizeMetricName(name, suffix));
+            if (appendUnit != null) {
+                builder.append(appendUnit);
+            }
+            String tags = getTags();
+            if (!tags.isEmpty() || quantile != null) {
+                builder.append(LEFT_BRACES).append(tags);
+                if (quantile != null) {
+                    if (!tags.isEmpty()) {
+                        builder.append(COMMA);
+                    }
+                    builder.append(quantile);
+                }
+                builder.append(RIGHT_BRACES);
+            }
+            builder.append(SPACE);
+            prefix = builder.toString();
+            pending = null;
+            rendered().add(prefix);
         }
-        builder.append(SPACE);
-        builder.append(value);
-        builder.append(LF);
+        writer.write(prefix);
+        writer.print(value);
+        writer.write(LF);
+        line++;
     }
 
-    private void writeHelpLine(String name, String description, String appendUnit) {
-        if (description != null && !description.isEmpty()) {
+    private void writeHelpLine(String name, String suffix, String description, String appendUnit) {
+        if (!isCached() && description != null && !description.isEmpty()) {
+            StringBuilder builder = pending();
             builder.append(HELP_TITLE);
-            builder.append(sanitizeMetricName(name));
+            builder.append(sanitizeMetricName(name, suffix));
             if (appendUnit != null) {
                 builder.append(appendUnit);
             }
@@ -305,24 +367,55 @@ public class PrometheusExporter {
         }
     }
 
-    private void writeTypeLine(String name, String type, String appendUnit) {
-        builder.append(TYPE_TITLE);
-        builder.append(sanitizeMetricName(name));
-        if (appendUnit != null) {
-            builder.append(appendUnit);
+    private void writeTypeLine(String name, String suffix, String type, String appendUnit) {
+        if (!isCached()) {
+            StringBuilder builder = pending();
+            builder.append(TYPE_TITLE);
+            builder.append(sanitizeMetricName(name, suffix));
+            if (appendUnit != null) {
+                builder.append(appendUnit);
+            }
+            builder.append(SPACE);
+            builder.append(type);
+            builder.append(LF);
+        }
+    }
+
+    private boolean isCached() {
+        return template != null && line < template.lines.length;
+    }
+
+    private StringBuilder pending() {
+        if (pending == null) {
+            pending = new StringBuilder();
         }
-        builder.append(SPACE);
-        builder.append(type);
-        builder.append(LF);
+        return pending;
     }
 
-    private String sanitizeMetricName(String name) {
+    private List<String> rendered() {
+        if (lines == null) {
+            lines = new ArrayList<>();
+            if (template != null) {
+                lines.addAll(Arrays.asList(template.lines).subList(0, line));
+            }
+        }
+        return lines;
+    }
+
+    private String getTags() {
+        if (tags == null) {
+            tags = metricID.getTagsAsString();
+        }
+        return tags;
+    }
+
+    private static String sanitizeMetricName(String name, String suffix) {
         //Translation rules :
         //All characters not in the range a-z A-Z or 0-9 are translated to underscore (_)
         //Double underscore is translated to single underscore
-        String out = name.replaceAll("[^a-zA-Z0-9_]+", "_");
+        String out = ILLEGAL_NAME_CHARACTERS.matcher(suffix == null ? name : name + suffix).replaceAll("_");
         //Colon-underscore (:_) is translated to single colon
-        out = out.replaceAll(":_", ":");
+        out = COLON_UNDERSCORE.matcher(out).replaceAll(":");
         return out;
     }
 
@@ -436,4 +529,25 @@ public class PrometheusExporter {
         return appendUnit;
     }
 
+    /**
+     * The text of all sample lines of a metric up to their values.
+     */
+    public static final class Template {
+
+        private final Metadata metadata;
+        final String[] lines;
+
+        Template(Metadata metadata, String[] lines) {
+            this.metadata = metadata;
+            this.lines = lines;
+        }
+
+        /**
+         * @param metadata the current metadata of the metric
+         * @return true if the template was rendered with the given metadata and can be reused
+         */
+        public boolean isRenderedWith(Metadata metadata) {
+            return this.metadata == metadata;
+        }
+    }
 }
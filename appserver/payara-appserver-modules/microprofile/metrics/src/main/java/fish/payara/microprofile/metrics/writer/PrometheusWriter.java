@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  * 
- *    Copyright (c) [2018-2019] Payara Foundation and/or its affiliates. All rights reserved.
+ *    Copyright (c) [2018-2020] Payara Foundation and/or its affiliates. All rights reserved.
  * 
  *     The contents of this file are subject to the terms of either the GNU
  *     General Public License Version 2 only ("GPL") or the Common Development
@@ -54,10 +54,15 @@ import static fish.payara.microprofile.Constants.EMPTY_STRING;
 import fish.payara.microprofile.metrics.MetricsService;
 import fish.payara.microprofile.metrics.exception.NoSuchMetricException;
 import fish.payara.microprofile.metrics.exception.NoSuchRegistryException;
+import fish.payara.microprofile.metrics.writer.PrometheusExporter.Template;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.eclipse.microprofile.metrics.Counter;
@@ -76,124 +81,177 @@ import org.glassfish.internal.api.Globals;
 
 public class PrometheusWriter implements MetricsWriter {
 
-    private final Writer writer;
+    /**
+     * The rendered {@link Template}s by registry name, shared by all scrapes
+     */
+    private static final Map<String, Map<MetricID, Template>> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final PrintWriter writer;
     
     private final MetricsService service;
     
     private static final Logger LOGGER = Logger.getLogger(PrometheusWriter.class.getName());
 
     public PrometheusWriter(Writer writer) {
-        this.writer = writer;
+        this.writer = writer instanceof PrintWriter ? (PrintWriter) writer : new PrintWriter(writer);
         this.service = Globals.getDefaultBaseServiceLocator().getService(MetricsService.class);
     }
 
     @Override
     public void write(String registryName, String metricName) throws NoSuchMetricException, NoSuchRegistryException, IOException {
-        StringBuilder builder = new StringBuilder();
+        List<MetricMap> metrics = new ArrayList<>();
         if (APPLICATION.getName().equals(registryName)) {
             for (String appRegistryName : service.getApplicationRegistryNames()) {
                 try {
-                    writeMetrics(builder, appRegistryName, metricName);
+                    metrics.add(getMetrics(appRegistryName, metricName));
                 } catch (NoSuchMetricException e) {
                     //ignore
                 }
             }
-            if(builder.length() == 0){
+            if (metrics.stream().allMatch(MetricMap::isEmpty)) {
                 throw new NoSuchMetricException(metricName);
             }
         } else {
-            writeMetrics(builder, registryName, metricName);
+            metrics.add(getMetrics(registryName, metricName));
         }
-        serialize(builder);
+        serialize(metrics, false);
     }
 
     @Override
     public void write(String registryName) throws NoSuchRegistryException, IOException {
-        StringBuilder builder = new StringBuilder();
+        List<MetricMap> metrics = new ArrayList<>();
         if (APPLICATION.getName().equals(registryName)) {
             for (String appRegistryName : service.getApplicationRegistryNames()) {
-                writeMetrics(builder, appRegistryName);
+                metrics.add(getMetrics(appRegistryName));
             }
         } else {
-            writeMetrics(builder, registryName);
+            metrics.add(getMetrics(registryName));
         }
-        serialize(builder);
+        serialize(metrics, true);
     }
 
     @Override
     public void write() throws IOException {
-        StringBuilder builder = new StringBuilder();
+        List<MetricMap> metrics = new ArrayList<>();
         for (String registryName : service.getAllRegistryNames()) {
             try {
-                writeMetrics(builder, registryName);
+                metrics.add(getMetrics(registryName));
             } catch (NoSuchRegistryException e) { // Ignore
             }
         }
-        serialize(builder);
+        TEMPLATES.keySet().retainAll(service.getAllRegistryNames());
+        serialize(metrics, true);
     }
 
-    private void writeMetrics(StringBuilder builder, String registryName) throws NoSuchRegistryException {
-        writeMetricMap(
-                builder,
+    private MetricMap getMetrics(String registryName) throws NoSuchRegistryException {
+        return new MetricMap(
                 registryName,
                 service.getMetricsAsMap(registryName),
                 service.getMetadataAsMap(registryName)
         );
     }
 
-    private void writeMetrics(StringBuilder builder, String registryName, String metricName) throws NoSuchRegistryException, NoSuchMetricException {
-        writeMetricMap(
-                builder,
+    private MetricMap getMetrics(String registryName, String metricName) throws NoSuchRegistryException, NoSuchMetricException {
+        return new MetricMap(
                 registryName,
                 service.getMetricsAsMap(registryName, metricName),
                 service.getMetadataAsMap(registryName, metricName)
         );
     }
 
-    private void writeMetricMap(StringBuilder builder, String registryName, Map<MetricID, Metric> metricMap, Map<String, Metadata> metricMetadataMap) {
-        for (Entry<MetricID, Metric> entry : metricMap.entrySet()) {
+    private void writeMetricMap(MetricMap metrics, boolean complete) {
+        String registryName = metrics.registryName;
+        Map<MetricID, Template> templates = TEMPLATES.computeIfAbsent(registryName, key -> new ConcurrentHashMap<>());
+        if (complete && templates.size() > metrics.metricMap.size()) {
+            // drop the templates of removed metrics
+            templates.keySet().retainAll(metrics.metricMap.keySet());
+        }
+        //Translation rules :
+        //Scope is always specified at the start of the metric name
+        //Scope and name are separated by underscore (_)
+        if (!BASE.getName().equals(registryName)
+                && !VENDOR.getName().equals(registryName)) {
+            registryName = APPLICATION.getName();
+        }
+        for (Entry<MetricID, Metric> entry : metrics.metricMap.entrySet()) {
             MetricID metricId = entry.getKey();
-            //Translation rules :
-            //Scope is always specified at the start of the metric name
-            //Scope and name are separated by underscore (_)
-            if(!BASE.getName().equals(registryName) 
-                    && !VENDOR.getName().equals(registryName)){
-                registryName = APPLICATION.getName();
-            }
-                
             String name = registryName + "_" + metricId.getName();
             Metric metric = entry.getValue();
-            Metadata metricMetadata = metricMetadataMap.get(metricId.getName());
+            Metadata metricMetadata = metrics.metricMetadataMap.get(metricId.getName());
+            if (metricMetadata == null) {
+                continue; // removed since the map was read
+            }
+
+            Template template = templates.get(metricId);
+            if (template != null && !template.isRenderedWith(metricMetadata)) {
+                template = null;
+            }
 
             String description = metricMetadata.getDescription().orElse(EMPTY_STRING);
             
             String unit = metricMetadata.getUnit().orElse(EMPTY_STRING);
 
-            PrometheusExporter exporter = new PrometheusExporter(builder, metricId);
+            PrometheusExporter exporter = new PrometheusExporter(writer, metricId, template);
 
             if (Counter.class.isInstance(metric)) {
-                exporter.exportCounter((Counter) metric, name, description, metricId.getTagsAsString()); 
+                exporter.exportCounter((Counter) metric, name, description);
             } else if (ConcurrentGauge.class.isInstance(metric)) {
-                exporter.exportConcurrentGuage((ConcurrentGauge) metric, name, description, metricId.getTagsAsString());
+                exporter.exportConcurrentGuage((ConcurrentGauge) metric, name, description);
             } else if (Gauge.class.isInstance(metric)) {
-                exporter.exportGauge((Gauge) metric, name, description, metricId.getTagsAsString(), unit);
+                exporter.exportGauge((Gauge) metric, name, description, unit);
             } else if (Histogram.class.isInstance(metric)) {
-                exporter.exportHistogram((Histogram) metric, name, description, metricId.getTagsAsString(), unit);
+                exporter.exportHistogram((Histogram) metric, name, description, unit);
             } else if (Meter.class.isInstance(metric)) {
-                exporter.exportMeter((Meter) metric, name, description, metricId.getTagsAsString());
+                exporter.exportMeter((Meter) metric, name, description);
             } else if (Timer.class.isInstance(metric)) {
-                exporter.exportTimer((Timer) metric, name, description, metricId.getTagsAsString(), unit);
+                exporter.exportTimer((Timer) metric, name, description, unit);
             } else {
                 LOGGER.log(Level.WARNING, "Metric type {0} for {1} is invalid", new Object[]{metric.getClass(), metricId});
             }
+
+            Template rendered = exporter.getRenderedTemplate(metricMetadata);
+            if (rendered != null) {
+                templates.put(metricId, rendered);
+            }
         }
     }
 
-    private void serialize(StringBuilder builder) throws IOException {
+    /**
+     * Streams the metrics to the writer, nothing is written before all metrics have been looked up so that a missing
+     * registry or metric can still be reported as an error.
+     *
+     * The {@link PrintWriter} does not throw, its error state is checked after each registry so that a client that
+     * went away stops the export and is reported as an {@link IOException}.
+     *
+     * @param complete true if the maps contain all metrics of their registry
+     */
+    private void serialize(List<MetricMap> metrics, boolean complete) throws IOException {
         try {
-            writer.write(builder.toString());
+            for (MetricMap metricMap : metrics) {
+                writeMetricMap(metricMap, complete);
+                if (writer.checkError()) {
+                    throw new IOException("Failed to write the metrics of registry " + metricMap.registryName);
+                }
+            }
         } finally {
             writer.close();
         }
     }
+
+    private static final class MetricMap {
+
+        final String registryName;
+        final Map<MetricID, Metric> metricMap;
+        final Map<String, Metadata> metricMetadataMap;
+
+        MetricMap(String registryName, Map<MetricID, Metric> metricMap, Map<String, Metadata> metricMetadataMap) {
+            this.registryName = registryName;
+            this.metricMap = metricMap;
+            this.metricMetadataMap = metricMetadataMap;
+        }
+
+        boolean isEmpty() {
+            return metricMap.isEmpty();
+        }
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fish.payara.microprofile.metrics.impl.Clock;
+import fish.payara.microprofile.metrics.impl.LogLinearHistogramReservoir;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.microprofile.metrics.Snapshot;
+import org.junit.Test;
+
+/**
+ * Tests the {@link LogLinearHistogramReservoir} and its snapshot.
+ */
+public class LogLinearHistogramReservoirTest {
+
+    private static final long WINDOW = TimeUnit.MINUTES.toNanos(1);
+
+    private final AtomicLong tick = new AtomicLong();
+    private final Clock clock = new Clock() {
+
+        @Override
+        public long getTick() {
+            return tick.get();
+        }
+    };
+    private final LogLinearHistogramReservoir reservoir = new LogLinearHistogramReservoir(4, WINDOW, clock);
+
+    @Test
+    public void emptySnapshotIsZero() {
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(0, snapshot.size());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0d, snapshot.getMean(), 0d);
+        assertEquals(0d, snapshot.getMedian(), 0d);
+        assertEquals(0, snapshot.getValues().length);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (int i = 1; i <= 20; i++) {
+            reservoir.update(i);
+        }
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(20, snapshot.size());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(20, snapshot.getMax());
+        assertEquals(10.5d, snapshot.getMean(), 0d);
+        assertEquals(10d, snapshot.getMedian(), 0d);
+        assertEquals(19d, snapshot.get95thPercentile(), 0d);
+        assertEquals(20, snapshot.getValues().length);
+    }
+
+    @Test
+    public void largeValuesAreWithinRelativeError() {
+        for (long i = 1; i <= 100_000; i++) {
+            reservoir.update(i * 1000);
+        }
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(100_000, snapshot.size());
+        assertEquals(1000, snapshot.getMin());
+        assertEquals(100_000_000, snapshot.getMax());
+        assertEquals(50_000_500d, snapshot.getMean(), 0d);
+        assertRelativeError(50_000_000d, snapshot.getMedian());
+        assertRelativeError(99_000_000d, snapshot.get99thPercentile());
+        assertRelativeError(100_000_000d / Math.sqrt(12), snapshot.getStdDev());
+        assertTrue(snapshot.getValues().length < 1000);
+    }
+
+    @Test
+    public void negativeValuesAreRecordedAsZero() {
+        reservoir.update(-5);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(0, snapshot.getMin());
+    }
+
+    @Test
+    public void windowsRotate() {
+        reservoir.update(10);
+        tick.addAndGet(WINDOW);
+        reservoir.update(20);
+        assertEquals(2, reservoir.size());
+        assertEquals(10, reservoir.getSnapshot().getMin());
+        tick.addAndGet(WINDOW);
+        assertEquals(1, reservoir.size());
+        assertEquals(20, reservoir.getSnapshot().getMin());
+        tick.addAndGet(2 * WINDOW);
+        assertEquals(0, reservoir.size());
+    }
+
+    @Test
+    public void concurrentUpdatesAreAllCounted() throws InterruptedException {
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    reservoir.update(j);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(80_000, snapshot.size());
+        assertEquals(9999, snapshot.getMax());
+        assertEquals(4999.5d, snapshot.getMean(), 0d);
+    }
+
+    private static void assertRelativeError(double expected, double actual) {
+        assertEquals(expected, actual, expected / 32);
+    }
+}
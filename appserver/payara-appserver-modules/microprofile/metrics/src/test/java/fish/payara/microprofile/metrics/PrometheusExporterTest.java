@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.microprofile.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import fish.payara.microprofile.metrics.impl.CounterImpl;
+import fish.payara.microprofile.metrics.impl.TimerImpl;
+import fish.payara.microprofile.metrics.writer.PrometheusExporter;
+import fish.payara.microprofile.metrics.writer.PrometheusExporter.Template;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+import org.junit.Test;
+
+/**
+ * Tests the Prometheus output of the {@link PrometheusExporter} and the reuse of its {@link Template}s.
+ */
+public class PrometheusExporterTest {
+
+    private final MetricID metricID = new MetricID("my.counter", new Tag("a", "b"));
+    private final Metadata metadata = Metadata.builder().withName("my.counter").withType(MetricType.COUNTER).build();
+
+    @Test
+    public void counterIsRendered() {
+        CounterImpl counter = new CounterImpl();
+        counter.inc(3);
+        assertEquals("# TYPE application_my_counter_total counter\n"
+                + "# HELP application_my_counter_total Counts\n"
+                + "application_my_counter_total{a=\"b\"} 3\n",
+                export(null, (exporter, metricName) -> exporter.exportCounter(counter, metricName, "Counts")));
+    }
+
+    @Test
+    public void templateIsReusedWithCurrentValues() {
+        CounterImpl counter = new CounterImpl();
+        Template[] template = new Template[1];
+        String first = export(null, (exporter, metricName) -> {
+            exporter.exportCounter(counter, metricName, "Counts");
+            template[0] = exporter.getRenderedTemplate(metadata);
+        });
+        assertNotNull(template[0]);
+        assertTrue(template[0].isRenderedWith(metadata));
+        counter.inc(42);
+        String second = export(template[0], (exporter, metricName) -> {
+            // the cached text wins over whatever name and description are given
+            exporter.exportCounter(counter, "ignored", "ignored");
+            assertNull(exporter.getRenderedTemplate(metadata));
+        });
+        assertEquals(first.replace("} 0\n", "} 42\n"), second);
+    }
+
+    @Test
+    public void timerQuantilesHaveTags() {
+        TimerImpl timer = new TimerImpl();
+        timer.update(1_000_000_000L, TimeUnit.NANOSECONDS);
+        String output = export(null, (exporter, metricName) -> exporter.exportTimer(timer, metricName, "", "nanoseconds"));
+        assertTrue(output, output.contains("# TYPE application_my_counter_seconds summary\n"));
+        assertTrue(output, output.contains("application_my_counter_seconds_count{a=\"b\"} 1\n"));
+        assertTrue(output, output.contains("application_my_counter_seconds{a=\"b\",quantile=\"0.99\"} 1.0\n"));
+        assertTrue(output, output.contains("application_my_counter_max_seconds{a=\"b\"} 1.0\n"));
+    }
+
+    private String export(Template template, BiConsumer<PrometheusExporter, String> export) {
+        StringWriter output = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(output)) {
+            export.accept(new PrometheusExporter(writer, metricID, template), "application_my.counter");
+        }
+        return output.toString();
+    }
+}
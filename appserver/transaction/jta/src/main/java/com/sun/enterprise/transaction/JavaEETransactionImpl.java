@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 package com.sun.enterprise.transaction;
 
 import com.sun.enterprise.transaction.api.JavaEETransaction;
@@ -54,8 +54,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -107,8 +106,8 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
     private TransactionalResource nonXAResource;
     private TransactionalResource laoResource;
     private int localTxStatus;
-    private final Vector syncs = new Vector();
-    private final Vector interposedSyncs = new Vector();
+    private final List<Synchronization> syncs = new CopyOnWriteArrayList<>();
+    private final List<Synchronization> interposedSyncs = new CopyOnWriteArrayList<>();
     private boolean commitStarted = false;
     // START 4662745
     private final long startTime;
@@ -138,7 +137,7 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
     // tx-specific ejb container info associated with this tx
     private Object containerData = null;
 
-    private ScheduledFuture<?> scheduledTimeoutFuture;
+    private TransactionTimeoutWheel.Timeout scheduledTimeout;
 
     JavaEETransactionImpl(JavaEETransactionManager javaEETM) {
         this.javaEETM = javaEETM;
@@ -166,8 +165,8 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
         imported = true;
     }
 
-    void setScheduledTimeoutFuture(ScheduledFuture<?> scheduledTimeoutFuture) {
-        this.scheduledTimeoutFuture = scheduledTimeoutFuture;
+    void setScheduledTimeout(TransactionTimeoutWheel.Timeout scheduledTimeout) {
+        this.scheduledTimeout = scheduledTimeout;
     }
 
     // START: local transaction timeout
@@ -205,11 +204,9 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
     }
 
     private void cancel() {
-        if (scheduledTimeoutFuture != null) {
-            if(!scheduledTimeoutFuture.isCancelled() && !scheduledTimeoutFuture.isDone()) {
-                scheduledTimeoutFuture.cancel(false);
-            }
-            scheduledTimeoutFuture = null;
+        if (scheduledTimeout != null) {
+            scheduledTimeout.cancel();
+            scheduledTimeout = null;
         }
     }
 
@@ -391,12 +388,12 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
         if ( !commitStarted ) {
             // register syncs
             for ( int i=0; i<syncs.size(); i++ ) {
-                jtsTx.registerSynchronization((Synchronization)syncs.elementAt(i));
+                jtsTx.registerSynchronization(syncs.get(i));
             }
 
             for ( int i=0; i<interposedSyncs.size(); i++ ) {
                 jtsTx.registerInterposedSynchronization(
-                        (Synchronization)interposedSyncs.elementAt(i));
+                        interposedSyncs.get(i));
             }
         }
 
@@ -476,7 +473,7 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
                 // call beforeCompletion
                 for ( int i=0; i<syncs.size(); i++ ) {
                     try {
-                        Synchronization sync = (Synchronization)syncs.elementAt(i);
+                        Synchronization sync = syncs.get(i);
                         sync.beforeCompletion();
                     } catch ( RuntimeException ex ) {
                         _logger.log(Level.WARNING, "enterprise_distributedtx.before_completion_excep", ex);
@@ -492,7 +489,7 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
 
                 for ( int i=0; i<interposedSyncs.size(); i++ ) {
                     try {
-                        Synchronization sync = (Synchronization)interposedSyncs.elementAt(i);
+                        Synchronization sync = interposedSyncs.get(i);
                         sync.beforeCompletion();
                     } catch ( RuntimeException ex ) {
                         _logger.log(Level.WARNING, "enterprise_distributedtx.before_completion_excep", ex);
@@ -573,7 +570,7 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
                 ((JavaEETransactionManagerSimplified) javaEETM).clearThreadTx();
                 for ( int i=0; i<interposedSyncs.size(); i++ ) {
                     try {
-                        Synchronization sync = (Synchronization)interposedSyncs.elementAt(i);
+                        Synchronization sync = interposedSyncs.get(i);
                         sync.afterCompletion(localTxStatus);
                     } catch ( Exception ex ) {
                         _logger.log(Level.WARNING, "enterprise_distributedtx.after_completion_excep", ex);
@@ -583,7 +580,7 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
                 // call afterCompletions
                 for ( int i=0; i<syncs.size(); i++ ) {
                     try {
-                        Synchronization sync = (Synchronization)syncs.elementAt(i);
+                        Synchronization sync = syncs.get(i);
                         sync.afterCompletion(localTxStatus);
                     } catch ( Exception ex ) {
                         _logger.log(Level.WARNING, "enterprise_distributedtx.after_completion_excep", ex);
@@ -639,7 +636,7 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
             if ( jtsTx == null ) {
                 for ( int i=0; i<interposedSyncs.size(); i++ ) {
                     try {
-                        Synchronization sync = (Synchronization)interposedSyncs.elementAt(i);
+                        Synchronization sync = interposedSyncs.get(i);
                         sync.afterCompletion(Status.STATUS_ROLLEDBACK);
                     } catch ( Exception ex ) {
                         _logger.log(Level.WARNING, "enterprise_distributedtx.after_completion_excep", ex);
@@ -649,7 +646,7 @@ public final class JavaEETransactionImpl implements Runnable, JavaEETransaction
                 // call afterCompletions
                 for ( int i=0; i<syncs.size(); i++ ) {
                     try {
-                        Synchronization sync = (Synchronization)syncs.elementAt(i);
+                        Synchronization sync = syncs.get(i);
                         sync.afterCompletion(Status.STATUS_ROLLEDBACK);
                     } catch ( Exception ex ) {
                         _logger.log(Level.WARNING, "enterprise_distributedtx.after_completion_excep", ex);
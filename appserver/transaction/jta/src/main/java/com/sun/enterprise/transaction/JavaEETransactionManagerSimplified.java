@@ -38,7 +38,7 @@
  * holder.
  */
 
-// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates.]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates.]
 
 package com.sun.enterprise.transaction;
 
@@ -87,7 +87,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -140,7 +139,8 @@ public class JavaEETransactionManagerSimplified
 
     // admin and monitoring related parameters
     private  static final Map<Integer, String> statusMap = new HashMap<>();
-    private final List<Transaction> activeTransactions = Collections.synchronizedList(new ArrayList<>());
+    // Keyed by the transaction itself, whose equals and hashCode are based on its id
+    private final Set<Transaction> activeTransactions = ConcurrentHashMap.newKeySet();
     private boolean monitoringEnabled = false;
     private ScheduledFuture<?> statisticsMonitoringFuture;
 
@@ -151,10 +151,6 @@ public class JavaEETransactionManagerSimplified
 
     private final ScheduledThreadPoolExecutor scheduledTransactionManagerExecutor;
 
-    private final AtomicLong scheduledTransactionTimeouts = new AtomicLong(0);
-    private volatile long scheduledTransactionTimeoutsAtLastPurge = 0;
-    private ScheduledFuture<?> purgeScheduledTransactionsFuture;
-
     static {
         statusMap.put(Status.STATUS_ACTIVE, "Active");
         statusMap.put(Status.STATUS_MARKED_ROLLBACK, "MarkedRollback");
@@ -174,22 +170,7 @@ public class JavaEETransactionManagerSimplified
         transactions = new ThreadLocal<>();
         localCallCounter = new ThreadLocal<>();
         delegates = new ThreadLocal<>();
-        scheduledTransactionManagerExecutor = new ScheduledThreadPoolExecutor(
-            Math.min(Runtime.getRuntime().availableProcessors(), 3)
-        );
-        if (getPurgeCancelledTtransactionsAfter() > 0) {
-            purgeScheduledTransactionsFuture = scheduledTransactionManagerExecutor.scheduleAtFixedRate(
-                    this::purgeCancelledTransactionTimeouts, 5, 5, TimeUnit.SECONDS
-            );
-        }
-    }
-
-    private void purgeCancelledTransactionTimeouts() {
-        long currentTransactionTimeouts = scheduledTransactionTimeouts.get();
-        if(currentTransactionTimeouts - scheduledTransactionTimeoutsAtLastPurge >= getPurgeCancelledTtransactionsAfter()) {
-            scheduledTransactionTimeoutsAtLastPurge = currentTransactionTimeouts;
-            scheduledTransactionManagerExecutor.purge();
-        }
+        scheduledTransactionManagerExecutor = new ScheduledThreadPoolExecutor(1);
     }
 
     @Override
@@ -339,9 +320,6 @@ public class JavaEETransactionManagerSimplified
         if (statisticsMonitoringFuture != null) {
             statisticsMonitoringFuture.cancel(false);
         }
-        if (purgeScheduledTransactionsFuture != null) {
-            purgeScheduledTransactionsFuture.cancel(false);
-        }
         scheduledTransactionManagerExecutor.shutdown();
     }
 
@@ -653,9 +631,7 @@ public class JavaEETransactionManagerSimplified
         // Do not need to use injection.
         if (timeout > 0) {
             tx = new JavaEETransactionImpl(timeout, this);
-            ScheduledFuture<?> scheduledFuture = scheduledTransactionManagerExecutor.schedule(tx, timeout, TimeUnit.SECONDS);
-            tx.setScheduledTimeoutFuture(scheduledFuture);
-            scheduledTransactionTimeouts.incrementAndGet();
+            tx.setScheduledTimeout(TransactionTimeoutWheel.getDefault().schedule(tx, timeout, TimeUnit.SECONDS));
         } else {
             tx = new JavaEETransactionImpl(this);
         }
@@ -1147,6 +1123,10 @@ public class JavaEETransactionManagerSimplified
     /**
      * Modify the value to be used to purge transaction tasks after the
      * specified number of cancelled tasks.
+     * <p>
+     * Transaction timeouts are now armed on the {@link TransactionTimeoutWheel},
+     * which unlinks cancelled timeouts on its next tick, so the value is kept
+     * for configuration compatibility only.
      */
     @Override
     public void setPurgeCancelledTtransactionsAfter(int num) {
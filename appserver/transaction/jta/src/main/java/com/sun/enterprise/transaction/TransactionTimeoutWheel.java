@@ -0,0 +1,369 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.enterprise.transaction;
+
+import com.sun.logging.LogDomains;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timing wheel for transaction timeouts, shared by the JTA and JTS
+ * transaction managers.
+ * <p>
+ * Arming and cancelling a timeout only add it to a lock-free queue, so neither
+ * contends on a shared lock nor has to find its place in an ordered queue. The
+ * single wheel thread links newly armed timeouts into the bucket of the tick in
+ * which they expire, unlinks cancelled ones and fires the bucket of the current
+ * tick. A timeout further away than one revolution of the wheel stays in its
+ * bucket for the remaining number of rounds.
+ * <p>
+ * Expired tasks run on the wheel thread, so they should only mark the transaction
+ * for rollback or hand work off rather than block.
+ */
+public final class TransactionTimeoutWheel {
+
+    private static final Logger LOGGER = LogDomains.getLogger(TransactionTimeoutWheel.class, LogDomains.JTA_LOGGER);
+
+    static final long DEFAULT_TICK_MILLIS = 100;
+    static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /** Upper bound of armed timeouts moved into the wheel per tick, so expiry is not starved. */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private static final int INIT = 0;
+    private static final int STARTED = 1;
+    private static final int STOPPED = 2;
+
+    private static final AtomicIntegerFieldUpdater<TransactionTimeoutWheel> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(TransactionTimeoutWheel.class, "state");
+
+    private static final TransactionTimeoutWheel DEFAULT =
+            new TransactionTimeoutWheel(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private final Queue<Timeout> armed = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private volatile int state = INIT;
+
+    // Only accessed by the wheel thread
+    private long tick;
+
+    /**
+     * @return the wheel shared by all transaction managers in this JVM, whose
+     * thread is started by the first timeout scheduled on it
+     */
+    public static TransactionTimeoutWheel getDefault() {
+        return DEFAULT;
+    }
+
+    TransactionTimeoutWheel(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("wheelSize out of range: " + wheelSize);
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.worker = new Thread(this::run, "Transaction Timeout Thread");
+        worker.setDaemon(true);
+        // to prevent classloader leaks explicitly set context classloader
+        worker.setContextClassLoader(TransactionTimeoutWheel.class.getClassLoader());
+    }
+
+    /**
+     * Arms a timeout which runs the given task once the delay has elapsed, unless it
+     * is cancelled first.
+     *
+     * @param task the task to run on expiry
+     * @param delay the delay after which the task runs
+     * @param unit the unit of the delay
+     * @return the armed timeout
+     * @throws IllegalStateException if the wheel has been stopped
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        start();
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0));
+        Timeout timeout = new Timeout(this, task, deadline);
+        armed.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel thread. Timeouts which have not expired yet never will.
+     */
+    void stop() {
+        if (STATE.getAndSet(this, STOPPED) == STARTED) {
+            worker.interrupt();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void start() {
+        switch (state) {
+            case INIT:
+                if (STATE.compareAndSet(this, INIT, STARTED)) {
+                    worker.start();
+                }
+                break;
+            case STARTED:
+                break;
+            default:
+                throw new IllegalStateException("Transaction timeout wheel has been stopped");
+        }
+    }
+
+    private void run() {
+        tick = (System.nanoTime() - startTime) / tickNanos;
+        while (state == STARTED) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            unlinkCancelled();
+            linkArmed();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /**
+     * Sleeps until the end of the current tick.
+     *
+     * @return false if the wheel was stopped while waiting
+     */
+    private boolean waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long current = System.nanoTime() - startTime;
+            long sleepMillis = TimeUnit.NANOSECONDS.toMillis(deadline - current + 999_999);
+            if (sleepMillis <= 0) {
+                return true;
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                if (state == STOPPED) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void unlinkCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void linkArmed() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = armed.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.state != Timeout.ARMED) {
+                // cancelled before it ever reached the wheel
+                continue;
+            }
+            long expiryTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            // a timeout whose tick has already passed goes into the current bucket
+            wheel[(int) (Math.max(expiryTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private long elapsedNanos() {
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * A timeout armed on the wheel. Only the wheel thread links and unlinks it.
+     */
+    public static final class Timeout {
+
+        private static final int ARMED = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> TIMEOUT_STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TransactionTimeoutWheel timeoutWheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = ARMED;
+
+        long remainingRounds;
+        Timeout next;
+        Timeout prev;
+        Bucket bucket;
+
+        Timeout(TransactionTimeoutWheel timeoutWheel, Runnable task, long deadline) {
+            this.timeoutWheel = timeoutWheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout so that its task does not run.
+         *
+         * @return false if the timeout had already expired or been cancelled
+         */
+        public boolean cancel() {
+            if (!TIMEOUT_STATE.compareAndSet(this, ARMED, CANCELLED)) {
+                return false;
+            }
+            timeoutWheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        /**
+         * @param unit the unit of the result
+         * @return the time left until the timeout expires, zero if it is already due
+         */
+        public long getRemaining(TimeUnit unit) {
+            return unit.convert(Math.max(deadline - timeoutWheel.elapsedNanos(), 0), TimeUnit.NANOSECONDS);
+        }
+
+        void expire() {
+            if (!TIMEOUT_STATE.compareAndSet(this, ARMED, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "Transaction timeout task " + task + " failed", t);
+            }
+        }
+    }
+
+    /**
+     * The doubly linked list of timeouts which fall into one slot of the wheel.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
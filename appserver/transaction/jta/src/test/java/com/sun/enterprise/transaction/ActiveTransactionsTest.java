@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.enterprise.transaction;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.Synchronization;
+
+import com.sun.enterprise.transaction.api.TransactionAdminBean;
+import com.sun.enterprise.transaction.monitoring.TransactionServiceProbeProvider;
+import com.sun.enterprise.transaction.spi.JavaEETransactionManagerDelegate;
+
+import org.glassfish.api.invocation.InvocationManagerImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the registry of active transactions kept for monitoring and the order in
+ * which synchronizations are called when several threads begin and complete
+ * transactions at the same time.
+ */
+public class ActiveTransactionsTest {
+
+    private static final int THREADS = 8;
+
+    private JavaEETransactionManagerSimplified tm;
+
+    @Before
+    public void setUp() throws Exception {
+        tm = new JavaEETransactionManagerSimplified();
+        JavaEETransactionManagerDelegate delegate = new JavaEETransactionManagerSimplifiedDelegate();
+        tm.setDelegate(delegate);
+        delegate.setTransactionManager(tm);
+        tm.invMgr = new InvocationManagerImpl();
+
+        Field monitor = JavaEETransactionManagerSimplified.class.getDeclaredField("monitor");
+        monitor.setAccessible(true);
+        monitor.set(tm, new TransactionServiceProbeProvider());
+        tm.setMonitoringEnabled(true);
+    }
+
+    @Test
+    public void concurrentTransactionsAreRegisteredAndRemoved() throws Exception {
+        CyclicBarrier begun = new CyclicBarrier(THREADS + 1);
+        CyclicBarrier listed = new CyclicBarrier(THREADS + 1);
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            boolean commit = i % 2 == 0;
+            threads.add(start(() -> {
+                tm.begin();
+                begun.await(10, TimeUnit.SECONDS);
+                listed.await(10, TimeUnit.SECONDS);
+                if (commit) {
+                    tm.commit();
+                } else {
+                    tm.rollback();
+                }
+                // churn on the registry while the others complete
+                for (int j = 0; j < 200; j++) {
+                    tm.begin();
+                    if (j % 2 == 0) {
+                        tm.commit();
+                    } else {
+                        tm.rollback();
+                    }
+                }
+            }, failures));
+        }
+
+        begun.await(10, TimeUnit.SECONDS);
+        List<TransactionAdminBean> active = tm.getActiveTransactions();
+        listed.await(10, TimeUnit.SECONDS);
+        join(threads);
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(THREADS, active.size());
+        Set<String> ids = new HashSet<>();
+        for (TransactionAdminBean bean : active) {
+            ids.add(bean.getId());
+        }
+        assertEquals("transactions share an id", THREADS, ids.size());
+        assertTrue(tm.getActiveTransactions().isEmpty());
+    }
+
+    @Test
+    public void synchronizationsAreCalledInOrderDuringCompletion() throws Exception {
+        List<String> calls = new ArrayList<>();
+        tm.begin();
+        JavaEETransactionImpl tx = (JavaEETransactionImpl) tm.getTransaction();
+        tx.registerSynchronization(new RecordingSync("s1", calls) {
+            @Override
+            public void beforeCompletion() {
+                super.beforeCompletion();
+                try {
+                    // registered while the list is being walked
+                    tx.registerSynchronization(new RecordingSync("s3", calls));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        tx.registerSynchronization(new RecordingSync("s2", calls));
+        tx.registerInterposedSynchronization(new RecordingSync("i1", calls));
+
+        tm.commit();
+
+        assertEquals(Arrays.asList(
+                "before s1", "before s2", "before s3", "before i1",
+                "after i1", "after s1", "after s2", "after s3"), calls);
+        assertTrue(tm.getActiveTransactions().isEmpty());
+    }
+
+    @Test
+    public void synchronizationsOfConcurrentTransactionsAreNotMixed() throws Exception {
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            String name = "t" + i;
+            threads.add(start(() -> {
+                for (int j = 0; j < 100; j++) {
+                    List<String> calls = new ArrayList<>();
+                    tm.begin();
+                    JavaEETransactionImpl tx = (JavaEETransactionImpl) tm.getTransaction();
+                    tx.registerSynchronization(new RecordingSync(name + "a", calls));
+                    tx.registerInterposedSynchronization(new RecordingSync(name + "i", calls));
+                    tx.registerSynchronization(new RecordingSync(name + "b", calls));
+                    tm.commit();
+                    List<String> expected = Arrays.asList("before " + name + "a", "before " + name + "b",
+                            "before " + name + "i", "after " + name + "i", "after " + name + "a",
+                            "after " + name + "b");
+                    if (!expected.equals(calls)) {
+                        throw new AssertionError(calls.toString());
+                    }
+                }
+            }, failures));
+        }
+        join(threads);
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertTrue(tm.getActiveTransactions().isEmpty());
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    private static Thread start(Action action, List<Throwable> failures) {
+        Thread thread = new Thread(() -> {
+            try {
+                action.run();
+            } catch (Throwable e) {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void join(List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join(30000);
+            assertFalse("thread did not finish", thread.isAlive());
+        }
+    }
+
+    private static class RecordingSync implements Synchronization {
+
+        private final String name;
+        private final List<String> calls;
+
+        RecordingSync(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            calls.add("before " + name);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            calls.add("after " + name);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.transaction;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionTimeoutWheelTest {
+
+    private TransactionTimeoutWheel wheel;
+
+    @Before
+    public void setUp() {
+        // 8 slots of 10ms, so anything over 80ms needs more than one round
+        wheel = new TransactionTimeoutWheel(10, 8);
+    }
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void timeoutExpiresAfterDelay() throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        TransactionTimeoutWheel.Timeout timeout = wheel.schedule(expired::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void timeoutLongerThanOneRevolutionWaitsForItsRound() throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.schedule(expired::countDown, 250, TimeUnit.MILLISECONDS);
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+    }
+
+    @Test
+    public void cancelledTimeoutNeverExpires() throws InterruptedException {
+        AtomicInteger fired = new AtomicInteger();
+        CountDownLatch marker = new CountDownLatch(1);
+        TransactionTimeoutWheel.Timeout timeout = wheel.schedule(fired::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+        wheel.schedule(marker::countDown, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(marker.await(5, TimeUnit.SECONDS));
+        assertEquals(0, fired.get());
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    public void manyTimeoutsFromConcurrentThreads() throws InterruptedException {
+        int threads = 4;
+        int perThread = 1000;
+        AtomicInteger fired = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads * perThread / 2);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    TransactionTimeoutWheel.Timeout timeout = wheel.schedule(() -> {
+                        fired.incrementAndGet();
+                        done.countDown();
+                    }, i % 200, TimeUnit.MILLISECONDS);
+                    if (i % 2 == 0) {
+                        timeout.cancel();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // give any wrongly surviving cancelled timeout the chance to fire
+        Thread.sleep(250);
+        assertEquals(threads * perThread / 2, fired.get());
+    }
+
+    @Test
+    public void remainingTimeCountsDown() {
+        TransactionTimeoutWheel.Timeout timeout = wheel.schedule(() -> { }, 10, TimeUnit.SECONDS);
+        long remaining = timeout.getRemaining(TimeUnit.MILLISECONDS);
+        assertTrue(remaining > 9000 && remaining <= 10000);
+        timeout.cancel();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void scheduleAfterStopFails() {
+        wheel.schedule(() -> { }, 1, TimeUnit.SECONDS);
+        wheel.stop();
+        wheel.schedule(() -> { }, 1, TimeUnit.SECONDS);
+    }
+}
@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 //----------------------------------------------------------------------------
 //
@@ -222,6 +223,27 @@ public class Configuration extends Object {
      */
     public final static String TIMEOUT_INTERVAL = "com.sun.jts.timeoutInterval" ;
 
+    /**The property key used to specify whether forced log writes should be
+     * coalesced by a group commit writer. Concurrent commits then share a single
+     * sync of the transaction log instead of each paying for its own.
+     * <p>
+     * The value is <em><b>com.sun.jts.groupCommit</b></em>.
+     * <p>
+     * The default is false, which forces the log on every forced write.
+     */
+    public final static String GROUP_COMMIT = "com.sun.jts.groupCommit"/*#Frozen*/;
+
+    /**The property key used to specify, in microseconds, how long the group commit
+     * writer waits for further commits to join a batch before forcing the log.
+     * <p>
+     * The value is <em><b>com.sun.jts.groupCommitWindow</b></em>.
+     * <p>
+     * The default is zero, in which case a batch is made up of the commits that
+     * arrived while the previous sync was in progress. Values above 10000 are
+     * treated as 10000.
+     */
+    public final static String GROUP_COMMIT_WINDOW = "com.sun.jts.groupCommitWindow"/*#Frozen*/;
+
     /**The default subdirectory in which log and repository files are stored.
      */
     public final static String JTS_SUBDIRECTORY = "jts"/*#Frozen*/;
@@ -37,6 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+// Portions Copyright [2020] Payara Foundation and/or affiliates
 
 //----------------------------------------------------------------------------
 //
@@ -113,6 +114,10 @@ class LogFile {
      */
     LogHandle handle = null;
 
+    /**The writer which coalesces forced writes, or null if group commit is off.
+     */
+    LogGroupCommitter groupCommitter = null;
+
     /**LogFile constructor.
      *
      * @param LogHandle
@@ -127,6 +132,23 @@ class LogFile {
 
         this.handle = handle;
 
+        // Start the group commit writer if forced writes are to be coalesced.
+
+        String groupCommit = Configuration.getPropertyValue(Configuration.GROUP_COMMIT);
+        if( groupCommit != null && groupCommit.equalsIgnoreCase("true"/*#Frozen*/) ) {
+            long window = 0;
+            String windowValue = Configuration.getPropertyValue(Configuration.GROUP_COMMIT_WINDOW);
+            if( windowValue != null ) {
+                try {
+                    window = Long.parseLong(windowValue);
+                } catch( NumberFormatException e ) {
+                    window = 0;
+                }
+            }
+            groupCommitter = new LogGroupCommitter(handle,window);
+            groupCommitter.start();
+        }
+
     }
 
     /**Writes a log record to the physical log.
@@ -139,6 +161,10 @@ class LogFile {
      * <p>
      * Returns true if the write completed successfully and false if the write
      * did not complete.
+     * <p>
+     * With group commit enabled a forced record is only buffered while the log is
+     * locked; the caller then waits outside the lock until the group commit writer
+     * has forced the batch containing it.
      *
      * @param writeType   Forced/non-forced write indicator.
      * @param record      Log record data.
@@ -149,21 +175,30 @@ class LogFile {
      *
      * @see
      */
-    synchronized boolean write( int    writeType,
-                                byte[] record,
-                                int    recordType,
-                                LogLSN recordLSN ) {
+    boolean write( int    writeType,
+                   byte[] record,
+                   int    recordType,
+                   LogLSN recordLSN ) {
 
         boolean result = true;
+        long sequence = 0;
 
         // Write the record.
         // Set the result based on return code from log write.
 
         try {
-            LogLSN resultLSN = handle.writeRecord(record,recordType,
-                                                  (writeType==LogFile.FORCED ? LogHandle.FORCE : LogHandle.BUFFER));
-            if( recordLSN != null )
-                recordLSN.copy(resultLSN);
+            synchronized( this ) {
+                boolean forced = writeType == LogFile.FORCED && groupCommitter == null;
+                LogLSN resultLSN = handle.writeRecord(record,recordType,
+                                                      (forced ? LogHandle.FORCE : LogHandle.BUFFER));
+                if( writeType == LogFile.FORCED && groupCommitter != null )
+                    sequence = handle.writeSequence;
+                if( recordLSN != null )
+                    recordLSN.copy(resultLSN);
+            }
+
+            if( sequence > 0 )
+                groupCommitter.awaitDurable(sequence);
         } catch( LogException le ) {
 			_logger.log(Level.SEVERE,"jts.log_error",le.toString());
 			 String msg = LogFormatter.getLocalizedMessage(_logger,"jts.log_error",
@@ -275,6 +310,13 @@ class LogFile {
 
         boolean result = true;
 
+        // Stop the group commit writer before the log underneath it is closed.
+
+        if( groupCommitter != null ) {
+            groupCommitter.close();
+            groupCommitter = null;
+        }
+
         // Call to close the physical log.
 
         try {
@@ -0,0 +1,191 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+
+package com.sun.jts.CosTransactions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.logging.LogDomains;
+
+/**Coalesces the forced writes of concurrent transactions into a single log sync.
+ * <p>
+ * When group commit is enabled, LogFile only buffers forced records and then
+ * waits here until the record is durable. This thread picks up every outstanding
+ * request, optionally waits for a short batching window so that more commits can
+ * join, and forces the log once for the whole batch.
+ *
+ * @see Configuration#GROUP_COMMIT
+ */
+class LogGroupCommitter extends Thread {
+
+    /**Upper bound for the batching window, so that a bad setting cannot stall
+     * every commit in the server.
+     */
+    final static long MAX_WINDOW_MICROS = 10000;
+
+    static Logger _logger = LogDomains.getLogger(LogGroupCommitter.class, LogDomains.TRANSACTION_LOGGER);
+
+    private final LogHandle handle;
+    private final long windowNanos;
+
+    // All guarded by this object's monitor.
+    private long requestedSequence = 0;
+    private long durableSequence = 0;
+    private long failedSequence = 0;
+    private LogException failure = null;
+    private boolean closed = false;
+
+    /**Creates the writer thread for the given log handle.
+     *
+     * @param handle        The handle whose buffered records are forced.
+     * @param windowMicros  How long to wait for further requests before forcing.
+     */
+    LogGroupCommitter( LogHandle handle, long windowMicros ) {
+        this.handle = handle;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, Math.min(windowMicros, MAX_WINDOW_MICROS)));
+        setName("JTS Log Group Commit Thread"/*#Frozen*/);
+        setDaemon(true);
+    }
+
+    /**Blocks until the record with the given write sequence number is on disk.
+     * <p>
+     * The wait is not interruptible, as a transaction must not proceed before its
+     * log record is durable; the interrupt status is restored on return.
+     *
+     * @param sequence  The write sequence of the buffered record.
+     *
+     * @exception LogException The batch containing the record could not be forced.
+     */
+    void awaitDurable( long sequence ) throws LogException {
+
+        synchronized( this ) {
+            if( !closed ) {
+                if( sequence > requestedSequence ) {
+                    requestedSequence = sequence;
+                    notifyAll();
+                }
+
+                boolean interrupted = false;
+                try {
+                    while( sequence > durableSequence ) {
+                        if( sequence <= failedSequence )
+                            throw new LogException(LogException.LOG_ERROR_FORCING_LOG, 15,
+                                    failure.getMessage(), failure);
+                        try {
+                            wait();
+                        } catch( InterruptedException e ) {
+                            interrupted = true;
+                        }
+                    }
+                } finally {
+                    if( interrupted )
+                        Thread.currentThread().interrupt();
+                }
+                return;
+            }
+        }
+
+        // The writer has been shut down, so force the log directly.
+
+        handle.force();
+    }
+
+    /**Stops the writer once all outstanding requests have been forced.
+     */
+    void close() {
+
+        synchronized( this ) {
+            closed = true;
+            notifyAll();
+        }
+
+        try {
+            join();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while( true ) {
+            synchronized( this ) {
+                while( !hasPendingRequests() && !closed ) {
+                    try {
+                        wait();
+                    } catch( InterruptedException e ) {
+                        // Only close() stops the writer.
+                    }
+                }
+                if( !hasPendingRequests() )
+                    return;
+            }
+
+            // Let further commits join the batch before paying for the sync.
+
+            if( windowNanos > 0 )
+                LockSupport.parkNanos(windowNanos);
+
+            try {
+                long forced = handle.force();
+                synchronized( this ) {
+                    if( forced > durableSequence )
+                        durableSequence = forced;
+                    notifyAll();
+                }
+            } catch( LogException le ) {
+                _logger.log(Level.SEVERE,"jts.log_error",le.toString());
+                synchronized( this ) {
+                    failure = le;
+                    failedSequence = requestedSequence;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private boolean hasPendingRequests() {
+        return requestedSequence > durableSequence && requestedSequence > failedSequence;
+    }
+}
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2018] [Payara Foundation]
+// Portions Copyright [2018-2020] [Payara Foundation]
 
 //----------------------------------------------------------------------------
 //
@@ -229,6 +229,7 @@ class LogHandle {
     int                  recordsWritten = 0;
     int                  chunkRemaining = 0;
     int                  activeRestartVersion = 0;
+    long                 writeSequence = 0;
     LogUpcallTarget      upcallTarget = null;
     ArrayList            cursors = null;
     boolean              cushionExists = false;
@@ -565,20 +566,8 @@ class LogHandle {
         //       Set 'extent written' flag to FALSE
         //   ENDLOOP
 
-        if( writeMode == FORCE ) {
-            Enumeration extents = extentTable.elements();
-            while( extents.hasMoreElements() ) {
-                LogExtent nextEDP = (LogExtent)extents.nextElement();
-                if( nextEDP.writtenSinceLastForce )
-                    try {
-                        nextEDP.fileHandle.fileSync();
-                        nextEDP.writtenSinceLastForce = false;
-                    } catch (LogException le) {
-                        throw new LogException(LogException.LOG_ERROR_FORCING_LOG, 14,
-                                sm.getString("jts.log_file_sync_failed"), le);
-                    }
-            }
-        }
+        if( writeMode == FORCE )
+            forceExtents();
 
         // Update the head LSN and 'next free' LSN in the Log_FileDescriptor
         // block
@@ -589,6 +578,7 @@ class LogHandle {
         // Increment the RecordsWritten counter in Log_FileDescriptor block
 
         recordsWritten++;
+        writeSequence++;
 
         // IF RecordsWritten = LOG_CONTROL_FORCE_INTERVAL or LOG_FORCE was specified
         //   Write the Log_ControlDescriptor structure (embedded in the
@@ -614,6 +604,57 @@ class LogHandle {
         return result;
     }
 
+    /**Forces all records buffered since the last force to disk.
+     * <p>
+     * This is used by the group commit writer to make a whole batch of buffered
+     * records durable with one sync. Records written while the sync is in progress
+     * cannot slip in, as writeRecord is synchronized on this handle as well.
+     *
+     * @return  The write sequence number of the last record made durable.
+     *
+     * @exception LogException The force failed.
+     *
+     * @see
+     */
+    synchronized long force() throws LogException {
+
+        if( blockValid != this )
+            throw new LogException(null,LogException.LOG_INVALID_FILE_DESCRIPTOR,1);
+
+        if( !logControl.logInitialised )
+            throw new LogException(null,LogException.LOG_NOT_INITIALISED,2);
+
+        forceExtents();
+
+        return writeSequence;
+    }
+
+    /**Issues a sync for every extent which has been written since the last force.
+     *
+     * @exception LogException The sync failed.
+     */
+    private void forceExtents() throws LogException {
+
+        // LOOP through each extent chain in the hash table
+        //   IF 'extent written' flag is TRUE
+        //     Issue FSYNC for extent file descriptor
+        //     Set 'extent written' flag to FALSE
+        // ENDLOOP
+
+        Enumeration extents = extentTable.elements();
+        while( extents.hasMoreElements() ) {
+            LogExtent nextEDP = (LogExtent)extents.nextElement();
+            if( nextEDP.writtenSinceLastForce )
+                try {
+                    nextEDP.fileHandle.fileSync();
+                    nextEDP.writtenSinceLastForce = false;
+                } catch (LogException le) {
+                    throw new LogException(LogException.LOG_ERROR_FORCING_LOG, 14,
+                            sm.getString("jts.log_file_sync_failed"), le);
+                }
+        }
+    }
+
     /**Reads a record from the log.
      *
      * @param readLSN  The LSN of the record to be read.
@@ -59,12 +59,19 @@
 //   This software contains confidential and proprietary information of
 //   IBM Corp.
 //----------------------------------------------------------------------------
-//Portions Copyright [2016] [Payara Foundation]
+//Portions Copyright [2016-2020] [Payara Foundation]
 package com.sun.jts.CosTransactions;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.omg.CosTransactions.*;
+import com.sun.enterprise.transaction.TransactionTimeoutWheel;
 import com.sun.jts.jtsxa.XID;
 
 
@@ -73,8 +80,11 @@ import java.util.logging.Level;
 import com.sun.logging.LogDomains;
 
 /**
- * This class records state for timing out transactions, and runs a thread
- * which performs occasional checks to time out transactions.
+ * This class records state for timing out transactions. Each timeout is armed
+ * on the shared transaction timeout wheel, which calls back when it expires.
+ * The Coordinator of an expired transaction is dealt with on a separate pool
+ * of threads, as that locks the Coordinator and may involve remote calls that
+ * must not hold up the wheel.
  *
  * @version 0.01
  *
@@ -104,12 +114,23 @@ class TimeoutManager {
      */
     private static boolean initialised = false;
 
-    private static Hashtable     pendingTimeouts = new Hashtable();
-    private static Hashtable     indoubtTimeouts = new Hashtable();
-    private static TimeoutThread timeoutThread = null;
-    private static boolean       timeoutActive = false;
-    private static boolean       quiescing = false;
-    private static boolean       isSetTimeout = false;
+    private static final Map<Long, TimeoutInfo> pendingTimeouts = new ConcurrentHashMap<>();
+    private static final Map<Long, TimeoutInfo> indoubtTimeouts = new ConcurrentHashMap<>();
+    private static volatile boolean timeoutActive = false;
+    private static volatile boolean quiescing = false;
+
+    /**
+     * The interval in milliseconds after which a timed out transaction that is
+     * still around is timed out again, as the periodic scan used to do.
+     */
+    private static int retryInterval = -1;
+
+    /**
+     * The number of threads that time out Coordinators concurrently.
+     */
+    private static final int EXPIRY_THREADS = 4;
+
+    private static volatile ExecutorService expiryExecutor;
 
 	/*
 		Logger to log transaction messages
@@ -134,26 +155,26 @@ class TimeoutManager {
 
         initialised = true;
 
-        // Start the timeout thread.
+        // Timeouts are armed on the shared wheel, whose thread is started
+        // by the first timeout.
 
-        if (!timeoutActive && timeoutThread == null) {
-           //  timeoutThread = new TimeoutThread();
-           //  timeoutThread.start();
-            timeoutActive = true;
-        }
+        timeoutActive = true;
     }
 
-
-    static synchronized void initSetTimeout() {
-	if (isSetTimeout)
-	   return;
-        isSetTimeout = true;
-        
-        // to prevent classloader explicitly set context classloader
-        
-        timeoutThread = new TimeoutThread();
-        timeoutThread.setContextClassLoader(timeoutThread.getClass().getClassLoader());
-        timeoutThread.start();
+    private static int getRetryInterval() {
+        if (retryInterval < 0) {
+            int interval = 10000;
+            try {
+                String timeoutInterval = Configuration.getPropertyValue(Configuration.TIMEOUT_INTERVAL);
+                if (timeoutInterval != null) {
+                    interval = Math.max(Integer.parseInt(timeoutInterval) * 1000, 10000);
+                }
+            } catch (Exception e) {
+                interval = 10000;
+            }
+            retryInterval = interval;
+        }
+        return retryInterval;
     }
 
     /**
@@ -181,55 +202,38 @@ class TimeoutManager {
 
         if (timeoutActive) {
 
-            TimeoutInfo timeoutInfo = null;
-
             switch (timeoutType) {
 
             // If the new type is active or in_doubt, then create a
-            // new TimeoutInfo if necessary, and set up the type and interval.
+            // new TimeoutInfo, replacing and cancelling any previous one,
+            // and arm it on the wheel.
 
             case TimeoutManager.ACTIVE_TIMEOUT :
-		 if (!isSetTimeout) {
-		     initSetTimeout();
-                 }
-                 timeoutInfo = new TimeoutInfo();
-                 timeoutInfo.expireTime  =
-                    new Date().getTime() + seconds * 1000L;
-                 timeoutInfo.localTID    = localTID;
-                 timeoutInfo.timeoutType = timeoutType;
-                 pendingTimeouts.put(localTID,timeoutInfo);
-                 break;
+                arm(pendingTimeouts, localTID, timeoutType, seconds);
+                break;
             case TimeoutManager.IN_DOUBT_TIMEOUT :
-		 if (!isSetTimeout) {
-		     initSetTimeout();
-		     // isSetTimeout = true;
-                 }
-                timeoutInfo = new TimeoutInfo();
-                timeoutInfo.expireTime  =
-                    new Date().getTime() + seconds * 1000L;
-                timeoutInfo.localTID    = localTID;
-                timeoutInfo.timeoutType = timeoutType;
-                indoubtTimeouts.put(localTID,timeoutInfo);
+                arm(indoubtTimeouts, localTID, timeoutType, seconds);
                 break;
 
             // For any other type, remove the timeout if there is one.
 
             default:
-		if (!isSetTimeout)
-		  break;
-                   result = (pendingTimeouts.remove(localTID) != null);
-		   if (!result)
-                      result = (indoubtTimeouts.remove(localTID) != null);
-
-                    // If the transaction service is quiescing and
-                    // there are no more pending timeouts,
-                    // deactivate timeout and stop the timeout thread.
-
-                    if (quiescing && pendingTimeouts.isEmpty() && indoubtTimeouts.isEmpty()) {
-                        timeoutThread.stop();
-                        timeoutActive = false;
-                        // pendingTimeouts = null;
-                    }
+                TimeoutInfo removed = pendingTimeouts.remove(localTID);
+                if (removed == null) {
+                    removed = indoubtTimeouts.remove(localTID);
+                }
+                result = removed != null;
+                if (result) {
+                    removed.cancel();
+                }
+
+                // If the transaction service is quiescing and
+                // there are no more pending timeouts,
+                // deactivate timeout.
+
+                if (quiescing && pendingTimeouts.isEmpty() && indoubtTimeouts.isEmpty()) {
+                    timeoutActive = false;
+                }
                 break;
             }
         } else {
@@ -240,6 +244,80 @@ class TimeoutManager {
         return result;
     }
 
+    private static void arm(Map<Long, TimeoutInfo> timeouts, Long localTID,
+                            int timeoutType, int seconds) {
+        TimeoutInfo timeoutInfo = new TimeoutInfo();
+        timeoutInfo.expireTime  = System.currentTimeMillis() + seconds * 1000L;
+        timeoutInfo.localTID    = localTID;
+        timeoutInfo.timeoutType = timeoutType;
+        TimeoutInfo previous = timeouts.put(localTID, timeoutInfo);
+        if (previous != null) {
+            previous.cancel();
+        }
+        timeoutInfo.timeout = TransactionTimeoutWheel.getDefault().schedule(
+                () -> expire(timeouts, timeoutInfo), seconds, TimeUnit.SECONDS);
+    }
+
+    private static ExecutorService getExpiryExecutor() {
+        ExecutorService executor = expiryExecutor;
+        if (executor == null) {
+            synchronized (TimeoutManager.class) {
+                executor = expiryExecutor;
+                if (executor == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(EXPIRY_THREADS, EXPIRY_THREADS,
+                            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+                                Thread thread = new Thread(task, "JTS Timeout Thread-" + threadCount.incrementAndGet());
+                                thread.setDaemon(true);
+                                // to prevent classloader leaks explicitly set context classloader
+                                thread.setContextClassLoader(TimeoutManager.class.getClassLoader());
+                                return thread;
+                            });
+                    pool.allowCoreThreadTimeOut(true);
+                    expiryExecutor = executor = pool;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Called on the timeout wheel thread when a timeout expires. Only checks
+     * that the timeout is still registered and hands the transaction over to
+     * the expiry threads.
+     */
+    private static void expire(Map<Long, TimeoutInfo> timeouts, TimeoutInfo timeoutInfo) {
+        if (!timeoutActive || timeouts.get(timeoutInfo.localTID) != timeoutInfo) {
+            return;
+        }
+
+        getExpiryExecutor().execute(() -> timeoutExpired(timeouts, timeoutInfo));
+    }
+
+    /**
+     * Deals with the Coordinator of an expired transaction.
+     * <p>
+     * If the timeout is still registered once the Coordinator has been dealt
+     * with, for example because the outcome of an in-doubt transaction is not
+     * known yet, it is armed again so that the transaction is retried.
+     */
+    private static void timeoutExpired(Map<Long, TimeoutInfo> timeouts, TimeoutInfo timeoutInfo) {
+        if (!timeoutActive || timeouts.get(timeoutInfo.localTID) != timeoutInfo) {
+            return;
+        }
+
+        try {
+            timeoutCoordinator(timeoutInfo.localTID, timeoutInfo.timeoutType);
+        } catch (RuntimeException ex) {
+            _logger.log(Level.WARNING, "Failed to time out transaction " + timeoutInfo.localTID, ex);
+        }
+
+        if (timeoutActive && timeouts.get(timeoutInfo.localTID) == timeoutInfo) {
+            timeoutInfo.timeout = TransactionTimeoutWheel.getDefault().schedule(
+                    () -> expire(timeouts, timeoutInfo), getRetryInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
     /**
      * Takes appropriate action for a timeout.
      * <p>
@@ -361,115 +439,14 @@ class TimeoutManager {
         }
     }
 
-    /**
-     * Periodically checks the existing timeouts.
-     * <p>
-     * This is done to discover if any transactions have overrun their allotted
-     * time.  Those which have are returned as an Enumeration.
-     * <p>
-     * Note that this method should not do anything that will cause a
-     * synchronized method in the RecoveryManager to be called, as this could
-     * cause a deadlock when RecoveryManager methods on other threads call
-     * setTimeout.
-     *
-     * @param
-     *
-     * @return  The information for transactions which have timed out.
-     *
-     * @see
-     */
-     static Enumeration checkTimeouts() {
-        if (!isSetTimeout)
-           return null;
-
-        Enumeration result = null;
-
-        // When woken up, go through all current timeouts and identify those
-        // which have expired.
-
-        if (timeoutActive && ((pendingTimeouts.size() != 0) || (indoubtTimeouts.size() != 0))) {
-            Vector timedOut = null;
-
-            Enumeration timeouts = null;
-          
-            synchronized (pendingTimeouts) {
-                timeouts = pendingTimeouts.elements();
-
-                while (timeouts.hasMoreElements()) {
-
-                    TimeoutInfo timeoutInfo = (TimeoutInfo)timeouts.nextElement();
-
-                    // For each timeout in the list, check whether it has expired.
-                    // If so, look up the Coordinator and roll it back.
-
-                    if (new Date().getTime() > timeoutInfo.expireTime) {
-
-                       // Add the TimeoutInfo to the queue of
-                       //those that have timed out.
-
-                       if (timedOut == null) {
-                           timedOut = new Vector();
-                       }
-
-                       timedOut.addElement(timeoutInfo);
-                    }
-               }
-            }
-
-	    synchronized (indoubtTimeouts) {
-
-                timeouts = indoubtTimeouts.elements();
-
-                while (timeouts.hasMoreElements()) {
-
-                    TimeoutInfo timeoutInfo = (TimeoutInfo)timeouts.nextElement();
-
-                    // For each timeout in the list, check whether it has expired.
-                    // If so, look up the Coordinator and roll it back.
-
-                    if (new Date().getTime() > timeoutInfo.expireTime) {
-
-                       // Add the TimeoutInfo to the queue of
-                       //those that have timed out.
-
-                       if (timedOut == null) {
-                           timedOut = new Vector();
-                       }
-
-                       timedOut.addElement(timeoutInfo);
-                    }
-                }
-
-            }
-            // Enumerate the transactions which have timed out.
-
-            if (timedOut != null) {
-                result = timedOut.elements();
-            }
-           }
-
-        // The remainder of the timeout processing is not carried out here
-        // because we would get deadlocked with addCoordinator or
-        // removeCoordinator that also update the timeout list.  Hence the
-        // returned enumeration, which may be processed with
-        // no concurrency control.
-
-        return result;
-    }
-
     /**
      * @return a set of in-doubt transaction ids.
      */
     static XID[] getInDoubtXids() {
         
-       synchronized (indoubtTimeouts) {
         Vector inDoubtList = new Vector();
-        
-        Enumeration timeouts = indoubtTimeouts.elements();
-
-        while (timeouts.hasMoreElements()) {
 
-            TimeoutInfo timeoutInfo = (TimeoutInfo) timeouts.nextElement();
+        for (TimeoutInfo timeoutInfo : indoubtTimeouts.values()) {
 
             // Look up the Coordinator for the transaction.
             // If there is none, then the transaction has already gone.
@@ -486,7 +463,6 @@ class TimeoutManager {
         }
         
         return (XID[]) inDoubtList.toArray(new XID[] {});
-       }
     }
 
     /**
@@ -502,12 +478,12 @@ class TimeoutManager {
      */
     static long timeLeft(Long localTID) {
 
-        TimeoutInfo timeoutInfo = (TimeoutInfo) pendingTimeouts.get(localTID);
+        TimeoutInfo timeoutInfo = pendingTimeouts.get(localTID);
         if (timeoutInfo == null)
-            timeoutInfo = (TimeoutInfo) indoubtTimeouts.get(localTID);
+            timeoutInfo = indoubtTimeouts.get(localTID);
         long result = -1;
         if (timeoutInfo != null) {
-            result = timeoutInfo.expireTime - new Date().getTime();
+            result = timeoutInfo.expireTime - System.currentTimeMillis();
             if (result < 0) {
                 result = 0;
             }
@@ -532,24 +508,17 @@ class TimeoutManager {
      */
     static void shutdown(boolean immediate) {
 
-        // For immediate, kill the timeout thread and throw
+        // For immediate, cancel all timeouts and throw
         // away all information. Also, if there are no pending
         // timeouts, there is nothing to quiesce so
         // shutdown immediately regardless.
 
-        if (immediate ||
-                pendingTimeouts == null || pendingTimeouts.isEmpty()) {
-            if (timeoutThread != null) {
-                timeoutThread.stop();
-            }
-
-            if (pendingTimeouts != null) {
-                pendingTimeouts.clear();
-            }
-
-            pendingTimeouts = null;
-            timeoutThread = null;
+        if (immediate || pendingTimeouts.isEmpty()) {
             timeoutActive = false;
+            for (TimeoutInfo timeoutInfo : pendingTimeouts.values()) {
+                timeoutInfo.cancel();
+            }
+            pendingTimeouts.clear();
         } else {
             quiescing = true;
         }
@@ -620,106 +589,12 @@ class TimeoutInfo extends Object {
     Long localTID = null;
     long expireTime = 0;
     int  timeoutType = TimeoutManager.NO_TIMEOUT;
-}
+    volatile TransactionTimeoutWheel.Timeout timeout = null;
 
-/**
- * This class represents a thread on which the TimeoutManager can perform
- * timeout checking.
- *
- * @version 0.01
- *
- * @author Simon Holdsworth, IBM Corporation
- *
- * @see
- */
-
-//----------------------------------------------------------------------------
-// CHANGE HISTORY
-//
-// Version By     Change Description
-//   0.01  SAJH   Initial implementation.
-//----------------------------------------------------------------------------
-
-class TimeoutThread extends Thread {
-
-    private int TIMEOUT_INTERVAL ;
-
-    static Logger _logger = LogDomains.getLogger(TimeoutThread.class, LogDomains.TRANSACTION_LOGGER);
-    /**
-     * TimeoutThread constructor.
-     * <p>
-     * This sets the thread name, and sets the thread to be a daemon thread so
-     * that it does not prevent the process from terminating.
-     *
-     * @param
-     *
-     * @return
-     *
-     * @see
-     */
-    TimeoutThread() {
-        setName("JTS Timeout Thread"/*#Frozen*/);
-        setDaemon(true);
-        try{
-            String timeout_interval = Configuration.getPropertyValue(Configuration.TIMEOUT_INTERVAL);
-            if(timeout_interval!=null){
-                TIMEOUT_INTERVAL= Integer.parseInt(timeout_interval);
-		TIMEOUT_INTERVAL*=1000;
-                if(TIMEOUT_INTERVAL<10000)
-                    TIMEOUT_INTERVAL=10000;
-            }
-            else{
-                TIMEOUT_INTERVAL=10000;
-            }
-        }catch(Exception e){
-            TIMEOUT_INTERVAL=10000;
-        }
-    }
-
-    /**
-     * Performs timeout checking on a regular basis (every ten seconds or so).
-     *
-     * @param
-     *
-     * @return
-     *
-     * @see
-     */
-    public void run() {
-        try {
-            while (true) {
-
-                // Sleep for a while between checks.
-
-                Thread.sleep(TIMEOUT_INTERVAL);
-
-                // Perform timeout checks, getting a list of timed-out
-                // transactions.
-
-                Enumeration timedOut = TimeoutManager.checkTimeouts();
-
-                // Now we must go through the list, telling each
-                // timed-out Coordinator to do something appropriate.
-
-                if (timedOut != null) {
-                    while (timedOut.hasMoreElements()) {
-                        TimeoutInfo timeoutInfo =
-                            (TimeoutInfo) timedOut.nextElement();
-
-                        // Look up the Coordinator and tell it to roll back
-                        // if it still exists. Note that we rely on the
-                        // Coordinator calling removeCoordinator when it
-                        // has finished, which will remove the timeout from 
-                        // the list, and remove other associations as well.
-
-                        TimeoutManager.
-                            timeoutCoordinator(timeoutInfo.localTID,
-                                               timeoutInfo.timeoutType);
-                    }
-                }
-            }
-        } catch (InterruptedException exc) {
-			_logger.log(Level.INFO,"jts.time_out_thread_stopped");
+    void cancel() {
+        TransactionTimeoutWheel.Timeout current = timeout;
+        if (current != null) {
+            current.cancel();
         }
     }
 }
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.jts.CosTransactions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the group commit of forced log records by {@link LogGroupCommitter} and
+ * {@link LogHandle#force()}, with the extent files replaced by handles that only
+ * count their syncs.
+ */
+public class LogGroupCommitterTest {
+
+    private LogHandle handle;
+    private CountingFileHandle extent;
+    private LogGroupCommitter committer;
+
+    @Before
+    public void setUp() throws Exception {
+        LogControl control = new LogControl();
+        control.logInitialised = true;
+        handle = new LogHandle(control, "test", null, null);
+        extent = new CountingFileHandle(handle);
+        handle.extentTable.put(0, new LogExtent(0, extent, null));
+        committer = new LogGroupCommitter(handle, 0);
+        committer.start();
+    }
+
+    @After
+    public void tearDown() {
+        extent.gate.countDown();
+        committer.close();
+    }
+
+    @Test
+    public void forceSyncsWrittenExtentsOnly() throws Exception {
+        CountingFileHandle unwritten = new CountingFileHandle(handle);
+        handle.extentTable.put(1, new LogExtent(1, unwritten, null));
+
+        write();
+        assertEquals(2, write());
+        assertEquals(2, handle.force());
+        assertEquals(1, extent.syncs.get());
+        assertEquals(0, unwritten.syncs.get());
+
+        // nothing was written since
+        assertEquals(2, handle.force());
+        assertEquals(1, extent.syncs.get());
+    }
+
+    @Test
+    public void forceFailsWhenLogIsNotInitialised() throws Exception {
+        handle.logControl.logInitialised = false;
+        try {
+            handle.force();
+            fail("expected the force to fail");
+        } catch (LogException expected) {
+            assertEquals(LogException.LOG_NOT_INITIALISED, expected.errorCode);
+        }
+    }
+
+    @Test
+    public void concurrentForcesShareOneSync() throws Exception {
+        int writers = 8;
+        for (int i = 0; i < writers; i++) {
+            write();
+        }
+
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 1; i <= writers; i++) {
+            long sequence = i;
+            threads.add(start(() -> committer.awaitDurable(sequence), failures));
+        }
+        join(threads);
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(1, extent.syncs.get());
+        assertEquals(writers, extent.syncedSequence);
+    }
+
+    @Test
+    public void callerWaitsUntilItsRecordIsSynced() throws Exception {
+        extent.gate = new CountDownLatch(1);
+        long sequence = write();
+        List<Throwable> failures = new ArrayList<>();
+        Thread waiter = start(() -> committer.awaitDurable(sequence), failures);
+
+        assertTrue(extent.syncStarted.await(10, SECONDS));
+        waiter.join(200);
+        assertTrue("returned before the sync completed", waiter.isAlive());
+
+        extent.gate.countDown();
+        join(waiter);
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(1, extent.syncs.get());
+
+        // a record written after that sync needs another one
+        committer.awaitDurable(write());
+        assertEquals(2, extent.syncs.get());
+    }
+
+    @Test
+    public void everyCallerSeesItsOwnRecordSynced() throws Exception {
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(start(() -> {
+                for (int j = 0; j < 50; j++) {
+                    long sequence = write();
+                    committer.awaitDurable(sequence);
+                    long synced = extent.syncedSequence;
+                    if (synced < sequence) {
+                        throw new AssertionError("record " + sequence + " returned after a sync up to " + synced);
+                    }
+                }
+            }, failures));
+        }
+        join(threads);
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(400, extent.syncedSequence);
+        assertTrue(extent.syncs.get() <= 400);
+    }
+
+    @Test
+    public void failedSyncFailsTheWaitersOfItsBatch() throws Exception {
+        extent.failure = new LogException(null, LogException.LOG_WRITE_FAILURE, 1);
+        try {
+            committer.awaitDurable(write());
+            fail("expected the force to fail");
+        } catch (LogException expected) {
+            assertEquals(LogException.LOG_ERROR_FORCING_LOG, expected.errorCode);
+        }
+
+        // the next batch is forced again once the log recovers
+        extent.failure = null;
+        long sequence = write();
+        committer.awaitDurable(sequence);
+        assertEquals(sequence, extent.syncedSequence);
+    }
+
+    @Test
+    public void closedCommitterForcesDirectly() throws Exception {
+        committer.close();
+        long sequence = write();
+        committer.awaitDurable(sequence);
+        assertEquals(1, extent.syncs.get());
+        assertEquals(sequence, extent.syncedSequence);
+        assertFalse(committer.isAlive());
+    }
+
+    /**
+     * Stands in for LogHandle.writeRecord buffering a record in the extent.
+     */
+    private long write() {
+        synchronized (handle) {
+            ((LogExtent) handle.extentTable.get(0)).writtenSinceLastForce = true;
+            return ++handle.writeSequence;
+        }
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    private static Thread start(Action action, List<Throwable> failures) {
+        Thread thread = new Thread(() -> {
+            try {
+                action.run();
+            } catch (Throwable e) {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void join(Thread thread) throws InterruptedException {
+        thread.join(10000);
+        assertFalse("thread did not finish", thread.isAlive());
+    }
+
+    private static void join(List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            join(thread);
+        }
+    }
+
+    private static final class CountingFileHandle extends LogFileHandle {
+
+        private final LogHandle handle;
+        final AtomicInteger syncs = new AtomicInteger();
+        final CountDownLatch syncStarted = new CountDownLatch(1);
+        volatile CountDownLatch gate = new CountDownLatch(0);
+        volatile LogException failure;
+        volatile long syncedSequence;
+
+        CountingFileHandle(LogHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        void fileSync() throws LogException {
+            assertTrue("synced without holding the handle lock", Thread.holdsLock(handle));
+            syncStarted.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            syncs.incrementAndGet();
+            syncedSequence = handle.writeSequence;
+        }
+    }
+}
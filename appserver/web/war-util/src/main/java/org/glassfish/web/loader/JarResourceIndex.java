@@ -0,0 +1,220 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.web.loader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of the directories contained in the JARs of a {@link WebappClassLoader}, so that finding a class or resource
+ * only looks in the JARs that have an entry in its directory instead of probing every JAR in turn.
+ * <p>
+ * The directories of a JAR are read once when it is added. If an index directory is set, they are also written there
+ * and read back the next time the same, unmodified, JAR is added.
+ * <p>
+ * This class is not thread safe, access is guarded by {@link WebappClassLoader#jarFilesLock}.
+ */
+class JarResourceIndex {
+
+    private static final Logger logger = LogFacade.getLogger();
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int[] NO_JARS = new int[0];
+
+    /**
+     * Positions of the JARs, in search order, keyed by directory
+     */
+    private final Map<String, int[]> jarsByDirectory = new HashMap<>();
+
+    private int jarCount;
+
+    private File indexDir;
+
+    /**
+     * Sets the directory used to persist the index of each JAR, {@code null} disables persisting.
+     */
+    void setIndexDir(File indexDir) {
+        this.indexDir = indexDir;
+    }
+
+    /**
+     * Adds the next JAR to the index. JARs must be added in the same order as they are searched.
+     *
+     * @param jarFile the opened JAR
+     * @param file the JAR file on disk
+     */
+    void add(JarFile jarFile, File file) {
+        int position = jarCount++;
+        for (String directory : getDirectories(jarFile, file)) {
+            int[] jars = jarsByDirectory.get(directory);
+            if (jars == null) {
+                jars = new int[] { position };
+            } else {
+                jars = Arrays.copyOf(jars, jars.length + 1);
+                jars[jars.length - 1] = position;
+            }
+            jarsByDirectory.put(directory, jars);
+        }
+    }
+
+    /**
+     * Returns the positions of the JARs that may contain the given entry, in search order.
+     *
+     * @param path the JAR entry name
+     * @return the JAR positions, never {@code null}
+     */
+    int[] getJars(String path) {
+        return jarsByDirectory.getOrDefault(getDirectory(path), NO_JARS);
+    }
+
+    void clear() {
+        jarsByDirectory.clear();
+        jarCount = 0;
+    }
+
+    /**
+     * The directory of a JAR entry, a directory entry belongs to its parent directory.
+     */
+    static String getDirectory(String path) {
+        int end = path.endsWith("/") ? path.length() - 1 : path.length();
+        return path.substring(0, path.lastIndexOf('/', end - 1) + 1);
+    }
+
+    private Set<String> getDirectories(JarFile jarFile, File file) {
+        File indexFile = getIndexFile(file);
+        if (indexFile != null && indexFile.isFile()) {
+            try {
+                return readIndex(indexFile, file);
+            } catch (IOException e) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.log(Level.FINE, "Failed to read JAR index " + indexFile, e);
+                }
+            }
+        }
+
+        Set<String> directories = new LinkedHashSet<>();
+        for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+            directories.add(getDirectory(entries.nextElement().getName()));
+        }
+
+        if (indexFile != null) {
+            try {
+                writeIndex(indexFile, file, directories);
+            } catch (IOException e) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.log(Level.FINE, "Failed to write JAR index " + indexFile, e);
+                }
+            }
+        }
+        return directories;
+    }
+
+    private File getIndexFile(File file) {
+        if (indexDir == null) {
+            return null;
+        }
+        String path = file.getAbsolutePath();
+        return new File(indexDir, file.getName() + "." + Integer.toHexString(path.hashCode()) + ".idx");
+    }
+
+    private static Set<String> readIndex(File indexFile, File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != FORMAT_VERSION
+                    || !in.readUTF().equals(file.getAbsolutePath())
+                    || in.readLong() != file.length()
+                    || in.readLong() != file.lastModified()) {
+                throw new IOException("JAR index is out of date");
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt JAR index");
+            }
+            Set<String> directories = new LinkedHashSet<>();
+            for (int i = 0; i < count; i++) {
+                directories.add(in.readUTF());
+            }
+            return Collections.unmodifiableSet(directories);
+        }
+    }
+
+    private static void writeIndex(File indexFile, File file, Set<String> directories) throws IOException {
+        File dir = indexFile.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+        File tempFile = new File(dir, indexFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(file.getAbsolutePath());
+            out.writeLong(file.length());
+            out.writeLong(file.lastModified());
+            out.writeInt(directories.size());
+            for (String directory : directories) {
+                out.writeUTF(directory);
+            }
+        }
+        if (!tempFile.renameTo(indexFile)) {
+            indexFile.delete();
+            if (!tempFile.renameTo(indexFile)) {
+                tempFile.delete();
+                throw new IOException("Unable to rename " + tempFile + " to " + indexFile);
+            }
+        }
+    }
+}
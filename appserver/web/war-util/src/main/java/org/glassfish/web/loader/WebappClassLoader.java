@@ -186,6 +186,11 @@ public class WebappClassLoader
 
     private static final String META_INF_SERVICES = "META-INF/services/";
 
+    static {
+        // loading is locked per class name rather than on the whole loader
+        ClassLoader.registerAsParallelCapable();
+    }
+
 
     // ----------------------------------------------------- Instance Variables
 
@@ -265,6 +270,13 @@ public class WebappClassLoader
      */
     protected final Object jarFilesLock = new Object();
 
+
+    /**
+     * The directories of the JAR files, to find which JARs may contain a
+     * resource without probing each of them. Guarded by jarFilesLock.
+     */
+    private final JarResourceIndex jarIndex = new JarResourceIndex();
+
     /**
      * The list of JARs, in the order they should be searched
      * for locally loaded classes or resources.
@@ -565,7 +577,9 @@ public class WebappClassLoader
         Class clazz = null;
         if (!this.resourceEntries.containsKey(name)) {
             definePackage(name, entry);
-            clazz = defineLoadedClass(name, entry);
+            synchronized (getClassLoadingLock(name)) {
+                clazz = defineLoadedClass(name, entry);
+            }
             this.resourceEntries.put(name, entry);
             for (Map.Entry<String, GeneratedResourceEntry> e : entry.generatedResources.entrySet()) {
                 String generatedClassName = e.getKey();
@@ -777,6 +791,10 @@ public class WebappClassLoader
      */
     public void setWorkDir(File workDir) {
         this.loaderDir = new File(workDir, "loader_" + this.hashCode());
+        synchronized (jarFilesLock) {
+            // kept across restarts, unlike the loader directory
+            jarIndex.setIndexDir(new File(workDir, "jar-index"));
+        }
         try {
             canonicalLoaderDir = this.loaderDir.getCanonicalPath();
             if (!canonicalLoaderDir.endsWith(File.separator)) {
@@ -962,6 +980,8 @@ public class WebappClassLoader
             }
             result4[jarRealFiles.length] = file;
             jarRealFiles = result4;
+
+            jarIndex.add(jarFile, file);
         }
     }
 
@@ -1134,7 +1154,7 @@ public class WebappClassLoader
             try {
                 ResourceEntry entry = findClassInternal(name);
 
-                synchronized (this) {
+                synchronized (getClassLoadingLock(name)) {
                     if (entry.loadedClass == null) {
                         clazz = defineLoadedClass(name, entry);
                     } else {
@@ -1611,7 +1631,15 @@ public class WebappClassLoader
      * @exception ClassNotFoundException if the class was not found
      */
     @Override
-    protected synchronized Class<?> loadClass(String name, boolean resolve)
+    protected Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+
+        synchronized (getClassLoadingLock(name)) {
+            return loadClassInternal(name, resolve);
+        }
+    }
+
+    private Class<?> loadClassInternal(String name, boolean resolve)
         throws ClassNotFoundException {
 
         if (logger.isLoggable(Level.FINER)) {
@@ -1958,6 +1986,7 @@ public class WebappClassLoader
             files = null;
             jarFiles = null;
             jarRealFiles = null;
+            jarIndex.clear();
             jarPath = null;
             jarNames.clear();
             lastModifiedDates = null;
@@ -2665,7 +2694,7 @@ public class WebappClassLoader
             throw new ClassNotFoundException(name);
         }
 
-        synchronized (this) {
+        synchronized (getClassLoadingLock(name)) {
             Class<?> clazz = entry.loadedClass;
             if (clazz != null) {
                 return entry;
@@ -2853,9 +2882,10 @@ public class WebappClassLoader
             return null;
         }
 
-        int jarFilesLength = jarFiles.length;
+        int[] candidateJars = jarIndex.getJars(path);
 
-        for (int i=0; (entry == null) && (i < jarFilesLength); i++) {
+        for (int c=0; (entry == null) && (c < candidateJars.length); c++) {
+            int i = candidateJars[c];
             jarEntry = jarFiles[i].getJarEntry(path);
 
             if (jarEntry != null) {
@@ -3081,7 +3111,7 @@ public class WebappClassLoader
 
         ResourceEntry entry = resourceEntries.get(name);
         if (entry != null) {
-            synchronized(this) {
+            synchronized(getClassLoadingLock(name)) {
                 return entry.loadedClass;
             }
         }
@@ -3417,7 +3447,10 @@ public class WebappClassLoader
 
     }
 
-    private synchronized Class<?> defineLoadedClass(String name, ResourceEntry entry) {
+    /**
+     * Must be called holding the class loading lock for the given name.
+     */
+    private Class<?> defineLoadedClass(String name, ResourceEntry entry) {
         Class<?> clazz;
         // Create the code source object
         CodeSource codeSource
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.web.loader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarResourceIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void directoryOfEntries() {
+        assertEquals("", JarResourceIndex.getDirectory("index.html"));
+        assertEquals("", JarResourceIndex.getDirectory("META-INF/"));
+        assertEquals("META-INF/", JarResourceIndex.getDirectory("META-INF/MANIFEST.MF"));
+        assertEquals("org/foo/", JarResourceIndex.getDirectory("org/foo/Bar.class"));
+        assertEquals("org/", JarResourceIndex.getDirectory("org/foo/"));
+        assertEquals("org/", JarResourceIndex.getDirectory("org/foo"));
+    }
+
+    @Test
+    public void onlyJarsWithEntriesInTheDirectoryAreCandidates() throws IOException {
+        File first = createJar("first.jar", "org/foo/A.class", "META-INF/services/x");
+        File second = createJar("second.jar", "org/bar/B.class");
+        File third = createJar("third.jar", "org/foo/C.class", "org/bar/D.class");
+
+        JarResourceIndex index = new JarResourceIndex();
+        add(index, first);
+        add(index, second);
+        add(index, third);
+
+        assertArrayEquals(new int[] { 0, 2 }, index.getJars("org/foo/Missing.class"));
+        assertArrayEquals(new int[] { 1, 2 }, index.getJars("org/bar/B.class"));
+        assertArrayEquals(new int[] { 0 }, index.getJars("META-INF/services/x"));
+        assertArrayEquals(new int[0], index.getJars("com/other/E.class"));
+
+        index.clear();
+        assertArrayEquals(new int[0], index.getJars("org/foo/A.class"));
+        add(index, second);
+        assertArrayEquals(new int[] { 0 }, index.getJars("org/bar/B.class"));
+    }
+
+    @Test
+    public void persistedIndexIsReusedUntilTheJarChanges() throws IOException {
+        File indexDir = new File(folder.getRoot(), "jar-index");
+        File jar = createJar("lib.jar", "org/foo/A.class");
+
+        JarResourceIndex index = new JarResourceIndex();
+        index.setIndexDir(indexDir);
+        add(index, jar);
+        File[] indexFiles = indexDir.listFiles();
+        assertEquals(1, indexFiles.length);
+
+        // a reused index does not need to read the JAR entries
+        JarResourceIndex reloaded = new JarResourceIndex();
+        reloaded.setIndexDir(indexDir);
+        try (JarFile empty = new JarFile(createJar("empty.jar"))) {
+            reloaded.add(empty, jar);
+        }
+        assertArrayEquals(new int[] { 0 }, reloaded.getJars("org/foo/A.class"));
+
+        createJar("lib.jar", "org/bar/B.class");
+        assertTrue(jar.setLastModified(jar.lastModified() + 2000));
+        JarResourceIndex rebuilt = new JarResourceIndex();
+        rebuilt.setIndexDir(indexDir);
+        add(rebuilt, jar);
+        assertArrayEquals(new int[0], rebuilt.getJars("org/foo/A.class"));
+        assertArrayEquals(new int[] { 0 }, rebuilt.getJars("org/bar/B.class"));
+    }
+
+    private static void add(JarResourceIndex index, File file) throws IOException {
+        try (JarFile jarFile = new JarFile(file)) {
+            index.add(jarFile, file);
+        }
+    }
+
+    private File createJar(String name, String... entries) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            for (String entry : entries) {
+                out.putNextEntry(new JarEntry(entry));
+                out.write(1);
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.enterprise.web;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * The access log entries formatted by request threads that wait to be written
+ * by the background writer thread of a {@link PEAccessLogValve}.
+ *
+ * The queue is bounded by the number of characters it holds. An entry that
+ * does not fit is rejected, so the request thread has to write it itself
+ * instead of the queue growing without limit while the writer falls behind.
+ */
+final class AccessLogEntryQueue {
+
+    private final ConcurrentLinkedQueue<String> entries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of characters in <code>entries</code>, including those of
+     * entries that are just being added.
+     */
+    private final AtomicInteger pendingChars = new AtomicInteger();
+
+    /**
+     * The highest number of characters that were waiting to be written.
+     */
+    private final AtomicInteger peakPendingChars = new AtomicInteger();
+
+    /**
+     * The number of entries that were queued.
+     */
+    private final LongAdder queuedEntryCount = new LongAdder();
+
+    /**
+     * The number of entries that were rejected because the queue was full.
+     */
+    private final LongAdder rejectedEntryCount = new LongAdder();
+
+    /**
+     * Adds an entry unless the queue is full. An empty queue accepts any
+     * entry.
+     *
+     * @param entry the formatted entry
+     * @param capacity the maximum number of characters the queue may hold
+     * @return the number of characters waiting including the added entry, or
+     * -1 if the entry was rejected
+     */
+    int offer(String entry, int capacity) {
+        int length = entry.length();
+        int pending;
+        do {
+            pending = pendingChars.get();
+            if (pending > 0 && pending + length > capacity) {
+                rejectedEntryCount.increment();
+                return -1;
+            }
+        } while (!pendingChars.compareAndSet(pending, pending + length));
+        entries.offer(entry);
+        queuedEntryCount.increment();
+        int total = pending + length;
+        peakPendingChars.accumulateAndGet(total, Math::max);
+        return total;
+    }
+
+    /**
+     * Removes all entries from the queue passing them in order to the given
+     * sink.
+     */
+    void drainTo(Consumer<String> sink) {
+        String entry;
+        while ((entry = entries.poll()) != null) {
+            pendingChars.addAndGet(-entry.length());
+            sink.accept(entry);
+        }
+    }
+
+    int getPendingChars() {
+        return pendingChars.get();
+    }
+
+    int getPeakPendingChars() {
+        return peakPendingChars.get();
+    }
+
+    long getQueuedEntryCount() {
+        return queuedEntryCount.sum();
+    }
+
+    long getRejectedEntryCount() {
+        return rejectedEntryCount.sum();
+    }
+}
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.enterprise.web;
 
@@ -49,6 +49,7 @@ import com.sun.enterprise.web.accesslog.CommonAccessLogFormatterImpl;
 import com.sun.enterprise.web.accesslog.DefaultAccessLogFormatterImpl;
 import com.sun.enterprise.web.pluggable.WebContainerFeatureFactory;
 import com.sun.enterprise.util.io.FileUtils;
+import fish.payara.nucleus.executorservice.PayaraExecutorService;
 import org.apache.catalina.*;
 import org.apache.catalina.valves.ValveBase;
 import org.glassfish.api.admin.ServerEnvironment;
@@ -58,17 +59,26 @@ import org.glassfish.web.LogFacade;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.text.FieldPosition;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import org.glassfish.internal.api.Globals;
 import org.glassfish.internal.api.LogManager;
 
 /**
@@ -79,7 +89,9 @@ import org.glassfish.internal.api.LogManager;
  * automatic rollover of log files at a specified interval is also supported.
  *
  * </p>This class uses a direct <code>ByteBuffer</code> to store and write
- * logs.
+ * logs. Each request thread formats its entries into its own buffer. When a
+ * write interval is set, the entries are queued for the background writer
+ * thread, which writes them in batches.
  *
  * @author Jean-Francois Arcand
  * @author Charlie J. Hunt
@@ -116,6 +128,12 @@ public final class PEAccessLogValve
      */
     private final static int MIN_BUFFER_SIZE = 5120;
 
+    /**
+     * The initial size of the buffer each request thread formats its entries
+     * into, it grows up to the buffer size when an entry does not fit.
+     */
+    private final static int INITIAL_ENTRY_BUFFER_SIZE = 512;
+
     /**
      * The minimum size a log file rotation limit can have.
      */
@@ -225,18 +243,58 @@ public final class PEAccessLogValve
     /**
      * The background writerThread.
      */
-    private Thread writerThread = null;
+    private volatile Thread writerThread = null;
 
     /**
      * The background writerThread completion semaphore.
      */
-    private boolean threadDone = false;
+    private volatile boolean threadDone = false;
+
+    /**
+     * Set when a request thread has asked the background writerThread to
+     * write before its interval has elapsed.
+     */
+    private final AtomicBoolean writeRequested = new AtomicBoolean();
 
     /**
      * The <code>CharBuffer</code> used to store the logs.
      */
     private CharBuffer charBuffer;
 
+    /**
+     * The buffer each request thread formats its entries into, so formatting
+     * does not need to hold the lock.
+     */
+    private volatile ThreadLocal<CharBuffer> entryBuffer = null;
+
+    /**
+     * Formatted entries waiting to be written by the background writerThread
+     * when the log is not flushed in real time.
+     */
+    private final AccessLogEntryQueue pendingEntries = new AccessLogEntryQueue();
+
+    /**
+     * How many times the buffer size the entries waiting to be written may
+     * hold before request threads write their entries themselves.
+     */
+    private static final int PENDING_BUFFERS = 16;
+
+    /**
+     * The number of times the background writerThread was woken up early
+     * because the entries waiting to be written exceeded the buffer size.
+     */
+    private final LongAdder earlyWriteCount = new LongAdder();
+
+    /**
+     * The number of writes to the access log file.
+     */
+    private final LongAdder fileWriteCount = new LongAdder();
+
+    /**
+     * Should rotated access log files be gzip compressed?
+     */
+    private boolean compressOnRotation;
+
     /**
      * The <code>byteBuffer</code> used to store the log.
      */
@@ -351,6 +409,66 @@ public final class PEAccessLogValve
         return bufferSize;
     }
 
+    /**
+     * Set whether rotated access log files are gzip compressed
+     */
+    public void setCompressOnRotation(boolean compressOnRotation) {
+        this.compressOnRotation = compressOnRotation;
+    }
+
+    /**
+     * Return whether rotated access log files are gzip compressed
+     */
+    public boolean isCompressOnRotation() {
+        return compressOnRotation;
+    }
+
+    /**
+     * Return the number of entries queued for the background writerThread
+     */
+    public long getQueuedEntryCount() {
+        return pendingEntries.getQueuedEntryCount();
+    }
+
+    /**
+     * Return the number of characters waiting to be written by the
+     * background writerThread
+     */
+    public int getPendingChars() {
+        return pendingEntries.getPendingChars();
+    }
+
+    /**
+     * Return the highest number of characters that were waiting to be
+     * written by the background writerThread
+     */
+    public int getPeakPendingChars() {
+        return pendingEntries.getPeakPendingChars();
+    }
+
+    /**
+     * Return the number of times the background writerThread had to write
+     * before its interval elapsed because the buffer size was exceeded
+     */
+    public long getEarlyWriteCount() {
+        return earlyWriteCount.sum();
+    }
+
+    /**
+     * Return the number of entries request threads had to write themselves
+     * because too many entries were waiting for the background writerThread
+     */
+    public long getOverflowEntryCount() {
+        return pendingEntries.getRejectedEntryCount();
+    }
+
+    /**
+     * Return the number of writes to the access log file
+     */
+    public long getFileWriteCount() {
+        return fileWriteCount.sum();
+    }
+
     // ------------------------------------------------------------- Properties
     /**
      * Are we supposed to add datestamp to first access log file we create,
@@ -571,43 +689,132 @@ public final class PEAccessLogValve
             return;
         }
 
-        synchronized (lock){
-            // Reset properly the buffer in case of an unexpected
-            // exception.
-            if (charBuffer.position() == charBuffer.limit()){
-                charBuffer.limit(charBuffer.capacity());
+        if (formatter == null) {
+            return;
+        }
+
+        CharBuffer entry = formatEntry(request, response);
+        if (entry == null) {
+            return;
+        }
+
+        if (flushRealTime) {
+            synchronized (lock) {
+                append(entry);
             }
+            log();
+            return;
+        }
 
-            int pos = charBuffer.position();
-            // We've flushed our buffer to make room for the current request.
-            // Now process the current request
-            for (int i=0; i < 2; i++){
-                try {
-                    if (formatter!=null) {
-                        formatter.appendLogEntry(request, response, charBuffer);
-                        charBuffer.put("\n");
+        // Hand the entry over to the background writer thread
+        String line = entry.toString();
+        int pending = pendingEntries.offer(line, bufferSize * PENDING_BUFFERS);
+        if (pending < 0) {
+            // The writer thread has fallen behind, write the queued entries
+            // and this one here rather than let the queue grow
+            synchronized (lock) {
+                drainPendingEntries();
+                append(line);
+            }
+            return;
+        }
+        if (pending >= bufferSize && writeRequested.compareAndSet(false, true)) {
+            earlyWriteCount.increment();
+            Thread writer = writerThread;
+            if (writer != null) {
+                LockSupport.unpark(writer);
+            }
+        }
+    }
 
-                        if (flushRealTime){
-                            log();
-                        }
-                        break;
-                    }
-                } catch (BufferOverflowException ex) {
-                    charBuffer.position(pos);
-                    log();
-
-                    if (i+1 == 2){
-                        _logger.log(
-                                Level.SEVERE,
-                                LogFacade.ACCESS_LOG_UNABLE_TO_WRITE,
-                            new Object[] {ex});
-                        return;
-                    }
+    /**
+     * Formats the access log entry of a request into the buffer of the
+     * current thread.
+     *
+     * @return the buffer, ready to be read, or null if the entry could not be
+     * formatted
+     */
+    private CharBuffer formatEntry(Request request, Response response) {
+        CharBuffer buffer = entryBuffer.get();
+        while (true) {
+            buffer.clear();
+            try {
+                formatter.appendLogEntry(request, response, buffer);
+                buffer.put('\n');
+                buffer.flip();
+                return buffer;
+            } catch (BufferOverflowException ex) {
+                if (buffer.capacity() >= bufferSize) {
+                    _logger.log(
+                            Level.SEVERE,
+                            LogFacade.ACCESS_LOG_UNABLE_TO_WRITE,
+                        new Object[] {ex});
+                    return null;
                 }
+                buffer = CharBuffer.allocate(Math.min(buffer.capacity() * 2, bufferSize));
+                entryBuffer.set(buffer);
             }
         }
     }
 
+    /**
+     * Appends text to the <code>CharBuffer</code>, writing the buffer to the
+     * log file first if the text does not fit. Must hold the lock.
+     */
+    private void append(CharSequence text) {
+        if (text.length() > charBuffer.remaining()) {
+            writeBuffer();
+            if (text.length() > charBuffer.remaining()) {
+                write(text.toString());
+                return;
+            }
+        }
+        charBuffer.append(text);
+    }
+
+    /**
+     * Moves the entries queued by request threads to the
+     * <code>CharBuffer</code>. Must hold the lock.
+     */
+    private void drainPendingEntries() {
+        pendingEntries.drainTo(this::append);
+    }
+
+    /**
+     * Writes the <code>CharBuffer</code> to the log file. Must hold the lock.
+     */
+    private void writeBuffer() {
+        try {
+            charBuffer.flip();
+            write(charBuffer.toString());
+        } finally {
+            charBuffer.clear();
+        }
+    }
+
+    /**
+     * Writes text to the log file. Must hold the lock.
+     */
+    private void write(String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        try {
+            if (accessLogToConsole) {
+                logManager.getOutStream().print(text.replaceAll("(?m)^", "AccessLog: "));
+            }
+            ByteBuffer byteBuffer =
+                ByteBuffer.wrap(text.getBytes(Charset.defaultCharset()));
+
+            while (byteBuffer.hasRemaining()){
+                fileChannel.write(byteBuffer);
+            }
+            fileWriteCount.increment();
+        } catch (IOException ex){
+            ;
+        }
+    }
+
     /**
      * Log the specified message to the log file, switching files if the date
      * has changed since the previous log call.
@@ -622,23 +829,8 @@ public final class PEAccessLogValve
         }
 
         synchronized(lock){
-            try{
-                charBuffer.flip();
-                String bufString = charBuffer.toString();
-                if (accessLogToConsole && !bufString.isEmpty()) {
-                    logManager.getOutStream().print(bufString.replaceAll("(?m)^", "AccessLog: "));
-                }
-                ByteBuffer byteBuffer =
-                    ByteBuffer.wrap(bufString.getBytes(Charset.defaultCharset()));
-
-                while (byteBuffer.hasRemaining()){
-                    fileChannel.write(byteBuffer);
-                }
-            } catch (IOException ex){
-                ;
-            } finally {
-                charBuffer.clear();
-            }
+            drainPendingEntries();
+            writeBuffer();
         }
 
         if (rotatable && maximumLogFileSize > 0
@@ -768,6 +960,9 @@ public final class PEAccessLogValve
             }
         }
         
+        setCompressOnRotation(Boolean.parseBoolean(vsBean.getPropertyValue(
+                Constants.ACCESS_LOG_COMPRESS_ON_ROTATION_PROPERTY, "false")));
+
         String acFilePrefix = vsBean.getPropertyValue(Constants.ACCESS_LOG_PREFIX);
         if(acFilePrefix != null && !acFilePrefix.trim().isEmpty() && !"null".equals(acFilePrefix) && !"null".equals(accessLogPrefix)) {
             setPrefix(acFilePrefix + ".");
@@ -934,6 +1129,8 @@ public final class PEAccessLogValve
                     dir.toString());
         }
 
+        File fileToCompress = null;
+
         // Open the current log file
         try {
             String pathname;
@@ -970,6 +1167,10 @@ public final class PEAccessLogValve
                 if (deleteAllHistoryFiles) {
                     removeFile = renameToFile;
                 } else {
+                    if (compressOnRotation) {
+                        fileToCompress = renameToFile;
+                        renameToFile = new File(renameToFile.getPath() + ".gz");
+                    }
                     if (historyFiles != null) {
                         historyFiles.addLast(renameToFile);
                         if (historyFiles.size() > maxHistoryFiles) {
@@ -989,7 +1190,8 @@ public final class PEAccessLogValve
             logFileOutputStream = new FileOutputStream(logFile, true);
             fileChannel = logFileOutputStream.getChannel();
 
-            if (maxHistoryFiles > 0) {
+            // history files are cleaned up once the rotated file is compressed
+            if (maxHistoryFiles > 0 && fileToCompress == null) {
                 synchronized (lock) {
                     cleanUpHistoryLogFiles();
                 }
@@ -1008,6 +1210,9 @@ public final class PEAccessLogValve
             throw ioe;
         }
 
+        if (fileToCompress != null) {
+            compressInBackground(fileToCompress);
+        }
     }
 
     /**
@@ -1097,6 +1302,7 @@ public final class PEAccessLogValve
      */
     private void rotate() {
         if (rotatable) {
+            File fileToCompress = null;
             synchronized (lock) {
                 try {
                     if (!logFile.exists()) {
@@ -1138,7 +1344,10 @@ public final class PEAccessLogValve
                         logFileOutputStream = new FileOutputStream(logFile, true);
                         fileChannel = logFileOutputStream.getChannel();
 
-                        if (maxHistoryFiles > 0) {
+                        if (compressOnRotation) {
+                            // history files are cleaned up once the rotated file is compressed
+                            fileToCompress = rotatedFile;
+                        } else if (maxHistoryFiles > 0) {
                             cleanUpHistoryLogFiles();
                         }
                     }
@@ -1146,9 +1355,62 @@ public final class PEAccessLogValve
                     _logger.log(Level.SEVERE, "Could not rotate the Access log file", ex);
                 }
             }
+            if (fileToCompress != null) {
+                compressInBackground(fileToCompress);
+            }
         }
     }
 
+    /**
+     * Compresses a rotated access log file off the request and writer
+     * threads, so that the valve lock is not held while the file is gzipped.
+     * The history files are cleaned up afterwards, while a file is being
+     * compressed both the plain and the compressed copy exist.
+     */
+    private void compressInBackground(File file) {
+        Runnable compression = () -> {
+            compress(file);
+            cleanUpHistoryLogFiles();
+        };
+        PayaraExecutorService executor = Globals.get(PayaraExecutorService.class);
+        if (executor != null) {
+            try {
+                executor.submit(compression);
+                return;
+            } catch (RejectedExecutionException ex) {
+                _logger.log(Level.FINE, "Compression of the rotated Access log file rejected by the executor", ex);
+            }
+        }
+        Thread compressor = new Thread(compression, "AccessLogCompression");
+        compressor.setDaemon(true);
+        compressor.start();
+    }
+
+    /**
+     * Replaces a rotated access log file by a gzip compressed copy.
+     *
+     * @return the compressed file, or the given file if it could not be
+     * compressed
+     */
+    private File compress(File file) {
+        File compressedFile = new File(file.getPath() + ".gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(compressedFile))) {
+            Files.copy(file.toPath(), out);
+        } catch (IOException ex) {
+            _logger.log(Level.WARNING, "Could not compress the rotated Access log file " + file, ex);
+            if (!compressedFile.delete()) {
+                _logger.log(Level.FINE, "Could not delete {0}", compressedFile);
+            }
+            return file;
+        }
+        if (!file.delete()) {
+            _logger.log(Level.WARNING,
+                    LogFacade.UNABLE_TO_REMOVE_LOG_FILE,
+                    file.toString());
+        }
+        return compressedFile;
+    }
+
     // ------------------------------------------------------ Lifecycle Methods
     /**
      * Add a lifecycle event listener to this component.
@@ -1203,6 +1465,7 @@ public final class PEAccessLogValve
         }
 
         charBuffer = CharBuffer.allocate(bufferSize);
+        entryBuffer = ThreadLocal.withInitial(() -> CharBuffer.allocate(INITIAL_ENTRY_BUFFER_SIZE));
 
         // Initialize the timeZone, Date formatters, and currentDate
         final TimeZone tz = TimeZone.getDefault();
@@ -1271,6 +1534,7 @@ public final class PEAccessLogValve
         // Loop until the termination semaphore is set
         while (!threadDone) {
             threadSleep();
+            writeRequested.set(false);
             try {
                 log();
             } catch (IOException ioe) {
@@ -1282,17 +1546,19 @@ public final class PEAccessLogValve
 
     /**
      * Sleep for the duration specified by the <code>writeInterval</code>
-     * property.
+     * property, or until a request thread asks for the entries to be
+     * written because the buffer size has been exceeded.
      */
     private void threadSleep() {
 
         if (writerThread == null || writeInterval == 0)
             return;
 
-        try {
-            writerThread.sleep(writeInterval * 1000L);
-        } catch (InterruptedException e) {
-            ;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(writeInterval);
+        long remaining;
+        while (!threadDone && !writeRequested.get()
+                && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
         }
 
     }
@@ -209,6 +209,8 @@ import com.sun.enterprise.security.integration.RealmInitializer;
 import com.sun.enterprise.server.logging.LoggingRuntime;
 import com.sun.enterprise.util.Result;
 import com.sun.enterprise.util.StringUtils;
+import fish.payara.monitoring.collect.MonitoringDataCollector;
+import fish.payara.monitoring.collect.MonitoringDataSource;
 import fish.payara.nucleus.hotdeploy.ApplicationState;
 import fish.payara.nucleus.hotdeploy.HotDeployService;
 import com.sun.enterprise.v3.services.impl.ContainerMapper;
@@ -229,7 +231,8 @@ import java.util.Optional;
  */
 @Service(name = "com.sun.enterprise.web.WebContainer")
 @Singleton
-public class WebContainer implements org.glassfish.api.container.Container, PostConstruct, PreDestroy, EventListener {
+public class WebContainer implements org.glassfish.api.container.Container, PostConstruct, PreDestroy, EventListener,
+        MonitoringDataSource {
 
     // -------------------------------------------------- Constants
 
@@ -1428,6 +1431,26 @@ public class WebContainer implements org.glassfish.api.container.Container, Post
                 .collect(toList());
     }
 
+    @Override
+    public void collect(MonitoringDataCollector collector) {
+        if (_embedded == null || _embedded.getEngines().length == 0) {
+            return;
+        }
+        MonitoringDataCollector accessLog = collector.in("accesslog");
+        for (VirtualServer virtualServer : getVirtualServers()) {
+            PEAccessLogValve valve = virtualServer.getAccessLogValve();
+            if (valve != null && valve.isStarted()) {
+                accessLog.group(virtualServer.getName())
+                    .collect("QueuedEntryCount", valve.getQueuedEntryCount())
+                    .collect("PendingChars", valve.getPendingChars())
+                    .collect("PeakPendingChars", valve.getPeakPendingChars())
+                    .collect("OverflowEntryCount", valve.getOverflowEntryCount())
+                    .collect("EarlyWriteCount", valve.getEarlyWriteCount())
+                    .collect("FileWriteCount", valve.getFileWriteCount());
+            }
+        }
+    }
+
     /**
      * Configures a default web module for each virtual server if default-web-module is defined.
      */
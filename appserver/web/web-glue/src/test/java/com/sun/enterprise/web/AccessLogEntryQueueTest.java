@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.web;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class AccessLogEntryQueueTest {
+
+    private final AccessLogEntryQueue queue = new AccessLogEntryQueue();
+
+    @Test
+    public void offerRejectsEntriesBeyondCapacity() {
+        assertEquals(4, queue.offer("abcd", 10));
+        assertEquals(8, queue.offer("efgh", 10));
+        assertEquals(-1, queue.offer("ijkl", 10));
+        assertEquals(8, queue.getPendingChars());
+        assertEquals(2, queue.getQueuedEntryCount());
+        assertEquals(1, queue.getRejectedEntryCount());
+    }
+
+    @Test
+    public void emptyQueueAcceptsEntryLargerThanCapacity() {
+        assertEquals(12, queue.offer("abcdefghijkl", 10));
+        assertEquals(-1, queue.offer("m", 10));
+    }
+
+    @Test
+    public void drainKeepsOrderAndFreesCapacity() {
+        queue.offer("a", 3);
+        queue.offer("b", 3);
+        queue.offer("c", 3);
+        assertEquals(-1, queue.offer("d", 3));
+
+        List<String> drained = new ArrayList<>();
+        queue.drainTo(drained::add);
+
+        assertEquals(asList("a", "b", "c"), drained);
+        assertEquals(0, queue.getPendingChars());
+        assertEquals(3, queue.getPeakPendingChars());
+        assertEquals(1, queue.offer("d", 3));
+    }
+
+    @Test
+    public void concurrentOffersNeverExceedCapacity() throws InterruptedException {
+        int capacity = 1000;
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> offering = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int j = 0; j < 1000; j++) {
+                    if (queue.offer("0123456789", capacity) > 0) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            offering.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : offering) {
+            thread.join();
+        }
+
+        assertEquals(capacity / 10, accepted.get());
+        assertEquals(capacity, queue.getPendingChars());
+        assertEquals(capacity, queue.getPeakPendingChars());
+        assertEquals(threads * 1000 - accepted.get(), queue.getRejectedEntryCount());
+        AtomicInteger drained = new AtomicInteger();
+        queue.drainTo(entry -> drained.incrementAndGet());
+        assertEquals(accepted.get(), drained.get());
+        assertEquals(0, queue.getPendingChars());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.enterprise.util;
+
+/**
+ * The bucket layout of a log-linear histogram, in the spirit of HdrHistogram.
+ * <p>
+ * Values below twice the number of sub buckets get a bucket each. Every power
+ * of two above that is split into {@code 2^subBucketBits} linear sub buckets,
+ * so a value is known to within a relative error of {@code 2^-subBucketBits}
+ * while the whole range of a {@code long} fits into
+ * {@code (64 - subBucketBits) * 2^subBucketBits} buckets.
+ * <p>
+ * The layout only maps values to bucket indexes and back, the counts are kept
+ * by the caller, see {@link LogLinearHistogram} for a ready made one.
+ * Instances are immutable and can be shared.
+ */
+public final class LogLinearBuckets {
+
+    private final int subBucketBits;
+    private final int subBucketCount;
+    private final int bucketCount;
+
+    /**
+     * @param subBucketBits the number of bits of precision kept of each value,
+     * between 1 and 16
+     */
+    public LogLinearBuckets(int subBucketBits) {
+        if (subBucketBits < 1 || subBucketBits > 16) {
+            throw new IllegalArgumentException("subBucketBits must be between 1 and 16: " + subBucketBits);
+        }
+        this.subBucketBits = subBucketBits;
+        this.subBucketCount = 1 << subBucketBits;
+        this.bucketCount = (64 - subBucketBits) * subBucketCount;
+    }
+
+    /**
+     * @return the number of buckets needed to count all non-negative
+     * {@code long} values
+     */
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    /**
+     * @return the number of linear sub buckets each power of two is split into
+     */
+    public int getSubBucketCount() {
+        return subBucketCount;
+    }
+
+    /**
+     * @param value a value, negative values are counted as zero
+     * @return the index of the bucket counting the value
+     */
+    public int indexOf(long value) {
+        if (value < subBucketCount) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - subBucketBits;
+        return (shift + 1) * subBucketCount + (int) ((value >>> shift) & (subBucketCount - 1));
+    }
+
+    /**
+     * @param index a bucket index
+     * @return the smallest value counted by the bucket
+     */
+    public long lowerBound(int index) {
+        if (index < 2 * subBucketCount) {
+            return index;
+        }
+        int shift = index / subBucketCount - 1;
+        return (long) (subBucketCount + index % subBucketCount) << shift;
+    }
+
+    /**
+     * @param index a bucket index
+     * @return the largest value counted by the bucket
+     */
+    public long upperBound(int index) {
+        return index + 1 < bucketCount ? lowerBound(index + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket holding it, so
+     * the estimate is never below the true value.
+     *
+     * @param counts the count of each bucket
+     * @param percentile the percentile, between 0 and 100
+     * @param max the largest value counted, which caps the estimate
+     * @return the estimated value at the percentile, or 0 if nothing was counted
+     */
+    public long valueAtPercentile(long[] counts, double percentile, long max) {
+        long recorded = 0;
+        for (long count : counts) {
+            recorded += count;
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * recorded));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.enterprise.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram counting values in the buckets of a
+ * {@link LogLinearBuckets} layout.
+ * <p>
+ * Recording a value is an atomic increment of its bucket plus updates of the
+ * count, total and maximum, and never allocates. Readers are not blocked by
+ * concurrent recording, so their results may be off by the values recorded
+ * while they read.
+ */
+public class LogLinearHistogram {
+
+    private final LogLinearBuckets buckets;
+    private final AtomicLongArray counts;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param buckets the bucket layout, usually shared by all histograms of a kind
+     */
+    public LogLinearHistogram(LogLinearBuckets buckets) {
+        this.buckets = buckets;
+        this.counts = new AtomicLongArray(buckets.getBucketCount());
+    }
+
+    /**
+     * Records a single value. Negative values are recorded as zero.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        long recorded = Math.max(0L, value);
+        counts.incrementAndGet(buckets.indexOf(recorded));
+        count.increment();
+        total.add(recorded);
+        long currentMax = max.get();
+        while (recorded > currentMax && !max.compareAndSet(currentMax, recorded)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of all values recorded
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * @return the largest value recorded, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the bucket layout of this histogram
+     */
+    public LogLinearBuckets getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * @return a copy of the current count of each bucket
+     */
+    public long[] getCounts() {
+        long[] copy = new long[counts.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the estimated value at the percentile, see
+     * {@link LogLinearBuckets#valueAtPercentile(long[], double, long)}
+     */
+    public long getValueAtPercentile(double percentile) {
+        long currentMax = max.get();
+        return buckets.valueAtPercentile(getCounts(), percentile, currentMax);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.enterprise.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogLinearBucketsTest {
+
+    private static final LogLinearBuckets FINE = new LogLinearBuckets(4);
+    private static final LogLinearBuckets COARSE = new LogLinearBuckets(2);
+
+    @Test
+    public void smallValuesHaveTheirOwnBucket() {
+        for (int value = 0; value < 32; value++) {
+            assertEquals(value, FINE.indexOf(value));
+            assertEquals(value, FINE.lowerBound(value));
+            assertEquals(value, FINE.upperBound(value));
+        }
+        for (int value = 0; value < 8; value++) {
+            assertEquals(value, COARSE.indexOf(value));
+        }
+    }
+
+    @Test
+    public void negativeValuesAreCountedAsZero() {
+        assertEquals(0, FINE.indexOf(-1));
+        assertEquals(0, FINE.indexOf(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void bucketsCoverAllValues() {
+        assertEquals(960, FINE.getBucketCount());
+        assertEquals(248, COARSE.getBucketCount());
+        assertEquals(FINE.getBucketCount() - 1, FINE.indexOf(Long.MAX_VALUE));
+        assertEquals(COARSE.getBucketCount() - 1, COARSE.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (LogLinearBuckets buckets : new LogLinearBuckets[] {FINE, COARSE}) {
+            int lastIndex = buckets.getBucketCount() - 1;
+            assertEquals(Long.MAX_VALUE, buckets.upperBound(lastIndex));
+            for (int index = 0; index < lastIndex; index++) {
+                long lowest = buckets.lowerBound(index);
+                long highest = buckets.upperBound(index);
+                assertEquals(index, buckets.indexOf(lowest));
+                assertEquals(index, buckets.indexOf(highest));
+                assertEquals(index + 1, buckets.indexOf(highest + 1));
+            }
+        }
+    }
+
+    @Test
+    public void bucketWidthIsWithinRelativeError() {
+        for (LogLinearBuckets buckets : new LogLinearBuckets[] {FINE, COARSE}) {
+            // the buckets below twice the sub bucket count are exact
+            for (int index = 2 * buckets.getSubBucketCount(); index < buckets.getBucketCount(); index++) {
+                long lowest = buckets.lowerBound(index);
+                long width = buckets.upperBound(index) - lowest + 1;
+                assertTrue("bucket " + index, (double) width / lowest <= 1.0 / buckets.getSubBucketCount());
+            }
+        }
+    }
+
+    @Test
+    public void percentileOfNothingIsZero() {
+        assertEquals(0, COARSE.valueAtPercentile(new long[COARSE.getBucketCount()], 99.0, 0));
+    }
+
+    @Test
+    public void percentileIsUpperBoundOfItsBucket() {
+        long[] counts = new long[COARSE.getBucketCount()];
+        for (long value = 1; value <= 100; value++) {
+            counts[COARSE.indexOf(value)]++;
+        }
+
+        // 50 is counted in the bucket of 48 to 55
+        assertEquals(55, COARSE.valueAtPercentile(counts, 50.0, 100));
+        assertEquals(100, COARSE.valueAtPercentile(counts, 99.0, 100));
+        assertEquals(1, COARSE.valueAtPercentile(counts, 0.0, 100));
+    }
+
+    @Test
+    public void percentileNeverExceedsMax() {
+        long[] counts = new long[COARSE.getBucketCount()];
+        counts[COARSE.indexOf(1000)]++;
+
+        assertEquals(1000, COARSE.valueAtPercentile(counts, 50.0, 1000));
+        counts[COARSE.indexOf(Long.MAX_VALUE - 1)]++;
+        assertEquals(Long.MAX_VALUE - 1, COARSE.valueAtPercentile(counts, 99.0, Long.MAX_VALUE - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subBucketBitsAreChecked() {
+        new LogLinearBuckets(0);
+    }
+}
@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2019] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.enterprise.server.logging;
 
@@ -53,15 +53,20 @@ import com.sun.enterprise.v3.logging.AgentFormatterDelegate;
 import fish.payara.enterprise.server.logging.JSONLogFormatter;
 import fish.payara.enterprise.server.logging.PayaraNotificationLogRotationTimer;;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.security.PrivilegedAction;
 import java.text.FieldPosition;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.ErrorManager;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
@@ -100,6 +105,8 @@ public class GFFileHandler extends StreamHandler implements
     PostConstruct, PreDestroy, LogEventBroadcaster, LoggingRuntime {
 
     private static final int DEFAULT_ROTATION_LIMIT_BYTES = 2000000;
+    private static final int PENDING_RECORDS_CAPACITY = 10000;
+    private static final int ENCODED_RECORD_BUFFER_SIZE = 8192;
     public static final int DISABLE_LOG_FILE_ROTATION_VALUE = 0;
 
     private final static LocalStringManagerImpl LOCAL_STRINGS =
@@ -150,7 +157,23 @@ public class GFFileHandler extends StreamHandler implements
     /** Initially the LogRotation will be off until the domain.xml value is read. */
     private int limitForFileRotation = 0;
 
-    private BlockingQueue<LogRecord> pendingRecords = new ArrayBlockingQueue<>(10000);
+    private final LogRecordRingBuffer pendingRecords = new LogRecordRingBuffer(PENDING_RECORDS_CAPACITY);
+
+    /** When the queue is full records are dropped instead of blocking the logging thread */
+    private volatile boolean dropOnFullQueue;
+    private final LongAdder droppedRecords = new LongAdder();
+    private final LongAdder blockedPublishes = new LongAdder();
+
+    /** Reused by the log pump to encode formatted records straight into the log file stream */
+    private CharsetEncoder recordEncoder;
+    private final ByteBuffer encodedRecord = ByteBuffer.allocate(ENCODED_RECORD_BUFFER_SIZE);
+
+    /** Whether the formatter head has been written to the current file, guarded by this */
+    private boolean headWritten;
+
+    /** Sidecar index of the records in the current file, guarded by this */
+    private LogFileIndex.Writer logIndex;
+    private boolean indexLogFile = true;
 
     /**Rotation can be done in 3 ways: <ol>
      * <li> Based on the Size: Rotate when some Threshold number of bytes are
@@ -187,6 +210,11 @@ public class GFFileHandler extends StreamHandler implements
     @Override
     public void postConstruct() {
 
+        String indexLogFileValue = manager.getProperty(className + ".indexLogFile");
+        if (indexLogFileValue != null) {
+            indexLogFile = Boolean.parseBoolean(indexLogFileValue);
+        }
+
         String filename = evaluateFileName();
 
         File logFile = new File(filename);
@@ -299,6 +327,11 @@ public class GFFileHandler extends StreamHandler implements
             compressionOnRotation = Boolean.parseBoolean(propertyValue);
         }
    
+        propertyValue = manager.getProperty(className + ".dropOnFullQueue");
+        if (propertyValue != null) {
+            dropOnFullQueue = Boolean.parseBoolean(propertyValue);
+        }
+
         propertyValue = manager.getProperty(className + ".logStandardStreams");
         if (propertyValue != null) {
             logStandardStreams = Boolean.parseBoolean(propertyValue);
@@ -633,19 +666,157 @@ public class GFFileHandler extends StreamHandler implements
      * @param flushAmount number of records to drain from the queue of pending records.
      */
     private void drainPendingRecords(int flushAmount) {
-        if (!pendingRecords.isEmpty()) {
-            Collection<LogRecord> records;
-            if (flushAmount > 0) {
-                records = new ArrayList<>(flushAmount);
-                pendingRecords.drainTo(records, flushAmount);
-            } else {
-                records = new ArrayList<>(pendingRecords.size());
-                pendingRecords.drainTo(records);
+        int drained = 0;
+        LogRecord record;
+        while ((flushAmount <= 0 || drained < flushAmount) && (record = pendingRecords.poll()) != null) {
+            writeRecord(record);
+            drained++;
+        }
+    }
+
+    /**
+     * Formats the record and encodes it straight into the log file stream, reusing the same encoder and byte buffer
+     * for every record. The first record of a file goes through {@link StreamHandler#publish(LogRecord)} so that the
+     * formatter head is written before it.
+     */
+    private synchronized void writeRecord(LogRecord record) {
+        if (meter == null || !isLoggable(record)) {
+            return;
+        }
+        long offset = meter.written;
+        if (!headWritten) {
+            super.publish(record);
+            super.flush();
+            headWritten = true;
+            if (meter.written > offset) {
+                indexRecord(record, offset);
+            }
+            return;
+        }
+
+        String message;
+        try {
+            message = getFormatter().format(record);
+        } catch (Exception ex) {
+            reportError(null, ex, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+
+        try {
+            encode(message);
+        } catch (Exception ex) {
+            encodedRecord.clear();
+            reportError(null, ex, ErrorManager.WRITE_FAILURE);
+            return;
+        }
+        indexRecord(record, offset);
+    }
+
+    /**
+     * Adds the record to the sidecar index of the current file. Only formats the log viewer parses one
+     * {@link LogRecord} per record are indexed, for any other format the index of the file is dropped.
+     */
+    private void indexRecord(LogRecord record, long offset) {
+        if (logIndex == null) {
+            return;
+        }
+        Formatter formatter = getFormatter();
+        if (!(formatter instanceof UniformLogFormatter || formatter instanceof ODLLogFormatter
+                || formatter instanceof JSONLogFormatter)) {
+            dropLogIndex();
+            return;
+        }
+        try {
+            logIndex.add(record.getMillis(), offset, record.getLevel(), record.getLoggerName());
+        } catch (IOException ex) {
+            dropLogIndex();
+        }
+    }
+
+    private void syncLogIndex() {
+        if (logIndex != null) {
+            try {
+                logIndex.sync(meter.written);
+            } catch (IOException ex) {
+                dropLogIndex();
+            }
+        }
+    }
+
+    private void closeLogIndex() {
+        if (logIndex != null) {
+            syncLogIndex();
+            try {
+                if (logIndex != null) {
+                    logIndex.close();
+                }
+            } catch (IOException ex) {
+                // the index has already been synced
             }
-            for (LogRecord record : records) {
-                super.publish(record);
+            logIndex = null;
+        }
+    }
+
+    private void dropLogIndex() {
+        try {
+            logIndex.close();
+        } catch (IOException ex) {
+            // removed below
+        }
+        logIndex = null;
+        LogFileIndex.delete(absoluteFile);
+    }
+
+    @Override
+    public synchronized void flush() {
+        super.flush();
+        syncLogIndex();
+    }
+
+    @Override
+    public synchronized void close() {
+        super.close();
+        closeLogIndex();
+    }
+
+    private void encode(String message) throws IOException {
+        CharsetEncoder encoder = recordEncoder;
+        if (encoder == null) {
+            String encoding = getEncoding();
+            Charset charset = encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+            // same replacement behaviour as the OutputStreamWriter of StreamHandler
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            recordEncoder = encoder;
+        }
+
+        CharBuffer chars = CharBuffer.wrap(message);
+        encoder.reset();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, encodedRecord, true);
+            if (result.isOverflow()) {
+                writeEncodedRecord();
+            } else if (result.isError()) {
+                result.throwException();
             }
+        } while (result.isOverflow());
+        while (encoder.flush(encodedRecord).isOverflow()) {
+            writeEncodedRecord();
         }
+        writeEncodedRecord();
+    }
+
+    private void writeEncodedRecord() throws IOException {
+        meter.write(encodedRecord.array(), encodedRecord.arrayOffset(), encodedRecord.position());
+        encodedRecord.clear();
+    }
+
+    @Override
+    public synchronized void setEncoding(String encoding) throws UnsupportedEncodingException {
+        super.setEncoding(encoding);
+        recordEncoder = null;
     }
 
     /**
@@ -779,8 +950,19 @@ public class GFFileHandler extends StreamHandler implements
         }
         FileOutputStream fout = new FileOutputStream(file, true);
         BufferedOutputStream bout = new BufferedOutputStream(fout);
-        meter = new MeteredStream(bout, file.length());
-        setOutputStream(meter);
+        synchronized (this) {
+            closeLogIndex();
+            meter = new MeteredStream(bout, file.length());
+            setOutputStream(meter);
+            headWritten = false;
+            if (indexLogFile) {
+                try {
+                    logIndex = LogFileIndex.Writer.open(file, meter.written);
+                } catch (IOException ex) {
+                    new ErrorManager().error("Could not open the index of log file " + file, ex, ErrorManager.OPEN_FAILURE);
+                }
+            }
+        }
     }
 
     /**
@@ -826,6 +1008,7 @@ public class GFFileHandler extends StreamHandler implements
                         throw new IOException("Could not delete log file: "
                                 + logFile.getAbsolutePath());
                     }
+                    LogFileIndex.delete(logFile);
                 }
             } catch (Exception e) {
                 new ErrorManager().error(
@@ -880,6 +1063,7 @@ public class GFFileHandler extends StreamHandler implements
                                             freshServerLogFile);
                                     fo.close();
                                 }
+                                LogFileIndex.rename(oldFile, rotatedFile);
                                 FileOutputStream oldFileFO = new FileOutputStream(oldFile);
                                 oldFileFO.close();
                                 openFile(getLogFileName());
@@ -891,6 +1075,7 @@ public class GFFileHandler extends StreamHandler implements
                                 if (compressionOnRotation) {
                                     boolean compressed = gzipFile(rotatedFile);
                                     if (compressed) {
+                                        LogFileIndex.rename(rotatedFile, new File(rotatedFile.getPath() + GZIP_EXTENSION));
                                         boolean deleted = rotatedFile.delete();
                                         if (!deleted) {
                                              throw new IOException("Could not delete uncompressed log file: "
@@ -946,7 +1131,7 @@ public class GFFileHandler extends StreamHandler implements
             // take is blocking so we take one record off the queue
             try {
                 record = pendingRecords.take();
-                super.publish(record);
+                writeRecord(record);
             } catch (InterruptedException e) {
                 return;
             }
@@ -1004,12 +1189,17 @@ public class GFFileHandler extends StreamHandler implements
             recordWrapper.setThreadName(Thread.currentThread().getName());
         }
 
-        if (logToFile) {
-            try {
-                pendingRecords.add(recordWrapper);
-            } catch (IllegalStateException e) {
+        if (logToFile && !pendingRecords.offer(recordWrapper)) {
+            if (dropOnFullQueue) {
+                // only the first drop is reported, the rest are counted
+                if (droppedRecords.sum() == 0) {
+                    new ErrorManager().error("GFFileHandler: Queue full. Dropping log records.", null, ErrorManager.GENERIC_FAILURE);
+                }
+                droppedRecords.increment();
+            } else {
                 // queue is full, start waiting.
-                new ErrorManager().error("GFFileHandler: Queue full. Waiting to submit.", e, ErrorManager.GENERIC_FAILURE);
+                blockedPublishes.increment();
+                new ErrorManager().error("GFFileHandler: Queue full. Waiting to submit.", null, ErrorManager.GENERIC_FAILURE);
                 try {
                     pendingRecords.put(recordWrapper);
                 } catch (InterruptedException e1) {
@@ -1161,6 +1351,46 @@ public class GFFileHandler extends StreamHandler implements
         this.compressionOnRotation = compressionOnRotation;
     }
 
+    public void setDropOnFullQueue(boolean dropOnFullQueue) {
+        this.dropOnFullQueue = dropOnFullQueue;
+    }
+
+    public boolean isDropOnFullQueue() {
+        return dropOnFullQueue;
+    }
+
+    /**
+     * @return the number of records waiting to be written to the log file
+     */
+    public int getQueueDepth() {
+        return pendingRecords.size();
+    }
+
+    /**
+     * @return the highest number of records that were waiting to be written at the same time
+     */
+    public long getPeakQueueDepth() {
+        return pendingRecords.getPeakDepth();
+    }
+
+    public int getQueueCapacity() {
+        return pendingRecords.capacity();
+    }
+
+    /**
+     * @return the number of records dropped because the queue was full and {@link #isDropOnFullQueue()} was set
+     */
+    public long getDroppedRecordCount() {
+        return droppedRecords.sum();
+    }
+
+    /**
+     * @return the number of times a logging thread had to wait because the queue was full
+     */
+    public long getBlockedPublishCount() {
+        return blockedPublishes.sum();
+    }
+
     public synchronized void setLogStandardStreams(boolean logStandardStreams) {
         this.logStandardStreams = logStandardStreams;
 
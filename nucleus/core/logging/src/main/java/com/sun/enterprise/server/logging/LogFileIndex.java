@@ -0,0 +1,369 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.enterprise.server.logging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Sidecar index of the records in a log file, written by {@link GFFileHandler} as records are appended.
+ * <p>
+ * The index lives in the {@value #INDEX_DIRECTORY} directory next to the log file and holds a fixed size entry per
+ * record with its timestamp, level, logger and byte offset in the log file. A header records how much of the log
+ * file and how many entries were in sync at the last flush, so a reader never trusts entries for records that have
+ * not reached the log file. Readers map the index into memory so the log viewer can seek to a record, or search by
+ * time and level, without parsing the log file from the start.
+ * <p>
+ * An index is only started for an empty log file, so it always describes every record of the file.
+ */
+public final class LogFileIndex {
+
+    static final String INDEX_DIRECTORY = ".index";
+    static final String INDEX_EXTENSION = ".idx";
+
+    private static final int MAGIC = 0x4C4F4749;
+    private static final int VERSION = 1;
+
+    /** magic, version, synced log file length, synced entry count */
+    static final int HEADER_SIZE = 24;
+
+    /** timestamp, offset, level, logger hash */
+    static final int ENTRY_SIZE = 24;
+
+    private static final int WRITE_BUFFER_ENTRIES = 512;
+
+    private final MappedByteBuffer entries;
+    private final int size;
+    private final long indexedLength;
+
+    private LogFileIndex(MappedByteBuffer entries, int size, long indexedLength) {
+        this.entries = entries;
+        this.size = size;
+        this.indexedLength = indexedLength;
+    }
+
+    /**
+     * Maps the index of the given log file.
+     *
+     * @param logFile the log file, which may be compressed
+     * @return the index, or {@code null} if the log file has no usable index
+     */
+    public static LogFileIndex open(File logFile) {
+        File indexFile = getIndexFile(logFile);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel);
+            if (header == null) {
+                return null;
+            }
+            long syncedLength = header.getLong(8);
+            long syncedEntries = header.getLong(16);
+            long mappedSize = HEADER_SIZE + syncedEntries * ENTRY_SIZE;
+            if (mappedSize > Integer.MAX_VALUE || mappedSize > channel.size()) {
+                return null;
+            }
+            if (!LogFormatHelper.isCompressedFile(logFile.getName()) && syncedLength > logFile.length()) {
+                // the log file was truncated or replaced behind our back
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, mappedSize);
+            return new LogFileIndex(mapped, (int) syncedEntries, syncedLength);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of records in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the length of the log file covered by the index, which is where the record after the last indexed
+     * one starts
+     */
+    public long getIndexedLength() {
+        return indexedLength;
+    }
+
+    /**
+     * @param record the record number, where {@link #size()} stands for the end of the indexed records
+     * @return the byte offset of the record in the uncompressed log file
+     */
+    public long getOffset(int record) {
+        if (record == size) {
+            return indexedLength;
+        }
+        return entries.getLong(position(record) + 8);
+    }
+
+    public long getMillis(int record) {
+        return entries.getLong(position(record));
+    }
+
+    public int getLevel(int record) {
+        return entries.getInt(position(record) + 16);
+    }
+
+    public int getLoggerHash(int record) {
+        return entries.getInt(position(record) + 20);
+    }
+
+    /**
+     * Binary search for the first record logged at or after the given time. Records are indexed in the order they
+     * were written, which follows the order they were logged closely enough for the callers to apply their own time
+     * check to the records found.
+     *
+     * @return the record number, or {@link #size()} if all records are older
+     */
+    public int findFirst(long fromMillis) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getMillis(middle) < fromMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first record that can match a log viewer query, without looking at the log file.
+     *
+     * @param fromMillis the lower bound of the time range, or {@code null}
+     * @param level the minimum level, or {@code null} for any level
+     * @param onlyLevel {@code true} to only match records at exactly {@code level}
+     * @param loggers the logger names to match, or {@code null} or empty for any logger
+     * @return the record number, or {@link #size()} if no indexed record matches
+     */
+    public int findFirst(Long fromMillis, Level level, boolean onlyLevel, Collection<String> loggers) {
+        Set<Integer> loggerHashes = null;
+        if (loggers != null && !loggers.isEmpty()) {
+            loggerHashes = new HashSet<>();
+            for (String logger : loggers) {
+                loggerHashes.add(hashLogger(logger.trim()));
+            }
+        }
+        int record = fromMillis == null ? 0 : findFirst(fromMillis);
+        for (; record < size; record++) {
+            if (level != null) {
+                int recordLevel = getLevel(record);
+                if (onlyLevel ? recordLevel != level.intValue() : recordLevel < level.intValue()) {
+                    continue;
+                }
+            }
+            if (loggerHashes != null && !loggerHashes.contains(getLoggerHash(record))) {
+                continue;
+            }
+            break;
+        }
+        return record;
+    }
+
+    static int hashLogger(String loggerName) {
+        return loggerName == null ? 0 : loggerName.hashCode();
+    }
+
+    private static int position(int record) {
+        return HEADER_SIZE + record * ENTRY_SIZE;
+    }
+
+    /**
+     * @return the index file for the given log file
+     */
+    public static File getIndexFile(File logFile) {
+        return new File(new File(logFile.getParentFile(), INDEX_DIRECTORY), logFile.getName() + INDEX_EXTENSION);
+    }
+
+    /**
+     * Moves the index of a log file that has been renamed, or removes it if it can not be moved.
+     */
+    static void rename(File fromLogFile, File toLogFile) {
+        File from = getIndexFile(fromLogFile);
+        if (!from.exists()) {
+            return;
+        }
+        try {
+            Files.move(from.toPath(), getIndexFile(toLogFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            delete(fromLogFile);
+        }
+    }
+
+    /**
+     * Removes the index of a log file.
+     */
+    static void delete(File logFile) {
+        try {
+            Files.deleteIfExists(getIndexFile(logFile).toPath());
+        } catch (IOException e) {
+            // the index is only an optimisation, a stale one is rejected when read
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                return null;
+            }
+        }
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            return null;
+        }
+        return header;
+    }
+
+    /**
+     * Appends entries to the index of the log file currently written by the handler. Not thread safe, the handler
+     * guards it with its own lock.
+     */
+    static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer pending = ByteBuffer.allocate(WRITE_BUFFER_ENTRIES * ENTRY_SIZE);
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        private long writtenEntries;
+        private long pendingEntries;
+
+        private Writer(FileChannel channel, long writtenEntries) {
+            this.channel = channel;
+            this.writtenEntries = writtenEntries;
+        }
+
+        /**
+         * Opens the index for appending to the given log file.
+         *
+         * @param logFile the log file
+         * @param logLength the current length of the log file
+         * @return the writer, or {@code null} if the log file already has records that are not indexed
+         */
+        static Writer open(File logFile, long logLength) throws IOException {
+            File indexFile = getIndexFile(logFile);
+            File directory = indexFile.getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Failed to create the log index directory " + directory.getAbsolutePath());
+            }
+            FileChannel channel = FileChannel.open(indexFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long entries = 0;
+                if (logLength > 0) {
+                    ByteBuffer existing = readHeader(channel);
+                    if (existing == null || existing.getLong(8) != logLength
+                            || channel.size() < HEADER_SIZE + existing.getLong(16) * ENTRY_SIZE) {
+                        channel.close();
+                        Files.deleteIfExists(indexFile.toPath());
+                        return null;
+                    }
+                    entries = existing.getLong(16);
+                }
+                // drop entries written after the last sync
+                channel.truncate(HEADER_SIZE + entries * ENTRY_SIZE);
+                Writer writer = new Writer(channel, entries);
+                writer.sync(logLength);
+                return writer;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        void add(long millis, long offset, Level level, String loggerName) throws IOException {
+            if (!pending.hasRemaining()) {
+                writePending();
+            }
+            pending.putLong(millis);
+            pending.putLong(offset);
+            pending.putInt(level.intValue());
+            pending.putInt(hashLogger(loggerName));
+            pendingEntries++;
+        }
+
+        /**
+         * Writes out the pending entries and records that the log file is in sync with them. Must only be called
+         * once the log file itself has been flushed up to {@code logLength}.
+         */
+        void sync(long logLength) throws IOException {
+            writePending();
+            header.clear();
+            header.putInt(MAGIC).putInt(VERSION).putLong(logLength).putLong(writtenEntries);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        private void writePending() throws IOException {
+            pending.flip();
+            long position = HEADER_SIZE + writtenEntries * ENTRY_SIZE;
+            while (pending.hasRemaining()) {
+                position += channel.write(pending, position);
+            }
+            pending.clear();
+            writtenEntries += pendingEntries;
+            pendingEntries = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
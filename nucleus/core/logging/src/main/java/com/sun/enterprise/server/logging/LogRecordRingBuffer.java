@@ -0,0 +1,210 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.enterprise.server.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.LogRecord;
+
+/**
+ * Pre-allocated ring buffer handing log records from the logging threads to the single thread writing them out.
+ * <p>
+ * Producers claim a sequence with a CAS on the claim counter, store the record in the slot for that sequence and
+ * then mark the slot as published for the current lap around the ring. The consumer reads the slots strictly in
+ * sequence order, so no locks are taken and nothing is allocated when a record is queued. The consumer is only woken
+ * up when it has parked because the buffer was empty.
+ */
+final class LogRecordRingBuffer {
+
+    private static final long FULL_BUFFER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final LogRecord[] slots;
+    private final int mask;
+    private final int indexShift;
+
+    /** The lap in which each slot was last published, compared with the lap of the sequence being read */
+    private final AtomicIntegerArray publishedLaps;
+
+    /** Next sequence to hand to a producer */
+    private final AtomicLong claimSequence = new AtomicLong();
+
+    /** Next sequence to be read by the consumer */
+    private volatile long consumeSequence;
+
+    private final AtomicLong peakDepth = new AtomicLong();
+
+    private final Object consumerLock = new Object();
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+
+    /**
+     * @param requestedCapacity the minimum number of records the buffer holds, rounded up to a power of two
+     */
+    LogRecordRingBuffer(int requestedCapacity) {
+        if (requestedCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + requestedCapacity);
+        }
+        int capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        slots = new LogRecord[capacity];
+        mask = capacity - 1;
+        indexShift = Integer.numberOfTrailingZeros(capacity);
+        publishedLaps = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            publishedLaps.set(i, -1);
+        }
+    }
+
+    /**
+     * Queues the record if there is a free slot.
+     *
+     * @return {@code false} if the buffer is full
+     */
+    boolean offer(LogRecord record) {
+        long sequence;
+        do {
+            sequence = claimSequence.get();
+            if (sequence - consumeSequence >= slots.length) {
+                return false;
+            }
+        } while (!claimSequence.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        slots[index] = record;
+        // volatile write so that the consumerParked read below is not reordered before it
+        publishedLaps.set(index, lap(sequence));
+
+        long depth = sequence + 1 - consumeSequence;
+        long peak = peakDepth.get();
+        while (depth > peak && !peakDepth.compareAndSet(peak, depth)) {
+            peak = peakDepth.get();
+        }
+
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Queues the record, waiting for a free slot while the buffer is full.
+     */
+    void put(LogRecord record) throws InterruptedException {
+        while (!offer(record)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(this, FULL_BUFFER_PARK_NANOS);
+        }
+    }
+
+    /**
+     * @return the next record, or {@code null} if there is none published yet
+     */
+    LogRecord poll() {
+        synchronized (consumerLock) {
+            long sequence = consumeSequence;
+            int index = (int) sequence & mask;
+            if (publishedLaps.get(index) != lap(sequence)) {
+                return null;
+            }
+            LogRecord record = slots[index];
+            slots[index] = null;
+            consumeSequence = sequence + 1;
+            return record;
+        }
+    }
+
+    /**
+     * Returns the next record, waiting for one to be published while the buffer is empty.
+     */
+    LogRecord take() throws InterruptedException {
+        LogRecord record = poll();
+        while (record == null) {
+            consumer = Thread.currentThread();
+            consumerParked = true;
+            try {
+                // a producer may have published after the poll above but before it saw consumerParked
+                record = poll();
+                if (record == null) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    LockSupport.park(this);
+                    record = poll();
+                }
+            } finally {
+                consumerParked = false;
+            }
+        }
+        return record;
+    }
+
+    /**
+     * @return {@code true} if no records are waiting to be consumed
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the number of records claimed by producers and not yet consumed
+     */
+    int size() {
+        return (int) Math.max(0, claimSequence.get() - consumeSequence);
+    }
+
+    /**
+     * @return the highest number of records waiting to be consumed at the same time
+     */
+    long getPeakDepth() {
+        return peakDepth.get();
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    private int lap(long sequence) {
+        return (int) (sequence >>> indexShift);
+    }
+}
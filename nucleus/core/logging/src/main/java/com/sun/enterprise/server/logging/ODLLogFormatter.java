@@ -38,7 +38,7 @@
  * holder.
  */
 
-// Portions Copyright [2017-2019] [Payara Foundation and/or affiliates]
+// Portions Copyright [2017-2020] [Payara Foundation and/or affiliates]
 
 package com.sun.enterprise.server.logging;
 
@@ -53,7 +53,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.MessageFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.logging.Formatter;
 import java.util.logging.*;
@@ -195,14 +194,10 @@ public class ODLLogFormatter extends AnsiColorFormatter implements LogEventBroad
             // Adding record begin marker
             StringBuilder recordBuffer = new StringBuilder();
 
-            // A Dummy Container Date Object is used to format the date
-            Date date = new Date();
-
             // Adding timestamp
-            SimpleDateFormat dateFormatter = new SimpleDateFormat(getRecordDateFormat() != null ? getRecordDateFormat() : RFC_3339_DATE_FORMAT);
-            date.setTime(record.getMillis());
             recordBuffer.append(FIELD_BEGIN_MARKER);
-            String timestamp=dateFormatter.format(date);
+            String timestamp = RecordTimestampFormatter.forPattern(
+                    getRecordDateFormat() != null ? getRecordDateFormat() : RFC_3339_DATE_FORMAT).format(record.getMillis());
             logEvent.setTimestamp(timestamp);
             recordBuffer.append(timestamp);
             recordBuffer.append(FIELD_END_MARKER);
@@ -0,0 +1,115 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package com.sun.enterprise.server.logging;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread safe, cached formatter for log record timestamps.
+ * <p>
+ * Creating a {@link SimpleDateFormat} is expensive, so each thread keeps its own instance for the pattern together
+ * with the text of the last timestamp it formatted. Records logged within the same millisecond reuse that text.
+ * Formatters are shared by all log formatters using the same pattern, see {@link #forPattern(String)}.
+ */
+public final class RecordTimestampFormatter {
+
+    private static final ConcurrentMap<String, RecordTimestampFormatter> FORMATTERS = new ConcurrentHashMap<>();
+
+    private final String pattern;
+
+    private final ThreadLocal<CachedTimestamp> cache;
+
+    /**
+     * @param pattern a {@link SimpleDateFormat} pattern
+     * @return the formatter for the pattern
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    public static RecordTimestampFormatter forPattern(String pattern) {
+        RecordTimestampFormatter formatter = FORMATTERS.get(pattern);
+        if (formatter == null) {
+            formatter = FORMATTERS.computeIfAbsent(pattern, RecordTimestampFormatter::new);
+        }
+        return formatter;
+    }
+
+    private RecordTimestampFormatter(String pattern) {
+        // fail fast on an invalid pattern instead of on the first record
+        new SimpleDateFormat(pattern);
+        this.pattern = pattern;
+        this.cache = ThreadLocal.withInitial(() -> new CachedTimestamp(pattern));
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @param millis the time in milliseconds since the epoch, as returned by {@link java.util.logging.LogRecord#getMillis()}
+     * @return the time formatted with the pattern of this formatter
+     */
+    public String format(long millis) {
+        return cache.get().format(millis);
+    }
+
+    private static final class CachedTimestamp {
+
+        private final SimpleDateFormat dateFormat;
+        private final Date date = new Date();
+        private long lastMillis = Long.MIN_VALUE;
+        private String lastTimestamp;
+
+        CachedTimestamp(String pattern) {
+            this.dateFormat = new SimpleDateFormat(pattern);
+        }
+
+        String format(long millis) {
+            if (millis != lastMillis || lastTimestamp == null) {
+                date.setTime(millis);
+                lastTimestamp = dateFormat.format(date);
+                lastMillis = millis;
+            }
+            return lastTimestamp;
+        }
+    }
+}
@@ -38,7 +38,7 @@
  * holder.
  */
 
-// Portions Copyright [2016-2019] [Payara Foundation]
+// Portions Copyright [2016-2020] [Payara Foundation]
 
 package com.sun.enterprise.server.logging;
 
@@ -53,7 +53,6 @@ import org.jvnet.hk2.annotations.Service;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.MessageFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.logging.Formatter;
 import java.util.logging.*;
@@ -92,8 +91,6 @@ public class UniformLogFormatter extends AnsiColorFormatter implements LogEventB
     // and can be searched using the LoggerName as the key
     private HashMap loggerResourceBundleTable;
     private LogManager logManager;
-    // A Dummy Container Date Object is used to format the date
-    private Date date = new Date();
 
     private static boolean LOG_SOURCE_IN_KEY_VALUE = false;
 
@@ -267,15 +264,13 @@ public class UniformLogFormatter extends AnsiColorFormatter implements LogEventB
 
             LogEventImpl logEvent = new LogEventImpl();
 
-            SimpleDateFormat dateFormatter = new SimpleDateFormat(getRecordDateFormat() != null ? getRecordDateFormat() : RFC_3339_DATE_FORMAT);
-
             StringBuilder recordBuffer = new StringBuilder(getRecordBeginMarker() != null ? getRecordBeginMarker() : RECORD_BEGIN_MARKER);
             // The following operations are to format the date and time in a
             // human readable  format.
             // _REVISIT_: Use HiResolution timer to analyze the number of
             // Microseconds spent on formatting date object
-            date.setTime(record.getMillis());
-            String timestamp = dateFormatter.format(date);
+            String timestamp = RecordTimestampFormatter.forPattern(
+                    getRecordDateFormat() != null ? getRecordDateFormat() : RFC_3339_DATE_FORMAT).format(record.getMillis());
             logEvent.setTimestamp(timestamp);
             recordBuffer.append(timestamp);
             if (color()) {
@@ -37,11 +37,12 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2016-2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2016-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.enterprise.server.logging.logviewer.backend;
 
 import com.sun.enterprise.server.logging.LogFacade;
+import com.sun.enterprise.server.logging.LogFileIndex;
 import com.sun.enterprise.server.logging.LogFormatHelper;
 import com.sun.enterprise.server.logging.parser.LogParser;
 import com.sun.enterprise.server.logging.parser.LogParserFactory;
@@ -65,6 +66,8 @@ import java.util.zip.GZIPInputStream;
  * <p/>
  * <P>This class also contains an inner class for storing LogEntry
  * objects.</P>
+ * <P>When the log file has a {@link LogFileIndex} the records are located
+ * through it and only the requested records are parsed.</P>
  */
 public class LogFile implements java.io.Serializable {
 
@@ -104,6 +107,11 @@ public class LogFile implements java.io.Serializable {
             return null;
         }
 
+        LogFileIndex index = LogFileIndex.open(new File(getLogFileName()));
+        if (index != null) {
+            return getLogEntries(index, startingRecord, maxRecords);
+        }
+
         // Open the file at the desired starting Record
         final long recordsToIgnore = (startingRecord % getIndexSize());
         return getFilePosition(startingRecord - recordsToIgnore).map(
@@ -128,16 +136,7 @@ public class LogFile implements java.io.Serializable {
                                 return;
                             }
                             if (results.size() < maxRecords) {
-                                LogEntry entry = new LogEntry(logRecord.getFormattedLogRecord(),
-                                        startingRecord + results.size());
-                                entry.setLoggedDateTime(new Date(logRecord.getTimeMillis()));
-                                entry.setLoggedLevel(logRecord.getLevel());
-                                entry.setLoggedLoggerName(logRecord.getLogger());
-                                entry.setLoggedMessage(logRecord.getMessage());
-                                entry.setLoggedNameValuePairs(logRecord.getSupplementalAttributes().toString());
-                                entry.setLoggedProduct(logRecord.getComponentId());
-                                entry.setMessageId(logRecord.getMessageId());
-                                results.add(entry);
+                                results.add(createLogEntry(logRecord, startingRecord + results.size()));
                             }
                         }
 
@@ -155,6 +154,103 @@ public class LogFile implements java.io.Serializable {
     }
 
 
+    /**
+     * Reads the requested records using the sidecar index of the log file.
+     * Only the bytes between the first requested record and the record after
+     * the last one are read and parsed.
+     */
+    private List<LogEntry> getLogEntries(LogFileIndex index, final long startingRecord, final long maxRecords) {
+        if (startingRecord > index.size()) {
+            return Collections.emptyList();
+        }
+        long fromOffset = index.getOffset((int) startingRecord);
+        long endRecord = startingRecord + maxRecords;
+        // past the indexed records read to the end, the handler may not have synced the latest records yet
+        long length = endRecord < index.size() ? index.getOffset((int) endRecord) - fromOffset : -1;
+
+        List<LogEntry> results = new ArrayList<>();
+        try (InputStream file = openLogFile()) {
+            skipFully(file, fromOffset);
+            InputStream range = length < 0 ? file : new RangeInputStream(file, length);
+            LogParser logParser = LogParserFactory.getInstance().createLogParser(new File(getLogFileName()));
+            logParser.parseLog(new BufferedReader(new InputStreamReader(range)), new LogParserListener() {
+
+                @Override
+                public void outputSummary(BufferedWriter writer, Object... objects) throws IOException {
+                }
+
+                @Override
+                public void foundLogRecord(long position, ParsedLogRecord logRecord) {
+                    if (results.size() < maxRecords) {
+                        results.add(createLogEntry(logRecord, startingRecord + results.size()));
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                }
+            });
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+        return results;
+    }
+
+    private static LogEntry createLogEntry(ParsedLogRecord logRecord, long recordNumber) {
+        LogEntry entry = new LogEntry(logRecord.getFormattedLogRecord(), recordNumber);
+        entry.setLoggedDateTime(new Date(logRecord.getTimeMillis()));
+        entry.setLoggedLevel(logRecord.getLevel());
+        entry.setLoggedLoggerName(logRecord.getLogger());
+        entry.setLoggedMessage(logRecord.getMessage());
+        entry.setLoggedNameValuePairs(logRecord.getSupplementalAttributes().toString());
+        entry.setLoggedProduct(logRecord.getComponentId());
+        entry.setMessageId(logRecord.getMessageId());
+        return entry;
+    }
+
+    /**
+     * Uses the sidecar index to find the first record that can match the
+     * query, so the search does not have to parse the records before it.
+     *
+     * @return the record number, 0 if the log file has no index
+     */
+    public long findFirstRecord(Date fromDate, String logLevel, boolean onlyLevel, List<String> loggers) {
+        LogFileIndex index = LogFileIndex.open(new File(getLogFileName()));
+        if (index == null) {
+            return 0;
+        }
+        Level level = null;
+        if (logLevel != null) {
+            try {
+                level = Level.parse(logLevel.trim());
+            } catch (IllegalArgumentException e) {
+                // not a level the index knows, let the query check it
+            }
+        }
+        return index.findFirst(fromDate == null ? null : fromDate.getTime(), level, onlyLevel, loggers);
+    }
+
+    private InputStream openLogFile() throws IOException {
+        if (LogFormatHelper.isCompressedFile(getLogFileName())) {
+            return new GZIPInputStream(new FileInputStream(getLogFileName()));
+        }
+        return new FileInputStream(getLogFileName());
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Log file is shorter than its index");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
     /**
      * This method builds the file index in the beginning.  The index is for
      * the beginning of every record after the size specified by '_indexSize'
@@ -266,6 +362,10 @@ public class LogFile implements java.io.Serializable {
      * will ensure that the indexes are up-to-date.
      */
     public long getLastIndexNumber() {
+        LogFileIndex index = LogFileIndex.open(new File(getLogFileName()));
+        if (index != null) {
+            return (index.size() + getIndexSize() - 1) / getIndexSize();
+        }
         buildLogFileIndex();
         return _recordIdx.size() - 1;
     }
@@ -277,6 +377,55 @@ public class LogFile implements java.io.Serializable {
         return _indexSize;
     }
 
+    /**
+     * Stream reading at most the given number of bytes of the underlying stream.
+     */
+    private static final class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read();
+            if (read >= 0) {
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long bytes) throws IOException {
+            long skipped = super.skip(Math.min(bytes, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+
     /**
      * Class to manage LogEntry information
      */
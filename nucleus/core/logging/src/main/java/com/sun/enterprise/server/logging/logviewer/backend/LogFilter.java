@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2017-2019] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2017-2020] [Payara Foundation and/or its affiliates]
 
 package com.sun.enterprise.server.logging.logviewer.backend;
 
@@ -201,10 +201,6 @@ public class LogFilter {
             }
         }
 
-        // TO DO: If the fromRecord count is zero and the fromDate entry is
-        // non-null, then the system should take advantage of file Indexing.
-        // It should move the file position to the marker where the DateTime
-        // query matches.
         try {
             return fetchRecordsUsingQuery(logFile, startingRecord, nxt, forwd,
                     reqCount, fromDate, toDate, logLevel,
@@ -452,10 +448,6 @@ public class LogFilter {
             }
         }
 
-        // TO DO: If the fromRecord count is zero and the fromDate entry is
-        // non-null, then the system should take advantage of file Indexing.
-        // It should move the file position to the marker where the DateTime
-        // query matches.
         try {
             return fetchRecordsUsingQuery(logFile, startingRecord, nxt, forwd,
                     reqCount, fromDate, toDate, logLevel,
@@ -474,6 +466,12 @@ public class LogFilter {
             LogFile logFile, long startingRecord, boolean next, boolean forward,
             long requestedCount, Date fromDate, Date toDate, String logLevel,
             boolean onlyLevel, List listOfModules, Properties nameValueMap, String anySearch) {
+        if (startingRecord == -1 && next && forward) {
+            // Searching from the start of the file, skip straight to the
+            // first record the log file index says can match
+            startingRecord = logFile.findFirstRecord(fromDate, logLevel, onlyLevel, listOfModules) - 1;
+        }
+
         // If !next, then set to search in reverse
         boolean origForward = forward;
         if (next) {
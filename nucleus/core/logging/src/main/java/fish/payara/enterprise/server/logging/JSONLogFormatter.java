@@ -37,7 +37,7 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
- // Portions Copyright [2018-2019] [Payara Foundation and/or its affiliates]
+ // Portions Copyright [2018-2020] [Payara Foundation and/or its affiliates]
 package fish.payara.enterprise.server.logging;
 
 import com.sun.common.util.logging.GFLogRecord;
@@ -46,10 +46,10 @@ import com.sun.enterprise.server.logging.FormatterDelegate;
 import com.sun.enterprise.server.logging.LogEvent;
 import com.sun.enterprise.server.logging.LogEventBroadcaster;
 import com.sun.enterprise.server.logging.LogEventImpl;
+import com.sun.enterprise.server.logging.RecordTimestampFormatter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.MessageFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.logging.ErrorManager;
 import java.util.logging.Formatter;
@@ -85,7 +85,6 @@ public class JSONLogFormatter extends Formatter implements LogEventBroadcaster {
     private Map<String, ResourceBundle> loggerResourceBundleTable;
     private LogManager logManager;
 
-    private final Date date = new Date();
 
     private static boolean LOG_SOURCE_IN_KEY_VALUE = false;
 
@@ -226,16 +225,8 @@ public class JSONLogFormatter extends Formatter implements LogEventBroadcaster {
             /*
              * Create the timestamp field and append to object.
              */
-            SimpleDateFormat dateFormatter;
-
-            if (null != getRecordDateFormat()) {
-                dateFormatter = new SimpleDateFormat(getRecordDateFormat());
-            } else {
-                dateFormatter = new SimpleDateFormat(RFC3339_DATE_FORMAT);
-            }
-
-            date.setTime(record.getMillis());
-            String timestampValue = dateFormatter.format(date);
+            String timestampValue = RecordTimestampFormatter.forPattern(
+                    getRecordDateFormat() != null ? getRecordDateFormat() : RFC3339_DATE_FORMAT).format(record.getMillis());
             logEvent.setTimestamp(timestampValue);
             eventObject.add(TIMESTAMP_KEY, timestampValue);
 
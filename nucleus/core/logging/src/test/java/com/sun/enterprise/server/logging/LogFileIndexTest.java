@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.server.logging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.logging.Level;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class LogFileIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void syncedEntriesAreReadBack() throws IOException {
+        File logFile = folder.newFile("server.log");
+        try (LogFileIndex.Writer writer = LogFileIndex.Writer.open(logFile, 0)) {
+            writer.add(1000, 0, Level.INFO, "a");
+            writer.add(2000, 100, Level.WARNING, "b");
+            writer.add(3000, 200, Level.SEVERE, "a");
+            appendBytes(logFile, 300);
+            writer.sync(300);
+            // not synced, so not visible to readers
+            writer.add(4000, 300, Level.INFO, "a");
+        }
+
+        LogFileIndex index = LogFileIndex.open(logFile);
+        assertNotNull(index);
+        assertEquals(3, index.size());
+        assertEquals(100, index.getOffset(1));
+        assertEquals(300, index.getOffset(3));
+        assertEquals(2000, index.getMillis(1));
+        assertEquals(Level.SEVERE.intValue(), index.getLevel(2));
+
+        assertEquals(0, index.findFirst(500));
+        assertEquals(1, index.findFirst(2000));
+        assertEquals(2, index.findFirst(2500));
+        assertEquals(3, index.findFirst(5000));
+
+        assertEquals(1, index.findFirst(null, Level.WARNING, false, null));
+        assertEquals(2, index.findFirst(null, Level.SEVERE, true, null));
+        assertEquals(2, index.findFirst(1500L, null, false, Collections.singletonList("a")));
+        assertEquals(3, index.findFirst(null, Level.INFO, true, Collections.singletonList("b")));
+    }
+
+    @Test
+    public void writerResumesOnlyWhenInSyncWithLogFile() throws IOException {
+        File logFile = folder.newFile("server.log");
+        try (LogFileIndex.Writer writer = LogFileIndex.Writer.open(logFile, 0)) {
+            writer.add(1000, 0, Level.INFO, "a");
+            appendBytes(logFile, 100);
+            writer.sync(100);
+            writer.add(2000, 100, Level.INFO, "a");
+        }
+
+        try (LogFileIndex.Writer writer = LogFileIndex.Writer.open(logFile, 100)) {
+            assertNotNull(writer);
+            writer.add(3000, 100, Level.INFO, "a");
+            appendBytes(logFile, 50);
+            writer.sync(150);
+        }
+        LogFileIndex index = LogFileIndex.open(logFile);
+        assertEquals(2, index.size());
+        assertEquals(3000, index.getMillis(1));
+
+        // records were appended without being indexed
+        appendBytes(logFile, 50);
+        assertNull(LogFileIndex.Writer.open(logFile, 200));
+        assertFalse(LogFileIndex.getIndexFile(logFile).exists());
+    }
+
+    @Test
+    public void indexFollowsRenamedLogFile() throws IOException {
+        File logFile = folder.newFile("server.log");
+        try (LogFileIndex.Writer writer = LogFileIndex.Writer.open(logFile, 0)) {
+            writer.sync(0);
+        }
+        File rotated = new File(folder.getRoot(), "server.log_2020-01-01T00-00-00");
+        assertTrue(logFile.renameTo(rotated));
+        LogFileIndex.rename(logFile, rotated);
+
+        assertNull(LogFileIndex.open(logFile));
+        assertNotNull(LogFileIndex.open(rotated));
+        LogFileIndex.delete(rotated);
+        assertNull(LogFileIndex.open(rotated));
+    }
+
+    private static void appendBytes(File file, int count) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[count]);
+        }
+    }
+}
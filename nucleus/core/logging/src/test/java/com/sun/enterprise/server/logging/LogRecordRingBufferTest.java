@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.server.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LogRecordRingBufferTest {
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(16384, new LogRecordRingBuffer(10000).capacity());
+        assertEquals(8, new LogRecordRingBuffer(8).capacity());
+        assertEquals(1, new LogRecordRingBuffer(1).capacity());
+    }
+
+    @Test
+    public void recordsAreConsumedInOrderAcrossLaps() {
+        LogRecordRingBuffer buffer = new LogRecordRingBuffer(4);
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(record(lap * 4 + i)));
+            }
+            assertFalse("buffer should be full", buffer.offer(record(-1)));
+            assertEquals(4, buffer.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(String.valueOf(lap * 4 + i), buffer.poll().getMessage());
+            }
+            assertNull(buffer.poll());
+            assertTrue(buffer.isEmpty());
+        }
+        assertEquals(4, buffer.getPeakDepth());
+    }
+
+    @Test
+    public void takeReceivesRecordsFromConcurrentProducers() throws Exception {
+        final int producers = 4;
+        final int perProducer = 5000;
+        LogRecordRingBuffer buffer = new LogRecordRingBuffer(64);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    try {
+                        buffer.put(record(i));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            threads.add(producer);
+            producer.start();
+        }
+        long[] counts = new long[perProducer];
+        for (int i = 0; i < producers * perProducer; i++) {
+            counts[Integer.parseInt(buffer.take().getMessage())]++;
+        }
+        for (Thread producer : threads) {
+            producer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        for (long count : counts) {
+            assertEquals(producers, count);
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test(expected = InterruptedException.class)
+    public void takeIsInterruptible() throws Exception {
+        Thread.currentThread().interrupt();
+        new LogRecordRingBuffer(4).take();
+    }
+
+    private static LogRecord record(int number) {
+        return new LogRecord(Level.INFO, String.valueOf(number));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package com.sun.enterprise.server.logging;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RecordTimestampFormatterTest {
+
+    private static final String PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+
+    @Test
+    public void formattersAreSharedPerPattern() {
+        RecordTimestampFormatter formatter = RecordTimestampFormatter.forPattern(PATTERN);
+        assertSame(formatter, RecordTimestampFormatter.forPattern(PATTERN));
+        assertNotSame(formatter, RecordTimestampFormatter.forPattern("HH:mm:ss"));
+        assertEquals(PATTERN, formatter.getPattern());
+    }
+
+    @Test
+    public void formatsLikeSimpleDateFormat() {
+        RecordTimestampFormatter formatter = RecordTimestampFormatter.forPattern(PATTERN);
+        long millis = 1600000000123L;
+        String expected = new SimpleDateFormat(PATTERN).format(new Date(millis));
+        assertEquals(expected, formatter.format(millis));
+        assertEquals(expected, formatter.format(millis));
+        assertNotEquals(expected, formatter.format(millis + 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPatternIsRejected() {
+        RecordTimestampFormatter.forPattern("invalid pattern");
+    }
+}
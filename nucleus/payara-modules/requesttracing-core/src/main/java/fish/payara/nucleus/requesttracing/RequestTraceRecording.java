@@ -0,0 +1,282 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.nucleus.requesttracing;
+
+import fish.payara.notification.requesttracing.EventType;
+import fish.payara.notification.requesttracing.RequestTrace;
+import fish.payara.notification.requesttracing.RequestTraceSpan;
+import fish.payara.notification.requesttracing.RequestTraceSpanLog;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reusable recording of the request trace in progress on a single thread.
+ *
+ * Spans are kept in plain arrays together with the primitive time at which they ended. The sorting, log assignment
+ * and parent matching of a {@link RequestTrace} is only done when the trace is materialised by {@link #getTrace()},
+ * which the {@link RequestTracingService} only does for traces that exceed the threshold and are sampled. Traces of
+ * fast requests are discarded by {@link #reset()} without allocating anything beyond the spans themselves.
+ *
+ * Once materialised, the recording delegates to the {@link RequestTrace} until it is reset.
+ *
+ * Only the owning thread records, but {@link #peekTrace()} may be called from any thread. The size, completion flag
+ * and materialised trace are volatile and written last, so a reader that reads them first sees the spans, end times
+ * and logs recorded before them.
+ */
+final class RequestTraceRecording {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_RETAINED_CAPACITY = 1024;
+
+    private RequestTraceSpan[] spans = new RequestTraceSpan[INITIAL_CAPACITY];
+    // end of each span, either System.nanoTime() or epoch millis as flagged by endInMillis
+    private long[] spanEnds = new long[INITIAL_CAPACITY];
+    private boolean[] endInMillis = new boolean[INITIAL_CAPACITY];
+    // published last when a span is recorded
+    private volatile int size;
+    private volatile List<RequestTraceSpanLog> spanLogs;
+
+    private boolean started;
+    // published last when the trace ends
+    private volatile boolean completed;
+    private Instant endTime;
+    private long endNanos;
+    private long elapsedTime;
+
+    private volatile RequestTrace trace;
+
+    void record(RequestTraceSpan span) {
+        if (trace != null && !isTraceStart(span)) {
+            trace.addEvent(span);
+        } else {
+            record(span, System.nanoTime(), false);
+        }
+    }
+
+    void record(RequestTraceSpan span, long timestampMillis) {
+        if (trace != null && !isTraceStart(span)) {
+            trace.addEvent(span, timestampMillis);
+        } else {
+            record(span, timestampMillis, true);
+        }
+    }
+
+    private static boolean isTraceStart(RequestTraceSpan span) {
+        return span.getEventType() == EventType.TRACE_START || span.getEventType() == EventType.PROPAGATED_TRACE;
+    }
+
+    private void record(RequestTraceSpan span, long end, boolean millis) {
+        if (isTraceStart(span)) {
+            reset();
+            spans[0] = span;
+            started = true;
+            size = 1;
+            return;
+        }
+        // Do not add trace events if completed or not started
+        if (span.getEventType() != EventType.REQUEST_EVENT || completed || !started) {
+            return;
+        }
+        if (size == spans.length) {
+            int capacity = size * 2;
+            spans = Arrays.copyOf(spans, capacity);
+            spanEnds = Arrays.copyOf(spanEnds, capacity);
+            endInMillis = Arrays.copyOf(endInMillis, capacity);
+        }
+        span.setTraceId(spans[0].getTraceId());
+        spans[size] = span;
+        spanEnds[size] = end;
+        endInMillis[size] = millis;
+        size++;
+    }
+
+    void addSpanLog(RequestTraceSpanLog spanLog) {
+        if (trace != null) {
+            trace.addSpanLog(spanLog);
+            return;
+        }
+        List<RequestTraceSpanLog> logs = spanLogs;
+        if (logs == null) {
+            logs = new CopyOnWriteArrayList<>();
+            spanLogs = logs;
+        }
+        logs.add(spanLog);
+    }
+
+    void endTrace() {
+        if (trace != null) {
+            trace.endTrace();
+            return;
+        }
+        if (!started) {
+            return;
+        }
+        endNanos = System.nanoTime();
+        endTime = Instant.now();
+        elapsedTime = TimeUnit.MILLISECONDS.convert(
+                spans[0].getStartInstant().until(endTime, ChronoUnit.NANOS), TimeUnit.NANOSECONDS);
+        completed = true;
+    }
+
+    /**
+     * @return how long the trace took in milliseconds, 0 if the trace has not finished
+     */
+    long getElapsedTime() {
+        return trace != null ? trace.getElapsedTime() : elapsedTime;
+    }
+
+    boolean isTraceInProgress() {
+        return trace != null ? trace.isStarted() && !trace.isCompleted() : started && !completed;
+    }
+
+    /**
+     * @return the span the trace was started with, {@code null} if no trace started
+     */
+    RequestTraceSpan getTraceStartSpan() {
+        if (trace != null) {
+            return trace.getTraceSpans().peekFirst();
+        }
+        return size > 0 ? spans[0] : null;
+    }
+
+    UUID getTraceId() {
+        RequestTraceSpan startSpan = getTraceStartSpan();
+        return startSpan != null ? startSpan.getTraceId() : null;
+    }
+
+    void setTraceId(UUID traceId) {
+        if (trace != null) {
+            trace.setTraceId(traceId);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            spans[i].setTraceId(traceId);
+        }
+    }
+
+    /**
+     * Materialises the recorded spans into a {@link RequestTrace}, the same instance is returned until
+     * {@link #reset()}.
+     * @return the full trace
+     */
+    RequestTrace getTrace() {
+        if (trace == null) {
+            trace = materialise();
+        }
+        return trace;
+    }
+
+    /**
+     * Materialises the recorded spans without keeping the result, for use by threads other than the recording one.
+     * @return the full trace
+     */
+    RequestTrace peekTrace() {
+        RequestTrace current = trace;
+        return current != null ? current : materialise();
+    }
+
+    private RequestTrace materialise() {
+        RequestTrace result = new RequestTrace();
+        // read once, peekTrace() may run concurrently to the recording thread.
+        // The volatile size and completed flag are read first so that what was written before them is visible
+        int publishedSize = size;
+        boolean recordedCompleted = completed;
+        RequestTraceSpan[] recordedSpans = spans;
+        long[] recordedEnds = spanEnds;
+        boolean[] recordedEndInMillis = endInMillis;
+        int recordedSize = Math.min(publishedSize, Math.min(recordedSpans.length,
+                Math.min(recordedEnds.length, recordedEndInMillis.length)));
+        if (recordedSize == 0 || recordedSpans[0] == null) {
+            return result;
+        }
+        Instant recordedEndTime = endTime;
+        recordedCompleted = recordedCompleted && recordedEndTime != null;
+        Instant anchorTime = recordedCompleted ? recordedEndTime : Instant.now();
+        long anchorNanos = recordedCompleted ? endNanos : System.nanoTime();
+        result.addEvent(recordedSpans[0]);
+        for (int i = 1; i < recordedSize; i++) {
+            RequestTraceSpan span = recordedSpans[i];
+            if (span == null) {
+                break;
+            }
+            Instant spanEnd = recordedEndInMillis[i]
+                    ? Instant.ofEpochMilli(recordedEnds[i])
+                    : anchorTime.minusNanos(anchorNanos - recordedEnds[i]);
+            result.addEvent(span, spanEnd);
+        }
+        List<RequestTraceSpanLog> recordedLogs = spanLogs;
+        if (recordedLogs != null) {
+            for (RequestTraceSpanLog spanLog : recordedLogs) {
+                result.addSpanLog(spanLog);
+            }
+        }
+        if (recordedCompleted) {
+            result.endTrace(anchorTime);
+        }
+        return result;
+    }
+
+    /**
+     * Discards the recorded trace, keeping the arrays for the next trace on this thread.
+     */
+    void reset() {
+        if (spans.length > MAX_RETAINED_CAPACITY) {
+            spans = new RequestTraceSpan[INITIAL_CAPACITY];
+            spanEnds = new long[INITIAL_CAPACITY];
+            endInMillis = new boolean[INITIAL_CAPACITY];
+        } else {
+            Arrays.fill(spans, 0, size, null);
+        }
+        size = 0;
+        spanLogs = null;
+        started = false;
+        completed = false;
+        endTime = null;
+        elapsedTime = 0;
+        trace = null;
+    }
+}
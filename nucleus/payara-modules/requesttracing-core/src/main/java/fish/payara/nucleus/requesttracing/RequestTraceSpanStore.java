@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -42,12 +42,15 @@ package fish.payara.nucleus.requesttracing;
 import fish.payara.notification.requesttracing.RequestTrace;
 import fish.payara.notification.requesttracing.EventType;
 import fish.payara.notification.requesttracing.RequestTraceSpan;
+import fish.payara.notification.requesttracing.RequestTraceSpanLog;
 import fish.payara.nucleus.requesttracing.store.IterableThreadLocal;
 
 import org.jvnet.hk2.annotations.Service;
 
 import javax.inject.Singleton;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.UUID;
 
@@ -57,16 +60,32 @@ import java.util.UUID;
  * Stores all request events  in a thread local that are being traced.
  * The start of the trace is marked with {@link EventType#TRACE_START} and the end of the trace is marked with {@link EventType#TRACE_END}.
  * All the request events placed in between are marked with a conversation id, which is the id of request event with type {@link EventType#TRACE_START}.
+ * Events are recorded into a {@link RequestTraceRecording} that is reused by the thread, the {@link RequestTrace} is
+ * only built when asked for by {@link #getTrace()}.
  * @since 4.1.1.163
  */
 @Service
 @Singleton
 public class RequestTraceSpanStore {
 
-    private IterableThreadLocal<RequestTrace> spanStore = new IterableThreadLocal<>(RequestTrace::new);
+    private IterableThreadLocal<RequestTraceRecording> spanStore = new IterableThreadLocal<>(RequestTraceRecording::new);
 
     public Iterable<Entry<Thread, RequestTrace>> getTraces() {
-        return spanStore;
+        return () -> {
+            Iterator<Entry<Thread, RequestTraceRecording>> recordings = spanStore.iterator();
+            return new Iterator<Entry<Thread, RequestTrace>>() {
+                @Override
+                public boolean hasNext() {
+                    return recordings.hasNext();
+                }
+
+                @Override
+                public Entry<Thread, RequestTrace> next() {
+                    Entry<Thread, RequestTraceRecording> recording = recordings.next();
+                    return new SimpleImmutableEntry<>(recording.getKey(), recording.getValue().peekTrace());
+                }
+            };
+        };
     }
 
     /**
@@ -74,18 +93,15 @@ public class RequestTraceSpanStore {
      * @param payaraSpan 
      */
     void storeEvent(RequestTraceSpan payaraSpan) {
-        RequestTrace currentTrace = spanStore.get();
-        currentTrace.addEvent(payaraSpan);
+        spanStore.get().record(payaraSpan);
     }
 
     void storeEvent(RequestTraceSpan payaraSpan, long timestampMillis) {
-        RequestTrace currentTrace = spanStore.get();
-        currentTrace.addEvent(payaraSpan, timestampMillis);
+        spanStore.get().record(payaraSpan, timestampMillis);
     }
 
     void endTrace() {
-        RequestTrace currentTrace = spanStore.get();
-        currentTrace.endTrace();
+        spanStore.get().endTrace();
     }
 
     /**
@@ -100,7 +116,7 @@ public class RequestTraceSpanStore {
      * Clears the stored request trace and
      */
     void flushStore() {
-        spanStore.set(new RequestTrace());
+        spanStore.get().reset();
     }
 
     /**
@@ -108,7 +124,23 @@ public class RequestTraceSpanStore {
      * @return A JSON-style representation of the request trace
      */
     String getTraceAsString() {
-        return spanStore.get().toString();
+        return spanStore.get().getTrace().toString();
+    }
+
+    /**
+     * Adds a log to the request trace in progress
+     * @param spanLog
+     */
+    void addSpanLog(RequestTraceSpanLog spanLog) {
+        spanStore.get().addSpanLog(spanLog);
+    }
+
+    /**
+     * Returns the span the request trace was started with
+     * @return {@code null} if no trace started
+     */
+    RequestTraceSpan getTraceStartSpan() {
+        return spanStore.get().getTraceStartSpan();
     }
 
     // test methods
@@ -118,7 +150,7 @@ public class RequestTraceSpanStore {
      * @since 4.1.2.173
      */
     public RequestTrace getTrace() {
-        return spanStore.get();
+        return spanStore.get().getTrace();
     }
 
     /**
@@ -126,13 +158,11 @@ public class RequestTraceSpanStore {
      * @return 
      */
     UUID getTraceID() {
-        RequestTrace trace = spanStore.get();
-        return trace.getTraceId();
+        return spanStore.get().getTraceId();
     }
 
     void setTraceId(UUID newID) {
-        RequestTrace trace = spanStore.get();
-        trace.setTraceId(newID);
+        spanStore.get().setTraceId(newID);
     }
 
     /**
@@ -140,6 +170,6 @@ public class RequestTraceSpanStore {
      * @return 
      */
     boolean isTraceInProgress() {
-        return (spanStore.get().isStarted() && !spanStore.get().isCompleted());
+        return spanStore.get().isTraceInProgress();
     }
-}
\ No newline at end of file
+}
@@ -350,7 +350,7 @@ public class RequestTracingService implements EventListener, ConfigListener, Mon
     }
     
     public UUID getStartingTraceID() {
-        return requestEventStore.getTrace().getTraceSpans().getFirst().getId();
+        return requestEventStore.getTraceStartSpan().getId();
     }
 
     /**
@@ -516,7 +516,7 @@ public class RequestTracingService implements EventListener, ConfigListener, Mon
             return;
         }
         
-        requestEventStore.getTrace().addSpanLog(spanLog);
+        requestEventStore.addSpanLog(spanLog);
     }
     
     /**
@@ -0,0 +1,258 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.nucleus.requesttracing.store;
+
+import fish.payara.notification.requesttracing.RequestTrace;
+import fish.payara.nucleus.requesttracing.store.strategy.LongestTraceStorageStrategy;
+
+import java.time.Instant;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * A local store of {@link RequestTrace} objects that keeps the longest traces.
+ *
+ * Traces are kept in a {@link ConcurrentSkipListSet} ordered by duration so that the shortest trace, which is the one
+ * to remove when the store is full, is found in O(log n) instead of scanning the whole store as done by the
+ * {@link LongestTraceStorageStrategy}. Traces of same duration and start time are told apart by the order they were
+ * added in.
+ */
+public class LongestRequestTraceStore implements RequestTraceStoreInterface {
+
+    private final NavigableSet<StoredTrace> store = new ConcurrentSkipListSet<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Collection<RequestTrace> traces = new TraceCollection();
+    private volatile IntSupplier maxStoreSize = () -> 0;
+
+    @Override
+    public RequestTrace addTrace(RequestTrace trace) {
+        return addTrace(trace, null);
+    }
+
+    @Override
+    public RequestTrace addTrace(RequestTrace trace, RequestTrace traceToRemove) {
+        store.add(new StoredTrace(trace, sequence.incrementAndGet()));
+        int maxSize = maxStoreSize.getAsInt();
+        if (size.incrementAndGet() <= maxSize) {
+            return null;
+        }
+        if (traceToRemove != null && removeTrace(traceToRemove)) {
+            return traceToRemove;
+        }
+        return removeExceedingTraces(maxSize);
+    }
+
+    /**
+     * Removes the shortest traces until the store is within the given size.
+     * @return the last trace removed, null if none was removed
+     */
+    private RequestTrace removeExceedingTraces(int maxSize) {
+        RequestTrace removed = null;
+        while (size.get() > maxSize) {
+            StoredTrace shortest = store.pollFirst();
+            if (shortest == null) {
+                break;
+            }
+            size.decrementAndGet();
+            removed = shortest.trace;
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the given trace by looking up the traces of same duration and start time.
+     * @return true if the trace was contained in the store
+     */
+    private boolean removeTrace(RequestTrace trace) {
+        StoredTrace from = new StoredTrace(trace, Long.MIN_VALUE);
+        StoredTrace to = new StoredTrace(trace, Long.MAX_VALUE);
+        for (StoredTrace candidate : store.subSet(from, true, to, true)) {
+            if (candidate.trace == trace && store.remove(candidate)) {
+                size.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean containsTrace(RequestTrace trace) {
+        StoredTrace from = new StoredTrace(trace, Long.MIN_VALUE);
+        StoredTrace to = new StoredTrace(trace, Long.MAX_VALUE);
+        for (StoredTrace candidate : store.subSet(from, true, to, true)) {
+            if (candidate.trace == trace) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a live view of the store, the longest trace first. Removing a trace from the view removes it from the
+     * store.
+     */
+    @Override
+    public Collection<RequestTrace> getTraces() {
+        return traces;
+    }
+
+    /**
+     * Returns up to the limit number of the longest traces without copying the rest of the store.
+     */
+    @Override
+    public Collection<RequestTrace> getTraces(int limit) {
+        return StreamSupport.stream(traces.spliterator(), false).limit(limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public void setSize(IntSupplier maxSize) {
+        removeExceedingTraces(maxSize.getAsInt());
+        this.maxStoreSize = maxSize;
+    }
+
+    @Override
+    public int getStoreSize() {
+        return maxStoreSize.getAsInt();
+    }
+
+    @Override
+    public Collection<RequestTrace> emptyStore() {
+        Collection<RequestTrace> removed = new ArrayList<>();
+        StoredTrace stored = store.pollFirst();
+        while (stored != null) {
+            size.decrementAndGet();
+            removed.add(stored.trace);
+            stored = store.pollFirst();
+        }
+        return removed;
+    }
+
+    private final class TraceCollection extends AbstractCollection<RequestTrace> {
+
+        @Override
+        public Iterator<RequestTrace> iterator() {
+            Iterator<StoredTrace> iter = store.descendingIterator();
+            return new Iterator<RequestTrace>() {
+
+                @Override
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+
+                @Override
+                public RequestTrace next() {
+                    return iter.next().trace;
+                }
+
+                @Override
+                public void remove() {
+                    iter.remove();
+                    size.decrementAndGet();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return Math.max(0, size.get());
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof RequestTrace && containsTrace((RequestTrace) o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o instanceof RequestTrace && removeTrace((RequestTrace) o);
+        }
+    }
+
+    /**
+     * A trace in the store, ordered by duration, then start time, then order of addition.
+     */
+    private static final class StoredTrace implements Comparable<StoredTrace> {
+
+        final RequestTrace trace;
+        final long elapsedTime;
+        final Instant startTime;
+        final long sequence;
+
+        StoredTrace(RequestTrace trace, long sequence) {
+            this.trace = trace;
+            this.elapsedTime = trace.getElapsedTime();
+            this.startTime = trace.getStartTime() == null ? Instant.EPOCH : trace.getStartTime();
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(StoredTrace other) {
+            int result = Long.compare(elapsedTime, other.elapsedTime);
+            if (result != 0) {
+                return result;
+            }
+            result = startTime.compareTo(other.startTime);
+            if (result != 0) {
+                return result;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof StoredTrace && compareTo((StoredTrace) obj) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(sequence);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2017-2019 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2017-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -94,7 +94,10 @@ public class RequestTraceStoreFactory {
         }
 
         // Otherwise get a local store
-        return new LocalRequestTraceStore(strategy);
+        if (reservoirSamplingEnabled) {
+            return new ReservoirRequestTraceStore();
+        }
+        return new LongestRequestTraceStore();
     }
 
 }
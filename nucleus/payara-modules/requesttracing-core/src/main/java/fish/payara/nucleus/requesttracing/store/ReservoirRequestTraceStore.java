@@ -0,0 +1,350 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package fish.payara.nucleus.requesttracing.store;
+
+import fish.payara.notification.requesttracing.RequestTrace;
+import fish.payara.nucleus.requesttracing.store.strategy.ReservoirTraceStorageStrategy;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntSupplier;
+
+/**
+ * A local store of {@link RequestTrace} objects that keeps a random sample of the traces.
+ *
+ * Traces are kept in an {@link AtomicReferenceArray} with one slot per trace. Once the store is full a new trace
+ * replaces the trace in a random slot, or is discarded itself, so that like with the
+ * {@link ReservoirTraceStorageStrategy} each trace has the same probability of being kept. The slot of each stored
+ * trace is indexed by identity, so neither adding a trace nor removing a given trace scans the store.
+ *
+ * Changing the size of the store replaces the array; traces added concurrently to a resize may be lost.
+ */
+public class ReservoirRequestTraceStore implements RequestTraceStoreInterface {
+
+    private volatile Reservoir reservoir = new Reservoir(0);
+    private final AtomicInteger size = new AtomicInteger();
+    private final Collection<RequestTrace> traces = new TraceCollection();
+    private volatile IntSupplier maxStoreSize = () -> 0;
+
+    @Override
+    public RequestTrace addTrace(RequestTrace trace) {
+        return addTrace(trace, null);
+    }
+
+    @Override
+    public RequestTrace addTrace(RequestTrace trace, RequestTrace traceToRemove) {
+        if (Math.max(0, maxStoreSize.getAsInt()) != reservoir.capacity()) {
+            setSize(maxStoreSize);
+        }
+        Reservoir current = reservoir;
+        int capacity = current.capacity();
+        if (capacity == 0) {
+            return trace;
+        }
+        if (size.incrementAndGet() <= capacity && current.setInFreeSlot(trace)) {
+            return null;
+        }
+        size.decrementAndGet();
+        if (traceToRemove != null && current.replace(traceToRemove, trace)) {
+            return traceToRemove;
+        }
+        // each of the stored traces and the new trace has the same chance to be removed
+        int index = ThreadLocalRandom.current().nextInt(capacity + 1);
+        if (index == capacity) {
+            return trace;
+        }
+        RequestTrace removed = current.getAndSet(index, trace);
+        if (removed == null) {
+            // took the slot of a trace removed concurrently
+            size.incrementAndGet();
+        }
+        return removed;
+    }
+
+    private boolean removeTrace(RequestTrace trace) {
+        if (reservoir.replace(trace, null)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a live view of the store. Removing a trace from the view removes it from the store.
+     */
+    @Override
+    public Collection<RequestTrace> getTraces() {
+        return traces;
+    }
+
+    @Override
+    public Collection<RequestTrace> getTraces(int limit) {
+        Collection<RequestTrace> result = new ArrayList<>(Math.min(limit, size.get()));
+        Iterator<RequestTrace> iter = traces.iterator();
+        while (result.size() < limit && iter.hasNext()) {
+            result.add(iter.next());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void setSize(IntSupplier maxSize) {
+        int capacity = Math.max(0, maxSize.getAsInt());
+        Reservoir current = reservoir;
+        if (capacity != current.capacity()) {
+            Reservoir resized = new Reservoir(capacity);
+            int count = 0;
+            for (int i = 0; i < current.capacity(); i++) {
+                RequestTrace trace = current.get(i);
+                if (trace != null && count < capacity) {
+                    resized.set(count++, trace);
+                }
+            }
+            reservoir = resized;
+            size.set(count);
+        }
+        this.maxStoreSize = maxSize;
+    }
+
+    @Override
+    public int getStoreSize() {
+        return maxStoreSize.getAsInt();
+    }
+
+    @Override
+    public Collection<RequestTrace> emptyStore() {
+        Reservoir current = reservoir;
+        Collection<RequestTrace> removed = new ArrayList<>();
+        for (int i = 0; i < current.capacity(); i++) {
+            RequestTrace trace = current.getAndSet(i, null);
+            if (trace != null) {
+                size.decrementAndGet();
+                removed.add(trace);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * The slots of the store together with an identity index of the slot each trace is stored in.
+     * A slot is always changed first, the index follows it. The index is only a hint: a lookup is
+     * confirmed by a compare and set on the slot, so an entry that is briefly out of date is harmless.
+     */
+    private static final class Reservoir {
+
+        private final AtomicReferenceArray<RequestTrace> slots;
+        private final Map<TraceKey, Integer> indexes = new ConcurrentHashMap<>();
+
+        Reservoir(int capacity) {
+            slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        int capacity() {
+            return slots.length();
+        }
+
+        RequestTrace get(int index) {
+            return slots.get(index);
+        }
+
+        void set(int index, RequestTrace trace) {
+            slots.set(index, trace);
+            indexed(index, trace);
+        }
+
+        RequestTrace getAndSet(int index, RequestTrace trace) {
+            RequestTrace removed = slots.getAndSet(index, trace);
+            unindexed(index, removed);
+            indexed(index, trace);
+            return removed;
+        }
+
+        boolean compareAndSet(int index, RequestTrace expected, RequestTrace trace) {
+            if (slots.compareAndSet(index, expected, trace)) {
+                unindexed(index, expected);
+                indexed(index, trace);
+                return true;
+            }
+            return false;
+        }
+
+        boolean setInFreeSlot(RequestTrace trace) {
+            int capacity = slots.length();
+            int start = ThreadLocalRandom.current().nextInt(capacity);
+            for (int i = 0; i < capacity; i++) {
+                if (compareAndSet((start + i) % capacity, null, trace)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int indexOf(RequestTrace trace) {
+            Integer index = indexes.get(new TraceKey(trace));
+            return index != null && slots.get(index) == trace ? index : -1;
+        }
+
+        /**
+         * Replaces the given trace, if it is still stored, by another trace or null.
+         */
+        boolean replace(RequestTrace stored, RequestTrace trace) {
+            int index = indexOf(stored);
+            return index >= 0 && compareAndSet(index, stored, trace);
+        }
+
+        private void indexed(int index, RequestTrace trace) {
+            if (trace != null) {
+                TraceKey key = new TraceKey(trace);
+                indexes.put(key, index);
+                if (slots.get(index) != trace) {
+                    // replaced before it was indexed, the replacing thread may have missed the entry
+                    indexes.remove(key, index);
+                }
+            }
+        }
+
+        private void unindexed(int index, RequestTrace trace) {
+            if (trace != null) {
+                indexes.remove(new TraceKey(trace), index);
+            }
+        }
+    }
+
+    /**
+     * Identity of a trace, {@link RequestTrace#equals(Object)} compares the string form of two traces.
+     */
+    private static final class TraceKey {
+
+        private final RequestTrace trace;
+
+        TraceKey(RequestTrace trace) {
+            this.trace = trace;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TraceKey && ((TraceKey) obj).trace == trace;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(trace);
+        }
+    }
+
+    private final class TraceCollection extends AbstractCollection<RequestTrace> {
+
+        @Override
+        public Iterator<RequestTrace> iterator() {
+            Reservoir current = reservoir;
+            return new Iterator<RequestTrace>() {
+
+                private int index = -1;
+                private RequestTrace lastTrace;
+                private int nextIndex = -1;
+                private RequestTrace nextTrace = findNext(0);
+
+                private RequestTrace findNext(int from) {
+                    for (int i = from; i < current.capacity(); i++) {
+                        RequestTrace trace = current.get(i);
+                        if (trace != null) {
+                            nextIndex = i;
+                            return trace;
+                        }
+                    }
+                    nextIndex = current.capacity();
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return nextTrace != null;
+                }
+
+                @Override
+                public RequestTrace next() {
+                    if (nextTrace == null) {
+                        throw new NoSuchElementException();
+                    }
+                    RequestTrace trace = nextTrace;
+                    index = nextIndex;
+                    lastTrace = trace;
+                    nextTrace = findNext(index + 1);
+                    return trace;
+                }
+
+                @Override
+                public void remove() {
+                    if (lastTrace == null) {
+                        throw new IllegalStateException();
+                    }
+                    if (current.compareAndSet(index, lastTrace, null)) {
+                        size.decrementAndGet();
+                    }
+                    lastTrace = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return Math.max(0, Math.min(size.get(), reservoir.capacity()));
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof RequestTrace && reservoir.indexOf((RequestTrace) o) >= 0;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o instanceof RequestTrace && removeTrace((RequestTrace) o);
+        }
+    }
+}
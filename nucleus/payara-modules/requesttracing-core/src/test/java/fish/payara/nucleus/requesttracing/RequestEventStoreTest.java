@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2016-2018 Payara Foundation and/or its affiliates. All rights reserved.
+ * Copyright (c) 2016-2020 Payara Foundation and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -43,6 +43,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
@@ -58,6 +59,7 @@ import org.junit.Test;
 
 import fish.payara.notification.requesttracing.EventType;
 import fish.payara.notification.requesttracing.RequestTraceSpan;
+import fish.payara.notification.requesttracing.RequestTraceSpanLog;
 
 /**
  *
@@ -263,6 +265,45 @@ public class RequestEventStoreTest {
         
     }
     
+    @Test
+    public void testTraceIsMaterialisedWithSpanEndTimes() throws InterruptedException {
+        RequestTraceSpan start = new RequestTraceSpan(EventType.TRACE_START, "Start");
+        eventStore.storeEvent(start);
+        RequestTraceSpan span = new RequestTraceSpan("Test");
+        Thread.sleep(20);
+        eventStore.storeEvent(span);
+        RequestTraceSpan timestamped = new RequestTraceSpan("Timestamped");
+        long timestamp = System.currentTimeMillis();
+        eventStore.storeEvent(timestamped, timestamp);
+        eventStore.endTrace();
+
+        RequestTrace trace = eventStore.getTrace();
+        assertEquals(3, trace.getTraceSpans().size());
+        assertTrue(trace.isCompleted());
+        assertTrue(span.getSpanDuration() >= 20_000_000L);
+        assertEquals(timestamp, timestamped.getTraceEndTime().toEpochMilli());
+        assertEquals(start.getTraceId(), span.getTraceId());
+        assertEquals(trace.getEndTime(), start.getTraceEndTime());
+        assertSame(trace, eventStore.getTrace());
+    }
+
+    @Test
+    public void testSpanLogIsAssignedWhenMaterialised() throws InterruptedException {
+        eventStore.storeEvent(new RequestTraceSpan(EventType.TRACE_START, "Start"));
+        Thread.sleep(5);
+        RequestTraceSpan span = new RequestTraceSpan("Test");
+        Thread.sleep(5);
+        eventStore.addSpanLog(new RequestTraceSpanLog("log"));
+        Thread.sleep(5);
+        eventStore.storeEvent(span);
+        eventStore.endTrace();
+
+        assertTrue(eventStore.getTrace().toString().contains("\"log\""));
+        eventStore.flushStore();
+        assertFalse(eventStore.isTraceInProgress());
+        assertEquals(0, eventStore.getTrace().getTraceSpans().size());
+    }
+
     @Test
     public void isInProgress() {
         assertFalse(eventStore.isTraceInProgress());
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.nucleus.requesttracing.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import fish.payara.notification.requesttracing.RequestTrace;
+
+/**
+ * Tests correctness of the {@link LongestRequestTraceStore}.
+ */
+public class LongestRequestTraceStoreTest extends AbstractRequestTraceStoreTest {
+
+    public LongestRequestTraceStoreTest() {
+        super(new LongestRequestTraceStore());
+    }
+
+    @Test
+    public void shortestTraceIsRemovedAboveMaxSize() {
+        store.setSize(() -> 10);
+        for (int i = 0; i < 10; i++) {
+            store.addTrace(createTrace(1000000000L * (i + 1))); // 1-10sec long traces
+        }
+        List<RequestTrace> added = new ArrayList<>();
+        List<RequestTrace> removed = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            RequestTrace newTrace = createTrace(1000000000L * (i + 1) - 500000000L); // 0.5-9.5sec long traces
+            added.add(newTrace);
+            RequestTrace removedTrace = store.addTrace(newTrace);
+            assertTrue(removedTrace.getElapsedTime() <= newTrace.getElapsedTime());
+            removed.add(removedTrace);
+        }
+        // remaining elements should be half from the original 10 items, half from the later added ones
+        added.removeAll(removed);
+        assertEquals(5, added.size());
+    }
+
+    @Test
+    public void tracesAreListedLongestFirst() {
+        store.setSize(() -> 10);
+        for (int i = 0; i < 10; i++) {
+            store.addTrace(createTrace(1000000000L * ((i * 7) % 10 + 1)));
+        }
+        Iterator<RequestTrace> iter = store.getTraces(3).iterator();
+        assertEquals(10000L, iter.next().getElapsedTime());
+        assertEquals(9000L, iter.next().getElapsedTime());
+        assertEquals(8000L, iter.next().getElapsedTime());
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void givenTraceIsRemovedWhenPresent() {
+        store.setSize(() -> 2);
+        RequestTrace first = createTrace();
+        RequestTrace second = createTrace();
+        store.addTrace(first);
+        store.addTrace(second);
+        assertSame(second, store.addTrace(createTrace(1000L), second));
+        assertTrue(store.getTraces().contains(first));
+        assertFalse(store.getTraces().contains(second));
+        assertTrue(store.getTraces().remove(first));
+        assertEquals(1, store.getTraces().size());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020 Payara Foundation and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://github.com/payara/Payara/blob/master/LICENSE.txt
+ * See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at glassfish/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * The Payara Foundation designates this particular file as subject to the "Classpath"
+ * exception as provided by the Payara Foundation in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package fish.payara.nucleus.requesttracing.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import fish.payara.notification.requesttracing.RequestTrace;
+
+/**
+ * Tests correctness of the {@link ReservoirRequestTraceStore}.
+ */
+public class ReservoirRequestTraceStoreTest extends AbstractRequestTraceStoreTest {
+
+    public ReservoirRequestTraceStoreTest() {
+        super(new ReservoirRequestTraceStore());
+    }
+
+    @Test
+    public void removedTraceIsEitherNewOrStoredTrace() {
+        store.setSize(() -> 10);
+        Set<RequestTrace> stored = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            RequestTrace trace = createTrace(i + 1);
+            stored.add(trace);
+            store.addTrace(trace);
+        }
+        for (int i = 0; i < 100; i++) {
+            RequestTrace trace = createTrace(100 + i);
+            RequestTrace removed = store.addTrace(trace);
+            assertTrue(removed == trace || stored.remove(removed));
+            if (removed != trace) {
+                stored.add(trace);
+            }
+            assertEquals(10, store.getTraces().size());
+        }
+        assertTrue(stored.containsAll(store.getTraces()));
+    }
+
+    @Test
+    public void givenTraceIsRemovedWhenPresent() {
+        store.setSize(() -> 2);
+        RequestTrace first = createTrace();
+        RequestTrace second = createTrace();
+        store.addTrace(first);
+        store.addTrace(second);
+        assertSame(second, store.addTrace(createTrace(), second));
+        assertTrue(store.getTraces().contains(first));
+        assertFalse(store.getTraces().contains(second));
+        assertTrue(store.getTraces().remove(first));
+        assertEquals(1, store.getTraces().size());
+    }
+
+    @Test
+    public void givenTraceIsRemovedAfterManyReplacements() {
+        store.setSize(() -> 50);
+        List<RequestTrace> stored = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            RequestTrace trace = createTrace();
+            stored.add(trace);
+            store.addTrace(trace);
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            RequestTrace trace = createTrace();
+            int index = random.nextInt(stored.size());
+            assertSame(stored.get(index), store.addTrace(trace, stored.get(index)));
+            stored.set(index, trace);
+        }
+        assertEquals(50, store.getTraces().size());
+        for (RequestTrace trace : stored) {
+            assertTrue(store.getTraces().remove(trace));
+        }
+        assertEquals(0, store.getTraces().size());
+    }
+}
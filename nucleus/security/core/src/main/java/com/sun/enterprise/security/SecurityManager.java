@@ -37,9 +37,11 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
-// Portions Copyright [2018] [Payara Foundation and/or its affiliates]
+// Portions Copyright [2018-2020] [Payara Foundation and/or its affiliates]
 package com.sun.enterprise.security;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.Principal;
 import java.security.PrivilegedExceptionAction;
@@ -115,4 +117,14 @@ public interface SecurityManager {
 
     public Object invoke(Method beanClassMethod, boolean isLocal, Object o, Object[] oa) throws Throwable;
 
+    /**
+     * Same as {@link #invoke(Method, boolean, Object, Object[])}, with a method handle of type
+     * {@code (Object, Object[])Object} for the bean class method that implementations may call
+     * instead of going through reflection. Exceptions thrown by the bean method are still
+     * wrapped in an {@link InvocationTargetException}.
+     */
+    default Object invoke(Method beanClassMethod, MethodHandle beanClassMethodHandle, boolean isLocal, Object o, Object[] oa) throws Throwable {
+        return invoke(beanClassMethod, isLocal, o, oa);
+    }
+
 }